@@ -0,0 +1,624 @@
+package Project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Micro-benchmarks for the hot paths of the platform: user lookup, follow and
+ * unfollow, commenting, user deletion, report generation, bulk import and email validation.
+ * <p>
+ * Each benchmark runs against synthetic platforms built by {@link SyntheticGraph} for
+ * every requested size. Like a JMH run, it does a number of warm-up iterations
+ * followed by measured iterations, and reports throughput, latency percentiles and
+ * the bytes allocated per operation, measured through the thread allocation counters
+ * of the JVM. It also reports the heap taken per follow edge.
+ * <p>
+ * Options are passed as {@code name=value} arguments, for example
+ * {@code sizes=1000,1000000 only=lookup,follow iterations=10}. Run
+ * {@code ant bench -Dbench.args="..."} to compile and run it against the current build.
+ *
+ * @author Asail
+ */
+public final class PlatformBenchmark {
+    private static final int MAX_SAMPLES = 1 << 20;
+    private static volatile long sink;
+
+    private final Map<String, String> options;
+    private final long iterationNanos;
+    private final int warmups;
+    private final int iterations;
+
+    private PlatformBenchmark(Map<String, String> options) {
+        this.options = options;
+        this.iterationNanos = (long) (Double.parseDouble(option("time", "1")) * 1_000_000_000L);
+        this.warmups = Integer.parseInt(option("warmup", "2"));
+        this.iterations = Integer.parseInt(option("iterations", "5"));
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args options as {@code name=value} pairs: {@code sizes}, {@code degree},
+     * {@code skew}, {@code posts}, {@code comments}, {@code time} (seconds per iteration),
+     * {@code warmup}, {@code iterations}, {@code only} and {@code seed}
+     * @throws Exception if building a platform or running a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value but got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new PlatformBenchmark(options).run();
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private void run() throws Exception {
+        List<String> only = Arrays.asList(option("only", "").split(","));
+        System.out.printf(Locale.ROOT, "%-22s %10s %14s %10s %10s %12s %12s%n",
+                "Benchmark", "Users", "Ops/s", "p50 ns", "p99 ns", "p99.9 ns", "Alloc B/op");
+        for (String size : option("sizes", "1000,100000").split(",")) {
+            SyntheticGraph graph = new SyntheticGraph(
+                    Integer.parseInt(size.trim()),
+                    Integer.parseInt(option("degree", "20")),
+                    Double.parseDouble(option("skew", "3")),
+                    Integer.parseInt(option("posts", "2")),
+                    Integer.parseInt(option("comments", "2")),
+                    Long.parseLong(option("seed", "42"))).build();
+            for (Benchmark benchmark : benchmarks()) {
+                if (only.contains("") || only.contains(benchmark.key)) {
+                    measure(benchmark, graph);
+                }
+            }
+            if (only.contains("") || only.contains("memory")) {
+                measureGraphMemory(graph);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the follow graph of a platform edge by edge and prints the heap it takes
+     * per edge, measured after full collections and as estimated by
+     * {@link FollowGraph#footprint()}. Each edge is stored in both directions.
+     */
+    private static void measureGraphMemory(SyntheticGraph graph) {
+        FollowGraph source = graph.context().getFollowGraph();
+        int limit = graph.context().getUsers().idLimit();
+        int[][] following = new int[limit][];
+        long edges = 0;
+        for (int id = 0; id < limit; id++) {
+            following[id] = source.followingIds(id);
+            edges += following[id].length;
+        }
+        long before = usedHeap();
+        FollowGraph copy = new FollowGraph();
+        for (int id = 0; id < limit; id++) {
+            for (int followee : following[id]) {
+                copy.follow(id, followee);
+            }
+        }
+        long after = usedHeap();
+        long estimated = copy.footprint();
+        System.out.printf(Locale.ROOT, "%-22s %10d %14s %10s %10s %12s %12s%n",
+                "FollowGraph memory", graph.users(), edges + " edges",
+                "", "", String.format(Locale.ROOT, "%.1f B/edge", (after - before) / (double) Math.max(1, edges)),
+                String.format(Locale.ROOT, "est %.1f", estimated / (double) Math.max(1, edges)));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private List<Benchmark> benchmarks() {
+        List<Benchmark> list = new ArrayList<>();
+        list.add(new LookupBenchmark());
+        list.add(new FollowBenchmark());
+        list.add(new UnfollowBenchmark());
+        list.add(new CommentBenchmark());
+        list.add(new DeleteUserBenchmark());
+        list.add(new ReportBenchmark());
+        list.add(new ExportBenchmark("csv", ReportWriter.Format.CSV));
+        list.add(new ExportBenchmark("jsonl", ReportWriter.Format.JSON_LINES));
+        list.add(new ExportBenchmark("pcsv", ReportWriter.Format.CSV, ForkJoinPool.commonPool()));
+        list.add(new ImportBenchmark());
+        list.add(new EmailBenchmark("email", false));
+        list.add(new EmailBenchmark("emailregex", true));
+        list.add(new SearchBenchmark());
+        list.add(new CompleteBenchmark());
+        return list;
+    }
+
+    private void measure(Benchmark benchmark, SyntheticGraph graph) throws Exception {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long threadId = Thread.currentThread().getId();
+        long[] samples = new long[MAX_SAMPLES];
+        int sampled = 0;
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int iteration = 0; iteration < warmups + iterations; iteration++) {
+            boolean measured = iteration >= warmups;
+            int limit = benchmark.prepare(graph);
+            long bytesBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long deadline = start + iterationNanos;
+            int ops = 0;
+            long now = start;
+            while (ops < limit && now < deadline) {
+                long before = now;
+                benchmark.operation(graph, ops);
+                now = System.nanoTime();
+                if (measured && sampled < MAX_SAMPLES) {
+                    samples[sampled++] = now - before;
+                }
+                ops++;
+            }
+            long bytesAfter = threads == null ? 0 : threads.getThreadAllocatedBytes(threadId);
+            benchmark.finish(graph, ops);
+            if (measured) {
+                totalOps += ops;
+                totalNanos += now - start;
+                totalBytes += bytesAfter - bytesBefore;
+            }
+        }
+        Arrays.sort(samples, 0, sampled);
+        System.out.printf(Locale.ROOT, "%-22s %10d %14.1f %10d %10d %12d %12s%n",
+                benchmark.name, graph.users(),
+                totalOps * 1e9 / Math.max(1, totalNanos),
+                percentile(samples, sampled, 0.50),
+                percentile(samples, sampled, 0.99),
+                percentile(samples, sampled, 0.999),
+                threads == null ? "n/a" : String.valueOf(totalBytes / Math.max(1, totalOps)));
+    }
+
+    private static long percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return sorted[Math.min(count - 1, (int) (count * fraction))];
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One benchmarked operation together with its untimed set-up and clean-up.
+     */
+    private abstract static class Benchmark {
+        final String key;
+        final String name;
+
+        Benchmark(String key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+
+        /**
+         * Prepares one iteration.
+         *
+         * @return the maximum number of operations the iteration may run
+         */
+        int prepare(SyntheticGraph graph) throws Exception {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Runs the i-th operation of the current iteration.
+         */
+        abstract void operation(SyntheticGraph graph, int i) throws Exception;
+
+        /**
+         * Cleans up after an iteration that ran the given number of operations.
+         */
+        void finish(SyntheticGraph graph, int ops) throws Exception {
+        }
+    }
+
+    private static final class LookupBenchmark extends Benchmark {
+        private String[] names;
+
+        LookupBenchmark() {
+            super("lookup", "findUserByUsername");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) {
+            names = new String[1 << 16];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = SyntheticGraph.userName(graph.anyUser());
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            sink += graph.context().getUsers().findByUsername(names[i & (names.length - 1)]).getId();
+        }
+    }
+
+    /**
+     * Picks pairs of users that do not follow each other yet, with followees drawn
+     * from the power-law popularity distribution.
+     */
+    private static int[][] freshPairs(SyntheticGraph graph, int count) {
+        count = (int) Math.min(count, graph.users() * 5L);
+        int[][] pairs = new int[count][];
+        Set<Long> picked = new HashSet<>();
+        FollowGraph follows = graph.context().getFollowGraph();
+        for (int i = 0; i < count; i++) {
+            int follower;
+            int followee;
+            do {
+                follower = graph.anyUser();
+                followee = graph.popularUser();
+            } while (follower == followee
+                    || follows.isFollowing(graph.user(follower).getId(), graph.user(followee).getId())
+                    || !picked.add((long) follower << 32 | followee));
+            pairs[i] = new int[] {follower, followee};
+        }
+        return pairs;
+    }
+
+    private static final class FollowBenchmark extends Benchmark {
+        private int[][] pairs;
+
+        FollowBenchmark() {
+            super("follow", "User.followUser");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) {
+            pairs = freshPairs(graph, 200_000);
+            return pairs.length;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) throws SocialMediaException {
+            graph.user(pairs[i][0]).followUser(graph.user(pairs[i][1]));
+        }
+
+        @Override
+        void finish(SyntheticGraph graph, int ops) throws SocialMediaException {
+            for (int i = 0; i < ops; i++) {
+                graph.user(pairs[i][0]).unfollowUser(graph.user(pairs[i][1]));
+            }
+        }
+    }
+
+    private static final class UnfollowBenchmark extends Benchmark {
+        private int[][] pairs;
+
+        UnfollowBenchmark() {
+            super("unfollow", "User.unfollowUser");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) throws SocialMediaException {
+            pairs = freshPairs(graph, 200_000);
+            for (int[] pair : pairs) {
+                graph.user(pair[0]).followUser(graph.user(pair[1]));
+            }
+            return pairs.length;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) throws SocialMediaException {
+            graph.user(pairs[i][0]).unfollowUser(graph.user(pairs[i][1]));
+        }
+
+        @Override
+        void finish(SyntheticGraph graph, int ops) throws SocialMediaException {
+            for (int i = ops; i < pairs.length; i++) {
+                graph.user(pairs[i][0]).unfollowUser(graph.user(pairs[i][1]));
+            }
+        }
+    }
+
+    private static final class CommentBenchmark extends Benchmark {
+        CommentBenchmark() {
+            super("comment", "Post.addComment");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) {
+            return 200_000;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) throws SocialMediaException {
+            Post[] posts = graph.posts();
+            Post post = posts[graph.random().nextInt(posts.length)];
+            post.addComment(new Comment("+1", graph.user(graph.anyUser())));
+        }
+    }
+
+    private static final class DeleteUserBenchmark extends Benchmark {
+        private Admin admin;
+        private User[] victims;
+        private int created;
+
+        DeleteUserBenchmark() {
+            super("delete", "Admin.deleteUser");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) throws SocialMediaException {
+            admin = (Admin) graph.user(0);
+            victims = new User[Math.min(10_000, Math.max(100, graph.users() / 10))];
+            for (int i = 0; i < victims.length; i++) {
+                int n = created++;
+                User victim = new RegularUser("victim" + n, "victim" + n + "@example.com");
+                graph.context().getUsers().register(victim);
+                for (int f = 0; f < 20; f++) {
+                    User followee = graph.user(graph.popularUser());
+                    User follower = graph.user(graph.anyUser());
+                    if (!victim.getFollowing().contains(new Following(victim, followee))) {
+                        victim.followUser(followee);
+                    }
+                    if (!follower.getFollowing().contains(new Following(follower, victim))) {
+                        follower.followUser(victim);
+                    }
+                }
+                victim.addPost(new Post("Goodbye", victim));
+                victims[i] = victim;
+            }
+            return victims.length;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            admin.deleteUser(victims[i], graph.context().getUsers());
+        }
+
+        @Override
+        void finish(SyntheticGraph graph, int ops) {
+            for (int i = ops; i < victims.length; i++) {
+                admin.deleteUser(victims[i], graph.context().getUsers());
+            }
+        }
+    }
+
+    private static final class ReportBenchmark extends Benchmark {
+        private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+        private SocialMediaPlatform platform;
+
+        ReportBenchmark() {
+            super("report", "generateReport");
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) {
+            platform = new SocialMediaPlatform(new DefaultPlatformService(graph.context()));
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            PrintStream console = System.out;
+            System.setOut(DISCARD);
+            try {
+                platform.generateReport();
+            } finally {
+                System.setOut(console);
+            }
+        }
+    }
+
+    private static final class ExportBenchmark extends Benchmark {
+        private final ReportWriter.Format format;
+        private final ForkJoinPool pool;
+        private PlatformService service;
+
+        ExportBenchmark(String key, ReportWriter.Format format) {
+            this(key, format, null);
+        }
+
+        ExportBenchmark(String key, ReportWriter.Format format, ForkJoinPool pool) {
+            super(key, "writeReport " + format + (pool == null ? "" : " x" + pool.getParallelism()));
+            this.format = format;
+            this.pool = pool;
+        }
+
+        @Override
+        int prepare(SyntheticGraph graph) {
+            service = new DefaultPlatformService(graph.context());
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            try {
+                ReportWriter writer = new ReportWriter(new BufferedWriter(Writer.nullWriter(), 1 << 16), format);
+                if (pool == null) {
+                    service.writeReport(writer);
+                } else {
+                    service.writeReport(writer, pool);
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class ImportBenchmark extends Benchmark {
+        private SyntheticGraph written;
+        private Path file;
+        private PlatformContext target;
+
+        ImportBenchmark() {
+            super("import", "importFile CSV");
+        }
+
+        /**
+         * Writes the users and follows of the graph to a CSV file once per graph, and
+         * gives every iteration an empty platform to import into.
+         */
+        @Override
+        int prepare(SyntheticGraph graph) throws IOException {
+            if (written != graph) {
+                file = Files.createTempFile("platform-import", ".csv");
+                file.toFile().deleteOnExit();
+                try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                    out.write("record,user,email,type,followee\n");
+                    for (int i = 0; i < graph.users(); i++) {
+                        User user = graph.user(i);
+                        out.write("user," + user.getUserName() + "," + user.getEmail() + "," + user.getType() + ",\n");
+                    }
+                    for (int i = 0; i < graph.users(); i++) {
+                        User user = graph.user(i);
+                        for (Following following : user.getFollowing()) {
+                            out.write("follow," + user.getUserName() + ",,," + following.getFollowee().getUserName() + "\n");
+                        }
+                    }
+                }
+                written = graph;
+            }
+            target = new PlatformContext();
+            return 1;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) throws IOException {
+            sink += new BulkImporter(target, ForkJoinPool.commonPool()).importFile(file, ReportWriter.Format.CSV).getFollows();
+        }
+    }
+
+    private static final class EmailBenchmark extends Benchmark {
+        private final boolean regex;
+        private String[] emails;
+
+        /**
+         * @param regex true to measure the regular expression run through
+         * {@link String#matches(String)} that the validator replaced
+         */
+        EmailBenchmark(String key, boolean regex) {
+            super(key, regex ? "String.matches email" : "EmailValidator.isValid");
+            this.regex = regex;
+        }
+
+        /**
+         * Uses the emails of the users, every fourth one broken in a different way.
+         */
+        @Override
+        int prepare(SyntheticGraph graph) {
+            if (emails == null || emails.length != graph.users()) {
+                emails = new String[graph.users()];
+                String[] broken = {"%s.", "@%s", "%s@x", "%s extra"};
+                for (int i = 0; i < emails.length; i++) {
+                    String email = SyntheticGraph.email(i);
+                    emails[i] = i % 4 == 0 ? String.format(broken[i / 4 % broken.length], email) : email;
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            String email = emails[i % emails.length];
+            if (regex ? email.matches(EmailValidator.REGEX) : EmailValidator.isValid(email)) {
+                sink++;
+            }
+        }
+    }
+
+    private static final class SearchBenchmark extends Benchmark {
+        private String[] queries;
+
+        SearchBenchmark() {
+            super("search", "SearchIndex.search");
+        }
+
+        /**
+         * Mixes a user name, a phrase, a prefix and a term shared by many posts, the
+         * last two combined with a user name.
+         */
+        @Override
+        int prepare(SyntheticGraph graph) {
+            queries = new String[1 << 12];
+            for (int i = 0; i < queries.length; i++) {
+                String user = SyntheticGraph.userName(graph.anyUser());
+                switch (i % 4) {
+                    case 0:
+                        queries[i] = user;
+                        break;
+                    case 1:
+                        queries[i] = "\"post 0 by\"";
+                        break;
+                    case 2:
+                        queries[i] = user.substring(0, Math.min(user.length(), 6)) + "*";
+                        break;
+                    default:
+                        queries[i] = "comment " + user;
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            sink += graph.context().getSearch().search(queries[i & (queries.length - 1)], 20).size();
+        }
+    }
+
+    private static final class CompleteBenchmark extends Benchmark {
+        private String[] prefixes;
+
+        CompleteBenchmark() {
+            super("complete", "UsernameIndex.complete");
+        }
+
+        /**
+         * Cuts user names after four to seven characters, so prefixes range from one
+         * matching every user to ones matching a few.
+         */
+        @Override
+        int prepare(SyntheticGraph graph) {
+            prefixes = new String[1 << 12];
+            for (int i = 0; i < prefixes.length; i++) {
+                String user = SyntheticGraph.userName(graph.anyUser());
+                prefixes[i] = user.substring(0, Math.min(user.length(), 4 + i % 4));
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void operation(SyntheticGraph graph, int i) {
+            sink += graph.context().getUsernames().complete(prefixes[i & (prefixes.length - 1)], 10).size();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package Project;
+
+import java.util.SplittableRandom;
+
+/**
+ * Builds synthetic platforms for the benchmarks: a given number of users whose
+ * follower counts follow a power law, each with a few posts and comments.
+ * Popularity is skewed towards low user ids, so a handful of users collect a large
+ * share of all follows, as celebrity accounts do.
+ *
+ * @author Asail
+ */
+final class SyntheticGraph {
+    private final int users;
+    private final int degree;
+    private final double skew;
+    private final int postsPerUser;
+    private final int commentsPerPost;
+    private final SplittableRandom random;
+
+    private PlatformContext context;
+    private User[] byIndex;
+    private Post[] posts;
+
+    /**
+     * @param users the number of users to create
+     * @param degree the average number of users each user follows
+     * @param skew the power-law exponent; larger values concentrate follows on fewer users
+     * @param postsPerUser the number of posts per user
+     * @param commentsPerPost the number of comments per post
+     * @param seed the random seed, so runs are repeatable
+     */
+    SyntheticGraph(int users, int degree, double skew, int postsPerUser, int commentsPerPost, long seed) {
+        this.users = users;
+        this.degree = degree;
+        this.skew = skew;
+        this.postsPerUser = postsPerUser;
+        this.commentsPerPost = commentsPerPost;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Creates the users, follows, posts and comments.
+     *
+     * @return this graph
+     * @throws SocialMediaException if the platform rejects an operation
+     */
+    SyntheticGraph build() throws SocialMediaException {
+        context = new PlatformContext();
+        byIndex = new User[users];
+        for (int i = 0; i < users; i++) {
+            User user = i % 1000 == 0 ? new Admin(userName(i), email(i)) : new RegularUser(userName(i), email(i));
+            context.getUsers().register(user);
+            byIndex[i] = user;
+        }
+        FollowGraph graph = context.getFollowGraph();
+        for (int i = 0; i < users; i++) {
+            int follows = random.nextInt(degree * 2 + 1);
+            for (int f = 0; f < follows; f++) {
+                int target = popularUser();
+                if (target != i) {
+                    graph.follow(byIndex[i].getId(), byIndex[target].getId());
+                }
+            }
+        }
+        posts = new Post[users * postsPerUser];
+        int n = 0;
+        for (int i = 0; i < users; i++) {
+            for (int p = 0; p < postsPerUser; p++) {
+                Post post = new Post("Post " + p + " by " + userName(i), byIndex[i]);
+                byIndex[i].addPost(post);
+                for (int c = 0; c < commentsPerPost; c++) {
+                    post.addComment(new Comment("Comment " + c, byIndex[anyUser()]));
+                }
+                posts[n++] = post;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Picks a user index following the power-law popularity distribution.
+     *
+     * @return the user index
+     */
+    int popularUser() {
+        return (int) (users * Math.pow(random.nextDouble(), skew));
+    }
+
+    /**
+     * Picks a user index uniformly at random.
+     *
+     * @return the user index
+     */
+    int anyUser() {
+        return random.nextInt(users);
+    }
+
+    /**
+     * @return the random source shared by the benchmarks
+     */
+    SplittableRandom random() {
+        return random;
+    }
+
+    PlatformContext context() {
+        return context;
+    }
+
+    User user(int index) {
+        return byIndex[index];
+    }
+
+    Post[] posts() {
+        return posts;
+    }
+
+    int users() {
+        return users;
+    }
+
+    static String userName(int index) {
+        return "user" + index;
+    }
+
+    static String email(int index) {
+        return "user" + index + "@example.com";
+    }
+}
@@ -0,0 +1,46 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ActivityLog class is an {@link EventBus} subscriber keeping a description of the
+ * latest events published, for the menu to show. Descriptions are kept in a fixed
+ * ring of strings, so the oldest is dropped as each new one arrives.
+ *
+ * @author Asail
+ */
+final class ActivityLog implements EventBus.Subscriber {
+    private final String[] entries;
+    private long count;
+
+    /**
+     * @param size the number of events kept
+     */
+    ActivityLog(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+        this.entries = new String[size];
+    }
+
+    @Override
+    public void onEvent(PlatformEvent event, boolean endOfBatch) {
+        String entry = event.getSequence() + ". " + event;
+        synchronized (this) {
+            entries[(int) (count++ % entries.length)] = entry;
+        }
+    }
+
+    /**
+     * @return the descriptions of the latest events, newest first
+     */
+    synchronized List<String> recent() {
+        int size = (int) Math.min(count, entries.length);
+        List<String> result = new ArrayList<>(size);
+        for (long i = count - 1; i >= count - size; i--) {
+            result.add(entries[(int) (i % entries.length)]);
+        }
+        return result;
+    }
+}
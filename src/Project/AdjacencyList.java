@@ -0,0 +1,613 @@
+package Project;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The AdjacencyList class holds the neighbour ids of one user in one direction of the
+ * follow graph as plain {@code int}s kept in increasing order, which is the order the
+ * neighbours registered in, so an edge costs four bytes plus the room left for growth.
+ * <p>
+ * A list of up to {@value #BLOCK} ids is a single array that grows in chunks and
+ * shrinks again when three quarters of it are unused. A longer list is split into
+ * sorted blocks of at most {@value #BLOCK} ids, each holding its count in its first
+ * slot, and found by binary search over the first id of every block. An addition or
+ * removal then shifts the ids of one block only, so it costs the same for a user with
+ * millions of followers as for one with a thousand. A full block is split in two, and
+ * a block that runs low is merged into a neighbour; both replace the array of blocks,
+ * which happens once every few hundred changes to a block. A long list that shrinks
+ * to half a block becomes a single array again.
+ * <p>
+ * Changes must be made while holding the lock the {@link FollowGraph} associates with
+ * the owning user. Reads need no lock: every change makes a modification stamp odd
+ * while it shifts the ids and even again when it is done, and a reader copies what it
+ * needs and retries if the stamp moved meanwhile, so it never sees an id twice or
+ * misses one. Since the ids are sorted, a page is read from the first id not smaller
+ * than its cursor, and the cursor of the next page is the first id left off, which
+ * stays valid while the list changes.
+ *
+ * @author Asail
+ */
+final class AdjacencyList {
+    private static final int CHUNK = 8;
+    /** Ids kept in a single array, and at most in one block. */
+    private static final int BLOCK = 1024;
+    /** Ids put in each block when a list is restored. */
+    private static final int FILL = BLOCK - BLOCK / 8;
+    /** Blocks holding fewer ids are merged into a neighbour if the two fit in one. */
+    private static final int MIN_FILL = BLOCK / 4;
+    /** Ids read at a time by an iterator. */
+    private static final int BATCH = 256;
+    /** Failed reads retried at once before yielding. */
+    private static final int SPIN_TRIES = 64;
+    private static final int[] NO_IDS = new int[0];
+
+    /** The ids of a short list; unused while the list is split into blocks. */
+    private volatile int[] ids;
+    /** The blocks of a long list, or null while it is a single array. */
+    private volatile int[][] blocks;
+    private volatile int size;
+    private volatile int stamp;
+
+    /**
+     * Creates an empty adjacency list with room for one chunk.
+     */
+    public AdjacencyList() {
+        this.ids = new int[CHUNK];
+    }
+
+    /**
+     * Adds an id unless it is already present.
+     *
+     * @param id the neighbour id
+     * @return true if the id was added; false if it was already present
+     */
+    public boolean add(int id) {
+        return blocks == null ? addToArray(id) : addToBlock(id);
+    }
+
+    private boolean addToArray(int id) {
+        int[] slots = ids;
+        int n = size;
+        int slot = Arrays.binarySearch(slots, 0, n, id);
+        if (slot >= 0) {
+            return false;
+        }
+        slot = -slot - 1;
+        if (n == BLOCK) {
+            int[] all = inserted(slots, 0, n, slot, id);
+            int half = all.length / 2;
+            int[][] split = {block(all, 0, half), block(all, half, all.length - half)};
+            begin();
+            blocks = split;
+            ids = NO_IDS;
+        } else if (n == slots.length) {
+            int[] grown = new int[Math.min(BLOCK, grownCapacity(n + 1))];
+            System.arraycopy(slots, 0, grown, 0, slot);
+            grown[slot] = id;
+            System.arraycopy(slots, slot, grown, slot + 1, n - slot);
+            begin();
+            ids = grown;
+        } else {
+            begin();
+            System.arraycopy(slots, slot, slots, slot + 1, n - slot);
+            slots[slot] = id;
+        }
+        size = n + 1;
+        end();
+        return true;
+    }
+
+    private boolean addToBlock(int id) {
+        int[][] all = blocks;
+        int k = blockOf(all, id);
+        int[] block = all[k];
+        int count = block[0];
+        int slot = Arrays.binarySearch(block, 1, count + 1, id);
+        if (slot >= 0) {
+            return false;
+        }
+        slot = -slot - 1;
+        if (count + 1 < block.length) {
+            begin();
+            System.arraycopy(block, slot, block, slot + 1, count + 1 - slot);
+            block[slot] = id;
+            block[0] = count + 1;
+        } else if (count < BLOCK) {
+            int[] grown = new int[Math.min(BLOCK, grownCapacity(count + 1)) + 1];
+            System.arraycopy(block, 0, grown, 0, slot);
+            grown[slot] = id;
+            System.arraycopy(block, slot, grown, slot + 1, count + 1 - slot);
+            grown[0] = count + 1;
+            begin();
+            all[k] = grown;
+        } else {
+            int[] both = inserted(block, 1, count, slot - 1, id);
+            int half = both.length / 2;
+            int[][] split = new int[all.length + 1][];
+            System.arraycopy(all, 0, split, 0, k);
+            split[k] = block(both, 0, half);
+            split[k + 1] = block(both, half, both.length - half);
+            System.arraycopy(all, k + 1, split, k + 2, all.length - k - 1);
+            begin();
+            blocks = split;
+        }
+        size = size + 1;
+        end();
+        return true;
+    }
+
+    /**
+     * Adds ids to an empty list, such as the saved edges of a user being restored.
+     *
+     * @param added the ids, in any order and without duplicates
+     */
+    void addAll(int[] added) {
+        int n = added.length;
+        int[] sorted = Arrays.copyOf(added, n);
+        Arrays.sort(sorted);
+        begin();
+        if (n <= BLOCK) {
+            ids = Arrays.copyOf(sorted, Math.min(BLOCK, grownCapacity(n)));
+            blocks = null;
+        } else {
+            int count = (n + FILL - 1) / FILL;
+            int[][] filled = new int[count][];
+            for (int k = 0, from = 0; k < count; k++) {
+                int length = (n - from) / (count - k);
+                filled[k] = new int[BLOCK + 1];
+                filled[k][0] = length;
+                System.arraycopy(sorted, from, filled[k], 1, length);
+                from += length;
+            }
+            blocks = filled;
+            ids = NO_IDS;
+        }
+        size = n;
+        end();
+    }
+
+    /**
+     * Removes an id, shrinking the storage when most of it is unused.
+     *
+     * @param id the neighbour id
+     * @return true if the id was removed; false if it was not present
+     */
+    public boolean remove(int id) {
+        return blocks == null ? removeFromArray(id) : removeFromBlock(id);
+    }
+
+    private boolean removeFromArray(int id) {
+        int[] slots = ids;
+        int n = size;
+        int slot = Arrays.binarySearch(slots, 0, n, id);
+        if (slot < 0) {
+            return false;
+        }
+        begin();
+        if (slots.length > CHUNK && (n - 1) * 4 < slots.length) {
+            int[] shrunk = new int[grownCapacity(n - 1)];
+            System.arraycopy(slots, 0, shrunk, 0, slot);
+            System.arraycopy(slots, slot + 1, shrunk, slot, n - slot - 1);
+            ids = shrunk;
+        } else {
+            System.arraycopy(slots, slot + 1, slots, slot, n - slot - 1);
+        }
+        size = n - 1;
+        end();
+        return true;
+    }
+
+    private boolean removeFromBlock(int id) {
+        int[][] all = blocks;
+        int k = blockOf(all, id);
+        int[] block = all[k];
+        int count = block[0];
+        int slot = Arrays.binarySearch(block, 1, count + 1, id);
+        if (slot < 0) {
+            return false;
+        }
+        int n = size - 1;
+        count--;
+        begin();
+        if (n <= BLOCK / 2) {
+            int[] flat = new int[Math.min(BLOCK, grownCapacity(n))];
+            int copied = 0;
+            for (int[] each : all) {
+                for (int i = 1; i <= each[0]; i++) {
+                    if (each[i] != id) {
+                        flat[copied++] = each[i];
+                    }
+                }
+            }
+            ids = flat;
+            blocks = null;
+        } else {
+            System.arraycopy(block, slot + 1, block, slot, count + 1 - slot);
+            block[0] = count;
+            int other = k > 0 ? k - 1 : k + 1;
+            if (count == 0 || count < MIN_FILL && other < all.length && count + all[other][0] <= BLOCK * 3 / 4) {
+                blocks = merged(all, Math.min(k, other), count == 0 ? k : -1);
+            } else if (block.length - 1 > CHUNK && count * 4 < block.length - 1) {
+                all[k] = block(block, 1, count);
+            }
+        }
+        size = n;
+        end();
+        return true;
+    }
+
+    /**
+     * Checks whether an id is present. Needs no lock.
+     *
+     * @param id the neighbour id
+     * @return true if the id is present; false otherwise
+     */
+    public boolean contains(int id) {
+        for (int tries = 0; ; tries++) {
+            int before = stamp;
+            int[][] all = blocks;
+            boolean found;
+            if (all == null) {
+                int[] slots = ids;
+                found = Arrays.binarySearch(slots, 0, Math.min(size, slots.length), id) >= 0;
+            } else {
+                int[] block = all[blockOf(all, id)];
+                found = block != null && Arrays.binarySearch(block, 1, countOf(block) + 1, id) >= 0;
+            }
+            if (unchanged(before)) {
+                return found;
+            }
+            idle(tries);
+        }
+    }
+
+    /**
+     * @return the number of ids in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the list holds no ids
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the ids into a new array, in increasing order. Needs no lock.
+     *
+     * @return the ids
+     */
+    public int[] toArray() {
+        for (int tries = 0; ; tries++) {
+            int before = stamp;
+            int n = size;
+            int[] result = new int[n];
+            int count = readOnce(0, result, 0, n);
+            if (unchanged(before) && count == n) {
+                return result;
+            }
+            idle(tries);
+        }
+    }
+
+    /**
+     * Copies up to a number of ids, in increasing order, into part of an array. Needs
+     * no lock.
+     *
+     * @param into the array receiving the ids
+     * @param offset the first position written
+     * @param limit the maximum number of ids
+     * @return the number of ids written
+     */
+    public int copyInto(int[] into, int offset, int limit) {
+        return read(0, into, offset, limit);
+    }
+
+    /**
+     * Picks up to a number of ids spread evenly over the list, starting at a given
+     * slot and wrapping around, so a list with millions of ids costs no more to sample
+     * than one with a few hundred. Lists no longer than the limit are copied whole.
+     * Needs no lock.
+     *
+     * @param into the array receiving the ids, with room for the limit
+     * @param limit the maximum number of ids
+     * @param start where to start, taken modulo the length of the list
+     * @return the number of ids written
+     */
+    public int sample(int[] into, int limit, int start) {
+        for (int tries = 0; ; tries++) {
+            int before = stamp;
+            int n = size;
+            int count;
+            if (n <= limit) {
+                count = readOnce(0, into, 0, n);
+            } else {
+                count = 0;
+                int first = Math.floorMod(start, n);
+                int[][] all = blocks;
+                int[] slots = ids;
+                int k = 0;
+                int base = 0;
+                for (int i = 0; i < limit; i++) {
+                    int position = (int) ((first + (long) i * n / limit) % n);
+                    if (all == null) {
+                        if (position >= slots.length) {
+                            break;
+                        }
+                        into[count++] = slots[position];
+                        continue;
+                    }
+                    if (position < base) {
+                        k = 0;
+                        base = 0;
+                    }
+                    for (; k < all.length; k++) {
+                        int[] block = all[k];
+                        int held = block == null ? 0 : countOf(block);
+                        if (position < base + held) {
+                            into[count++] = block[1 + position - base];
+                            break;
+                        }
+                        base += held;
+                    }
+                    if (k == all.length) {
+                        break;
+                    }
+                }
+            }
+            if (unchanged(before)) {
+                return count;
+            }
+            idle(tries);
+        }
+    }
+
+    /**
+     * Iterates over the ids in increasing order. The iterator reads the list a batch
+     * at a time, each batch starting after the last id returned, so it returns every
+     * id present throughout the iteration once, and may or may not return ids added
+     * or removed meanwhile.
+     *
+     * @return an iterator over the ids
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private final int[] batch = new int[Math.max(1, Math.min(BATCH, size))];
+            private int count = read(0, batch, 0, batch.length);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == count && count == batch.length) {
+                    int from = batch[count - 1] + 1;
+                    count = from > 0 ? read(from, batch, 0, batch.length) : 0;
+                    next = 0;
+                }
+                return next < count;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch[next++];
+            }
+        };
+    }
+
+    /**
+     * Reads up to a number of ids, in increasing order, starting with the first id not
+     * smaller than the cursor. Ids added or removed elsewhere in the list do not move
+     * the page. Needs no lock.
+     *
+     * @param cursor the cursor returned with the previous page, or 0 for the first page
+     * @param limit the maximum number of ids
+     * @return the page of ids
+     */
+    public Page<Integer> page(int cursor, int limit) {
+        int[] read = new int[Math.min(limit, size) + 1];
+        int count = read(cursor, read, 0, read.length);
+        int shown = Math.min(count, limit);
+        List<Integer> page = new ArrayList<>(shown);
+        for (int i = 0; i < shown; i++) {
+            page.add(read[i]);
+        }
+        return new Page<>(page, count > limit ? read[limit] : Page.END);
+    }
+
+    /**
+     * Copies up to a number of the ids not smaller than a given one, in increasing
+     * order, into part of an array.
+     *
+     * @return the number of ids written
+     */
+    private int read(int from, int[] into, int offset, int limit) {
+        for (int tries = 0; ; tries++) {
+            int before = stamp;
+            int count = readOnce(from, into, offset, limit);
+            if (unchanged(before)) {
+                return count;
+            }
+            idle(tries);
+        }
+    }
+
+    /**
+     * Copies ids as {@link #read} does, without checking that the list did not change
+     * meanwhile. Whatever a change leaves half done, it stays within the arrays, so the
+     * caller only has to check the stamp.
+     */
+    private int readOnce(int from, int[] into, int offset, int limit) {
+        int[][] all = blocks;
+        if (all == null) {
+            int[] slots = ids;
+            int n = Math.min(size, slots.length);
+            int first = from <= 0 ? 0 : lowerBound(slots, 0, n, from);
+            int count = Math.max(0, Math.min(limit, n - first));
+            System.arraycopy(slots, first, into, offset, count);
+            return count;
+        }
+        int start = from <= 0 ? 0 : blockOf(all, from);
+        int count = 0;
+        for (int k = start; k < all.length && count < limit; k++) {
+            int[] block = all[k];
+            if (block == null) {
+                continue;
+            }
+            int n = countOf(block);
+            int first = k == start && from > 0 ? lowerBound(block, 1, n + 1, from) : 1;
+            int taken = Math.max(0, Math.min(limit - count, n + 1 - first));
+            System.arraycopy(block, first, into, offset + count, taken);
+            count += taken;
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the bytes the list takes on a 64-bit JVM with compressed references:
+     * the object itself and its arrays.
+     *
+     * @return the estimated size in bytes
+     */
+    long footprint() {
+        int[][] all = blocks;
+        if (all == null) {
+            return 32 + align(16 + 4L * ids.length);
+        }
+        long bytes = 32 + align(16 + 4L * all.length);
+        for (int[] block : all) {
+            bytes += align(16 + 4L * block.length);
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static int lowerBound(int[] slots, int from, int to, int id) {
+        int slot = Arrays.binarySearch(slots, from, to, id);
+        return slot >= 0 ? slot : -slot - 1;
+    }
+
+    /**
+     * @return the number of ids in a block, kept within the block even if a change is
+     * half done
+     */
+    private static int countOf(int[] block) {
+        return Math.max(0, Math.min(block[0], block.length - 1));
+    }
+
+    /**
+     * @return the last block whose first id is not greater than the given one, or the
+     * first block if there is none
+     */
+    private static int blockOf(int[][] all, int id) {
+        int low = 1;
+        int high = all.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int[] block = all[middle];
+            if (block != null && countOf(block) > 0 && block[1] <= id) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the ids of part of an array with one inserted, as a new array
+     */
+    private static int[] inserted(int[] slots, int from, int n, int slot, int id) {
+        int[] all = new int[n + 1];
+        System.arraycopy(slots, from, all, 0, slot);
+        all[slot] = id;
+        System.arraycopy(slots, from + slot, all, slot + 1, n - slot);
+        return all;
+    }
+
+    /**
+     * @return a new block holding part of an array, with room to grow
+     */
+    private static int[] block(int[] slots, int from, int n) {
+        int[] block = new int[Math.min(BLOCK, grownCapacity(n)) + 1];
+        block[0] = n;
+        System.arraycopy(slots, from, block, 1, n);
+        return block;
+    }
+
+    /**
+     * Merges a block into the next one, or drops an empty block.
+     *
+     * @param k the first of the two blocks merged
+     * @param empty the index of an empty block to drop instead, or -1
+     * @return the new array of blocks
+     */
+    private static int[][] merged(int[][] all, int k, int empty) {
+        int[][] fewer = new int[all.length - 1][];
+        if (empty >= 0) {
+            System.arraycopy(all, 0, fewer, 0, empty);
+            System.arraycopy(all, empty + 1, fewer, empty, all.length - empty - 1);
+            return fewer;
+        }
+        int[] left = all[k];
+        int[] right = all[k + 1];
+        int[] both = new int[left[0] + right[0]];
+        System.arraycopy(left, 1, both, 0, left[0]);
+        System.arraycopy(right, 1, both, left[0], right[0]);
+        System.arraycopy(all, 0, fewer, 0, k);
+        fewer[k] = block(both, 0, both.length);
+        System.arraycopy(all, k + 2, fewer, k + 1, all.length - k - 2);
+        return fewer;
+    }
+
+    /**
+     * Makes the stamp odd before a change. Called by the single writer holding the
+     * owner's lock; the fence keeps the change from being seen before the stamp.
+     */
+    private void begin() {
+        stamp = stamp + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Makes the stamp even again once a change is complete.
+     */
+    private void end() {
+        stamp = stamp + 1;
+    }
+
+    /**
+     * @return true if no change started or ran since the stamp was read
+     */
+    private boolean unchanged(int before) {
+        VarHandle.acquireFence();
+        return (before & 1) == 0 && stamp == before;
+    }
+
+    private static void idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private static int grownCapacity(int needed) {
+        int capacity = Math.max(needed + CHUNK, needed + (needed >> 1));
+        return (capacity + CHUNK - 1) / CHUNK * CHUNK;
+    }
+}
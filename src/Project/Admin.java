@@ -1,20 +1,16 @@
 package Project;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Represents a user with administrative privileges, extending User with functions 
  * for deleting users, posts.
  * Extends the {@code User} class with additional functions for deleting users and posts.
+ * The platform's {@link Compactor} cleans up the comments that deleted users and posts
+ * leave behind.
  * 
  * @author Asail
  * @author Hessa
  */
 class Admin extends User {
-    private List<User> deletedUsers;
-    private List<Post> deletedPosts;
-
     /**
      * Default constructor.
      */
@@ -29,53 +25,38 @@ class Admin extends User {
      */
     public Admin(String userName, String email) {
         super(userName, email);
-        this.deletedUsers = new ArrayList<>();
-        this.deletedPosts = new ArrayList<>();
     }
 
     /**
-     * Removes a user from the system.
+     * Removes a user from the system together with its follow relationships, its
+     * posts and its comments.
      * 
      * @param user The user to be removed
-     * @param allUsers The list of all users in the system
-     */
-    public void deleteUser(User user, List<User> allUsers) {
-        if (allUsers.contains(user)) {
-            allUsers.remove(user);
-            System.out.println(user.getUserName() + " Has Been Removed From The System By The Admin");
-        } else {
-            System.out.println("User Not Found");
-        }
-    }
-    
-    /**
-     * @return List of deleted users
+     * @param registry The registry of all users in the system
+     * @return true if the user was removed; false if it was not registered
      */
-    public List<User> getDeletedUsers() {
-        return deletedUsers;
+    public boolean deleteUser(User user, UserRegistry registry) {
+        return registry.remove(user);
     }
 
     /**
-     * Removes a post from a user's list of posts.
+     * Removes a post from a user's list of posts and hides its comments.
      * 
      * @param user The user whose post is to be deleted
      * @param post The post to be deleted
+     * @return true if the post was removed; false if the user had no such post
      */
-    public void deletePost(User user, Post post) {
-        if (user.getPosts().contains(post)) {
-            user.getPosts().remove(post);
-            System.out.println("Post By " + user.getUserName() + " Has Been Removed By The Admin.");
-        } else {
-            System.out.println("Post Not Found.");
+    public boolean deletePost(User user, Post post) {
+        if (!user.removePost(post)) {
+            return false;
         }
-    }
-
-
-    /**
-    * @return List of deleted posts
-    */
-    public List<Post> getDeletedPosts() {
-        return deletedPosts;
+        PlatformContext shared = user.context;
+        if (shared != null) {
+            shared.getFeed().onPostRemoved(post);
+            shared.getCompactor().onPostRemoved(post);
+            shared.getEngagement().onPostRemoved(post);
+        }
+        return true;
     }
     
     /**
@@ -84,7 +65,7 @@ class Admin extends User {
      */
     @Override
     public void display() {
-        System.out.println("Admin User: " + userName + ", Email: " + email );
+        System.out.println("Admin User: " + userName + ", Email: " + getEmail() );
     }
 
     /**
@@ -94,7 +75,7 @@ class Admin extends User {
      */
     @Override
     public String toString() {
-        return "Admin User: " + userName + ", Email: " + email + ", Posts: " + posts.size() +  ", Following: " + following.size() + ", Followers: " + followers.size();
+        return "Admin User: " + userName + ", Email: " + getEmail() + ", Posts: " + getPostCount() + ", Following: " + getFollowingCount() + ", Followers: " + getFollowersCount();
     }
 
     /**
@@ -0,0 +1,936 @@
+package Project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The BulkImporter class loads users, posts, comments and follow relationships from a
+ * CSV or JSON-lines file into a platform, so that a whole community can be migrated at
+ * once instead of through the menu.
+ * <p>
+ * Files use the record layout of the {@link ReportWriter} export, so an exported report
+ * can be imported again, plus a {@code follow} record for each follow relationship.
+ * CSV files start with a header row naming their columns; the columns read are
+ * {@code record}, {@code post_id}, {@code user}, {@code email}, {@code type},
+ * {@code created_at}, {@code content} and {@code followee}, in any order. JSON lines use
+ * the keys of the export, and {@code follower} and {@code followee} for follows. Post
+ * ids only link comments to the posts of the same file: imported posts receive new
+ * ids but keep their creation time.
+ * <p>
+ * The import is a pipeline of three stages. A reader thread cuts the file into batches
+ * of records, the batches are parsed and validated in parallel on a fork-join pool, and
+ * the calling thread inserts them in file order. The queue between the reader and the
+ * inserter holds at most two batches per worker thread, so a slow insert holds the
+ * reader back instead of filling memory. Users are deduplicated through the registry's
+ * indexes, and follow relationships are collected into arrays of ids and added to the
+ * {@link FollowGraph} in bulk whenever the arrays fill up. Since a post may be added
+ * before the follows of its author are, the imported posts are fanned out to the feeds
+ * once more after the last follows are added, and every imported follow of a user
+ * with posts is passed to the {@link FeedService}, so that posts imported from an
+ * earlier file or already on the platform reach the follower's feed as after a follow
+ * made live.
+ * Invalid records are skipped and counted.
+ *
+ * @author Asail
+ */
+class BulkImporter {
+    private static final int BATCH_RECORDS = 4096;
+    private static final int EDGE_BATCH = 1 << 16;
+    private static final int MAX_ERRORS = 20;
+
+    private static final byte INVALID = 0;
+    private static final byte USER = 1;
+    private static final byte ADMIN = 2;
+    private static final byte POST = 3;
+    private static final byte COMMENT = 4;
+    private static final byte FOLLOW = 5;
+    private static final byte SKIP = 6;
+
+    private final PlatformContext context;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param context the platform to import into
+     * @param pool the pool parsing the batches
+     */
+    public BulkImporter(PlatformContext context, ForkJoinPool pool) {
+        this.context = context;
+        this.pool = pool;
+    }
+
+    /**
+     * Imports a UTF-8 file. The file is read twice: the first pass adds the users and
+     * the second everything else, so records may refer to users that appear later in
+     * the file, as comments in an exported report do.
+     *
+     * @param file the file to read
+     * @param format {@link ReportWriter.Format#CSV} or {@link ReportWriter.Format#JSON_LINES}
+     * @return the counts of the import
+     * @throws IOException if the file cannot be read or has no CSV header
+     */
+    public Result importFile(Path file, ReportWriter.Format format) throws IOException {
+        if (format == ReportWriter.Format.TEXT) {
+            throw new IllegalArgumentException("Only CSV and JSON lines can be imported.");
+        }
+        Inserter inserter = new Inserter();
+        for (boolean usersPass : new boolean[] {true, false}) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                run(in, format == ReportWriter.Format.CSV, usersPass, inserter);
+            }
+        }
+        return inserter.finish();
+    }
+
+    private void run(BufferedReader in, boolean csv, boolean usersPass, Inserter inserter) throws IOException {
+        RecordReader reader = new RecordReader(in, csv);
+        Columns columns = csv ? Columns.read(reader) : null;
+        if (pool.getParallelism() < 2) {
+            Batch batch;
+            while ((batch = reader.next()) != null) {
+                inserter.insert(parse(batch, columns, usersPass));
+            }
+            return;
+        }
+        BlockingQueue<CompletableFuture<Batch>> queue = new ArrayBlockingQueue<>(pool.getParallelism() * 2);
+        Thread producer = new Thread(() -> produce(reader, columns, usersPass, queue), "platform-import");
+        producer.setDaemon(true);
+        producer.start();
+        try {
+            Batch batch;
+            while ((batch = queue.take().get()) != null) {
+                inserter.insert(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            producer.interrupt();
+        }
+    }
+
+    /**
+     * Reads batches and hands them to the pool until the source ends, blocking while
+     * the queue is full. A null batch marks the end.
+     */
+    private void produce(RecordReader reader, Columns columns, boolean usersPass, BlockingQueue<CompletableFuture<Batch>> queue) {
+        try {
+            try {
+                Batch batch;
+                while ((batch = reader.next()) != null) {
+                    Batch read = batch;
+                    queue.put(CompletableFuture.supplyAsync(() -> parse(read, columns, usersPass), pool));
+                }
+                queue.put(CompletableFuture.completedFuture(null));
+            } catch (IOException e) {
+                queue.put(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+            }
+        } catch (InterruptedException e) {
+            // The inserter stopped early and no longer takes batches.
+        }
+    }
+
+    /**
+     * Parses and validates the records of a batch that belong to the current pass and
+     * marks the others as skipped. Invalid records are reported by the second pass.
+     * Follow relationships between users that already exist are resolved to ids here,
+     * off the insert thread.
+     */
+    private Batch parse(Batch batch, Columns columns, boolean usersPass) {
+        Fields fields = new Fields();
+        String[] cells = columns == null ? null : new String[columns.width];
+        for (int i = 0; i < batch.size; i++) {
+            String record = batch.records[i];
+            batch.records[i] = null;
+            int user = Fields.isUserRecord(record, columns);
+            if (user >= 0 && (user == 1) != usersPass) {
+                batch.kinds[i] = SKIP;
+                continue;
+            }
+            try {
+                if (columns == null) {
+                    fields.parseJson(record);
+                } else {
+                    fields.parseCsv(record, columns, cells);
+                }
+            } catch (IllegalArgumentException e) {
+                if (usersPass) {
+                    batch.kinds[i] = SKIP;
+                } else {
+                    batch.invalid(i, e.getMessage());
+                }
+                continue;
+            }
+            if ("user".equals(fields.record) != usersPass) {
+                batch.kinds[i] = SKIP;
+                continue;
+            }
+            try {
+                classify(fields, batch, i);
+            } catch (IllegalArgumentException e) {
+                batch.invalid(i, e.getMessage());
+            }
+        }
+        if (usersPass) {
+            checkEmails(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Rejects the user records of a batch whose email has an invalid format.
+     */
+    private static void checkEmails(Batch batch) {
+        String[] emails = new String[batch.size];
+        int[] records = new int[batch.size];
+        int count = 0;
+        for (int i = 0; i < batch.size; i++) {
+            if (batch.kinds[i] == USER || batch.kinds[i] == ADMIN) {
+                emails[count] = batch.texts[i];
+                records[count++] = i;
+            }
+        }
+        BitSet invalid = EmailValidator.validateAll(emails, count);
+        for (int j = invalid.nextSetBit(0); j >= 0; j = invalid.nextSetBit(j + 1)) {
+            batch.invalid(records[j], "Invalid email format: " + emails[j]);
+        }
+    }
+
+    private void classify(Fields fields, Batch batch, int i) {
+        String record = fields.record == null ? "" : fields.record;
+        switch (record) {
+            case "user":
+                require(fields.user, "a username");
+                if ("Admin".equals(fields.type)) {
+                    batch.kinds[i] = ADMIN;
+                } else if (fields.type == null || fields.type.isEmpty() || "Regular User".equals(fields.type)) {
+                    batch.kinds[i] = USER;
+                } else {
+                    throw new IllegalArgumentException("Unknown user type: " + fields.type);
+                }
+                batch.names[i] = fields.user;
+                batch.texts[i] = fields.email;
+                break;
+            case "post":
+                require(fields.user, "an author");
+                require(fields.content, "content");
+                batch.kinds[i] = POST;
+                batch.names[i] = fields.user;
+                batch.texts[i] = fields.content;
+                batch.ids[i] = number(fields.postId, -1);
+                batch.times[i] = number(fields.createdAt, -1);
+                break;
+            case "comment":
+                require(fields.postId, "a post id");
+                require(fields.user, "an author");
+                require(fields.content, "content");
+                batch.kinds[i] = COMMENT;
+                batch.names[i] = fields.user;
+                batch.texts[i] = fields.content;
+                batch.ids[i] = number(fields.postId, -1);
+                break;
+            case "follow":
+                require(fields.user, "a follower");
+                require(fields.followee, "a followee");
+                if (fields.user.equals(fields.followee)) {
+                    throw new IllegalArgumentException("Cannot Follow yourself");
+                }
+                batch.kinds[i] = FOLLOW;
+                batch.names[i] = fields.user;
+                batch.texts[i] = fields.followee;
+                batch.from[i] = idOf(fields.user);
+                batch.to[i] = idOf(fields.followee);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record type: " + record);
+        }
+    }
+
+    private static void require(String value, String what) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("The record has no " + what + ".");
+        }
+    }
+
+    private static long number(String value, long missing) {
+        if (value == null || value.isEmpty()) {
+            return missing;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private int idOf(String userName) {
+        User user = context.getUsers().findByUsername(userName);
+        return user == null ? -1 : user.getId();
+    }
+
+    /**
+     * Inserts parsed batches in file order on the calling thread.
+     */
+    private final class Inserter {
+        private final Result result = new Result();
+        private final Map<Long, Post> posts = new HashMap<>();
+        private final List<Post> added = new ArrayList<>();
+        private final int[] followerIds = new int[EDGE_BATCH];
+        private final int[] followeeIds = new int[EDGE_BATCH];
+        private int edges;
+
+        void insert(Batch batch) {
+            UserRegistry users = context.getUsers();
+            for (int i = 0; i < batch.size; i++) {
+                switch (batch.kinds[i]) {
+                    case USER:
+                    case ADMIN:
+                        addUser(batch, i, users);
+                        break;
+                    case POST:
+                        addPost(batch, i, users);
+                        break;
+                    case COMMENT:
+                        addComment(batch, i, users);
+                        break;
+                    case FOLLOW:
+                        addFollow(batch, i);
+                        break;
+                    case SKIP:
+                        break;
+                    default:
+                        result.reject(batch.lines[i], batch.texts[i]);
+                }
+            }
+        }
+
+        private void addUser(Batch batch, int i, UserRegistry users) {
+            String userName = batch.names[i];
+            String email = batch.texts[i];
+            User user = batch.kinds[i] == ADMIN ? new Admin(userName, email) : new RegularUser(userName, email);
+            try {
+                users.register(user);
+                result.users++;
+            } catch (DuplicateUserException e) {
+                result.duplicates++;
+            } catch (SocialMediaException e) {
+                result.reject(batch.lines[i], e.getMessage());
+            }
+        }
+
+        private void addPost(Batch batch, int i, UserRegistry users) {
+            User author = users.findByUsername(batch.names[i]);
+            if (author == null) {
+                result.reject(batch.lines[i], "Unknown user: " + batch.names[i]);
+                return;
+            }
+            long createdAt = batch.times[i] < 0 ? System.currentTimeMillis() : batch.times[i];
+            Post post = new Post(Post.newId(), createdAt, batch.texts[i], author);
+            author.addPost(post);
+            added.add(post);
+            if (batch.ids[i] >= 0) {
+                posts.put(batch.ids[i], post);
+            }
+            result.posts++;
+        }
+
+        private void addComment(Batch batch, int i, UserRegistry users) {
+            Post post = posts.get(batch.ids[i]);
+            if (post == null) {
+                result.reject(batch.lines[i], "Unknown post: " + batch.ids[i]);
+                return;
+            }
+            User author = users.findByUsername(batch.names[i]);
+            if (author == null) {
+                result.reject(batch.lines[i], "Unknown user: " + batch.names[i]);
+                return;
+            }
+            try {
+                post.addComment(new Comment(batch.texts[i], author));
+                result.comments++;
+            } catch (SocialMediaException e) {
+                result.reject(batch.lines[i], e.getMessage());
+            }
+        }
+
+        private void addFollow(Batch batch, int i) {
+            int follower = batch.from[i] >= 0 ? batch.from[i] : idOf(batch.names[i]);
+            int followee = batch.to[i] >= 0 ? batch.to[i] : idOf(batch.texts[i]);
+            if (follower < 0 || followee < 0) {
+                result.reject(batch.lines[i], "Unknown user: " + (follower < 0 ? batch.names[i] : batch.texts[i]));
+                return;
+            }
+            followerIds[edges] = follower;
+            followeeIds[edges] = followee;
+            if (++edges == EDGE_BATCH) {
+                flushEdges();
+            }
+        }
+
+        private void flushEdges() {
+            if (edges == 0) {
+                return;
+            }
+            int added = context.getFollowGraph().followAll(followerIds, followeeIds, edges);
+            FeedService feed = context.getFeed();
+            UserRegistry users = context.getUsers();
+            for (int i = 0; i < edges; i++) {
+                User followee = users.findById(followeeIds[i]);
+                if (followee != null && followee.getPostCount() > 0) {
+                    feed.onFollow(followerIds[i], followeeIds[i]);
+                }
+            }
+            result.follows += added;
+            result.duplicates += edges - added;
+            edges = 0;
+        }
+
+        Result finish() {
+            flushEdges();
+            FeedService feed = context.getFeed();
+            for (Post post : added) {
+                feed.fanOut(post);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The counts of an import.
+     */
+    static final class Result {
+        private int users;
+        private int posts;
+        private int comments;
+        private int follows;
+        private int duplicates;
+        private int rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        private void reject(long line, String reason) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("Line " + line + ": " + reason);
+            }
+        }
+
+        /**
+         * @return the number of users added
+         */
+        public int getUsers() {
+            return users;
+        }
+
+        /**
+         * @return the number of posts added
+         */
+        public int getPosts() {
+            return posts;
+        }
+
+        /**
+         * @return the number of comments added
+         */
+        public int getComments() {
+            return comments;
+        }
+
+        /**
+         * @return the number of follow relationships added
+         */
+        public int getFollows() {
+            return follows;
+        }
+
+        /**
+         * @return the number of users and follow relationships skipped because they already existed
+         */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return the number of invalid records skipped
+         */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return descriptions of the first invalid records
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * @return a one-line summary of the counts
+         */
+        @Override
+        public String toString() {
+            return "Imported " + users + " users, " + posts + " posts, " + comments + " comments and "
+                    + follows + " follows; skipped " + duplicates + " duplicates and " + rejected + " invalid records.";
+        }
+    }
+
+    /**
+     * A batch of raw records, and after parsing their kinds and values, stored by
+     * column to keep the number of objects per record low.
+     */
+    private static final class Batch {
+        final String[] records = new String[BATCH_RECORDS];
+        final long[] lines = new long[BATCH_RECORDS];
+        final byte[] kinds = new byte[BATCH_RECORDS];
+        /** Username, author or follower. */
+        final String[] names = new String[BATCH_RECORDS];
+        /** Email, content, followee, or the error of an invalid record. */
+        final String[] texts = new String[BATCH_RECORDS];
+        final long[] ids = new long[BATCH_RECORDS];
+        final long[] times = new long[BATCH_RECORDS];
+        final int[] from = new int[BATCH_RECORDS];
+        final int[] to = new int[BATCH_RECORDS];
+        int size;
+
+        void invalid(int i, String reason) {
+            kinds[i] = INVALID;
+            texts[i] = reason;
+        }
+    }
+
+    /**
+     * Cuts the source into records. A CSV record continues on the next line while a
+     * quoted value is open.
+     */
+    private static final class RecordReader {
+        private final BufferedReader in;
+        private final boolean csv;
+        private long line;
+        private long recordLine;
+
+        RecordReader(BufferedReader in, boolean csv) {
+            this.in = in;
+            this.csv = csv;
+        }
+
+        /**
+         * @return the next non-blank record, or null at the end of the source
+         */
+        String nextRecord() throws IOException {
+            String record;
+            do {
+                record = in.readLine();
+                if (record == null) {
+                    return null;
+                }
+                line++;
+            } while (record.isBlank());
+            recordLine = line;
+            if (csv && quotes(record) % 2 != 0) {
+                StringBuilder joined = new StringBuilder(record);
+                int open = 1;
+                String more;
+                while (open % 2 != 0 && (more = in.readLine()) != null) {
+                    line++;
+                    joined.append('\n').append(more);
+                    open += quotes(more);
+                }
+                record = joined.toString();
+            }
+            return record;
+        }
+
+        Batch next() throws IOException {
+            Batch batch = new Batch();
+            String record;
+            while (batch.size < BATCH_RECORDS && (record = nextRecord()) != null) {
+                batch.records[batch.size] = record;
+                batch.lines[batch.size] = recordLine;
+                batch.size++;
+            }
+            return batch.size == 0 ? null : batch;
+        }
+
+        private static int quotes(String text) {
+            int count = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '"') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The positions of the columns named in a CSV header, or -1 for missing columns.
+     */
+    private static final class Columns {
+        final int width;
+        int record = -1;
+        int postId = -1;
+        int user = -1;
+        int email = -1;
+        int type = -1;
+        int createdAt = -1;
+        int content = -1;
+        int followee = -1;
+
+        private Columns(int width) {
+            this.width = width;
+        }
+
+        static Columns read(RecordReader reader) throws IOException {
+            String header = reader.nextRecord();
+            if (header == null) {
+                header = "record";
+            }
+            String[] names = new String[header.length() + 1];
+            int width = split(header, names);
+            Columns columns = new Columns(width);
+            for (int i = 0; i < width; i++) {
+                switch (names[i].trim()) {
+                    case "record":
+                        columns.record = i;
+                        break;
+                    case "post_id":
+                        columns.postId = i;
+                        break;
+                    case "user":
+                        columns.user = i;
+                        break;
+                    case "email":
+                        columns.email = i;
+                        break;
+                    case "type":
+                        columns.type = i;
+                        break;
+                    case "created_at":
+                        columns.createdAt = i;
+                        break;
+                    case "content":
+                        columns.content = i;
+                        break;
+                    case "followee":
+                        columns.followee = i;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (columns.record < 0) {
+                throw new IOException("The CSV file must start with a header row naming its columns.");
+            }
+            return columns;
+        }
+
+        /**
+         * Splits a CSV record into values, undoing the quoting of {@link ReportWriter}.
+         *
+         * @return the number of values; values beyond the length of the array are dropped
+         */
+        static int split(String record, String[] cells) {
+            int count = 0;
+            int i = 0;
+            int length = record.length();
+            StringBuilder quoted = null;
+            while (true) {
+                String value;
+                if (i < length && record.charAt(i) == '"') {
+                    if (quoted == null) {
+                        quoted = new StringBuilder();
+                    }
+                    quoted.setLength(0);
+                    i++;
+                    while (true) {
+                        if (i >= length) {
+                            throw new IllegalArgumentException("Unterminated quoted value.");
+                        }
+                        char c = record.charAt(i++);
+                        if (c == '"') {
+                            if (i < length && record.charAt(i) == '"') {
+                                quoted.append('"');
+                                i++;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            quoted.append(c);
+                        }
+                    }
+                    value = quoted.toString();
+                } else {
+                    int end = record.indexOf(',', i);
+                    end = end < 0 ? length : end;
+                    value = record.substring(i, end);
+                    i = end;
+                }
+                if (count < cells.length) {
+                    cells[count] = value;
+                }
+                count++;
+                if (i >= length) {
+                    return Math.min(count, cells.length);
+                }
+                if (record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected text after a quoted value.");
+                }
+                i++;
+                if (i == length) {
+                    if (count < cells.length) {
+                        cells[count] = "";
+                    }
+                    return Math.min(count + 1, cells.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * The values of one record, whatever its format.
+     */
+    private static final class Fields {
+        String record;
+        String postId;
+        String user;
+        String email;
+        String type;
+        String createdAt;
+        String content;
+        String followee;
+        private String text;
+        private int pos;
+        private final StringBuilder scratch = new StringBuilder();
+
+        /**
+         * Tells a user record from others without parsing it, when the record type is
+         * at the start of the record as in an exported report.
+         *
+         * @return 1 for a user record, 0 for another record, -1 if the record has to be parsed
+         */
+        static int isUserRecord(String line, Columns columns) {
+            String prefix = columns == null ? "{\"record\":\"" : "";
+            if (columns != null && columns.record != 0 || !line.startsWith(prefix)) {
+                return -1;
+            }
+            int start = prefix.length();
+            if (start < line.length() && line.charAt(start) == '"') {
+                return -1;
+            }
+            String user = columns == null ? "user\"" : "user,";
+            return line.startsWith(user, start) ? 1 : 0;
+        }
+
+        private void clear() {
+            record = null;
+            postId = null;
+            user = null;
+            email = null;
+            type = null;
+            createdAt = null;
+            content = null;
+            followee = null;
+        }
+
+        void parseCsv(String line, Columns columns, String[] cells) {
+            clear();
+            int count = Columns.split(line, cells);
+            record = cell(cells, count, columns.record);
+            postId = cell(cells, count, columns.postId);
+            user = cell(cells, count, columns.user);
+            email = cell(cells, count, columns.email);
+            type = cell(cells, count, columns.type);
+            createdAt = cell(cells, count, columns.createdAt);
+            content = cell(cells, count, columns.content);
+            followee = cell(cells, count, columns.followee);
+        }
+
+        private static String cell(String[] cells, int count, int column) {
+            return column < 0 || column >= count ? null : cells[column];
+        }
+
+        /**
+         * Reads one flat JSON object. Values may be strings, numbers, booleans or null;
+         * unknown keys are ignored.
+         */
+        void parseJson(String line) {
+            clear();
+            text = line;
+            pos = 0;
+            String id = null;
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    String key = string();
+                    expect(':');
+                    String value = value();
+                    switch (key) {
+                        case "record":
+                            record = value;
+                            break;
+                        case "id":
+                            id = value;
+                            break;
+                        case "postId":
+                            postId = value;
+                            break;
+                        case "userName":
+                        case "author":
+                        case "follower":
+                            user = value;
+                            break;
+                        case "email":
+                            email = value;
+                            break;
+                        case "type":
+                            type = value;
+                            break;
+                        case "createdAt":
+                            createdAt = value;
+                            break;
+                        case "content":
+                            content = value;
+                            break;
+                        case "followee":
+                            followee = value;
+                            break;
+                        default:
+                            break;
+                    }
+                    char next = peek();
+                    pos++;
+                    if (next == '}') {
+                        break;
+                    }
+                    if (next != ',') {
+                        throw new IllegalArgumentException("Malformed JSON object.");
+                    }
+                }
+            }
+            if (peek() != 0) {
+                throw new IllegalArgumentException("Unexpected text after the JSON object.");
+            }
+            if (postId == null && "post".equals(record)) {
+                postId = id;
+            }
+            text = null;
+        }
+
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Malformed JSON: expected '" + c + "'.");
+            }
+            pos++;
+        }
+
+        private String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Malformed JSON: missing value.");
+            }
+            return "null".equals(literal) ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '"') {
+                    return text.substring(start, pos++);
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            scratch.setLength(0);
+            scratch.append(text, start, pos);
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return scratch.toString();
+                }
+                if (c != '\\') {
+                    scratch.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'n':
+                        scratch.append('\n');
+                        break;
+                    case 'r':
+                        scratch.append('\r');
+                        break;
+                    case 't':
+                        scratch.append('\t');
+                        break;
+                    case 'b':
+                        scratch.append('\b');
+                        break;
+                    case 'f':
+                        scratch.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("Malformed JSON escape.");
+                        }
+                        try {
+                            scratch.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Malformed JSON escape.");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        scratch.append(escape);
+                }
+            }
+            throw new IllegalArgumentException("Unterminated JSON string.");
+        }
+    }
+}
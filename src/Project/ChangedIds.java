@@ -0,0 +1,101 @@
+package Project;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * The ChangedIds class is a set of user ids marked as changed, such as the users whose
+ * follower counts changed, kept as a bitmap split into fixed-size pages like the
+ * tables of the {@link FollowGraph}. Each page starts with a summary that has one bit
+ * per word of ids, so draining only reads the words that have a bit set. Marking an
+ * id never locks.
+ *
+ * @author Asail
+ */
+final class ChangedIds {
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS = 1 << (PAGE_BITS - 6);
+    private static final int SUMMARY = WORDS >>> 6;
+
+    private volatile AtomicReferenceArray<AtomicLongArray> pages;
+    private volatile boolean pending;
+
+    ChangedIds() {
+        this.pages = new AtomicReferenceArray<>(16);
+    }
+
+    void add(int id) {
+        if (id < 0) {
+            return;
+        }
+        AtomicLongArray page = page(id >>> PAGE_BITS);
+        int word = (id >>> 6) & (WORDS - 1);
+        setBit(page, SUMMARY + word, 1L << id);
+        setBit(page, word >>> 6, 1L << word);
+        if (!pending) {
+            pending = true;
+        }
+    }
+
+    private static void setBit(AtomicLongArray page, int index, long bit) {
+        if ((page.get(index) & bit) == 0) {
+            page.getAndAccumulate(index, bit, (a, b) -> a | b);
+        }
+    }
+
+    boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Clears the set, passing every id it held to a consumer. Ids added while the
+     * set is drained are either passed on now or kept for the next drain.
+     */
+    void drain(IntConsumer consumer) {
+        pending = false;
+        AtomicReferenceArray<AtomicLongArray> directory = pages;
+        for (int p = 0; p < directory.length(); p++) {
+            AtomicLongArray page = directory.get(p);
+            if (page == null) {
+                continue;
+            }
+            for (int s = 0; s < SUMMARY; s++) {
+                long words = page.getAndSet(s, 0);
+                while (words != 0) {
+                    int word = s << 6 | Long.numberOfTrailingZeros(words);
+                    words &= words - 1;
+                    long bits = page.getAndSet(SUMMARY + word, 0);
+                    while (bits != 0) {
+                        consumer.accept(p << PAGE_BITS | word << 6 | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private AtomicLongArray page(int page) {
+        AtomicReferenceArray<AtomicLongArray> directory = pages;
+        if (page < directory.length() && directory.get(page) != null) {
+            return directory.get(page);
+        }
+        synchronized (this) {
+            directory = pages;
+            if (page >= directory.length()) {
+                AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<>(Math.max(page + 1, directory.length() * 2));
+                for (int i = 0; i < directory.length(); i++) {
+                    grown.set(i, directory.get(i));
+                }
+                directory = grown;
+                pages = grown;
+            }
+            AtomicLongArray words = directory.get(page);
+            if (words == null) {
+                words = new AtomicLongArray(SUMMARY + WORDS);
+                directory.set(page, words);
+            }
+            return words;
+        }
+    }
+}
@@ -1,25 +1,37 @@
 package Project;
 
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * The Comment class represents a comment made by a user on a social media platform. 
  * It contains the content of the comment and the author (user) who made it. 
  * It provides methods to access and modify these attributes and implements methods 
  * from the SocialMediaElement interface.
+ * Every comment receives a unique 64-bit id from the same generator as posts, and two
+ * comments are equal only if they have the same id.
+ * Once the comment is on a post of a registered user, its text is the copy kept in the
+ * platform's {@link StringPool}, shared with every post and comment saying the same.
  * 
  * @author Asail
  */
 public class Comment implements SocialMediaElement {
+    private static final int STORED = 1;
+    private static final int DELETED = 2;
+    private static final AtomicIntegerFieldUpdater<Comment> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Comment.class, "State");
     
-    private String Content;
-    private User Author;
+    private final long Id;
+    private volatile String Content;
+    private volatile User Author;
+    private volatile Post Parent;
+    private volatile int State;
+    private volatile StringPool Strings;
     
     /**
      * Default constructor for the Comment class.
      */
     public Comment(){
-        
+        this.Id = Post.newId();
     }
     
     /**
@@ -33,6 +45,30 @@ public class Comment implements SocialMediaElement {
         this.Content=Content;
         this.Author=Author;
     }
+    
+    /**
+     * Recreates a saved comment with its original id. Posts and comments created
+     * afterwards receive larger ids.
+     * 
+     * @param Id the id of the saved comment
+     * @param Content the text content of the comment
+     * @param Author the user who made the comment
+     */
+    Comment(long Id, String Content, User Author){
+        this.Id = Id;
+        this.Content = Content;
+        this.Author = Author;
+        Post.reserveIds(Id + 1);
+    }
+    
+    /**
+     * Gets the id of the comment.
+     * 
+     * @return the id of the comment
+     */
+    public long getId(){
+        return Id;
+    }
 
     /**
      * Gets the content of the comment.
@@ -49,7 +85,21 @@ public class Comment implements SocialMediaElement {
      * @param Content the new text content of the comment
      */
     public void setContent(String Content){
-        this.Content = Content;
+        String previous;
+        synchronized (this) {
+            previous = this.Content;
+            StringPool strings = Strings;
+            if (strings != null) {
+                this.Content = strings.intern(Content);
+                strings.release(previous);
+            } else {
+                this.Content = Content;
+            }
+        }
+        Post post = Parent;
+        if (post != null) {
+            post.reindex(previous);
+        }
     }
 
     /**
@@ -70,6 +120,81 @@ public class Comment implements SocialMediaElement {
         this.Author = Author;
     }
     
+    /**
+     * Gets the post the comment was added to.
+     * 
+     * @return the post, or null if the comment was never added to one
+     */
+    Post getPost(){
+        return Parent;
+    }
+    
+    /**
+     * Records the post the comment was added to.
+     * 
+     * @param Parent the post holding the comment
+     */
+    void setPost(Post Parent){
+        this.Parent = Parent;
+    }
+    
+    /**
+     * Checks whether the comment was deleted together with its author or its post.
+     * A deleted comment is hidden at once and dropped from the post by the next
+     * {@link Compactor} run.
+     * 
+     * @return true if the comment is deleted
+     */
+    boolean isDeleted(){
+        return (State & DELETED) != 0;
+    }
+    
+    /**
+     * Marks the comment as deleted. If the comment is already stored on its post,
+     * the comment counts of the post and of both users go down by one.
+     */
+    void markDeleted(){
+        int previous = STATE.getAndUpdate(this, state -> state | DELETED);
+        if (previous == STORED) {
+            Parent.commentDeleted(this);
+        }
+    }
+    
+    /**
+     * Records that the comment was stored on its post. Exactly one of this method and
+     * {@link #markDeleted()} sees the comment both stored and deleted, so a deletion
+     * racing with the append is counted once.
+     * 
+     * @return true if the comment was deleted before it was stored
+     */
+    boolean markStored(){
+        return STATE.getAndUpdate(this, state -> state | STORED) == DELETED;
+    }
+    
+    /**
+     * Replaces the text of the comment with its copy in a pool. Does nothing if the
+     * comment is pooled already.
+     * 
+     * @param strings the pool of the platform the comment is on
+     */
+    synchronized void pool(StringPool strings){
+        if (Strings == null) {
+            Content = strings.intern(Content);
+            Strings = strings;
+        }
+    }
+    
+    /**
+     * Releases the text of the comment from its pool, once the comment is dropped.
+     */
+    synchronized void unpool(){
+        StringPool strings = Strings;
+        if (strings != null) {
+            Strings = null;
+            strings.release(Content);
+        }
+    }
+    
     /**
      * Displays the comment details, including the author's username and the content.
      */
@@ -99,10 +224,10 @@ public class Comment implements SocialMediaElement {
     }
     
     /**
-     * Checks if two Comment objects are equal based on their content and author.
+     * Checks if two Comment objects are equal based on their ids.
      * 
      * @param o the object to compare with this comment
-     * @return true if both the content and author are equal, false otherwise
+     * @return true if both comments have the same id, false otherwise
      */
     @Override 
     public boolean equals(Object o){
@@ -111,16 +236,16 @@ public class Comment implements SocialMediaElement {
         if (o == null || getClass()!=o.getClass())
             return false;
         Comment comment =(Comment)o;
-        return Objects.equals(Content,comment.Content)&&Objects.equals(Author, comment.Author);
+        return Id == comment.Id;
     }
     
     /**
-     * Generates a hash code for the Comment object based on its content and author.
+     * Generates a hash code for the Comment object based on its id.
      * 
      * @return the hash code of the Comment object
      */
     @Override
     public int hashCode(){
-        return Objects.hash(Content,Author);
+        return Long.hashCode(Id);
     }
 }
@@ -0,0 +1,270 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * The CommentStore class holds the comments of one post in append order, in chunks
+ * that double in size: the first chunk has room for four comments, the next for eight,
+ * and so on. Growing never copies comments, only the small array of chunks, and a post
+ * with a few comments keeps a few slots. Every comment keeps the position it was
+ * appended at, so a position is found with a bit count and serves as a cursor for
+ * reading the comments in pages in either direction.
+ * <p>
+ * The number of live comments is kept up to date as comments are appended and
+ * deleted, so counting them takes constant time. Deleted comments stay in place,
+ * hidden, until {@link #purgeDeleted(Consumer)} clears their slots and drops the chunks left
+ * empty.
+ * <p>
+ * Appends and purges lock the store. Reads need no lock: a slot is filled before the
+ * size that covers it is published, and a reader that still sees a purged comment
+ * skips it because it is marked deleted.
+ *
+ * @author Asail
+ */
+final class CommentStore {
+    private static final int FIRST_SHIFT = 2;
+    private static final int FIRST_CHUNK = 1 << FIRST_SHIFT;
+    private static final AtomicIntegerFieldUpdater<CommentStore> DELETED =
+            AtomicIntegerFieldUpdater.newUpdater(CommentStore.class, "deleted");
+
+    private volatile Comment[][] chunks;
+    private volatile int size;
+    private volatile int deleted;
+
+    /**
+     * Creates an empty store. The first chunk is allocated with the first comment.
+     */
+    CommentStore() {
+        this.chunks = new Comment[0][];
+    }
+
+    /**
+     * Appends a comment.
+     *
+     * @param comment the comment
+     * @return true if the comment is counted; false if it was deleted before it was
+     * stored
+     */
+    synchronized boolean add(Comment comment) {
+        int position = size;
+        int chunk = chunkOf(position);
+        Comment[][] directory = chunks;
+        if (chunk == directory.length) {
+            directory = Arrays.copyOf(directory, chunk + 1);
+            directory[chunk] = new Comment[FIRST_CHUNK << chunk];
+            chunks = directory;
+        }
+        directory[chunk][offsetOf(position, chunk)] = comment;
+        size = position + 1;
+        if (comment.markStored()) {
+            DELETED.incrementAndGet(this);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts a stored comment that was just marked deleted.
+     */
+    void deleted() {
+        DELETED.incrementAndGet(this);
+    }
+
+    /**
+     * @return the number of comments that are not deleted
+     */
+    int count() {
+        int removed = deleted;
+        return size - removed;
+    }
+
+    /**
+     * Clears the slots of deleted comments and drops the chunks that hold no comment
+     * any more. Positions and the count do not change.
+     *
+     * @param dropped called with every comment that is cleared
+     * @return true if any comment was cleared
+     */
+    synchronized boolean purgeDeleted(Consumer<Comment> dropped) {
+        Comment[][] directory = chunks;
+        int n = size;
+        boolean purged = false;
+        for (int chunk = 0; chunk < directory.length; chunk++) {
+            Comment[] slots = directory[chunk];
+            if (slots == null) {
+                continue;
+            }
+            boolean empty = true;
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null && slots[i].isDeleted()) {
+                    dropped.accept(slots[i]);
+                    slots[i] = null;
+                    purged = true;
+                } else if (slots[i] != null) {
+                    empty = false;
+                }
+            }
+            if (empty && chunkStart(chunk + 1) <= n) {
+                directory[chunk] = null;
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Reads up to a number of live comments starting at a cursor.
+     * Oldest first, the cursor is the position to start at. Newest first, it is one
+     * past the position to start at, and 0 starts with the newest comment.
+     *
+     * @param cursor the cursor returned with the previous page, or 0 for the first page
+     * @param limit the maximum number of comments
+     * @param newestFirst true to read from the newest comment back
+     * @return the page of comments
+     */
+    Page<Comment> page(int cursor, int limit, boolean newestFirst) {
+        int n = size;
+        Comment[][] directory = chunks;
+        List<Comment> page = new ArrayList<>(Math.max(0, Math.min(limit, n - deleted)));
+        if (newestFirst) {
+            int position = previousLive(directory, (cursor == 0 ? n : Math.min(cursor, n)) - 1);
+            while (position >= 0 && page.size() < limit) {
+                addLive(page, directory, position);
+                position = previousLive(directory, position - 1);
+            }
+            return new Page<>(page, position >= 0 ? position + 1 : Page.END);
+        }
+        int position = nextLive(directory, Math.max(cursor, 0), n);
+        while (position < n && page.size() < limit) {
+            addLive(page, directory, position);
+            position = nextLive(directory, position + 1, n);
+        }
+        return new Page<>(page, position < n ? position : Page.END);
+    }
+
+    /**
+     * Finds the first live comment at or after a position, skipping purged chunks
+     * whole.
+     *
+     * @return the position of the comment, or the size if there is none
+     */
+    private static int nextLive(Comment[][] directory, int position, int n) {
+        while (position < n) {
+            int chunk = chunkOf(position);
+            if (directory[chunk] == null) {
+                position = chunkStart(chunk + 1);
+            } else if (live(directory, position) != null) {
+                return position;
+            } else {
+                position++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Finds the last live comment at or before a position, skipping purged chunks
+     * whole.
+     *
+     * @return the position of the comment, or -1 if there is none
+     */
+    private static int previousLive(Comment[][] directory, int position) {
+        while (position >= 0) {
+            int chunk = chunkOf(position);
+            if (directory[chunk] == null) {
+                position = chunkStart(chunk) - 1;
+            } else if (live(directory, position) != null) {
+                return position;
+            } else {
+                position--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the comment at a position found live, unless it was deleted since.
+     */
+    private static void addLive(List<Comment> page, Comment[][] directory, int position) {
+        Comment comment = live(directory, position);
+        if (comment != null) {
+            page.add(comment);
+        }
+    }
+
+    /**
+     * Iterates over the comments in the order they were added.
+     *
+     * @param includeDeleted true to include deleted comments that were not purged yet
+     * @return an iterator over the comments as they were when it was created
+     */
+    Iterator<Comment> iterator(boolean includeDeleted) {
+        int n = size;
+        Comment[][] directory = chunks;
+        return new Iterator<Comment>() {
+            private int position;
+            private Comment next = advance();
+
+            private Comment advance() {
+                while (position < n) {
+                    int chunk = chunkOf(position);
+                    Comment[] slots = directory[chunk];
+                    if (slots == null) {
+                        position = chunkStart(chunk + 1);
+                        continue;
+                    }
+                    Comment comment = slots[offsetOf(position++, chunk)];
+                    if (comment != null && (includeDeleted || !comment.isDeleted())) {
+                        return comment;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Comment next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Comment current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private static Comment live(Comment[][] directory, int position) {
+        int chunk = chunkOf(position);
+        Comment[] slots = directory[chunk];
+        if (slots == null) {
+            return null;
+        }
+        Comment comment = slots[offsetOf(position, chunk)];
+        return comment == null || comment.isDeleted() ? null : comment;
+    }
+
+    private static int chunkOf(int position) {
+        return 31 - Integer.numberOfLeadingZeros(position + FIRST_CHUNK) - FIRST_SHIFT;
+    }
+
+    /**
+     * @return the position of the first slot of a chunk
+     */
+    private static int chunkStart(int chunk) {
+        return (FIRST_CHUNK << chunk) - FIRST_CHUNK;
+    }
+
+    private static int offsetOf(int position, int chunk) {
+        return position + FIRST_CHUNK - (FIRST_CHUNK << chunk);
+    }
+}
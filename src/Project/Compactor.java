@@ -0,0 +1,214 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Compactor class finishes the deletion of users and posts in the background.
+ * <p>
+ * Deleting a user or a post only marks the affected comments as deleted, which hides
+ * them at once: the comments the user wrote on other users' posts, and the comments
+ * other users wrote on the deleted posts. The posts that keep the user's comments are
+ * re-indexed in the {@link SearchIndex} right away. The cost is proportional to the
+ * number of those comments. The deleted user or post is then queued as a tombstone. Once enough
+ * tombstones have collected, or a few seconds after the first of them on a platform
+ * too quiet to collect enough, a task on the common pool drops the deleted comments
+ * from the posts holding them and from the comment indexes of their authors, visiting
+ * each affected post once and taking each comment out of its author's index by
+ * itself, so an author with many comments costs no more than one with a few. It also
+ * drops the postings of the deleted
+ * posts from the search index, which leaves them out of results in the meantime
+ * because they are no longer in the feed. The texts of the dropped posts and comments
+ * are released from the platform's string pool.
+ *
+ * @author Asail
+ */
+class Compactor {
+    static final int DEFAULT_THRESHOLD = 1024;
+    /** Default time a tombstone waits for the threshold before a run starts anyway. */
+    static final long DEFAULT_MAX_DELAY_MILLIS = 5_000;
+
+    private final int threshold;
+    private final long maxDelayMillis;
+    private final SearchIndex search;
+    private final Queue<User> users;
+    private final Queue<Post> posts;
+    private final AtomicInteger pending;
+    private final AtomicBoolean scheduled;
+    private final AtomicBoolean timed;
+
+    /**
+     * Creates a compactor that waits at most the default delay.
+     *
+     * @param threshold the number of tombstones that starts a background run
+     * @param search the search index to update
+     */
+    public Compactor(int threshold, SearchIndex search) {
+        this(threshold, DEFAULT_MAX_DELAY_MILLIS, search);
+    }
+
+    /**
+     * @param threshold the number of tombstones that starts a background run
+     * @param maxDelayMillis the time after which a background run starts even though
+     * fewer tombstones are waiting
+     * @param search the search index to update
+     */
+    public Compactor(int threshold, long maxDelayMillis, SearchIndex search) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The threshold must be positive.");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("The delay must not be negative.");
+        }
+        this.threshold = threshold;
+        this.maxDelayMillis = maxDelayMillis;
+        this.search = search;
+        this.users = new ConcurrentLinkedQueue<>();
+        this.posts = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.scheduled = new AtomicBoolean();
+        this.timed = new AtomicBoolean();
+    }
+
+    /**
+     * Hides the comments a removed user wrote and the comments on its posts, re-indexes
+     * the posts holding the user's comments, and queues the user for compaction.
+     *
+     * @param user the user that was removed
+     */
+    public void onUserRemoved(User user) {
+        Map<Post, List<String>> hidden = new IdentityHashMap<>();
+        for (Comment comment : user.comments) {
+            comment.markDeleted();
+            Post post = comment.getPost();
+            if (post != null) {
+                hidden.computeIfAbsent(post, key -> new ArrayList<>()).add(comment.getContent());
+            }
+        }
+        hidden.forEach(search::reindex);
+        for (Post post : user.getPosts()) {
+            hideComments(post);
+        }
+        users.add(user);
+        added();
+    }
+
+    /**
+     * Hides the comments on a deleted post and queues the post for compaction.
+     *
+     * @param post the post that was deleted
+     */
+    public void onPostRemoved(Post post) {
+        hideComments(post);
+        posts.add(post);
+        added();
+    }
+
+    private static void hideComments(Post post) {
+        for (Comment comment : post.getAllComments()) {
+            comment.markDeleted();
+        }
+    }
+
+    /**
+     * Starts a run once enough tombstones are waiting, and otherwise makes sure one
+     * starts when the first of them has waited the maximum delay.
+     */
+    private void added() {
+        if (pending.incrementAndGet() >= threshold) {
+            run(ForkJoinPool.commonPool());
+        } else if (timed.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(maxDelayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                timed.set(false);
+                if (pending.get() > 0) {
+                    run(Runnable::run);
+                }
+            });
+        }
+    }
+
+    private void run(Executor executor) {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    scheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the comments hidden by the queued deletions from the posts and the
+     * authors still holding them.
+     *
+     * @return the number of tombstones processed
+     */
+    public int compact() {
+        Set<Post> touchedPosts = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Post> deadPosts = Collections.newSetFromMap(new IdentityHashMap<>());
+        int processed = 0;
+        User user;
+        while ((user = users.poll()) != null) {
+            for (Comment comment : user.comments) {
+                Post post = comment.getPost();
+                if (post != null) {
+                    touchedPosts.add(post);
+                }
+            }
+            user.comments.clear();
+            for (Post post : user.getPosts()) {
+                deadPosts.add(post);
+            }
+            processed++;
+        }
+        Post post;
+        while ((post = posts.poll()) != null) {
+            deadPosts.add(post);
+            processed++;
+        }
+        for (Post dead : deadPosts) {
+            unindexComments(dead);
+            search.onPostRemoved(dead);
+            dead.purgeDeletedComments();
+            dead.unpool();
+        }
+        for (Post touched : touchedPosts) {
+            touched.purgeDeletedComments();
+        }
+        pending.addAndGet(-processed);
+        return processed;
+    }
+
+    /**
+     * Takes the comments on a deleted post out of the comment indexes of their authors.
+     */
+    private static void unindexComments(Post post) {
+        for (Comment comment : post.getAllComments()) {
+            User author = comment.getAuthor();
+            if (author != null) {
+                author.comments.remove(comment);
+            }
+        }
+    }
+
+    /**
+     * @return the number of tombstones waiting for compaction
+     */
+    public int pending() {
+        return pending.get();
+    }
+}
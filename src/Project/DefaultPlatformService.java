@@ -0,0 +1,390 @@
+package Project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Default implementation of {@link PlatformService} working on the stores of a
+ * {@link PlatformContext}. It only resolves usernames, checks permissions and turns
+ * failures into typed exceptions; the actual work is done by the domain classes and
+ * stores, which are safe for concurrent use. Every successful mutation is published
+ * on the context's {@link EventBus} while the {@link EntityLocks} of the users it names
+ * are held, so changes to the same users are published in the order they were
+ * applied; bulk imports are not published.
+ *
+ * @author Asail
+ */
+class DefaultPlatformService implements PlatformService {
+    private final PlatformContext context;
+
+    /**
+     * Creates a service over a new, empty platform.
+     */
+    public DefaultPlatformService() {
+        this(new PlatformContext());
+    }
+
+    /**
+     * Creates a service over an existing platform context.
+     *
+     * @param context the context holding the users and their relationships
+     */
+    public DefaultPlatformService(PlatformContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @return the context this service works on
+     */
+    public PlatformContext getContext() {
+        return context;
+    }
+
+    @Override
+    public User addUser(String userName, String email, boolean admin) throws SocialMediaException {
+        User newUser = newUser(userName, email, admin);
+        return context.getLocks().applyMembership(null, newUser, () -> register(newUser));
+    }
+
+    @Override
+    public Post addPost(String userName, String content) throws SocialMediaException {
+        User user = getUser(userName);
+        return context.getLocks().apply(user, () -> post(user, content));
+    }
+
+    @Override
+    public Comment addComment(long postId, String commenter, String content) throws SocialMediaException {
+        Post post = getPost(postId);
+        User user = getUser(commenter);
+        return context.getLocks().apply(user, post.getAuthor(), () -> comment(post, user, content));
+    }
+
+    @Override
+    public void followUser(String follower, String followee) throws SocialMediaException {
+        User user = getUser(follower);
+        User other = getUser(followee);
+        context.getLocks().apply(user, other, () -> {
+            follow(user, other);
+            return null;
+        });
+    }
+
+    @Override
+    public void unfollowUser(String follower, String followee) throws SocialMediaException {
+        User user = getUser(follower);
+        User other = getUser(followee);
+        context.getLocks().apply(user, other, () -> {
+            unfollow(user, other);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeFollower(String userName, String follower) throws SocialMediaException {
+        User user = getUser(userName);
+        User other = getUser(follower);
+        context.getLocks().apply(user, other, () -> {
+            removeFollower(user, other);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteUser(String adminUserName, String userName) throws SocialMediaException {
+        Admin admin = getAdmin(adminUserName);
+        User user = getUser(userName);
+        context.getLocks().applyMembership(admin, user, () -> {
+            delete(admin, user);
+            return null;
+        });
+    }
+
+    @Override
+    public void deletePost(String adminUserName, long postId) throws SocialMediaException {
+        Admin admin = getAdmin(adminUserName);
+        Post post = getPost(postId);
+        context.getLocks().apply(admin, post.getAuthor(), () -> {
+            delete(admin, post);
+            return null;
+        });
+    }
+
+    /*
+     * The changes below are applied while the caller holds the EntityLocks the public
+     * methods above take, so that a caller recording them elsewhere, such as the
+     * DurablePlatformService, records them in the same order.
+     */
+
+    static User newUser(String userName, String email, boolean admin) throws InvalidEmailException {
+        if (!EmailValidator.isValid(email)) {
+            throw new InvalidEmailException();
+        }
+        return admin ? new Admin(userName, email) : new RegularUser(userName, email);
+    }
+
+    User register(User newUser) throws SocialMediaException {
+        context.getUsers().register(newUser);
+        publish(PlatformEvent.Type.USER_ADDED, newUser.getUserName(), null, -1, -1);
+        return newUser;
+    }
+
+    Post post(User user, String content) throws SocialMediaException {
+        Post newPost = new Post(content, user);
+        user.addPost(newPost);
+        publish(PlatformEvent.Type.POST_ADDED, user.getUserName(), null, newPost.getId(), -1);
+        return newPost;
+    }
+
+    Comment comment(Post post, User user, String content) throws SocialMediaException {
+        // Deletions take the same locks, so the post and the commenter are known to be
+        // live while the comment is added.
+        User author = post.getAuthor();
+        if (user.context != context) {
+            throw new UserNotFoundException();
+        }
+        if (author.context != context || author.posts.get(post.getId()) != post) {
+            throw new PostNotFoundException();
+        }
+        Comment newComment = new Comment(content, user);
+        post.addComment(newComment);
+        publish(PlatformEvent.Type.COMMENT_ADDED, user.getUserName(), author.getUserName(), post.getId(),
+                newComment.getId());
+        return newComment;
+    }
+
+    void follow(User user, User other) throws SocialMediaException {
+        user.followUser(other);
+        publish(PlatformEvent.Type.FOLLOWED, user.getUserName(), other.getUserName(), -1, -1);
+    }
+
+    void unfollow(User user, User other) throws SocialMediaException {
+        user.unfollowUser(other);
+        publish(PlatformEvent.Type.UNFOLLOWED, user.getUserName(), other.getUserName(), -1, -1);
+    }
+
+    void removeFollower(User user, User other) throws SocialMediaException {
+        user.removeFollower(other);
+        publish(PlatformEvent.Type.FOLLOWER_REMOVED, user.getUserName(), other.getUserName(), -1, -1);
+    }
+
+    void delete(Admin admin, User user) throws SocialMediaException {
+        String deletedName = user.getUserName();
+        if (!admin.deleteUser(user, context.getUsers())) {
+            throw new UserNotFoundException();
+        }
+        publish(PlatformEvent.Type.USER_DELETED, admin.getUserName(), deletedName, -1, -1);
+    }
+
+    void delete(Admin admin, Post post) throws SocialMediaException {
+        User author = post.getAuthor();
+        if (!admin.deletePost(author, post)) {
+            throw new PostNotFoundException();
+        }
+        publish(PlatformEvent.Type.POST_DELETED, admin.getUserName(), author.getUserName(), post.getId(), -1);
+    }
+
+    @Override
+    public Post getPost(long postId) throws PostNotFoundException {
+        Post post = context.getFeed().findPost(postId);
+        if (post == null) {
+            throw new PostNotFoundException();
+        }
+        return post;
+    }
+
+    @Override
+    public Page<Comment> getComments(long postId, int cursor, int limit, boolean newestFirst) throws PostNotFoundException {
+        return getPost(postId).getComments(cursor, limit, newestFirst);
+    }
+
+    @Override
+    public List<StringPool.Stats> getStringPoolStats() {
+        return List.of(context.getContents().stats(), context.getDomains().stats());
+    }
+
+    @Override
+    public User getUser(String userName) throws UserNotFoundException {
+        User user = context.getUsers().findByUsername(userName);
+        if (user == null) {
+            throw new UserNotFoundException();
+        }
+        return user;
+    }
+
+    @Override
+    public User findUserByEmail(String email) {
+        return context.getUsers().findByEmail(email);
+    }
+
+    @Override
+    public List<Post> getFeed(String userName, int limit) throws SocialMediaException {
+        return context.getFeed().getFeed(getUser(userName), limit);
+    }
+
+    @Override
+    public List<Post> searchPosts(String query, int limit) {
+        return context.getSearch().search(query, limit);
+    }
+
+    @Override
+    public UserInfo getUserInfo(String userName) throws UserNotFoundException {
+        return UserInfo.of(getUser(userName));
+    }
+
+    @Override
+    public List<String> getFollowerNames(String userName) throws UserNotFoundException {
+        return names(context.getFollowGraph().followers(getUser(userName).getId()));
+    }
+
+    @Override
+    public List<String> getFollowingNames(String userName) throws UserNotFoundException {
+        return names(context.getFollowGraph().following(getUser(userName).getId()));
+    }
+
+    @Override
+    public List<String> completeUserName(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        for (User user : context.getUsernames().complete(prefix, limit)) {
+            names.add(user.getUserName());
+        }
+        return names;
+    }
+
+    @Override
+    public List<RecommendationService.Suggestion> suggestUsers(String userName, int limit) throws UserNotFoundException {
+        return context.getRecommendations().suggest(getUser(userName), limit);
+    }
+
+    @Override
+    public boolean followEachOther(String userName, String otherUserName) throws UserNotFoundException {
+        return context.getGraphQueries().followEachOther(getUser(userName).getId(), getUser(otherUserName).getId());
+    }
+
+    @Override
+    public List<String> getMutualFollowers(String userName, String otherUserName) throws UserNotFoundException {
+        int[] ids = context.getGraphQueries().mutualFollowers(getUser(userName).getId(), getUser(otherUserName).getId());
+        return names(Arrays.stream(ids).iterator());
+    }
+
+    @Override
+    public int getDegreesOfSeparation(String userName, String otherUserName, int maxHops) throws UserNotFoundException {
+        return context.getGraphQueries().distance(getUser(userName).getId(), getUser(otherUserName).getId(), maxHops);
+    }
+
+    @Override
+    public GraphAnalytics.Results runGraphAnalytics(ForkJoinPool pool) {
+        return context.getAnalytics().run(pool);
+    }
+
+    @Override
+    public List<String> getMostInfluential(int limit) {
+        GraphAnalytics.Results results = context.getAnalytics().getLatest();
+        if (results == null) {
+            return new ArrayList<>();
+        }
+        return names(Arrays.stream(results.topRanked(limit)).iterator());
+    }
+
+    @Override
+    public List<User> getMostFollowed(int limit) {
+        return context.getEngagement().getMostFollowed(limit);
+    }
+
+    @Override
+    public List<Post> getMostCommented(int limit) {
+        return context.getEngagement().getMostCommented(limit);
+    }
+
+    @Override
+    public Page<String> getFollowers(String userName, int cursor, int limit) throws UserNotFoundException {
+        return names(context.getFollowGraph().followers(getUser(userName).getId(), cursor, limit));
+    }
+
+    @Override
+    public Page<String> getFollowing(String userName, int cursor, int limit) throws UserNotFoundException {
+        return names(context.getFollowGraph().following(getUser(userName).getId(), cursor, limit));
+    }
+
+    /**
+     * Looks up the usernames of a page of user ids. Users removed since the page was
+     * read are left out.
+     */
+    private Page<String> names(Page<Integer> ids) {
+        List<String> names = new ArrayList<>(ids.getItems().size());
+        UserRegistry users = context.getUsers();
+        for (int id : ids.getItems()) {
+            User user = users.findById(id);
+            if (user != null) {
+                names.add(user.getUserName());
+            }
+        }
+        return new Page<>(names, ids.getNextCursor());
+    }
+
+    private List<String> names(PrimitiveIterator.OfInt ids) {
+        List<String> names = new ArrayList<>();
+        UserRegistry users = context.getUsers();
+        while (ids.hasNext()) {
+            User user = users.findById(ids.nextInt());
+            if (user != null) {
+                names.add(user.getUserName());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public List<User> getUsers() {
+        return context.getUsers().getUsers();
+    }
+
+    /**
+     * Writes the report from the live domain objects. The report is not a snapshot:
+     * nothing keeps the platform from changing while it is written, so a report
+     * written during mutations may show users, posts and comments as they were at
+     * different moments. {@link DurablePlatformService} writes its reports as of one
+     * point in time.
+     */
+    @Override
+    public void writeReport(ReportWriter writer) throws IOException {
+        writer.writeHeader();
+        writer.writeUsers(context.getUsers().getUsers());
+    }
+
+    /**
+     * Writes the report from the live domain objects in parallel; like
+     * {@link #writeReport(ReportWriter)}, it is not a snapshot.
+     */
+    @Override
+    public void writeReport(ReportWriter writer, ForkJoinPool pool) throws IOException {
+        writer.writeHeader();
+        writer.writeUsers(context.getUsers().getUsers(), pool);
+    }
+
+    @Override
+    public BulkImporter.Result importData(Path file, ReportWriter.Format format) throws IOException {
+        return new BulkImporter(context, ForkJoinPool.commonPool()).importFile(file, format);
+    }
+
+    @Override
+    public EventBus getEvents() {
+        return context.getEvents();
+    }
+
+    private void publish(PlatformEvent.Type type, String userName, String otherUserName, long postId, long commentId) {
+        context.getEvents().publish(type, userName, otherUserName, postId, commentId);
+    }
+
+    Admin getAdmin(String userName) throws SocialMediaException {
+        User user = context.getUsers().findByUsername(userName);
+        if (!(user instanceof Admin)) {
+            throw new PermissionDeniedException();
+        }
+        return (Admin) user;
+    }
+}
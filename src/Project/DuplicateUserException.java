@@ -0,0 +1,17 @@
+package Project;
+
+/**
+ * Exception thrown when a username or email is already taken by another user.
+ * 
+ * @author Asail
+ */
+class DuplicateUserException extends SocialMediaException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message error description
+     */
+    public DuplicateUserException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,728 @@
+package Project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link PlatformService} that keeps the platform in a directory on disk, so that
+ * nothing is lost when the application stops.
+ * <p>
+ * Every successful mutation is appended to an {@link OperationLog} and made durable
+ * before the method returns; concurrent callers share fsyncs through the log's
+ * group commit. A mutation is applied and logged under the {@link EntityLocks} of the
+ * users it names, the same ones the {@link DefaultPlatformService} takes, so changes
+ * to the same users are logged in the order they were applied, while changes to
+ * different users run in parallel and only meet in the log's append. The fsync
+ * happens after the locks are released. Reads take no lock. Mutations are also
+ * published on the service's {@link EventBus} under the same locks, in log order;
+ * replayed operations are not.
+ * <p>
+ * After a number of logged operations a background thread writes a
+ * {@link PlatformSnapshot} and drops the log records it covers. Mutations hold the
+ * shared side of a read-write lock, and the checkpoint takes its exclusive side only
+ * while it records the LSN of the last logged operation and copies the platform in
+ * memory; the copy is then written to disk while mutations go on, and the operations
+ * logged after the recorded LSN stay in the log to be replayed after the snapshot.
+ * If that snapshot cannot be written, the log simply keeps its records, and the
+ * failure is thrown from the next {@link #checkpoint()} or {@link #close()}.
+ * <p>
+ * Opening the directory only maps the latest snapshot. Until something changes, user
+ * info, follower lists and reports are answered from the mapping, and lookups of
+ * unknown users are rejected without building anything. The domain objects are
+ * built from the snapshot by the first mutation, by the first read that has to return
+ * them, such as {@link #getUser(String)} or {@link #getFeed(String, int)}, or right
+ * away when the log holds operations to replay.
+ *
+ * @author Asail
+ */
+class DurablePlatformService implements PlatformService, Closeable {
+    /** Default number of logged operations between two snapshots. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1_000_000;
+    static final String SNAPSHOT_FILE = "platform.snapshot";
+    static final String LOG_FILE = "platform.log";
+
+    private final Path snapshotFile;
+    private final OperationLog log;
+    private final PlatformSnapshot mapped;
+    private final Object materializeLock;
+    /** Shared by mutations; held exclusively while a checkpoint takes its copy. */
+    private final ReentrantReadWriteLock cutLock;
+    /** Held by the one checkpoint running at a time. */
+    private final Object checkpointLock;
+    private final int checkpointInterval;
+    private final ExecutorService checkpointer;
+    private final AtomicBoolean checkpointPending;
+    /** The first failure of a background snapshot not reported yet. */
+    private final AtomicReference<IOException> checkpointFailure;
+    private final EventBus events;
+    private volatile DefaultPlatformService delegate;
+    private final AtomicInteger sinceCheckpoint;
+
+    private DurablePlatformService(Path directory, OperationLog log, PlatformSnapshot mapped, int checkpointInterval) {
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.log = log;
+        this.mapped = mapped;
+        this.materializeLock = new Object();
+        this.cutLock = new ReentrantReadWriteLock();
+        this.checkpointLock = new Object();
+        this.sinceCheckpoint = new AtomicInteger();
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointPending = new AtomicBoolean();
+        this.checkpointFailure = new AtomicReference<>();
+        this.events = new EventBus();
+        this.checkpointer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "platform-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (mapped == null) {
+            delegate = new DefaultPlatformService(new PlatformContext(events));
+        }
+    }
+
+    /**
+     * Opens the platform stored in a directory, creating the directory if needed,
+     * with the default snapshot interval.
+     *
+     * @param directory the data directory
+     * @return the service over the recovered platform
+     * @throws IOException if the directory cannot be read or its files are damaged
+     */
+    public static DurablePlatformService open(Path directory) throws IOException {
+        return open(directory, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens the platform stored in a directory, creating the directory if needed.
+     * The latest snapshot is mapped and the operations logged after it are replayed.
+     *
+     * @param directory the data directory
+     * @param checkpointInterval the number of logged operations between two snapshots
+     * @return the service over the recovered platform
+     * @throws IOException if the directory cannot be read or its files are damaged
+     */
+    public static DurablePlatformService open(Path directory, int checkpointInterval) throws IOException {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        PlatformSnapshot mapped = Files.exists(snapshot) ? PlatformSnapshot.open(snapshot) : null;
+        OperationLog log = OperationLog.open(directory.resolve(LOG_FILE));
+        try {
+            DurablePlatformService service = new DurablePlatformService(directory, log, mapped, checkpointInterval);
+            long replayed = log.replay(mapped == null ? 0 : mapped.lsn(), service.new Replay());
+            service.sinceCheckpoint.set((int) Math.min(replayed, Integer.MAX_VALUE));
+            return service;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the context holding the platform, building it from the snapshot if that has
+     * not happened yet.
+     *
+     * @return the context holding the recovered platform
+     * @throws IOException if the snapshot cannot be read
+     */
+    public PlatformContext getContext() throws IOException {
+        return materialized().getContext();
+    }
+
+    /**
+     * @return true if the domain objects have been built; false while queries are
+     * still answered from the mapped snapshot
+     */
+    public boolean isMaterialized() {
+        return delegate != null;
+    }
+
+    private DefaultPlatformService materialized() throws IOException {
+        DefaultPlatformService current = delegate;
+        if (current == null) {
+            synchronized (materializeLock) {
+                current = delegate;
+                if (current == null) {
+                    PlatformContext context = new PlatformContext(events);
+                    mapped.materialize(context);
+                    current = new DefaultPlatformService(context);
+                    delegate = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private DefaultPlatformService objects() throws PersistenceException {
+        try {
+            return materialized();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Gets the snapshot to answer a read from, or null once the objects exist.
+     */
+    private PlatformSnapshot readable() {
+        return delegate == null ? mapped : null;
+    }
+
+    @Override
+    public User addUser(String userName, String email, boolean admin) throws SocialMediaException {
+        User newUser = DefaultPlatformService.newUser(userName, email, admin);
+        return commit(mutate(objects -> locks(objects).applyMembership(null, newUser, () -> {
+            objects.register(newUser);
+            return new Logged<>(newUser, log.addUser(newUser.getId(), admin, newUser.getUserName(), newUser.getEmail()));
+        })));
+    }
+
+    @Override
+    public Post addPost(String userName, String content) throws SocialMediaException {
+        return commit(mutate(objects -> {
+            User user = objects.getUser(userName);
+            return locks(objects).apply(user, () -> {
+                Post post = objects.post(user, content);
+                return new Logged<>(post, log.addPost(post.getId(), post.getCreatedAt(), user.getId(), post.getContent()));
+            });
+        }));
+    }
+
+    @Override
+    public Comment addComment(long postId, String commenter, String content) throws SocialMediaException {
+        return commit(mutate(objects -> {
+            Post post = objects.getPost(postId);
+            User user = objects.getUser(commenter);
+            return locks(objects).apply(user, post.getAuthor(), () -> {
+                Comment comment = objects.comment(post, user, content);
+                return new Logged<>(comment, log.addComment(postId, comment.getId(), user.getId(), comment.getContent()));
+            });
+        }));
+    }
+
+    @Override
+    public void followUser(String follower, String followee) throws SocialMediaException {
+        commit(mutate(objects -> {
+            User user = objects.getUser(follower);
+            User other = objects.getUser(followee);
+            return locks(objects).apply(user, other, () -> {
+                objects.follow(user, other);
+                return new Logged<Void>(null, log.follow(user.getId(), other.getId()));
+            });
+        }));
+    }
+
+    @Override
+    public void unfollowUser(String follower, String followee) throws SocialMediaException {
+        commit(mutate(objects -> {
+            User user = objects.getUser(follower);
+            User other = objects.getUser(followee);
+            return locks(objects).apply(user, other, () -> {
+                objects.unfollow(user, other);
+                return new Logged<Void>(null, log.unfollow(user.getId(), other.getId()));
+            });
+        }));
+    }
+
+    @Override
+    public void removeFollower(String userName, String follower) throws SocialMediaException {
+        commit(mutate(objects -> {
+            User user = objects.getUser(userName);
+            User other = objects.getUser(follower);
+            return locks(objects).apply(user, other, () -> {
+                objects.removeFollower(user, other);
+                return new Logged<Void>(null, log.unfollow(other.getId(), user.getId()));
+            });
+        }));
+    }
+
+    @Override
+    public void deleteUser(String adminUserName, String userName) throws SocialMediaException {
+        commit(mutate(objects -> {
+            Admin admin = objects.getAdmin(adminUserName);
+            User user = objects.getUser(userName);
+            return locks(objects).applyMembership(admin, user, () -> {
+                int userId = user.getId();
+                objects.delete(admin, user);
+                return new Logged<Void>(null, log.deleteUser(admin.getId(), userId));
+            });
+        }));
+    }
+
+    @Override
+    public void deletePost(String adminUserName, long postId) throws SocialMediaException {
+        commit(mutate(objects -> {
+            Admin admin = objects.getAdmin(adminUserName);
+            Post post = objects.getPost(postId);
+            return locks(objects).apply(admin, post.getAuthor(), () -> {
+                objects.delete(admin, post);
+                return new Logged<Void>(null, log.deletePost(admin.getId(), postId));
+            });
+        }));
+    }
+
+    /**
+     * A change applied to the domain objects together with the LSN of its log record.
+     */
+    private static final class Logged<T> {
+        final T result;
+        final long lsn;
+
+        Logged(T result, long lsn) {
+            this.result = result;
+            this.lsn = lsn;
+        }
+    }
+
+    /**
+     * A mutation that applies a change to the domain objects and appends it to the
+     * log under the {@link EntityLocks} of what it names.
+     */
+    @FunctionalInterface
+    private interface Mutation<T> {
+        Logged<T> apply(DefaultPlatformService objects) throws SocialMediaException;
+    }
+
+    /**
+     * Runs a mutation while holding the shared side of the checkpoint lock, so that a
+     * checkpoint sees either all of it or none of it, and counts it towards the next
+     * snapshot.
+     */
+    private <T> Logged<T> mutate(Mutation<T> mutation) throws SocialMediaException {
+        Logged<T> logged;
+        cutLock.readLock().lock();
+        try {
+            logged = mutation.apply(objects());
+            logged();
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        return logged;
+    }
+
+    private static EntityLocks locks(DefaultPlatformService objects) {
+        return objects.getContext().getLocks();
+    }
+
+    @Override
+    public Post getPost(long postId) throws SocialMediaException {
+        return objects().getPost(postId);
+    }
+
+    @Override
+    public Page<Comment> getComments(long postId, int cursor, int limit, boolean newestFirst) throws SocialMediaException {
+        return objects().getComments(postId, cursor, limit, newestFirst);
+    }
+
+    @Override
+    public List<StringPool.Stats> getStringPoolStats() throws SocialMediaException {
+        return objects().getStringPoolStats();
+    }
+
+    @Override
+    public EventBus getEvents() {
+        return events;
+    }
+
+    @Override
+    public User getUser(String userName) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot != null && snapshot.findUser(userName) < 0) {
+            throw new UserNotFoundException();
+        }
+        return unchecked().getUser(userName);
+    }
+
+    @Override
+    public User findUserByEmail(String email) {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot != null && snapshot.findUserByEmail(email) < 0) {
+            return null;
+        }
+        return unchecked().findUserByEmail(email);
+    }
+
+    @Override
+    public List<Post> getFeed(String userName, int limit) throws SocialMediaException {
+        return objects().getFeed(userName, limit);
+    }
+
+    @Override
+    public List<Post> searchPosts(String query, int limit) throws SocialMediaException {
+        return objects().searchPosts(query, limit);
+    }
+
+    @Override
+    public UserInfo getUserInfo(String userName) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            return unchecked().getUserInfo(userName);
+        }
+        return snapshot.userInfo(mappedUser(snapshot, userName));
+    }
+
+    @Override
+    public List<String> getFollowerNames(String userName) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            return unchecked().getFollowerNames(userName);
+        }
+        return snapshot.followerNames(mappedUser(snapshot, userName));
+    }
+
+    @Override
+    public List<String> getFollowingNames(String userName) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            return unchecked().getFollowingNames(userName);
+        }
+        return snapshot.followingNames(mappedUser(snapshot, userName));
+    }
+
+    @Override
+    public Page<String> getFollowers(String userName, int cursor, int limit) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            return unchecked().getFollowers(userName, cursor, limit);
+        }
+        return snapshot.followerPage(mappedUser(snapshot, userName), cursor, limit);
+    }
+
+    @Override
+    public Page<String> getFollowing(String userName, int cursor, int limit) throws UserNotFoundException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            return unchecked().getFollowing(userName, cursor, limit);
+        }
+        return snapshot.followingPage(mappedUser(snapshot, userName), cursor, limit);
+    }
+
+    @Override
+    public List<String> completeUserName(String prefix, int limit) throws SocialMediaException {
+        return objects().completeUserName(prefix, limit);
+    }
+
+    @Override
+    public List<RecommendationService.Suggestion> suggestUsers(String userName, int limit) throws SocialMediaException {
+        return objects().suggestUsers(userName, limit);
+    }
+
+    @Override
+    public boolean followEachOther(String userName, String otherUserName) throws SocialMediaException {
+        return objects().followEachOther(userName, otherUserName);
+    }
+
+    @Override
+    public List<String> getMutualFollowers(String userName, String otherUserName) throws SocialMediaException {
+        return objects().getMutualFollowers(userName, otherUserName);
+    }
+
+    @Override
+    public int getDegreesOfSeparation(String userName, String otherUserName, int maxHops) throws SocialMediaException {
+        return objects().getDegreesOfSeparation(userName, otherUserName, maxHops);
+    }
+
+    @Override
+    public GraphAnalytics.Results runGraphAnalytics(ForkJoinPool pool) throws SocialMediaException {
+        return objects().runGraphAnalytics(pool);
+    }
+
+    @Override
+    public List<String> getMostInfluential(int limit) throws SocialMediaException {
+        return objects().getMostInfluential(limit);
+    }
+
+    @Override
+    public List<User> getMostFollowed(int limit) throws SocialMediaException {
+        return objects().getMostFollowed(limit);
+    }
+
+    @Override
+    public List<Post> getMostCommented(int limit) throws SocialMediaException {
+        return objects().getMostCommented(limit);
+    }
+
+    @Override
+    public List<User> getUsers() {
+        return unchecked().getUsers();
+    }
+
+    /**
+     * Writes the report as of one point in time: from the mapping while nothing has
+     * changed, and otherwise from an image of the platform taken the way a checkpoint
+     * takes one, so mutations only wait while the image is copied in memory.
+     */
+    @Override
+    public void writeReport(ReportWriter writer) throws IOException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            image().writeReport(writer);
+        } else {
+            snapshot.writeReport(writer);
+        }
+    }
+
+    /**
+     * Writes the report as of one point in time, as {@link #writeReport(ReportWriter)}
+     * does, formatting ranges of users in parallel on a pool.
+     */
+    @Override
+    public void writeReport(ReportWriter writer, ForkJoinPool pool) throws IOException {
+        PlatformSnapshot snapshot = readable();
+        if (snapshot == null) {
+            image().writeReport(writer, pool);
+        } else {
+            snapshot.writeReport(writer, pool);
+        }
+    }
+
+    /**
+     * @return an image of the materialized platform, taken while no mutation runs
+     */
+    private PlatformSnapshot.Image image() throws IOException {
+        PlatformContext context = materialized().getContext();
+        cutLock.writeLock().lock();
+        try {
+            return PlatformSnapshot.capture(context);
+        } finally {
+            cutLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Imports the file into the domain objects and then writes a snapshot, instead of
+     * logging every imported record. Other mutations wait until the snapshot is
+     * written, since operations logged after it may refer to what was imported; if the
+     * application stops before that, the import is lost as a whole.
+     */
+    @Override
+    public BulkImporter.Result importData(Path file, ReportWriter.Format format) throws IOException {
+        synchronized (checkpointLock) {
+            cutLock.writeLock().lock();
+            try {
+                BulkImporter.Result result = materialized().importData(file, format);
+                writeCheckpoint();
+                return result;
+            } finally {
+                cutLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static int mappedUser(PlatformSnapshot snapshot, String userName) throws UserNotFoundException {
+        int user = snapshot.findUser(userName);
+        if (user < 0) {
+            throw new UserNotFoundException();
+        }
+        return user;
+    }
+
+    /**
+     * Gets the domain objects for reads that cannot report a failed snapshot read.
+     */
+    private DefaultPlatformService unchecked() {
+        try {
+            return materialized();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the platform and drops the log records it covers.
+     * Mutations only wait while the platform is copied in memory, together with the
+     * LSN of the last operation logged; the copy is written and the log cut while they
+     * go on. Nothing is written while the platform is still the mapped snapshot, since
+     * nothing has changed since it was written.
+     * <p>
+     * If a snapshot started in the background failed since the last call, this call
+     * reports that failure instead, and the next one writes the snapshot.
+     *
+     * @throws IOException if the snapshot or the log cannot be written, or a snapshot
+     * written in the background failed
+     */
+    public void checkpoint() throws IOException {
+        IOException failed = checkpointFailure.getAndSet(null);
+        if (failed != null) {
+            throw new IOException("A background snapshot failed: " + failed.getMessage(), failed);
+        }
+        writeCheckpoint();
+    }
+
+    private void writeCheckpoint() throws IOException {
+        synchronized (checkpointLock) {
+            DefaultPlatformService current = delegate;
+            if (current == null) {
+                return;
+            }
+            OperationLog.Cut cut;
+            PlatformSnapshot.Image image;
+            cutLock.writeLock().lock();
+            try {
+                cut = log.cut();
+                image = PlatformSnapshot.capture(current.getContext());
+                sinceCheckpoint.set(0);
+            } finally {
+                cutLock.writeLock().unlock();
+            }
+            PlatformSnapshot.write(image, cut.lsn, snapshotFile);
+            log.truncate(cut);
+        }
+    }
+
+    /**
+     * Counts a logged operation and schedules a snapshot once enough have been
+     * logged.
+     */
+    private void logged() {
+        if (sinceCheckpoint.incrementAndGet() >= checkpointInterval && checkpointPending.compareAndSet(false, true)) {
+            checkpointer.execute(() -> {
+                try {
+                    writeCheckpoint();
+                } catch (IOException e) {
+                    checkpointFailure.compareAndSet(null, e);
+                } finally {
+                    checkpointPending.set(false);
+                }
+            });
+        }
+    }
+
+    private <T> T commit(Logged<T> logged) throws PersistenceException {
+        try {
+            log.sync(logged.lsn);
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+        return logged.result;
+    }
+
+    /**
+     * Waits for a running snapshot, writes a new one if anything was logged since,
+     * so that the next start can map it without replaying, and closes the log.
+     *
+     * @throws IOException if the snapshot or the log cannot be written, or a snapshot
+     * written in the background failed since the last call to {@link #checkpoint()}
+     */
+    @Override
+    public void close() throws IOException {
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failed = checkpointFailure.getAndSet(null);
+        try {
+            if (sinceCheckpoint.get() > 0) {
+                writeCheckpoint();
+            }
+        } catch (IOException e) {
+            if (failed != null) {
+                e.addSuppressed(failed);
+            }
+            throw e;
+        } finally {
+            log.close();
+        }
+        if (failed != null) {
+            throw new IOException("A background snapshot failed: " + failed.getMessage(), failed);
+        }
+    }
+
+    /**
+     * Applies the operations read back from the log, building the platform from the
+     * snapshot before the first one.
+     */
+    private final class Replay implements OperationLog.Handler {
+
+        private PlatformContext context() throws PersistenceException {
+            return objects().getContext();
+        }
+
+        @Override
+        public void addUser(int id, boolean admin, String userName, String email) throws SocialMediaException {
+            User user = admin ? new Admin(userName, email) : new RegularUser(userName, email);
+            context().getUsers().restore(user, id);
+        }
+
+        @Override
+        public void addPost(long id, long createdAt, int authorId, String content) throws SocialMediaException {
+            User author = user(authorId);
+            author.addPost(new Post(id, createdAt, content, author));
+        }
+
+        @Override
+        public void addComment(long postId, long id, int authorId, String content) throws SocialMediaException {
+            post(postId).addComment(new Comment(id, content, user(authorId)));
+        }
+
+        @Override
+        public void follow(int follower, int followee) throws SocialMediaException {
+            if (!context().getFollowGraph().follow(user(follower).getId(), user(followee).getId())) {
+                throw new SocialMediaException("Follow of " + followee + " by " + follower + " already exists.");
+            }
+            context().getFeed().onFollow(user(follower).getId(), user(followee).getId());
+        }
+
+        @Override
+        public void unfollow(int follower, int followee) throws SocialMediaException {
+            if (!context().getFollowGraph().unfollow(user(follower).getId(), user(followee).getId())) {
+                throw new SocialMediaException("Follow of " + followee + " by " + follower + " does not exist.");
+            }
+        }
+
+        @Override
+        public void deleteUser(int adminId, int userId) throws SocialMediaException {
+            if (!admin(adminId).deleteUser(user(userId), context().getUsers())) {
+                throw new UserNotFoundException();
+            }
+        }
+
+        @Override
+        public void deletePost(int adminId, long postId) throws SocialMediaException {
+            Post post = post(postId);
+            if (!admin(adminId).deletePost(post.getAuthor(), post)) {
+                throw new PostNotFoundException();
+            }
+        }
+
+        private User user(int id) throws SocialMediaException {
+            User user = context().getUsers().findById(id);
+            if (user == null) {
+                throw new UserNotFoundException();
+            }
+            return user;
+        }
+
+        private Admin admin(int id) throws SocialMediaException {
+            User user = user(id);
+            if (!(user instanceof Admin)) {
+                throw new PermissionDeniedException();
+            }
+            return (Admin) user;
+        }
+
+        private Post post(long id) throws SocialMediaException {
+            Post post = context().getFeed().findPost(id);
+            if (post == null) {
+                throw new PostNotFoundException();
+            }
+            return post;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Project;
+
+import java.util.Objects;
+
+/**
+ * The EmailAddress class is an email split into its local part, before the last '@',
+ * and its domain, after it. Addresses are immutable, so a user's address is replaced
+ * in one write and never read half changed.
+ * <p>
+ * The canonical form of an address (see {@link EmailValidator#normalize(String)}) keys
+ * the {@link UserRegistry}'s email index. An address already in canonical form is its
+ * own key and shares its strings with it.
+ *
+ * @author Asail
+ */
+final class EmailAddress {
+    private final String local;
+    private final String domain;
+
+    /**
+     * @param local the local part, or the whole email if it has no '@'
+     * @param domain the domain, or null if the email has no '@'
+     */
+    EmailAddress(String local, String domain) {
+        this.local = local;
+        this.domain = domain;
+    }
+
+    /**
+     * Splits an email at its last '@'.
+     *
+     * @param email the email, or null
+     * @return the address, or null if the email is null
+     */
+    static EmailAddress parse(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.lastIndexOf('@');
+        return at < 0 ? new EmailAddress(email, null) : new EmailAddress(email.substring(0, at), email.substring(at + 1));
+    }
+
+    /**
+     * @return the local part, or the whole email if it has no '@'
+     */
+    String getLocal() {
+        return local;
+    }
+
+    /**
+     * @return the domain, or null if the email has no '@'
+     */
+    String getDomain() {
+        return domain;
+    }
+
+    /**
+     * @param domain the domain to use instead, such as its copy in a pool
+     * @return this address with another copy of its domain
+     */
+    EmailAddress withDomain(String domain) {
+        return domain == this.domain ? this : new EmailAddress(local, domain);
+    }
+
+    /**
+     * @return true if the address is in canonical form
+     */
+    boolean isCanonical() {
+        return EmailValidator.normalize(local) == local && (domain == null || EmailValidator.normalize(domain) == domain);
+    }
+
+    /**
+     * @return the address in canonical form; this address if it already is
+     */
+    EmailAddress canonical() {
+        return isCanonical() ? this : parse(EmailValidator.normalize(toString()));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EmailAddress)) {
+            return false;
+        }
+        EmailAddress other = (EmailAddress) obj;
+        return local.equals(other.local) && Objects.equals(domain, other.domain);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * local.hashCode() + Objects.hashCode(domain);
+    }
+
+    @Override
+    public String toString() {
+        return domain == null ? local : local + '@' + domain;
+    }
+}
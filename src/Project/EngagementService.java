@@ -0,0 +1,127 @@
+package Project;
+
+import java.util.List;
+
+/**
+ * The EngagementService class keeps the leaderboards of a platform: the most followed
+ * users and the most commented posts, each in a bounded {@link Leaderboard}.
+ * <p>
+ * The counts themselves are kept where they change. Follower counts are the lengths
+ * of the lists in the {@link FollowGraph}, comment counts are kept by each post, and
+ * the posts, comments received and comments given of each user are kept on the user
+ * in {@link java.util.concurrent.atomic.LongAdder}s, so concurrent writers do not
+ * contend for one counter.
+ * <p>
+ * Posts are reported to their board as their comments are added and deleted. Follower
+ * counts change while the follow graph holds its stripes, so, as for the
+ * {@link UsernameIndex}, the graph only marks the followed user's id, and the marked
+ * users are reported to their board when the board is next read.
+ *
+ * @author Asail
+ */
+class EngagementService {
+    private final PlatformContext context;
+    private final ChangedIds followersChanged;
+    private final Leaderboard<User> mostFollowed;
+    private final Leaderboard<Post> mostCommented;
+
+    /**
+     * Creates the service with boards of the default capacity.
+     *
+     * @param context the context whose users and posts are ranked
+     */
+    public EngagementService(PlatformContext context) {
+        this(context, Leaderboard.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param context the context whose users and posts are ranked
+     * @param capacity the number of users and of posts kept on the boards
+     */
+    public EngagementService(PlatformContext context, int capacity) {
+        this.context = context;
+        this.followersChanged = new ChangedIds();
+        this.mostFollowed = new Leaderboard<>(capacity, this::followers, User::getId);
+        this.mostCommented = new Leaderboard<>(capacity, this::comments, Post::getId);
+    }
+
+    /**
+     * Notes that the number of followers of a user changed. Called by the follow graph
+     * for every edge it adds or removes, so it only sets a bit.
+     *
+     * @param id the id of the followed user
+     */
+    public void followersChanged(int id) {
+        followersChanged.add(id);
+    }
+
+    /**
+     * Reports a post whose number of comments changed.
+     *
+     * @param post the post
+     */
+    public void commentsChanged(Post post) {
+        mostCommented.changed(post);
+    }
+
+    /**
+     * Takes a removed user off the boards. Its posts leave the board of posts as their
+     * comments are hidden.
+     *
+     * @param user the user that was removed
+     */
+    public void onUserRemoved(User user) {
+        mostFollowed.remove(user);
+    }
+
+    /**
+     * Takes a deleted post off the board of posts.
+     *
+     * @param post the post that was deleted
+     */
+    public void onPostRemoved(Post post) {
+        mostCommented.remove(post);
+    }
+
+    /**
+     * Gets the users with the most followers.
+     *
+     * @param limit the maximum number of users
+     * @return the users, most followed first
+     */
+    public List<User> getMostFollowed(int limit) {
+        if (followersChanged.isPending()) {
+            UserRegistry users = context.getUsers();
+            followersChanged.drain(id -> {
+                User user = users.findById(id);
+                if (user != null) {
+                    mostFollowed.changed(user);
+                }
+            });
+        }
+        return mostFollowed.top(limit);
+    }
+
+    /**
+     * Gets the live posts with the most comments.
+     *
+     * @param limit the maximum number of posts
+     * @return the posts, most commented first
+     */
+    public List<Post> getMostCommented(int limit) {
+        return mostCommented.top(limit);
+    }
+
+    private long followers(User user) {
+        return user.context == context ? context.getFollowGraph().followersCount(user.getId()) : 0;
+    }
+
+    private long comments(Post post) {
+        int count = post.getCommentCount();
+        User author = post.getAuthor();
+        if (count == 0 || author == null || author.context != context || author.posts.get(post.getId()) != post) {
+            return 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package Project;
+
+import java.util.Arrays;
+
+/**
+ * The EntityLocks class orders the changes that concern the same users. A change is
+ * applied and recorded, in the event stream or the operation log, while holding the
+ * locks of the users it names, so two changes naming a common user are recorded in
+ * the order they were applied: a follow and an unfollow of the same edge, or a
+ * comment and the deletion of its post's author.
+ * <p>
+ * Users are mapped onto a fixed array of stripes by identity, so a user is ordered the
+ * same way before and after it is registered. A change naming two users takes both
+ * stripes in index order. Changes naming different users rarely share a stripe and run
+ * in parallel; the domain stores below still do their own locking. Registering or
+ * removing a user also takes the stripes of its username and email, so that a name or
+ * email taken over from a removed user is recorded after the removal.
+ *
+ * @author Asail
+ */
+final class EntityLocks {
+    private static final int STRIPES = 1024;
+
+    private final Object[] stripes;
+
+    EntityLocks() {
+        this.stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * A change to apply and record under the locks of the users it names.
+     *
+     * @param <T> the result of the change
+     */
+    @FunctionalInterface
+    interface Change<T> {
+        T apply() throws SocialMediaException;
+    }
+
+    /**
+     * Applies a change naming one user.
+     *
+     * @param user the user
+     * @param change the change
+     * @return the result of the change
+     * @throws SocialMediaException if the change fails
+     */
+    <T> T apply(User user, Change<T> change) throws SocialMediaException {
+        synchronized (stripes[stripeOf(user)]) {
+            return change.apply();
+        }
+    }
+
+    /**
+     * Applies a change naming two users.
+     *
+     * @param user one user
+     * @param other the other user
+     * @param change the change
+     * @return the result of the change
+     * @throws SocialMediaException if the change fails
+     */
+    <T> T apply(User user, User other, Change<T> change) throws SocialMediaException {
+        int a = stripeOf(user);
+        int b = stripeOf(other);
+        synchronized (stripes[Math.min(a, b)]) {
+            synchronized (stripes[Math.max(a, b)]) {
+                return change.apply();
+            }
+        }
+    }
+
+    /**
+     * Applies a change registering or removing a user, under the locks of the users it
+     * names and those of the user's username and email.
+     *
+     * @param admin the admin removing the user, or null for a registration
+     * @param user the user registered or removed
+     * @param change the change
+     * @return the result of the change
+     * @throws SocialMediaException if the change fails
+     */
+    <T> T applyMembership(User admin, User user, Change<T> change) throws SocialMediaException {
+        int[] order = {
+            stripeOf(user), spread(user.getUserName().hashCode()),
+            spread(EmailValidator.normalize(user.getEmail()).hashCode()),
+            admin == null ? stripeOf(user) : stripeOf(admin)
+        };
+        Arrays.sort(order);
+        return apply(order, 0, change);
+    }
+
+    /**
+     * Takes the stripes from a position on, in index order, skipping repeated ones,
+     * and applies the change once all are held.
+     */
+    private <T> T apply(int[] order, int next, Change<T> change) throws SocialMediaException {
+        if (next == order.length) {
+            return change.apply();
+        }
+        if (next > 0 && order[next] == order[next - 1]) {
+            return apply(order, next + 1, change);
+        }
+        synchronized (stripes[order[next]]) {
+            return apply(order, next + 1, change);
+        }
+    }
+
+    private static int stripeOf(User user) {
+        return spread(System.identityHashCode(user));
+    }
+
+    private static int spread(int hash) {
+        return (hash * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(STRIPES));
+    }
+}
@@ -0,0 +1,369 @@
+package Project;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventBus class is the stream of changes made to one platform. Every successful
+ * mutation publishes a {@link PlatformEvent}, and every subscriber receives all events
+ * published after it subscribed, in the order they were published, on a thread of its
+ * own. Indexes, caches and audit logs can follow the platform this way without adding
+ * work to the thread making the change.
+ * <p>
+ * Events travel through a ring of pre-allocated slots whose size is a power of two,
+ * as in the LMAX Disruptor. A producer claims the next sequence number with one atomic
+ * increment, fills the slot in place and marks it published by storing the sequence's
+ * round of the ring in an array of flags, so producers never lock and publishing
+ * allocates nothing. A subscriber keeps the sequence of the last event it handled. It
+ * reads every published event up to the first gap in one batch, and only then
+ * advances its sequence, so a busy subscriber pays for one volatile write per batch
+ * rather than per event.
+ * <p>
+ * The ring is the backpressure: a producer may not overwrite a slot that a subscriber
+ * has not read yet, so when the slowest subscriber is a full ring behind, producers
+ * wait for it. The smallest subscriber sequence is cached and only read again when a
+ * producer reaches it. With no subscribers, publishing returns at once.
+ * <p>
+ * Writers publish while holding the {@link EntityLocks} of the users a change names, so
+ * subscribers must neither publish nor change the platform from their own thread, and
+ * should not block for long, since a full ring holds up every writer of the platform.
+ *
+ * @author Asail
+ */
+final class EventBus {
+    /** Default number of slots in the ring. */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+    /** Idle rounds spent spinning before yielding. */
+    private static final int SPIN_TRIES = 100;
+    /** Idle rounds spent yielding before parking. */
+    private static final int YIELD_TRIES = 100;
+    /** Longest a waiting thread parks before looking again. */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final PlatformEvent[] ring;
+    private final int mask;
+    private final int shift;
+    /** For each slot, the round of the ring in which it was last published. */
+    private final AtomicIntegerArray published;
+    private final AtomicLong next;
+    private final Object subscribeLock;
+    private volatile Gate gate;
+
+    /**
+     * Creates a bus with the default capacity.
+     */
+    EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of slots in the ring, a power of two; producers wait
+     * when the slowest subscriber is this many events behind
+     */
+    EventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        }
+        this.ring = new PlatformEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new PlatformEvent();
+        }
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.next = new AtomicLong();
+        this.subscribeLock = new Object();
+        this.gate = new Gate(new Subscription[0]);
+    }
+
+    /**
+     * Publishes an event to every subscriber, waiting while the slowest one is a full
+     * ring behind.
+     *
+     * @param type the kind of change
+     * @param userName the username of the user making the change
+     * @param otherUserName the username of the other user involved, or null
+     * @param postId the id of the post involved, or -1
+     * @param commentId the id of the comment added, or -1
+     */
+    void publish(PlatformEvent.Type type, String userName, String otherUserName, long postId, long commentId) {
+        if (gate.subscriptions.length == 0) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        awaitCapacity(sequence);
+        int index = (int) sequence & mask;
+        ring[index].set(sequence, type, userName, otherUserName, postId, commentId);
+        published.lazySet(index, round(sequence));
+    }
+
+    /**
+     * Waits until no subscriber still needs the event a sequence replaces. The gate is
+     * read after the sequence was claimed, so a subscriber that joined before the
+     * claim is always waited for.
+     */
+    private void awaitCapacity(long sequence) {
+        long wrap = sequence - ring.length;
+        if (wrap <= gate.cachedMinimum) {
+            return;
+        }
+        int tries = 0;
+        while (wrap > gate.minimum()) {
+            tries = idle(tries);
+        }
+    }
+
+    /**
+     * Subscribes to the events published from now on. The subscriber is called on a
+     * new daemon thread until the subscription is closed. Its failures are only
+     * recorded on the subscription.
+     *
+     * @param name the name of the subscriber, used for its thread
+     * @param subscriber the subscriber
+     * @return the subscription
+     */
+    Subscription subscribe(String name, Subscriber subscriber) {
+        return subscribe(name, subscriber, (sequence, event, failure) -> { });
+    }
+
+    /**
+     * Subscribes to the events published from now on. The subscriber is called on a
+     * new daemon thread until the subscription is closed, and every exception it
+     * throws is recorded on the subscription and passed to the failure handler on
+     * the same thread.
+     *
+     * @param name the name of the subscriber, used for its thread
+     * @param subscriber the subscriber
+     * @param failureHandler told about each event the subscriber failed on
+     * @return the subscription
+     */
+    Subscription subscribe(String name, Subscriber subscriber, FailureHandler failureHandler) {
+        Subscription subscription = new Subscription(name, subscriber, failureHandler);
+        synchronized (subscribeLock) {
+            // Holds producers back from the current position until the subscription
+            // is in the gate, then starts after every sequence claimed so far.
+            subscription.sequence.set(next.get() - 1);
+            Subscription[] current = gate.subscriptions;
+            Subscription[] added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = subscription;
+            gate = new Gate(added);
+            subscription.sequence.set(next.get() - 1);
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        synchronized (subscribeLock) {
+            Subscription[] current = gate.subscriptions;
+            Subscription[] remaining = new Subscription[current.length];
+            int count = 0;
+            for (Subscription other : current) {
+                if (other != subscription) {
+                    remaining[count++] = other;
+                }
+            }
+            if (count < current.length) {
+                gate = new Gate(Arrays.copyOf(remaining, count));
+            }
+        }
+    }
+
+    /**
+     * @return the sequence of the last event claimed by a producer, or -1 if none was
+     */
+    long getCursor() {
+        return next.get() - 1;
+    }
+
+    private int round(long sequence) {
+        return (int) (sequence >>> shift);
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == round(sequence);
+    }
+
+    /**
+     * Spins, then yields, then parks for a growing while, and returns the number of
+     * idle rounds so far.
+     */
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            int parked = Math.min(tries - SPIN_TRIES - YIELD_TRIES, 20);
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1L << parked));
+        }
+        return tries + 1;
+    }
+
+    /**
+     * The subscriptions producers have to wait for, with the smallest of their
+     * sequences as last read. Sequences only grow, so the cached value is never
+     * ahead of the real one.
+     */
+    private static final class Gate {
+        final Subscription[] subscriptions;
+        volatile long cachedMinimum;
+
+        Gate(Subscription[] subscriptions) {
+            this.subscriptions = subscriptions;
+            minimum();
+        }
+
+        long minimum() {
+            long minimum = Long.MAX_VALUE;
+            for (Subscription subscription : subscriptions) {
+                minimum = Math.min(minimum, subscription.sequence.get());
+            }
+            cachedMinimum = minimum;
+            return minimum;
+        }
+    }
+
+    /**
+     * The Subscriber interface receives the events of a bus.
+     */
+    @FunctionalInterface
+    interface Subscriber {
+
+        /**
+         * Handles one event. Exceptions are recorded on the subscription, passed to
+         * its {@link FailureHandler}, and the event is skipped.
+         *
+         * @param event the event; only valid until the method returns
+         * @param endOfBatch true if it is the last event of the batch being handled,
+         * after which the subscriber may wait for more
+         */
+        void onEvent(PlatformEvent event, boolean endOfBatch);
+    }
+
+    /**
+     * The FailureHandler interface is told about the events a subscriber failed on.
+     */
+    @FunctionalInterface
+    interface FailureHandler {
+
+        /**
+         * Handles the failure of a subscriber. It is called on the subscriber's thread
+         * before the next event is delivered; exceptions it throws are recorded on the
+         * subscription along with the failure.
+         *
+         * @param sequence the sequence of the event
+         * @param event the event; only valid until the method returns
+         * @param failure the exception the subscriber threw
+         */
+        void onFailure(long sequence, PlatformEvent event, RuntimeException failure);
+    }
+
+    /**
+     * The Subscription class is one subscriber of the bus with the thread feeding it.
+     */
+    final class Subscription implements AutoCloseable {
+        private final String name;
+        private final Subscriber subscriber;
+        private final FailureHandler failureHandler;
+        private final AtomicLong sequence;
+        /** Written by the subscriber's thread only. */
+        private volatile long failureCount;
+        private volatile RuntimeException lastFailure;
+        private final Thread thread;
+        private volatile boolean running;
+
+        private Subscription(String name, Subscriber subscriber, FailureHandler failureHandler) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.failureHandler = failureHandler;
+            this.sequence = new AtomicLong(-1);
+            this.running = true;
+            this.thread = new Thread(this::run, "events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            long first = sequence.get() + 1;
+            int tries = 0;
+            while (running) {
+                long last = first - 1;
+                while (isPublished(last + 1)) {
+                    last++;
+                }
+                if (last < first) {
+                    tries = idle(tries);
+                    continue;
+                }
+                tries = 0;
+                for (long s = first; s <= last; s++) {
+                    PlatformEvent event = ring[(int) s & mask];
+                    try {
+                        subscriber.onEvent(event, s == last);
+                    } catch (RuntimeException e) {
+                        failed(s, event, e);
+                    }
+                }
+                sequence.set(last);
+                first = last + 1;
+            }
+        }
+
+        private void failed(long s, PlatformEvent event, RuntimeException failure) {
+            try {
+                failureHandler.onFailure(s, event, failure);
+            } catch (RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+            lastFailure = failure;
+            failureCount++;
+        }
+
+        /**
+         * @return the name of the subscriber
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the sequence of the last event handled, or of the last one published
+         * before the subscription started
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * @return the number of events the subscriber threw on so far
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return the exception the subscriber threw last, with any thrown by the
+         * failure handler suppressed in it, or null if it never failed
+         */
+        public RuntimeException getLastFailure() {
+            return lastFailure;
+        }
+
+        /**
+         * Stops delivering events and lets producers run past the subscriber. Events
+         * being handled are finished first.
+         */
+        @Override
+        public void close() {
+            running = false;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+        }
+    }
+}
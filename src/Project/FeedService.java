@@ -0,0 +1,375 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The FeedService class builds each user's timeline of the latest posts from the
+ * users they follow.
+ * When a post is added, its id is pushed into a bounded inbox of every follower of
+ * the author (fan-out on write). Authors with more followers than the fan-out
+ * threshold are skipped at write time instead; their posts are merged into the feed
+ * when it is read (fan-out on read), using a k-way merge by post id. An author stays
+ * merged on read once a post of theirs was skipped, even after their follower count
+ * drops below the threshold again, so the skipped posts are still found.
+ * A follow only notes the new followee in the follower's inbox; the followee's latest
+ * posts are pulled into the inbox the next time the feed is read, so a feed holds the
+ * same posts whether its follows were made live or restored from a snapshot.
+ * The service also keeps the platform-wide index from post id to live post, which
+ * finds a post for comments and deletions in constant time.
+ * <p>
+ * The service is safe for concurrent use: each inbox has its own lock and keeps its
+ * ids in order however the pushes of concurrent posts interleave, and a feed is built
+ * from copies of the inboxes taken when it is read.
+ *
+ * @author Asail
+ */
+class FeedService {
+    /** Default number of post ids kept in each inbox. */
+    public static final int DEFAULT_INBOX_CAPACITY = 200;
+    /** Default follower count above which an author's posts are not fanned out. */
+    public static final int DEFAULT_FANOUT_THRESHOLD = 10_000;
+
+    private final PlatformContext context;
+    private final int inboxCapacity;
+    private volatile int fanOutThreshold;
+    private final Map<Integer, Inbox> inboxes;
+    /** Authors some of whose posts were not fanned out. */
+    private final Set<Integer> mergedOnRead;
+    private final Map<Long, Post> posts;
+
+    /**
+     * Creates a feed service with the default inbox capacity and fan-out threshold.
+     *
+     * @param context the context whose users and follow graph feed the timelines
+     */
+    public FeedService(PlatformContext context) {
+        this(context, DEFAULT_INBOX_CAPACITY, DEFAULT_FANOUT_THRESHOLD);
+    }
+
+    /**
+     * Creates a feed service.
+     *
+     * @param context the context whose users and follow graph feed the timelines
+     * @param inboxCapacity the number of post ids kept in each inbox
+     * @param fanOutThreshold the follower count above which posts are merged on read
+     */
+    public FeedService(PlatformContext context, int inboxCapacity, int fanOutThreshold) {
+        if (inboxCapacity <= 0) {
+            throw new IllegalArgumentException("Inbox capacity must be positive.");
+        }
+        this.context = context;
+        this.inboxCapacity = inboxCapacity;
+        this.fanOutThreshold = fanOutThreshold;
+        this.inboxes = new ConcurrentHashMap<>();
+        this.mergedOnRead = ConcurrentHashMap.newKeySet();
+        this.posts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the follower count above which posts are merged on read
+     */
+    public int getFanOutThreshold() {
+        return fanOutThreshold;
+    }
+
+    /**
+     * Sets the follower count above which posts are merged on read instead of being
+     * pushed to every follower. Posts already pushed stay in the inboxes, and authors
+     * already merged on read stay so.
+     *
+     * @param fanOutThreshold the new threshold
+     */
+    public void setFanOutThreshold(int fanOutThreshold) {
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    /**
+     * Records a new post and pushes its id to the followers of its author, unless the
+     * author has more followers than the fan-out threshold.
+     *
+     * @param post the post that was added
+     */
+    public void onPostAdded(Post post) {
+        posts.put(post.getId(), post);
+        fanOut(post);
+    }
+
+    /**
+     * Pushes the id of a live post to the current followers of its author, unless the
+     * author has more followers than the fan-out threshold. Followers whose inbox holds
+     * the id already are skipped, so a post can be fanned out again after its author
+     * gained followers, as the {@link BulkImporter} does once all follows are added.
+     *
+     * @param post the post
+     */
+    void fanOut(Post post) {
+        User author = post.getAuthor();
+        if (author == null || author.context != context) {
+            return;
+        }
+        if (context.getFollowGraph().followersCount(author.id) > fanOutThreshold) {
+            mergedOnRead.add(author.id);
+            return;
+        }
+        for (PrimitiveIterator.OfInt it = context.getFollowGraph().followers(author.id); it.hasNext();) {
+            inboxes.computeIfAbsent(it.nextInt(), k -> new Inbox(inboxCapacity)).push(post.getId());
+        }
+    }
+
+    /**
+     * Notes that a user followed another, so the followee's earlier posts are pulled
+     * into the follower's inbox when its feed is next read. Takes constant time.
+     *
+     * @param follower the id of the follower
+     * @param followee the id of the user followed
+     */
+    public void onFollow(int follower, int followee) {
+        inboxes.computeIfAbsent(follower, k -> new Inbox(inboxCapacity)).followed(followee);
+    }
+
+    /**
+     * Finds a live post by id.
+     *
+     * @param id the post id
+     * @return the post, or null if it does not exist or was deleted
+     */
+    public Post findPost(long id) {
+        return posts.get(id);
+    }
+
+    /**
+     * Forgets a deleted post so it no longer appears in any feed.
+     *
+     * @param post the post that was removed
+     */
+    public void onPostRemoved(Post post) {
+        posts.remove(post.getId());
+    }
+
+    /**
+     * Drops the inbox and the posts of a user removed from the platform.
+     *
+     * @param user the user that was removed
+     */
+    public void onUserRemoved(User user) {
+        inboxes.remove(user.id);
+        mergedOnRead.remove(user.id);
+        for (Post post : user.getPosts()) {
+            posts.remove(post.getId());
+        }
+    }
+
+    /**
+     * Gets the latest posts from the users someone follows, newest first.
+     * Posts of users that have since been unfollowed are left out.
+     *
+     * @param reader the user whose feed is requested
+     * @param limit the maximum number of posts to return
+     * @return the posts of the feed
+     */
+    public List<Post> getFeed(User reader, int limit) {
+        List<Post> feed = new ArrayList<>();
+        if (reader == null || reader.context != context || limit <= 0) {
+            return feed;
+        }
+        FollowGraph graph = context.getFollowGraph();
+        PriorityQueue<Source> merge = new PriorityQueue<>();
+        Inbox inbox = inboxes.get(reader.id);
+        if (inbox != null) {
+            pullFollowed(reader, inbox);
+            new InboxSource(inbox.newestFirst()).offerTo(merge);
+        }
+        for (PrimitiveIterator.OfInt it = graph.following(reader.id); it.hasNext();) {
+            int followee = it.nextInt();
+            User author = context.getUsers().findById(followee);
+            if (author != null && mergedOnRead.contains(followee)) {
+                new AuthorSource(author.getPostsNewestFirst().iterator()).offerTo(merge);
+            }
+        }
+        long lastId = -1;
+        while (feed.size() < limit && !merge.isEmpty()) {
+            Source source = merge.poll();
+            Post post = source.current;
+            source.offerTo(merge);
+            if (post.getId() == lastId) {
+                continue;
+            }
+            lastId = post.getId();
+            User author = post.getAuthor();
+            if (author != null && author.context == context && graph.isFollowing(reader.id, author.id)) {
+                feed.add(post);
+            }
+        }
+        return feed;
+    }
+
+    /**
+     * Pushes the latest posts of the users a reader followed since its feed was last
+     * read into its inbox, newest first, until one is too old to be kept.
+     */
+    private void pullFollowed(User reader, Inbox inbox) {
+        for (int followee : inbox.takeFollowed()) {
+            User author = context.getUsers().findById(followee);
+            if (author == null || mergedOnRead.contains(followee)
+                    || !context.getFollowGraph().isFollowing(reader.id, followee)) {
+                continue;
+            }
+            for (Post post : author.getPostsNewestFirst()) {
+                if (!inbox.push(post.getId())) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A ring buffer holding the highest post ids pushed to one user, oldest first.
+     * Posts are mostly pushed in id order, so an id usually goes in at the newest end;
+     * one pushed late moves the newer ids by one.
+     */
+    private static final class Inbox {
+        private static final int[] NONE = new int[0];
+
+        private final long[] ids;
+        private int first;
+        private int count;
+        /** Users followed since the feed was last read. */
+        private int[] followed = NONE;
+        private int followedCount;
+
+        Inbox(int capacity) {
+            this.ids = new long[capacity];
+        }
+
+        /**
+         * @return false if the inbox is full of newer ids, so the id was not kept
+         */
+        synchronized boolean push(long id) {
+            int slot = count;
+            while (slot > 0 && get(slot - 1) > id) {
+                slot--;
+            }
+            if (slot > 0 && get(slot - 1) == id) {
+                return true;
+            }
+            if (count == ids.length) {
+                if (slot == 0) {
+                    return false;
+                }
+                first = (first + 1) % ids.length;
+                count--;
+                slot--;
+            }
+            for (int i = count; i > slot; i--) {
+                set(i, get(i - 1));
+            }
+            set(slot, id);
+            count++;
+            return true;
+        }
+
+        synchronized void followed(int followee) {
+            if (followedCount == followed.length) {
+                followed = Arrays.copyOf(followed, Math.max(4, followedCount * 2));
+            }
+            followed[followedCount++] = followee;
+        }
+
+        synchronized int[] takeFollowed() {
+            if (followedCount == 0) {
+                return NONE;
+            }
+            int[] taken = Arrays.copyOf(followed, followedCount);
+            followed = NONE;
+            followedCount = 0;
+            return taken;
+        }
+
+        synchronized long[] newestFirst() {
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = get(count - 1 - i);
+            }
+            return copy;
+        }
+
+        private long get(int position) {
+            return ids[(first + position) % ids.length];
+        }
+
+        private void set(int position, long id) {
+            ids[(first + position) % ids.length] = id;
+        }
+    }
+
+    /**
+     * One sorted input of the k-way merge, producing posts newest first.
+     */
+    private abstract static class Source implements Comparable<Source> {
+        Post current;
+
+        /**
+         * Moves to the next post and, if there is one, puts this source back into the queue.
+         */
+        void offerTo(PriorityQueue<Source> merge) {
+            current = advance();
+            if (current != null) {
+                merge.add(this);
+            }
+        }
+
+        abstract Post advance();
+
+        @Override
+        public int compareTo(Source other) {
+            return Long.compare(other.current.getId(), current.getId());
+        }
+    }
+
+    private final class InboxSource extends Source {
+        private final long[] ids;
+        private int read;
+
+        InboxSource(long[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        Post advance() {
+            while (read < ids.length) {
+                Post post = posts.get(ids[read++]);
+                if (post != null) {
+                    return post;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final class AuthorSource extends Source {
+        private final Iterator<Post> authorPosts;
+
+        AuthorSource(Iterator<Post> authorPosts) {
+            this.authorPosts = authorPosts;
+        }
+
+        @Override
+        Post advance() {
+            while (authorPosts.hasNext()) {
+                Post post = authorPosts.next();
+                if (posts.containsKey(post.getId())) {
+                    return post;
+                }
+            }
+            return null;
+        }
+    }
+}
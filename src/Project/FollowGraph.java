@@ -0,0 +1,473 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The FollowGraph class stores who follows whom, keyed by the dense id each user
+ * receives when it is registered. Both directions of every edge are kept in
+ * {@link AdjacencyList}s of primitive ids sorted by id, indexed by user id, so an edge
+ * costs four bytes in each direction plus the room the lists keep for growth.
+ * Membership checks take logarithmic time. Following and unfollowing also shift the
+ * ids after the edge in one block of a list, which holds at most a thousand or so, so
+ * their cost does not grow with the number of followers. Both lists of a user can also be read a page at a time,
+ * in id order, which is the order the users registered in, with cursors that stay
+ * valid while the lists change.
+ * <p>
+ * The graph is safe for concurrent use. Every user id maps to one of a fixed set of
+ * lock stripes; a follow or unfollow holds the stripes of both users, always taken in
+ * stripe index order, while it updates both directions, so the two sides of an edge
+ * always agree.
+ * Counts and iteration do not lock at all.
+ * <p>
+ * Whenever the followers of a user change, the graph passes the user's id to a
+ * listener, such as the {@link UsernameIndex} that ranks users by follower count, and
+ * whenever the users someone follows change, it passes that user's id to a second
+ * listener, such as the {@link RecommendationService}.
+ *
+ * @author Asail
+ */
+class FollowGraph {
+    private static final int STRIPES = 1024;
+
+    private final Object[] stripes;
+    private final ListTable following;
+    private final ListTable followers;
+    private final Set<Integer> removed;
+    private final IntConsumer followersChanged;
+    private final IntConsumer followingChanged;
+
+    /**
+     * Creates an empty follow graph.
+     */
+    public FollowGraph() {
+        this(id -> { }, id -> { });
+    }
+
+    /**
+     * Creates an empty follow graph that reports changes of follower counts.
+     *
+     * @param followersChanged called with the id of a user whenever a follower is added
+     * or removed; it runs while stripes are held, so it must be quick and must not lock
+     * @param followingChanged called with the id of a user whenever it follows or
+     * unfollows someone, under the same rules
+     */
+    public FollowGraph(IntConsumer followersChanged, IntConsumer followingChanged) {
+        this.followersChanged = followersChanged;
+        this.followingChanged = followingChanged;
+        this.stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.following = new ListTable();
+        this.followers = new ListTable();
+        this.removed = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Adds the edge "follower follows followee".
+     *
+     * @param follower the id of the following user
+     * @param followee the id of the followed user
+     * @return true if the edge was added; false if it already existed or either user
+     * has been removed
+     */
+    public boolean follow(int follower, int followee) {
+        Object first = stripes[Math.min(stripeOf(follower), stripeOf(followee))];
+        Object second = stripes[Math.max(stripeOf(follower), stripeOf(followee))];
+        synchronized (first) {
+            synchronized (second) {
+                if (removed.contains(follower) || removed.contains(followee)) {
+                    return false;
+                }
+                if (!following.getOrCreate(follower).add(followee)) {
+                    return false;
+                }
+                followers.getOrCreate(followee).add(follower);
+                followersChanged.accept(followee);
+                followingChanged.accept(follower);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds many edges at once, as a bulk import does. Instead of taking two stripes per
+     * edge, the whole batch is added while holding every stripe, so both sides of each
+     * edge still agree for readers; concurrent follows and unfollows wait for the batch.
+     *
+     * @param followerIds the ids of the following users
+     * @param followeeIds the ids of the followed users, matched to followers by position
+     * @param count the number of edges to add
+     * @return the number of edges added; existing edges, self-follows and edges of
+     * removed users are skipped
+     */
+    public int followAll(int[] followerIds, int[] followeeIds, int count) {
+        return lockAll(0, followerIds, followeeIds, count);
+    }
+
+    private int lockAll(int stripe, int[] followerIds, int[] followeeIds, int count) {
+        if (stripe == STRIPES) {
+            return addAll(followerIds, followeeIds, count);
+        }
+        synchronized (stripes[stripe]) {
+            return lockAll(stripe + 1, followerIds, followeeIds, count);
+        }
+    }
+
+    private int addAll(int[] followerIds, int[] followeeIds, int count) {
+        boolean checkRemoved = !removed.isEmpty();
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            int follower = followerIds[i];
+            int followee = followeeIds[i];
+            if (follower == followee || follower < 0 || followee < 0) {
+                continue;
+            }
+            if (checkRemoved && (removed.contains(follower) || removed.contains(followee))) {
+                continue;
+            }
+            if (following.getOrCreate(follower).add(followee)) {
+                followers.getOrCreate(followee).add(follower);
+                followersChanged.accept(followee);
+                followingChanged.accept(follower);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes the edge "follower follows followee".
+     *
+     * @param follower the id of the following user
+     * @param followee the id of the followed user
+     * @return true if the edge was removed; false if it did not exist
+     */
+    public boolean unfollow(int follower, int followee) {
+        Object first = stripes[Math.min(stripeOf(follower), stripeOf(followee))];
+        Object second = stripes[Math.max(stripeOf(follower), stripeOf(followee))];
+        synchronized (first) {
+            synchronized (second) {
+                AdjacencyList out = following.get(follower);
+                if (out == null || !out.remove(followee)) {
+                    return false;
+                }
+                followers.get(followee).remove(follower);
+                followersChanged.accept(followee);
+                followingChanged.accept(follower);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether one user follows another, searching whichever side is smaller.
+     * Needs no lock.
+     *
+     * @param follower the id of the following user
+     * @param followee the id of the followed user
+     * @return true if the edge exists; false otherwise
+     */
+    public boolean isFollowing(int follower, int followee) {
+        AdjacencyList out = following.get(follower);
+        AdjacencyList in = followers.get(followee);
+        if (out == null || in == null) {
+            return false;
+        }
+        return out.size() <= in.size() ? out.contains(followee) : in.contains(follower);
+    }
+
+    /**
+     * @param user the user id
+     * @return the number of users the user follows
+     */
+    public int followingCount(int user) {
+        AdjacencyList out = following.get(user);
+        return out == null ? 0 : out.size();
+    }
+
+    /**
+     * @param user the user id
+     * @return the number of users following the user
+     */
+    public int followersCount(int user) {
+        AdjacencyList in = followers.get(user);
+        return in == null ? 0 : in.size();
+    }
+
+    /**
+     * Gets the ids of the users a user follows, in increasing order.
+     *
+     * @param user the user id
+     * @return an iterator over the followee ids
+     */
+    public PrimitiveIterator.OfInt following(int user) {
+        return iterator(following.get(user));
+    }
+
+    /**
+     * Gets the ids of the users following a user, in increasing order.
+     *
+     * @param user the user id
+     * @return an iterator over the follower ids
+     */
+    public PrimitiveIterator.OfInt followers(int user) {
+        return iterator(followers.get(user));
+    }
+
+    /**
+     * Copies the ids of the users a user follows, in increasing order, without locking.
+     *
+     * @param user the user id
+     * @return the followee ids
+     */
+    public int[] followingIds(int user) {
+        AdjacencyList out = following.get(user);
+        return out == null ? new int[0] : out.toArray();
+    }
+
+    /**
+     * Copies the ids of the users following a user, in increasing order, without
+     * locking.
+     *
+     * @param user the user id
+     * @return the follower ids
+     */
+    public int[] followerIds(int user) {
+        AdjacencyList in = followers.get(user);
+        return in == null ? new int[0] : in.toArray();
+    }
+
+    /**
+     * Copies up to a number of the ids of the users following a user into part of an
+     * array, in increasing order, without locking.
+     *
+     * @param user the user id
+     * @param into the array receiving the follower ids
+     * @param offset the first position written
+     * @param limit the maximum number of ids
+     * @return the number of ids written
+     */
+    public int copyFollowers(int user, int[] into, int offset, int limit) {
+        AdjacencyList in = followers.get(user);
+        return in == null ? 0 : in.copyInto(into, offset, limit);
+    }
+
+    /**
+     * Picks up to a number of the users a user follows, spread evenly over the list
+     * from a random place, without locking. Users following no more than the limit
+     * are copied whole.
+     *
+     * @param user the user id
+     * @param into the array receiving the followee ids, with room for the limit
+     * @param limit the maximum number of ids
+     * @return the number of ids written
+     */
+    public int sampleFollowing(int user, int[] into, int limit) {
+        AdjacencyList out = following.get(user);
+        return out == null ? 0 : out.sample(into, limit, ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Reads a page of the users a user follows, in increasing order.
+     *
+     * @param user the user id
+     * @param cursor 0 for the first page, or the cursor returned with the previous page
+     * @param limit the maximum number of ids
+     * @return the page of followee ids
+     */
+    public Page<Integer> following(int user, int cursor, int limit) {
+        return page(following.get(user), cursor, limit);
+    }
+
+    /**
+     * Reads a page of the users following a user, in increasing order. Only the ids on
+     * the page are copied, so paging through millions of followers never copies the
+     * whole list.
+     *
+     * @param user the user id
+     * @param cursor 0 for the first page, or the cursor returned with the previous page
+     * @param limit the maximum number of ids
+     * @return the page of follower ids
+     */
+    public Page<Integer> followers(int user, int cursor, int limit) {
+        return page(followers.get(user), cursor, limit);
+    }
+
+    private Page<Integer> page(AdjacencyList list, int cursor, int limit) {
+        if (list == null || cursor < 0 || limit < 1) {
+            return new Page<>(new ArrayList<>(), Page.END);
+        }
+        return list.page(cursor, limit);
+    }
+
+    /**
+     * Restores the edges of a user saved in a snapshot. The snapshot holds every edge
+     * in both directions, so each side is restored once, from the user it belongs to.
+     * No stripes are taken: the graph must not be in use yet.
+     *
+     * @param user the user id
+     * @param followeeIds the ids of the users it follows, in any order
+     * @param followerIds the ids of the users following it, in any order
+     */
+    void restore(int user, int[] followeeIds, int[] followerIds) {
+        if (followeeIds.length > 0) {
+            following.getOrCreate(user).addAll(followeeIds);
+        }
+        if (followerIds.length > 0) {
+            followers.getOrCreate(user).addAll(followerIds);
+            followersChanged.accept(user);
+        }
+    }
+
+    /**
+     * Estimates the bytes the graph takes on a 64-bit JVM with compressed references:
+     * its adjacency lists and the tables holding them. Walks every list, so it is
+     * meant for benchmarks and diagnostics.
+     *
+     * @return the estimated size in bytes
+     */
+    long footprint() {
+        return following.footprint() + followers.footprint();
+    }
+
+    /**
+     * Removes every edge that starts or ends at a user and refuses new edges for it.
+     * Each neighbour list is touched once, so the cost is proportional to the user's
+     * degree.
+     *
+     * @param user the id of the user being removed
+     */
+    public void removeUser(int user) {
+        int[] out;
+        int[] in;
+        synchronized (stripe(user)) {
+            removed.add(user);
+            AdjacencyList outList = following.get(user);
+            AdjacencyList inList = followers.get(user);
+            out = outList == null ? new int[0] : outList.toArray();
+            in = inList == null ? new int[0] : inList.toArray();
+        }
+        for (int followee : out) {
+            unfollow(user, followee);
+        }
+        for (int follower : in) {
+            unfollow(follower, user);
+        }
+        synchronized (stripe(user)) {
+            following.clear(user);
+            followers.clear(user);
+        }
+    }
+
+    private Object stripe(int id) {
+        return stripes[stripeOf(id)];
+    }
+
+    private static int stripeOf(int id) {
+        return id & (STRIPES - 1);
+    }
+
+    private static PrimitiveIterator.OfInt iterator(AdjacencyList list) {
+        return list == null ? IntStream.empty().iterator() : list.iterator();
+    }
+
+    /**
+     * A table of adjacency lists indexed by user id, split into fixed-size pages.
+     * Pages never move once created, so growing the table never loses a concurrent
+     * write; only the small page directory is copied.
+     */
+    private static final class ListTable {
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        private volatile AtomicReferenceArray<AtomicReferenceArray<AdjacencyList>> pages;
+
+        ListTable() {
+            this.pages = new AtomicReferenceArray<>(16);
+        }
+
+        AdjacencyList get(int id) {
+            if (id < 0) {
+                return null;
+            }
+            AtomicReferenceArray<AtomicReferenceArray<AdjacencyList>> directory = pages;
+            int page = id >>> PAGE_BITS;
+            if (page >= directory.length()) {
+                return null;
+            }
+            AtomicReferenceArray<AdjacencyList> slots = directory.get(page);
+            return slots == null ? null : slots.get(id & (PAGE_SIZE - 1));
+        }
+
+        /**
+         * Gets the list of a user, creating it if needed. The caller holds the user's stripe.
+         */
+        AdjacencyList getOrCreate(int id) {
+            AtomicReferenceArray<AdjacencyList> slots = page(id >>> PAGE_BITS);
+            AdjacencyList list = slots.get(id & (PAGE_SIZE - 1));
+            if (list == null) {
+                list = new AdjacencyList();
+                slots.set(id & (PAGE_SIZE - 1), list);
+            }
+            return list;
+        }
+
+        long footprint() {
+            AtomicReferenceArray<AtomicReferenceArray<AdjacencyList>> directory = pages;
+            long bytes = 16 + 16 + 4L * directory.length();
+            for (int page = 0; page < directory.length(); page++) {
+                AtomicReferenceArray<AdjacencyList> slots = directory.get(page);
+                if (slots != null) {
+                    bytes += 16 + 16 + 4L * PAGE_SIZE;
+                    for (int i = 0; i < PAGE_SIZE; i++) {
+                        AdjacencyList list = slots.get(i);
+                        if (list != null) {
+                            bytes += list.footprint();
+                        }
+                    }
+                }
+            }
+            return bytes;
+        }
+
+        void clear(int id) {
+            AdjacencyList list = get(id);
+            if (list != null) {
+                pages.get(id >>> PAGE_BITS).set(id & (PAGE_SIZE - 1), null);
+            }
+        }
+
+        private AtomicReferenceArray<AdjacencyList> page(int page) {
+            AtomicReferenceArray<AtomicReferenceArray<AdjacencyList>> directory = pages;
+            if (page < directory.length() && directory.get(page) != null) {
+                return directory.get(page);
+            }
+            synchronized (this) {
+                directory = pages;
+                if (page >= directory.length()) {
+                    int length = Math.max(page + 1, directory.length() * 2);
+                    AtomicReferenceArray<AtomicReferenceArray<AdjacencyList>> grown = new AtomicReferenceArray<>(length);
+                    for (int i = 0; i < directory.length(); i++) {
+                        grown.set(i, directory.get(i));
+                    }
+                    directory = grown;
+                    pages = grown;
+                }
+                AtomicReferenceArray<AdjacencyList> slots = directory.get(page);
+                if (slots == null) {
+                    slots = new AtomicReferenceArray<>(PAGE_SIZE);
+                    directory.set(page, slots);
+                }
+                return slots;
+            }
+        }
+    }
+}
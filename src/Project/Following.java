@@ -104,6 +104,6 @@ public class Following {
      */ 
     @Override 
     public int hashCode() {
-        return Objects.hash(follower,followee);
+        return 31 * Objects.hashCode(follower) + Objects.hashCode(followee);
     }
 }
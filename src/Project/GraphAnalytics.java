@@ -0,0 +1,522 @@
+package Project;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The GraphAnalytics class runs batch analyses over the whole follow graph: PageRank
+ * as an influence score, weakly connected components, and histograms of follower and
+ * following counts.
+ * <p>
+ * A run first copies the graph into compressed sparse row form: one {@code int[]}
+ * holding the followers of every user back to back, and one holding where each user's
+ * followers start. Every analysis then works on that copy and on primitive arrays
+ * indexed by user id, split into ranges of {@value #RANGE} users that run as tasks on a
+ * fork-join pool.
+ * <ul>
+ * <li>PageRank pulls rank along follower lists, with damping {@value #DAMPING}; the
+ * rank of users following nobody is spread over everybody. It stops when the ranks
+ * move less than {@value #TOLERANCE} in total, or after {@value #MAX_ITERATIONS}
+ * rounds.</li>
+ * <li>Components are found with a union-find whose parent links are set by
+ * compare-and-set, so all ranges join edges at the same time; every component is named
+ * after its smallest user id.</li>
+ * <li>Histograms count users per power-of-two bucket of their follower and following
+ * counts; each range counts its own and the counts are added up.</li>
+ * </ul>
+ * The results of the latest run are kept for other services, such as the
+ * {@link RecommendationService}, which breaks ties between suggestions by rank. They
+ * describe the graph as it was copied and do not follow later changes.
+ *
+ * @author Asail
+ */
+class GraphAnalytics {
+    static final double DAMPING = 0.85;
+    static final double TOLERANCE = 1e-6;
+    static final int MAX_ITERATIONS = 50;
+    /** Number of users handled by one task. */
+    static final int RANGE = 4096;
+    /** Number of histogram buckets: zero, then one per power of two. */
+    static final int BUCKETS = 33;
+
+    private final PlatformContext context;
+    private volatile Results latest;
+
+    /**
+     * @param context the context whose users and follow graph are analysed
+     */
+    public GraphAnalytics(PlatformContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @return the results of the latest run, or null if none has finished
+     */
+    public Results getLatest() {
+        return latest;
+    }
+
+    /**
+     * Copies the follow graph and runs every analysis on it.
+     *
+     * @param pool the pool running the tasks
+     * @return the results, which also become the latest ones
+     */
+    public Results run(ForkJoinPool pool) {
+        long started = System.currentTimeMillis();
+        Graph graph = snapshot(pool);
+        double[] ranks = new double[graph.users];
+        int iterations = pageRank(pool, graph, ranks);
+        int[] components = components(pool, graph);
+        long[][] histograms = histograms(pool, graph);
+        Results results = new Results(started, graph, ranks, iterations, components, histograms[0], histograms[1]);
+        latest = results;
+        return results;
+    }
+
+    /**
+     * Copies the follower lists of all registered users into one array.
+     */
+    private Graph snapshot(ForkJoinPool pool) {
+        UserRegistry registry = context.getUsers();
+        FollowGraph follows = context.getFollowGraph();
+        int n = registry.idLimit();
+        Graph graph = new Graph(n);
+        int[] degrees = new int[n];
+        forEachRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                if (registry.findById(v) != null) {
+                    graph.live[v] = true;
+                    degrees[v] = follows.followersCount(v);
+                }
+            }
+        });
+        long total = 0;
+        for (int v = 0; v < n; v++) {
+            graph.offsets[v] = (int) total;
+            total += degrees[v];
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The follow graph has too many edges to copy.");
+        }
+        graph.offsets[n] = (int) total;
+        graph.sources = new int[(int) total];
+        Arrays.fill(graph.sources, -1);
+        forEachRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                if (degrees[v] > 0) {
+                    follows.copyFollowers(v, graph.sources, graph.offsets[v], degrees[v]);
+                }
+            }
+        });
+        // Edges from users removed while copying are dropped, so every edge that is
+        // left joins two live users and out-degrees match the copy.
+        for (int i = 0; i < graph.sources.length; i++) {
+            int source = graph.sources[i];
+            if (source >= 0 && source < n && graph.live[source]) {
+                graph.outDegrees[source]++;
+                graph.edges++;
+            } else {
+                graph.sources[i] = -1;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (graph.live[v]) {
+                graph.liveUsers++;
+            }
+        }
+        return graph;
+    }
+
+    private static int pageRank(ForkJoinPool pool, Graph graph, double[] ranks) {
+        int n = graph.users;
+        int live = graph.liveUsers;
+        if (live == 0) {
+            return 0;
+        }
+        double[] next = new double[n];
+        double[] shares = new double[n];
+        double[] partial = new double[(n + RANGE - 1) / RANGE];
+        for (int v = 0; v < n; v++) {
+            ranks[v] = graph.live[v] ? 1.0 / live : 0;
+        }
+        double[] current = ranks;
+        int iteration = 0;
+        while (iteration < MAX_ITERATIONS) {
+            iteration++;
+            double[] from = current;
+            double[] to = current == ranks ? next : ranks;
+            forEachRange(pool, n, (start, end) -> {
+                double dangling = 0;
+                for (int v = start; v < end; v++) {
+                    int out = graph.outDegrees[v];
+                    if (out > 0) {
+                        shares[v] = from[v] / out;
+                    } else {
+                        shares[v] = 0;
+                        dangling += from[v];
+                    }
+                }
+                partial[start / RANGE] = dangling;
+            });
+            double base = (1 - DAMPING) / live + DAMPING * sum(partial) / live;
+            forEachRange(pool, n, (start, end) -> {
+                double delta = 0;
+                for (int v = start; v < end; v++) {
+                    if (!graph.live[v]) {
+                        to[v] = 0;
+                        continue;
+                    }
+                    double incoming = 0;
+                    for (int i = graph.offsets[v]; i < graph.offsets[v + 1]; i++) {
+                        int source = graph.sources[i];
+                        if (source >= 0) {
+                            incoming += shares[source];
+                        }
+                    }
+                    to[v] = base + DAMPING * incoming;
+                    delta += Math.abs(to[v] - from[v]);
+                }
+                partial[start / RANGE] = delta;
+            });
+            current = to;
+            if (sum(partial) < TOLERANCE) {
+                break;
+            }
+        }
+        if (current != ranks) {
+            System.arraycopy(current, 0, ranks, 0, n);
+        }
+        return iteration;
+    }
+
+    private static int[] components(ForkJoinPool pool, Graph graph) {
+        int n = graph.users;
+        AtomicIntegerArray parents = new AtomicIntegerArray(n);
+        forEachRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                parents.set(v, v);
+            }
+        });
+        forEachRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                for (int i = graph.offsets[v]; i < graph.offsets[v + 1]; i++) {
+                    int source = graph.sources[i];
+                    if (source >= 0) {
+                        union(parents, v, source);
+                    }
+                }
+            }
+        });
+        int[] components = new int[n];
+        forEachRange(pool, n, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                components[v] = graph.live[v] ? find(parents, v) : -1;
+            }
+        });
+        return components;
+    }
+
+    /**
+     * Joins the sets of two users by linking the larger root under the smaller one, so
+     * every root is the smallest id of its set. A failed compare-and-set means another
+     * task changed the root meanwhile, and the roots are looked up again.
+     */
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            if (parents.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the root of a user's set, pointing every visited user at its grandparent
+     * on the way, which keeps the paths short.
+     */
+    private static int find(AtomicIntegerArray parents, int v) {
+        while (true) {
+            int parent = parents.get(v);
+            if (parent == v) {
+                return v;
+            }
+            int grandparent = parents.get(parent);
+            if (parent != grandparent) {
+                parents.compareAndSet(v, parent, grandparent);
+            }
+            v = grandparent;
+        }
+    }
+
+    private static long[][] histograms(ForkJoinPool pool, Graph graph) {
+        int n = graph.users;
+        int ranges = (n + RANGE - 1) / RANGE;
+        long[][] followers = new long[ranges][BUCKETS];
+        long[][] following = new long[ranges][BUCKETS];
+        forEachRange(pool, n, (from, to) -> {
+            long[] in = followers[from / RANGE];
+            long[] out = following[from / RANGE];
+            for (int v = from; v < to; v++) {
+                if (graph.live[v]) {
+                    in[bucketOf(graph.offsets[v + 1] - graph.offsets[v])]++;
+                    out[bucketOf(graph.outDegrees[v])]++;
+                }
+            }
+        });
+        long[][] totals = new long[2][BUCKETS];
+        for (int r = 0; r < ranges; r++) {
+            for (int b = 0; b < BUCKETS; b++) {
+                totals[0][b] += followers[r][b];
+                totals[1][b] += following[r][b];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @return 0 for a count of 0, otherwise 1 plus the power of two at or below it
+     */
+    static int bucketOf(int count) {
+        return 32 - Integer.numberOfLeadingZeros(count);
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static void forEachRange(ForkJoinPool pool, int n, RangeBody body) {
+        pool.invoke(new Ranges(body, 0, (n + RANGE - 1) / RANGE, n));
+    }
+
+    /**
+     * Work on the users with ids from one bound up to another.
+     */
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a run of ranges in halves until one range is left, then runs it.
+     */
+    private static final class Ranges extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeBody body;
+        private final int first;
+        private final int last;
+        private final int users;
+
+        Ranges(RangeBody body, int first, int last, int users) {
+            this.body = body;
+            this.first = first;
+            this.last = last;
+            this.users = users;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Ranges(body, first, middle, users), new Ranges(body, middle, last, users));
+            } else if (last > first) {
+                body.run(first * RANGE, Math.min(users, (first + 1) * RANGE));
+            }
+        }
+    }
+
+    /**
+     * The follow graph in compressed sparse row form: the followers of user v are
+     * {@code sources[offsets[v]]} up to {@code sources[offsets[v + 1]]}, and -1 marks a
+     * follower dropped while copying.
+     */
+    private static final class Graph {
+        final int users;
+        final boolean[] live;
+        final int[] offsets;
+        final int[] outDegrees;
+        int[] sources;
+        int liveUsers;
+        long edges;
+
+        Graph(int users) {
+            this.users = users;
+            this.live = new boolean[users];
+            this.offsets = new int[users + 1];
+            this.outDegrees = new int[users];
+        }
+    }
+
+    /**
+     * The Results class holds the outcome of one analytics run, indexed by user id.
+     */
+    static final class Results {
+        private final long computedAt;
+        private final int users;
+        private final long edges;
+        private final double[] ranks;
+        private final int iterations;
+        private final int[] components;
+        private final int componentCount;
+        private final int largestComponent;
+        private final long[] followerHistogram;
+        private final long[] followingHistogram;
+
+        Results(long computedAt, Graph graph, double[] ranks, int iterations, int[] components,
+                long[] followerHistogram, long[] followingHistogram) {
+            this.computedAt = computedAt;
+            this.users = graph.liveUsers;
+            this.edges = graph.edges;
+            this.ranks = ranks;
+            this.iterations = iterations;
+            this.components = components;
+            this.followerHistogram = followerHistogram;
+            this.followingHistogram = followingHistogram;
+            int[] sizes = new int[components.length];
+            int count = 0;
+            int largest = 0;
+            for (int component : components) {
+                if (component >= 0) {
+                    if (sizes[component]++ == 0) {
+                        count++;
+                    }
+                    largest = Math.max(largest, sizes[component]);
+                }
+            }
+            this.componentCount = count;
+            this.largestComponent = largest;
+        }
+
+        /**
+         * @return the time the run started, in milliseconds since the epoch
+         */
+        public long getComputedAt() {
+            return computedAt;
+        }
+
+        /**
+         * @return the number of registered users analysed
+         */
+        public int getUserCount() {
+            return users;
+        }
+
+        /**
+         * @return the number of follow relationships copied
+         */
+        public long getEdgeCount() {
+            return edges;
+        }
+
+        /**
+         * @return the number of PageRank rounds run
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Gets the PageRank of a user; the ranks of all users add up to 1.
+         *
+         * @param id the user id
+         * @return the rank, or 0 for users that were not registered at the time
+         */
+        public double rankOf(int id) {
+            return id >= 0 && id < ranks.length ? ranks[id] : 0;
+        }
+
+        /**
+         * Gets the weakly connected component of a user, ignoring follow directions.
+         *
+         * @param id the user id
+         * @return the smallest user id in the component, or -1 for users that were not
+         * registered at the time
+         */
+        public int componentOf(int id) {
+            return id >= 0 && id < components.length ? components[id] : -1;
+        }
+
+        /**
+         * @return the number of weakly connected components
+         */
+        public int getComponentCount() {
+            return componentCount;
+        }
+
+        /**
+         * @return the number of users in the largest component
+         */
+        public int getLargestComponentSize() {
+            return largestComponent;
+        }
+
+        /**
+         * Gets the number of users per bucket of follower counts: bucket 0 holds users
+         * without followers and bucket k those with 2^(k-1) up to 2^k - 1.
+         *
+         * @return the counts per bucket
+         */
+        public long[] getFollowerHistogram() {
+            return followerHistogram.clone();
+        }
+
+        /**
+         * Gets the number of users per bucket of following counts, bucketed like
+         * {@link #getFollowerHistogram()}.
+         *
+         * @return the counts per bucket
+         */
+        public long[] getFollowingHistogram() {
+            return followingHistogram.clone();
+        }
+
+        /**
+         * Finds the users with the highest rank, keeping only the best ones in a heap.
+         *
+         * @param limit the maximum number of users
+         * @return the user ids, highest rank first
+         */
+        public int[] topRanked(int limit) {
+            if (limit <= 0) {
+                return new int[0];
+            }
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1,
+                    (a, b) -> ranks[a] != ranks[b] ? Double.compare(ranks[a], ranks[b]) : Integer.compare(b, a));
+            for (int v = 0; v < ranks.length; v++) {
+                if (components[v] < 0) {
+                    continue;
+                }
+                if (best.size() < limit) {
+                    best.add(v);
+                } else if (ranks[v] > ranks[best.peek()]) {
+                    best.poll();
+                    best.add(v);
+                }
+            }
+            int[] top = new int[best.size()];
+            for (int i = top.length - 1; i >= 0; i--) {
+                top[i] = best.poll();
+            }
+            return top;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d users, %,d follows; PageRank after %d rounds; %,d components, "
+                    + "the largest with %,d users", users, edges, iterations, componentCount, largestComponent);
+        }
+    }
+}
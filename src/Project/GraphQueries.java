@@ -0,0 +1,205 @@
+package Project;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PrimitiveIterator;
+import java.util.function.IntPredicate;
+
+/**
+ * The GraphQueries class answers questions about how two users are connected in the
+ * {@link FollowGraph}: whether they follow each other, which users follow both, and
+ * how many hops apart they are.
+ * <p>
+ * Common followers are found by merging copies of the two follower lists, which the
+ * graph keeps sorted, in one pass. When one list is much longer than the other, as when
+ * comparing a celebrity with an ordinary user, the longer one is not copied at all: each
+ * id of the shorter one is looked up in the longer one by binary search, so the cost
+ * stays close to the length of the shorter list.
+ * <p>
+ * Distances are found by a breadth-first search from both ends at once: forwards
+ * from the first user along the users it follows, and backwards from the second user
+ * along its followers, always expanding the side whose next level has fewer edges.
+ * Visited users are marked in one {@link BitSet} per side. Two searches meeting in
+ * the middle each cover about half the hops, which visits far fewer users than one
+ * search from one end. A hop limit bounds the search.
+ * <p>
+ * Queries read the graph without locking, so they see it as it was while they ran.
+ *
+ * @author Asail
+ */
+class GraphQueries {
+    /** Default number of hops searched before two users are reported as unconnected. */
+    public static final int DEFAULT_MAX_HOPS = 6;
+    /** Length ratio above which the longer list is probed instead of copied. */
+    private static final int SKEW_RATIO = 32;
+
+    private final FollowGraph graph;
+
+    /**
+     * @param graph the follow graph to query
+     */
+    public GraphQueries(FollowGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Checks whether two users follow each other.
+     *
+     * @param a the id of one user
+     * @param b the id of the other user
+     * @return true if each follows the other
+     */
+    public boolean followEachOther(int a, int b) {
+        return a != b && graph.isFollowing(a, b) && graph.isFollowing(b, a);
+    }
+
+    /**
+     * Finds the users following both of two users.
+     *
+     * @param a the id of one user
+     * @param b the id of the other user
+     * @return the ids of the common followers, in increasing order
+     */
+    public int[] mutualFollowers(int a, int b) {
+        int sizeA = graph.followersCount(a);
+        int sizeB = graph.followersCount(b);
+        if ((long) Math.min(sizeA, sizeB) * SKEW_RATIO < Math.max(sizeA, sizeB)) {
+            int small = sizeA <= sizeB ? a : b;
+            int large = small == a ? b : a;
+            return probe(graph.followerIds(small), id -> graph.isFollowing(id, large));
+        }
+        return intersect(graph.followerIds(a), graph.followerIds(b));
+    }
+
+    /**
+     * Finds the users followed by both of two users.
+     *
+     * @param a the id of one user
+     * @param b the id of the other user
+     * @return the ids of the users both follow, in increasing order
+     */
+    public int[] mutualFollowing(int a, int b) {
+        int sizeA = graph.followingCount(a);
+        int sizeB = graph.followingCount(b);
+        if ((long) Math.min(sizeA, sizeB) * SKEW_RATIO < Math.max(sizeA, sizeB)) {
+            int small = sizeA <= sizeB ? a : b;
+            int large = small == a ? b : a;
+            return probe(graph.followingIds(small), id -> graph.isFollowing(large, id));
+        }
+        return intersect(graph.followingIds(a), graph.followingIds(b));
+    }
+
+    /**
+     * Counts the follow hops on the shortest path from one user to another: 1 if the
+     * first follows the second, 2 if it follows someone who does, and so on.
+     *
+     * @param from the id of the user the path starts at
+     * @param to the id of the user the path ends at
+     * @param maxHops the largest number of hops searched
+     * @return the number of hops, 0 if the users are the same, or -1 if the second
+     * cannot be reached within the limit
+     */
+    public int distance(int from, int to, int maxHops) {
+        if (from == to) {
+            return 0;
+        }
+        BitSet forwardSeen = new BitSet();
+        BitSet backwardSeen = new BitSet();
+        forwardSeen.set(from);
+        backwardSeen.set(to);
+        Frontier forward = new Frontier(from, graph.followingCount(from));
+        Frontier backward = new Frontier(to, graph.followersCount(to));
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        while (forwardDepth + backwardDepth < maxHops && forward.size > 0 && backward.size > 0) {
+            boolean forwards = forward.edges <= backward.edges;
+            Frontier current = forwards ? forward : backward;
+            BitSet seen = forwards ? forwardSeen : backwardSeen;
+            BitSet other = forwards ? backwardSeen : forwardSeen;
+            Frontier next = new Frontier();
+            for (int i = 0; i < current.size; i++) {
+                PrimitiveIterator.OfInt it = forwards ? graph.following(current.ids[i]) : graph.followers(current.ids[i]);
+                while (it.hasNext()) {
+                    int id = it.nextInt();
+                    if (other.get(id)) {
+                        return forwardDepth + backwardDepth + 1;
+                    }
+                    if (!seen.get(id)) {
+                        seen.set(id);
+                        next.add(id, forwards ? graph.followingCount(id) : graph.followersCount(id));
+                    }
+                }
+            }
+            if (forwards) {
+                forward = next;
+                forwardDepth++;
+            } else {
+                backward = next;
+                backwardDepth++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps the ids, given in increasing order, that pass a membership check.
+     */
+    private static int[] probe(int[] ids, IntPredicate member) {
+        int count = 0;
+        for (int id : ids) {
+            if (member.test(id)) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Intersects two id lists given in increasing order by merging them.
+     */
+    static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * The users at one depth of a search, with the number of edges they lead on to.
+     */
+    private static final class Frontier {
+        int[] ids;
+        int size;
+        long edges;
+
+        Frontier() {
+            this.ids = new int[16];
+        }
+
+        Frontier(int id, int degree) {
+            this.ids = new int[] {id};
+            this.size = 1;
+            this.edges = degree;
+        }
+
+        void add(int id, int degree) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            edges += degree;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package Project;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The IdGenerator class hands out unique 64-bit ids in the style of Twitter's
+ * Snowflake: 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node number and
+ * 12 bits of sequence within the millisecond. Ids from one generator always grow, so
+ * they sort in creation order, and generators with different node numbers never
+ * hand out the same id.
+ * <p>
+ * The last id handed out is kept in one atomic value. When more than 4096 ids are
+ * requested within a millisecond, or the clock goes back, the generator continues
+ * from the last id instead of waiting for the clock.
+ *
+ * @author Asail
+ */
+final class IdGenerator {
+    /** 2024-01-01T00:00:00Z, the time of id 0. */
+    static final long EPOCH = 1_704_067_200_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long NODE_MASK = (long) MAX_NODE << SEQUENCE_BITS;
+
+    private final long node;
+    private final AtomicLong last;
+
+    /**
+     * @param node the node number, between 0 and {@link #MAX_NODE}
+     */
+    IdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("The node must be between 0 and " + MAX_NODE + ".");
+        }
+        this.node = (long) node << SEQUENCE_BITS;
+        this.last = new AtomicLong(-1);
+    }
+
+    /**
+     * Hands out a new id, larger than every id handed out or reserved before.
+     *
+     * @return the new id
+     */
+    long next() {
+        long base = Math.max(System.currentTimeMillis() - EPOCH, 0) << TIME_SHIFT | node;
+        while (true) {
+            long previous = last.get();
+            long id;
+            if (base > previous) {
+                id = base;
+            } else if ((previous & NODE_MASK) == node && (previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                id = previous + 1;
+            } else {
+                id = ((previous >>> TIME_SHIFT) + 1) << TIME_SHIFT | node;
+            }
+            if (last.compareAndSet(previous, id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return a lower bound for the next id, as saved with a snapshot
+     */
+    long peek() {
+        return last.get() + 1;
+    }
+
+    /**
+     * Makes sure ids below a limit are never handed out again, such as the ids of
+     * restored posts.
+     *
+     * @param limit the smallest id that may still be handed out
+     */
+    void reserve(long limit) {
+        last.accumulateAndGet(limit - 1, Math::max);
+    }
+
+    /**
+     * Gets the time an id was handed out at.
+     *
+     * @param id an id from a generator
+     * @return the time in milliseconds since the Unix epoch
+     */
+    static long timeOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
+    }
+}
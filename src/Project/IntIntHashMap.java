@@ -0,0 +1,179 @@
+package Project;
+
+import java.util.Arrays;
+
+/**
+ * The IntIntHashMap class is an open-addressing hash map from non-negative int keys to
+ * int values. Keys and values are kept in two primitive arrays, so no entry objects or
+ * boxed integers are allocated.
+ *
+ * @author Asail
+ */
+final class IntIntHashMap {
+    /** Value returned by {@link #get(int)} when the key is absent. */
+    static final int MISSING = -1;
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates a map sized for the expected number of entries.
+     *
+     * @param expected the expected number of entries
+     */
+    public IntIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Gets the value stored for a key.
+     *
+     * @param key the key, must not be negative
+     * @return the value or {@link #MISSING} if the key is absent
+     */
+    public int get(int key) {
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == FREE) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * @param key the key to look for
+     * @return true if the key is present; false otherwise
+     */
+    public boolean containsKey(int key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value.
+     *
+     * @param key the key, must not be negative
+     * @param value the value, must not be {@link #MISSING}
+     */
+    public void put(int key, int value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        int i = mix(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Adds one to the value of a key, storing 1 if the key is absent.
+     *
+     * @param key the key, must not be negative
+     * @return the new value
+     */
+    public int increment(int key) {
+        int previous = get(key);
+        int value = previous == MISSING ? 1 : previous + 1;
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Removes a key. Later entries of the same probe run are shifted back, so no
+     * deletion markers are left behind.
+     *
+     * @param key the key to remove
+     * @return true if the key was present; false otherwise
+     */
+    public boolean remove(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes every entry to a consumer, in no particular order. The map must not be
+     * changed meanwhile.
+     *
+     * @param consumer the consumer of keys and values
+     */
+    public void forEach(EntryConsumer consumer) {
+        int[] k = keys;
+        int[] v = values;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i] != FREE) {
+                consumer.accept(k[i], v[i]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != FREE) {
+                int j = mix(key) & mask;
+                while (keys[j] != FREE) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = key;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Receives the entries of a map.
+     */
+    interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
@@ -0,0 +1,17 @@
+package Project;
+
+/**
+ * Exception thrown when an email does not have the 'name@domain.com' format.
+ * 
+ * @author Asail
+ */
+class InvalidEmailException extends SocialMediaException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception with the default message.
+     */
+    public InvalidEmailException() {
+        super("Invalid email format. Email must be 'name@domain.com'");
+    }
+}
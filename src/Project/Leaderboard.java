@@ -0,0 +1,208 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * The Leaderboard class keeps the items with the highest scores, such as the most
+ * followed users or the most commented posts, without ever scanning all items.
+ * <p>
+ * The board is a bounded min-heap of at most its capacity items, with the lowest
+ * score at the root and the position of every item kept in a map, so an item already
+ * on the board is moved in logarithmic time. Callers report an item whenever its score
+ * may have changed, and the board reads the current score itself, so reports arriving
+ * out of order still leave the latest score in place. An item not on the board enters
+ * when it beats the root, which it then replaces. Once the board is full, the root's
+ * score is published as a floor, and reports of items below it that are not on the
+ * board return without locking.
+ * <p>
+ * Scores going down are followed for the items on the board, but an item that was
+ * pushed off the board is only seen again when it is next reported. The board is
+ * therefore kept larger than the lists it is asked for, and the top of it is exact
+ * unless more items fell below the ones left off than that margin.
+ * <p>
+ * Ties go to the item with the smaller key, so older users and posts come first.
+ *
+ * @param <T> the type of the items ranked
+ * @author Asail
+ */
+final class Leaderboard<T> {
+    /** Default number of items kept on a board. */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final ToLongFunction<T> score;
+    private final ToLongFunction<T> key;
+    private final Object[] items;
+    private final long[] scores;
+    private final long[] keys;
+    private final Map<T, Integer> positions;
+    private int size;
+    private volatile long floor;
+
+    /**
+     * @param capacity the number of items kept
+     * @param score gives the current score of an item; items scoring 0 or less are
+     * left off the board
+     * @param key gives the key breaking ties between items, the smaller first
+     */
+    Leaderboard(int capacity, ToLongFunction<T> score, ToLongFunction<T> key) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.score = score;
+        this.key = key;
+        this.items = new Object[capacity];
+        this.scores = new long[capacity];
+        this.keys = new long[capacity];
+        this.positions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reports that the score of an item may have changed.
+     *
+     * @param item the item
+     */
+    void changed(T item) {
+        if (score.applyAsLong(item) <= floor && !positions.containsKey(item)) {
+            return;
+        }
+        synchronized (this) {
+            long current = score.applyAsLong(item);
+            Integer position = positions.get(item);
+            if (position != null) {
+                if (current <= 0) {
+                    removeAt(position);
+                } else {
+                    scores[position] = current;
+                    siftDown(siftUp(position));
+                }
+            } else if (current > 0) {
+                long itemKey = key.applyAsLong(item);
+                if (size < items.length) {
+                    place(size++, item, current, itemKey);
+                    siftUp(size - 1);
+                } else if (worse(scores[0], keys[0], current, itemKey)) {
+                    positions.remove(items[0]);
+                    place(0, item, current, itemKey);
+                    siftDown(0);
+                }
+            }
+            floor = size == items.length ? scores[0] : 0;
+        }
+    }
+
+    /**
+     * Takes an item off the board, such as a deleted user or post.
+     *
+     * @param item the item
+     */
+    void remove(T item) {
+        if (!positions.containsKey(item)) {
+            return;
+        }
+        synchronized (this) {
+            Integer position = positions.get(item);
+            if (position != null) {
+                removeAt(position);
+                floor = size == items.length ? scores[0] : 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the items with the highest scores, best first.
+     *
+     * @param limit the maximum number of items
+     * @return the items
+     */
+    @SuppressWarnings("unchecked")
+    List<T> top(int limit) {
+        Object[] copy;
+        long[] scoreCopy;
+        long[] keyCopy;
+        synchronized (this) {
+            copy = Arrays.copyOf(items, size);
+            scoreCopy = Arrays.copyOf(scores, size);
+            keyCopy = Arrays.copyOf(keys, size);
+        }
+        Integer[] order = new Integer[copy.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> worse(scoreCopy[a], keyCopy[a], scoreCopy[b], keyCopy[b]) ? 1
+                : worse(scoreCopy[b], keyCopy[b], scoreCopy[a], keyCopy[a]) ? -1 : 0);
+        List<T> result = new ArrayList<>(Math.max(0, Math.min(limit, order.length)));
+        for (int i = 0; i < order.length && result.size() < limit; i++) {
+            result.add((T) copy[order[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the first item ranks below the second
+     */
+    private static boolean worse(long score, long key, long otherScore, long otherKey) {
+        return score != otherScore ? score < otherScore : key > otherKey;
+    }
+
+    private void removeAt(int position) {
+        positions.remove(items[position]);
+        int last = --size;
+        if (position != last) {
+            @SuppressWarnings("unchecked")
+            T moved = (T) items[last];
+            place(position, moved, scores[last], keys[last]);
+            siftDown(siftUp(position));
+        }
+        items[last] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void place(int position, Object item, long itemScore, long itemKey) {
+        items[position] = item;
+        scores[position] = itemScore;
+        keys[position] = itemKey;
+        positions.put((T) item, position);
+    }
+
+    private void swap(int a, int b) {
+        Object item = items[a];
+        long itemScore = scores[a];
+        long itemKey = keys[a];
+        place(a, items[b], scores[b], keys[b]);
+        place(b, item, itemScore, itemKey);
+    }
+
+    private int siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!worse(scores[position], keys[position], scores[parent], keys[parent])) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+        return position;
+    }
+
+    private int siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                return position;
+            }
+            if (child + 1 < size && worse(scores[child + 1], keys[child + 1], scores[child], keys[child])) {
+                child++;
+            }
+            if (!worse(scores[child], keys[child], scores[position], keys[position])) {
+                return position;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package Project;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * The OperationLog class is the write-ahead log of the platform: an append-only file
+ * with one record per successful mutation, written before the change is reported
+ * as saved.
+ * <p>
+ * Every record carries a log sequence number (LSN) that grows by one per record, and
+ * is framed by its length and a CRC32C checksum, so a record torn by a crash is
+ * detected and cut off when the log is opened again.
+ * Appending only copies the record into a memory buffer. {@link #sync(long)} makes it
+ * durable using group commit: one waiting thread writes and forces everything that
+ * has been appended so far, while later appends collect in a second buffer for the
+ * next sync. Under load a single fsync therefore covers many records.
+ * <p>
+ * Once a snapshot covers the records up to a {@link Cut}, {@link #truncate(Cut)} drops
+ * them by copying the records after the cut into a new file and renaming it over the
+ * log, while appends continue.
+ *
+ * @author Asail
+ */
+class OperationLog implements Closeable {
+    static final byte ADD_USER = 1;
+    static final byte ADD_POST = 2;
+    static final byte ADD_COMMENT = 3;
+    static final byte FOLLOW = 4;
+    static final byte UNFOLLOW = 5;
+    static final byte DELETE_USER = 6;
+    static final byte DELETE_POST = 7;
+
+    /** Length and checksum in front of every record. */
+    private static final int FRAME = 8;
+    private static final int MAX_RECORD = 64 << 20;
+
+    /**
+     * Receives the operations read back from the log, in the order they were written.
+     */
+    interface Handler {
+        void addUser(int id, boolean admin, String userName, String email) throws SocialMediaException;
+
+        void addPost(long id, long createdAt, int authorId, String content) throws SocialMediaException;
+
+        void addComment(long postId, long id, int authorId, String content) throws SocialMediaException;
+
+        void follow(int follower, int followee) throws SocialMediaException;
+
+        void unfollow(int follower, int followee) throws SocialMediaException;
+
+        void deleteUser(int adminId, int userId) throws SocialMediaException;
+
+        void deletePost(int adminId, long postId) throws SocialMediaException;
+    }
+
+    /**
+     * The point in the log after a record: its LSN and the position in the file where
+     * the next record starts.
+     */
+    static final class Cut {
+        final long lsn;
+        final long position;
+
+        private Cut(long lsn, long position) {
+            this.lsn = lsn;
+            this.position = position;
+        }
+    }
+
+    private final Path file;
+    /** The open log file; replaced by truncate, guarded by syncLock. */
+    private FileChannel channel;
+    private final Object syncLock;
+    private final CRC32C crc;
+    private ByteBuffer pending;
+    private int recordStart;
+    private long lastLsn;
+    /** Position in the file where the next appended record will start. */
+    private long appended;
+    /** Buffer the next sync swaps in; guarded by syncLock. */
+    private ByteBuffer spare;
+    /** First write failure; guarded by syncLock. Later records could not be ordered after it. */
+    private IOException failure;
+    private volatile long durableLsn;
+
+    private OperationLog(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        this.syncLock = new Object();
+        this.crc = new CRC32C();
+        this.pending = ByteBuffer.allocate(1 << 16);
+        this.spare = ByteBuffer.allocate(1 << 16);
+    }
+
+    /**
+     * Opens or creates a log file. Call {@link #replay(long, Handler)} before appending,
+     * so that new records continue after the existing ones.
+     *
+     * @param file the log file
+     * @return the opened log
+     * @throws IOException if the file cannot be opened
+     */
+    static OperationLog open(Path file) throws IOException {
+        boolean created = !Files.exists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created) {
+            try {
+                syncDirectory(file);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        return new OperationLog(file, channel);
+    }
+
+    /**
+     * Forces the directory holding a file, so that the file's creation or a rename
+     * over it survives a power loss as well as the file's contents. Systems that
+     * cannot open a directory, such as Windows, make renames durable by themselves,
+     * and the call does nothing there.
+     *
+     * @param file a file in the directory
+     * @throws IOException if the directory cannot be forced
+     */
+    static void syncDirectory(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads the log from the start and hands every record with an LSN above the given
+     * one to the handler. A torn or corrupt record at the end of the file, left by a
+     * crash during a write, is cut off together with everything after it.
+     *
+     * @param afterLsn the LSN already covered by a snapshot
+     * @param handler the receiver of the operations
+     * @return the number of operations replayed
+     * @throws IOException if the file cannot be read or an operation cannot be applied
+     */
+    long replay(long afterLsn, Handler handler) throws IOException {
+        long replayed = 0;
+        long position = 0;
+        long lsn = afterLsn;
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        byte[] body = new byte[256];
+        while (true) {
+            int length;
+            int checksum;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 9 || length > MAX_RECORD) {
+                    break;
+                }
+                if (body.length < length) {
+                    body = new byte[Math.max(length, body.length * 2)];
+                }
+                in.readFully(body, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(body, 0, length);
+            long recordLsn = record.getLong();
+            if (recordLsn > lsn) {
+                try {
+                    apply(record, handler);
+                } catch (SocialMediaException | RuntimeException e) {
+                    throw new IOException("Cannot replay log record " + recordLsn + ": " + e.getMessage(), e);
+                }
+                lsn = recordLsn;
+                replayed++;
+            }
+            position += FRAME + length;
+        }
+        if (position < channel.size()) {
+            channel.truncate(position);
+            channel.force(false);
+        }
+        channel.position(position);
+        synchronized (this) {
+            lastLsn = lsn;
+            appended = position;
+        }
+        durableLsn = lsn;
+        return replayed;
+    }
+
+    private static void apply(ByteBuffer record, Handler handler) throws SocialMediaException {
+        byte type = record.get();
+        switch (type) {
+            case ADD_USER:
+                handler.addUser(record.getInt(), record.get() != 0, getString(record), getString(record));
+                break;
+            case ADD_POST:
+                handler.addPost(record.getLong(), record.getLong(), record.getInt(), getString(record));
+                break;
+            case ADD_COMMENT:
+                handler.addComment(record.getLong(), record.getLong(), record.getInt(), getString(record));
+                break;
+            case FOLLOW:
+                handler.follow(record.getInt(), record.getInt());
+                break;
+            case UNFOLLOW:
+                handler.unfollow(record.getInt(), record.getInt());
+                break;
+            case DELETE_USER:
+                handler.deleteUser(record.getInt(), record.getInt());
+                break;
+            case DELETE_POST:
+                handler.deletePost(record.getInt(), record.getLong());
+                break;
+            default:
+                throw new SocialMediaException("Unknown log record type " + type);
+        }
+    }
+
+    /**
+     * Appends the registration of a user.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long addUser(int id, boolean admin, String userName, String email) {
+        begin(ADD_USER);
+        pending.putInt(id).put((byte) (admin ? 1 : 0));
+        putString(userName);
+        putString(email);
+        return end();
+    }
+
+    /**
+     * Appends a new post.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long addPost(long id, long createdAt, int authorId, String content) {
+        begin(ADD_POST);
+        pending.putLong(id).putLong(createdAt).putInt(authorId);
+        putString(content);
+        return end();
+    }
+
+    /**
+     * Appends a new comment.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long addComment(long postId, long id, int authorId, String content) {
+        begin(ADD_COMMENT);
+        pending.putLong(postId).putLong(id).putInt(authorId);
+        putString(content);
+        return end();
+    }
+
+    /**
+     * Appends a follow.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long follow(int follower, int followee) {
+        begin(FOLLOW);
+        pending.putInt(follower).putInt(followee);
+        return end();
+    }
+
+    /**
+     * Appends an unfollow or the removal of a follower.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long unfollow(int follower, int followee) {
+        begin(UNFOLLOW);
+        pending.putInt(follower).putInt(followee);
+        return end();
+    }
+
+    /**
+     * Appends the deletion of a user by an admin.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long deleteUser(int adminId, int userId) {
+        begin(DELETE_USER);
+        pending.putInt(adminId).putInt(userId);
+        return end();
+    }
+
+    /**
+     * Appends the deletion of a post by an admin.
+     *
+     * @return the LSN of the record
+     */
+    synchronized long deletePost(int adminId, long postId) {
+        begin(DELETE_POST);
+        pending.putInt(adminId).putLong(postId);
+        return end();
+    }
+
+    private void begin(byte type) {
+        ensure(FRAME + 9 + 64);
+        recordStart = pending.position();
+        pending.position(recordStart + FRAME);
+        pending.putLong(lastLsn + 1).put(type);
+    }
+
+    private long end() {
+        int end = pending.position();
+        int length = end - recordStart - FRAME;
+        crc.reset();
+        crc.update(pending.array(), recordStart + FRAME, length);
+        pending.putInt(recordStart, length);
+        pending.putInt(recordStart + 4, (int) crc.getValue());
+        appended += FRAME + length;
+        return ++lastLsn;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + (bytes == null ? 0 : bytes.length));
+        if (bytes == null) {
+            pending.putInt(-1);
+        } else {
+            pending.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private void ensure(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * @return the LSN of the last appended record
+     */
+    synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * @return the point after the last appended record
+     */
+    synchronized Cut cut() {
+        return new Cut(lastLsn, appended);
+    }
+
+    /**
+     * Waits until the record with the given LSN, and all records before it, are
+     * forced to disk. If no other thread is writing, this thread writes everything
+     * appended so far; otherwise it waits for the running write and checks again.
+     *
+     * @param lsn the LSN returned by an append
+     * @throws IOException if the log cannot be written
+     */
+    void sync(long lsn) throws IOException {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            if (failure != null) {
+                throw new IOException("The log could not be written earlier.", failure);
+            }
+            ByteBuffer batch;
+            long upTo;
+            synchronized (this) {
+                batch = pending;
+                pending = spare;
+                upTo = lastLsn;
+            }
+            spare = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                batch.clear();
+                spare = batch;
+            }
+            durableLsn = upTo;
+        }
+    }
+
+    /**
+     * Drops the records up to a cut once a snapshot covers them. The records after the
+     * cut are copied into a new file, which is forced and then renamed over the log,
+     * and the directory is forced after the rename, so a crash or power loss leaves
+     * either the old log or the new one in place. Records may be
+     * appended meanwhile; they are written to the new file by the next sync.
+     *
+     * @param cut the cut taken when the snapshot was
+     * @throws IOException if the log cannot be written
+     */
+    void truncate(Cut cut) throws IOException {
+        sync(cut.lsn);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (syncLock) {
+            if (failure != null) {
+                throw new IOException("The log could not be written earlier.", failure);
+            }
+            FileChannel tail = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long end = channel.size();
+                for (long copied = cut.position; copied < end;) {
+                    copied += channel.transferTo(copied, end - copied, tail);
+                }
+                tail.force(true);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory(file);
+            } catch (IOException e) {
+                tail.close();
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            channel.close();
+            channel = tail;
+            synchronized (this) {
+                appended -= cut.position;
+            }
+        }
+    }
+
+    /**
+     * Writes out the remaining records and closes the file.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync(lastLsn());
+        } finally {
+            synchronized (syncLock) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package Project;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Page class holds one page of a list that is read a page at a time, such as the
+ * followers of a user, together with the cursor that reads the next page.
+ * <p>
+ * A cursor is an opaque int. Passing it back continues right after the last item of
+ * this page, even if items were added or removed in the meantime: items removed
+ * before they were reached are skipped, and items added later appear at the end.
+ *
+ * @param <T> the type of the items
+ * @author Asail
+ */
+final class Page<T> {
+    /** The cursor of the page after the last one. */
+    static final int END = -1;
+
+    private final List<T> items;
+    private final int nextCursor;
+
+    /**
+     * @param items the items of the page
+     * @param nextCursor the cursor of the next page, or {@link #END} if this is the last one
+     */
+    Page(List<T> items, int nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the items of the page, in order
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor reading the next page, or {@link #END} if there is none
+     */
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return true if there is a next page
+     */
+    public boolean hasMore() {
+        return nextCursor != END;
+    }
+}
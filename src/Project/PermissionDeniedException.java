@@ -0,0 +1,17 @@
+package Project;
+
+/**
+ * Exception thrown when an operation refers to an admin-only action requested by a user that is not an admin.
+ * 
+ * @author Asail
+ */
+class PermissionDeniedException extends SocialMediaException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception with the default message.
+     */
+    public PermissionDeniedException() {
+        super("Only Admins Can Perform This Action");
+    }
+}
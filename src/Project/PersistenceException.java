@@ -0,0 +1,19 @@
+package Project;
+
+/**
+ * Exception thrown when a change could not be written to the operation log. The change
+ * has been applied in memory but may be lost if the application stops.
+ * 
+ * @author Asail
+ */
+class PersistenceException extends SocialMediaException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param cause the failure of the log
+     */
+    public PersistenceException(Throwable cause) {
+        super("The change could not be saved: " + cause.getMessage());
+        initCause(cause);
+    }
+}
@@ -0,0 +1,157 @@
+package Project;
+
+/**
+ * The PlatformContext class groups the shared stores and services of one platform
+ * instance. Every registered user keeps a reference to its context.
+ *
+ * @author Asail
+ */
+class PlatformContext {
+    private final UserRegistry users;
+    private final UsernameIndex usernames;
+    private final FollowGraph followGraph;
+    private final FeedService feed;
+    private final RecommendationService recommendations;
+    private final EngagementService engagement;
+    private final GraphQueries graphQueries;
+    private final GraphAnalytics analytics;
+    private final SearchIndex search;
+    private final Compactor compactor;
+    private final StringPool contents;
+    private final StringPool domains;
+    private final EventBus events;
+    private final EntityLocks locks;
+
+    /**
+     * Creates a context with an empty registry, an empty follow graph, empty search and
+     * username indexes, empty string pools, feed, recommendation and engagement
+     * services and a compactor with default settings, and a new event bus.
+     */
+    public PlatformContext() {
+        this(new EventBus());
+    }
+
+    /**
+     * Creates an empty context publishing its changes on an existing bus, so that
+     * subscribers can be registered before the context is built.
+     *
+     * @param events the bus the changes are published on
+     */
+    public PlatformContext(EventBus events) {
+        this.events = events;
+        this.locks = new EntityLocks();
+        this.usernames = new UsernameIndex(this);
+        this.recommendations = new RecommendationService(this);
+        this.engagement = new EngagementService(this);
+        this.followGraph = new FollowGraph(id -> {
+            usernames.followersChanged(id);
+            engagement.followersChanged(id);
+        }, recommendations::followingChanged);
+        this.graphQueries = new GraphQueries(followGraph);
+        this.analytics = new GraphAnalytics(this);
+        this.users = new UserRegistry(this);
+        this.feed = new FeedService(this);
+        this.search = new SearchIndex(this);
+        this.compactor = new Compactor(Compactor.DEFAULT_THRESHOLD, search);
+        this.contents = new StringPool("Post and comment text");
+        this.domains = new StringPool("Email domains");
+    }
+
+    /**
+     * @return the registry of all users
+     */
+    public UserRegistry getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the index completing username prefixes
+     */
+    public UsernameIndex getUsernames() {
+        return usernames;
+    }
+
+    /**
+     * @return the graph of follow relationships
+     */
+    public FollowGraph getFollowGraph() {
+        return followGraph;
+    }
+
+    /**
+     * @return the queries over how two users are connected
+     */
+    public GraphQueries getGraphQueries() {
+        return graphQueries;
+    }
+
+    /**
+     * @return the batch analyses of the follow graph and their latest results
+     */
+    public GraphAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    /**
+     * @return the service building the users' timelines
+     */
+    public FeedService getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return the service suggesting users to follow
+     */
+    public RecommendationService getRecommendations() {
+        return recommendations;
+    }
+
+    /**
+     * @return the service keeping the leaderboards of users and posts
+     */
+    public EngagementService getEngagement() {
+        return engagement;
+    }
+
+    /**
+     * @return the index answering text searches over posts and comments
+     */
+    public SearchIndex getSearch() {
+        return search;
+    }
+
+    /**
+     * @return the compactor removing what deleted users and posts leave behind
+     */
+    public Compactor getCompactor() {
+        return compactor;
+    }
+
+    /**
+     * @return the pool sharing the texts of posts and comments
+     */
+    public StringPool getContents() {
+        return contents;
+    }
+
+    /**
+     * @return the pool sharing the domains of the users' emails
+     */
+    public StringPool getDomains() {
+        return domains;
+    }
+
+    /**
+     * @return the bus publishing the changes made to the platform
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the locks ordering the changes that name the same users
+     */
+    public EntityLocks getLocks() {
+        return locks;
+    }
+}
@@ -0,0 +1,131 @@
+package Project;
+
+/**
+ * The PlatformEvent class describes one change made to the platform, as published on
+ * the {@link EventBus}: a user or post added or deleted, a comment added, or a follow
+ * relationship made or broken.
+ * <p>
+ * Events are slots of the bus's ring and are filled in place, so publishing does not
+ * allocate. A subscriber may read an event while it handles it, but must copy what it
+ * needs to keep, since the slot is reused once every subscriber has moved past it.
+ *
+ * @author Asail
+ */
+final class PlatformEvent {
+
+    /**
+     * The kinds of change published.
+     */
+    enum Type {
+        /** A user registered; the user is the new user. */
+        USER_ADDED,
+        /** A post was added; the user is its author. */
+        POST_ADDED,
+        /** A comment was added; the user is the commenter, the other user the post's author. */
+        COMMENT_ADDED,
+        /** The user followed the other user. */
+        FOLLOWED,
+        /** The user unfollowed the other user. */
+        UNFOLLOWED,
+        /** The user removed the other user from its followers. */
+        FOLLOWER_REMOVED,
+        /** The user, an admin, deleted the other user. */
+        USER_DELETED,
+        /** The user, an admin, deleted a post of the other user. */
+        POST_DELETED
+    }
+
+    private long sequence;
+    private long time;
+    private Type type;
+    private String userName;
+    private String otherUserName;
+    private long postId;
+    private long commentId;
+
+    /**
+     * Fills the slot with a new event.
+     */
+    void set(long sequence, Type type, String userName, String otherUserName, long postId, long commentId) {
+        this.sequence = sequence;
+        this.time = System.currentTimeMillis();
+        this.type = type;
+        this.userName = userName;
+        this.otherUserName = otherUserName;
+        this.postId = postId;
+        this.commentId = commentId;
+    }
+
+    /**
+     * @return the position of the event in the stream, starting at 0
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the time the event was published, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the username of the user making the change
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @return the username of the other user involved, or null if there is none
+     */
+    public String getOtherUserName() {
+        return otherUserName;
+    }
+
+    /**
+     * @return the id of the post involved, or -1 if there is none
+     */
+    public long getPostId() {
+        return postId;
+    }
+
+    /**
+     * @return the id of the comment added, or -1 if there is none
+     */
+    public long getCommentId() {
+        return commentId;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case USER_ADDED:
+                return userName + " joined";
+            case POST_ADDED:
+                return userName + " posted #" + postId;
+            case COMMENT_ADDED:
+                return userName + " commented on #" + postId + " by " + otherUserName;
+            case FOLLOWED:
+                return userName + " followed " + otherUserName;
+            case UNFOLLOWED:
+                return userName + " unfollowed " + otherUserName;
+            case FOLLOWER_REMOVED:
+                return userName + " removed follower " + otherUserName;
+            case USER_DELETED:
+                return userName + " deleted user " + otherUserName;
+            case POST_DELETED:
+                return userName + " deleted post #" + postId + " by " + otherUserName;
+            default:
+                return String.valueOf(type);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package Project;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Programmatic entry point to all platform operations.
+ * Methods take plain arguments and either return their result or throw a
+ * {@link SocialMediaException}; none of them read from or print to the console, so the
+ * service can be driven by tests, benchmarks, replays or a network front end as well
+ * as by the interactive menu in {@link SocialMediaPlatform}.
+ * Implementations are expected to be safe for concurrent use.
+ *
+ * @author Asail
+ */
+interface PlatformService {
+
+    /**
+     * Registers a new user.
+     *
+     * @param userName the username of the new user
+     * @param email the email of the new user
+     * @param admin true to create an admin, false to create a regular user
+     * @return the registered user
+     * @throws InvalidEmailException if the email has an invalid format
+     * @throws DuplicateUserException if the username or email is already taken
+     * @throws SocialMediaException for other invalid input
+     */
+    User addUser(String userName, String email, boolean admin) throws SocialMediaException;
+
+    /**
+     * Publishes a post for a user.
+     *
+     * @param userName the username of the author
+     * @param content the content of the post
+     * @return the new post
+     * @throws UserNotFoundException if the author does not exist
+     */
+    Post addPost(String userName, String content) throws SocialMediaException;
+
+    /**
+     * Adds a comment to a post.
+     *
+     * @param postId the id of the post
+     * @param commenter the username of the commenting user
+     * @param content the content of the comment
+     * @return the new comment
+     * @throws PostNotFoundException if there is no live post with that id
+     * @throws UserNotFoundException if the commenter does not exist
+     */
+    Comment addComment(long postId, String commenter, String content) throws SocialMediaException;
+
+    /**
+     * Makes one user follow another.
+     *
+     * @param follower the username of the following user
+     * @param followee the username of the user to follow
+     * @throws UserNotFoundException if either user does not exist
+     * @throws SocialMediaException if the follow is not allowed or already exists
+     */
+    void followUser(String follower, String followee) throws SocialMediaException;
+
+    /**
+     * Makes one user stop following another.
+     *
+     * @param follower the username of the following user
+     * @param followee the username of the user to unfollow
+     * @throws UserNotFoundException if either user does not exist
+     * @throws SocialMediaException if the follow does not exist
+     */
+    void unfollowUser(String follower, String followee) throws SocialMediaException;
+
+    /**
+     * Removes a follower from a user's followers.
+     *
+     * @param userName the username of the followed user
+     * @param follower the username of the follower to remove
+     * @throws UserNotFoundException if either user does not exist
+     * @throws SocialMediaException if the follower is not following the user
+     */
+    void removeFollower(String userName, String follower) throws SocialMediaException;
+
+    /**
+     * Deletes a user (admin-only action).
+     *
+     * @param adminUserName the username of the admin performing the action
+     * @param userName the username of the user to delete
+     * @throws PermissionDeniedException if the acting user is not an admin
+     * @throws UserNotFoundException if either user does not exist
+     */
+    void deleteUser(String adminUserName, String userName) throws SocialMediaException;
+
+    /**
+     * Deletes a post (admin-only action).
+     *
+     * @param adminUserName the username of the admin performing the action
+     * @param postId the id of the post
+     * @throws PermissionDeniedException if the acting user is not an admin
+     * @throws PostNotFoundException if there is no live post with that id
+     */
+    void deletePost(String adminUserName, long postId) throws SocialMediaException;
+
+    /**
+     * Gets a live post by id.
+     *
+     * @param postId the id of the post
+     * @return the post
+     * @throws PostNotFoundException if there is no live post with that id
+     */
+    Post getPost(long postId) throws SocialMediaException;
+
+    /**
+     * Reads a page of the comments on a post, leaving out deleted ones. The cursor
+     * stays valid while comments are added or deleted.
+     *
+     * @param postId the id of the post
+     * @param cursor 0 for the first page, or the cursor returned with the previous page
+     * @param limit the maximum number of comments
+     * @param newestFirst true to start with the newest comment, false to start with the oldest
+     * @return the page of comments
+     * @throws PostNotFoundException if there is no live post with that id
+     */
+    Page<Comment> getComments(long postId, int cursor, int limit, boolean newestFirst) throws SocialMediaException;
+
+    /**
+     * Reports the string pools sharing repeated post and comment texts and email
+     * domains, with the memory they are estimated to save.
+     *
+     * @return the counts and byte estimates of every pool
+     * @throws SocialMediaException if the platform cannot be loaded
+     */
+    List<StringPool.Stats> getStringPoolStats() throws SocialMediaException;
+
+    /**
+     * Gets a user by username.
+     *
+     * @param userName the username to look up
+     * @return the user
+     * @throws UserNotFoundException if the user does not exist
+     */
+    User getUser(String userName) throws UserNotFoundException;
+
+    /**
+     * Finds a user by email, ignoring case.
+     *
+     * @param email the email to look up
+     * @return the user or null if not found
+     */
+    User findUserByEmail(String email);
+
+    /**
+     * Gets the latest posts from the users someone follows, newest first.
+     *
+     * @param userName the username of the reader
+     * @param limit the maximum number of posts
+     * @return the posts of the feed
+     * @throws UserNotFoundException if the user does not exist
+     */
+    List<Post> getFeed(String userName, int limit) throws SocialMediaException;
+
+    /**
+     * Searches the content of posts and their comments. Words are all required, a
+     * word ending in '*' matches any word starting with it, and words in double quotes
+     * must appear together as a phrase.
+     *
+     * @param query the query
+     * @param limit the maximum number of posts
+     * @return the matching posts, newest first
+     * @throws SocialMediaException if the posts cannot be loaded
+     */
+    List<Post> searchPosts(String query, int limit) throws SocialMediaException;
+
+    /**
+     * Gets a read-only summary of a user, including the content of its posts.
+     *
+     * @param userName the username to look up
+     * @return the summary
+     * @throws UserNotFoundException if the user does not exist
+     */
+    UserInfo getUserInfo(String userName) throws UserNotFoundException;
+
+    /**
+     * Gets the usernames of the followers of a user.
+     *
+     * @param userName the username of the followed user
+     * @return the usernames of its followers
+     * @throws UserNotFoundException if the user does not exist
+     */
+    List<String> getFollowerNames(String userName) throws UserNotFoundException;
+
+    /**
+     * Gets the usernames of the users someone follows.
+     *
+     * @param userName the username of the following user
+     * @return the usernames of the followed users
+     * @throws UserNotFoundException if the user does not exist
+     */
+    List<String> getFollowingNames(String userName) throws UserNotFoundException;
+
+    /**
+     * Reads a page of the usernames of the followers of a user, in the order they
+     * registered. The cursor of the returned page reads the next one and stays valid
+     * while users follow and unfollow.
+     *
+     * @param userName the username of the followed user
+     * @param cursor 0 for the first page, or the cursor returned with the previous page
+     * @param limit the maximum number of usernames
+     * @return the page of usernames
+     * @throws UserNotFoundException if the user does not exist
+     */
+    Page<String> getFollowers(String userName, int cursor, int limit) throws UserNotFoundException;
+
+    /**
+     * Reads a page of the usernames of the users someone follows, in the order they
+     * registered, like {@link #getFollowers(String, int, int)}.
+     *
+     * @param userName the username of the following user
+     * @param cursor 0 for the first page, or the cursor returned with the previous page
+     * @param limit the maximum number of usernames
+     * @return the page of usernames
+     * @throws UserNotFoundException if the user does not exist
+     */
+    Page<String> getFollowing(String userName, int cursor, int limit) throws UserNotFoundException;
+
+    /**
+     * Completes the start of a username, most followed users first.
+     *
+     * @param prefix the start of the username
+     * @param limit the maximum number of usernames
+     * @return the matching usernames
+     * @throws SocialMediaException if the users cannot be loaded
+     */
+    List<String> completeUserName(String prefix, int limit) throws SocialMediaException;
+
+    /**
+     * Suggests users to follow: the users followed by the users someone follows, those
+     * followed by most of them first.
+     *
+     * @param userName the username of the user asking
+     * @param limit the maximum number of suggestions
+     * @return the suggestions
+     * @throws UserNotFoundException if the user does not exist
+     */
+    List<RecommendationService.Suggestion> suggestUsers(String userName, int limit) throws SocialMediaException;
+
+    /**
+     * Checks whether two users follow each other.
+     *
+     * @param userName the username of one user
+     * @param otherUserName the username of the other user
+     * @return true if each follows the other
+     * @throws UserNotFoundException if either user does not exist
+     */
+    boolean followEachOther(String userName, String otherUserName) throws SocialMediaException;
+
+    /**
+     * Gets the usernames of the users following both of two users.
+     *
+     * @param userName the username of one user
+     * @param otherUserName the username of the other user
+     * @return the usernames of the common followers
+     * @throws UserNotFoundException if either user does not exist
+     */
+    List<String> getMutualFollowers(String userName, String otherUserName) throws SocialMediaException;
+
+    /**
+     * Counts the follow hops on the shortest path from one user to another.
+     *
+     * @param userName the username of the user the path starts at
+     * @param otherUserName the username of the user the path ends at
+     * @param maxHops the largest number of hops searched
+     * @return the number of hops, or -1 if the second user cannot be reached within the limit
+     * @throws UserNotFoundException if either user does not exist
+     */
+    int getDegreesOfSeparation(String userName, String otherUserName, int maxHops) throws SocialMediaException;
+
+    /**
+     * Runs PageRank, connected components and degree histograms over the whole follow
+     * graph. The results are kept until the next run.
+     *
+     * @param pool the pool running the analyses
+     * @return the results
+     * @throws SocialMediaException if the platform cannot be loaded
+     */
+    GraphAnalytics.Results runGraphAnalytics(ForkJoinPool pool) throws SocialMediaException;
+
+    /**
+     * Gets the usernames of the users with the highest PageRank in the latest
+     * analytics run.
+     *
+     * @param limit the maximum number of usernames
+     * @return the usernames, highest rank first; empty if the analytics never ran
+     * @throws SocialMediaException if the platform cannot be loaded
+     */
+    List<String> getMostInfluential(int limit) throws SocialMediaException;
+
+    /**
+     * Gets the users with the most followers, from a leaderboard kept as follows are
+     * added and removed.
+     *
+     * @param limit the maximum number of users
+     * @return the users, most followed first
+     * @throws SocialMediaException if the platform cannot be loaded
+     */
+    List<User> getMostFollowed(int limit) throws SocialMediaException;
+
+    /**
+     * Gets the posts with the most comments, from a leaderboard kept as comments are
+     * added and deleted.
+     *
+     * @param limit the maximum number of posts
+     * @return the posts, most commented first
+     * @throws SocialMediaException if the platform cannot be loaded
+     */
+    List<Post> getMostCommented(int limit) throws SocialMediaException;
+
+    /**
+     * Gets a snapshot of all users in registration order.
+     *
+     * @return the list of users
+     */
+    List<User> getUsers();
+
+    /**
+     * Streams the report of all users, their posts and comments to a report writer,
+     * in registration order. The writer is neither flushed nor closed. Whether a
+     * report written while the platform changes shows it at a single point in time
+     * depends on the implementation.
+     *
+     * @param writer the writer receiving the report
+     * @throws IOException if the writer's sink fails
+     */
+    void writeReport(ReportWriter writer) throws IOException;
+
+    /**
+     * Streams the same report as {@link #writeReport(ReportWriter)}, formatting ranges
+     * of users in parallel. The output does not depend on the number of threads.
+     *
+     * @param writer the writer receiving the report
+     * @param pool the pool formatting the ranges
+     * @throws IOException if the writer's sink fails or the thread is interrupted
+     */
+    void writeReport(ReportWriter writer, ForkJoinPool pool) throws IOException;
+
+    /**
+     * Imports users, posts, comments and follow relationships from a file in bulk.
+     * Invalid records and users that already exist are skipped and counted.
+     *
+     * @param file the file to read
+     * @param format the format of the file, CSV or JSON lines
+     * @return the counts of the import
+     * @throws IOException if the file cannot be read or the imported data cannot be saved
+     */
+    BulkImporter.Result importData(Path file, ReportWriter.Format format) throws IOException;
+
+    /**
+     * Gets the bus on which every successful mutation made through the service is
+     * published, so that subscribers can follow the changes as they happen.
+     *
+     * @return the event bus of the platform
+     */
+    EventBus getEvents();
+}
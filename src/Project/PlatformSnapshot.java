@@ -0,0 +1,1020 @@
+package Project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The PlatformSnapshot class stores the whole state of a platform in a columnar binary
+ * file that is read through memory mapping: users with their ids, follow
+ * relationships, and posts with their comments, together with the log sequence number
+ * of the last operation the snapshot contains.
+ * <p>
+ * The file holds fixed-width records for users, posts and comments, the follow graph
+ * in compressed sparse row (CSR) form in both directions, user indexes sorted by
+ * username and by email, and a pool with all strings. Opening a snapshot only maps
+ * the file, so read-only queries such as user info, follower lists and reports are
+ * answered straight from the mapping, and pages are loaded by the operating system
+ * as they are touched. {@link #materialize(PlatformContext)} builds the domain objects
+ * when the platform has to change.
+ * <p>
+ * A snapshot is first written to a temporary file, forced to disk and then renamed
+ * over the previous one, so a crash never leaves a half-written snapshot in place.
+ * Materializing restores users first, then the follow graph, and then all posts in
+ * id order, so that feeds are rebuilt the same way they were filled originally. Feed
+ * inboxes are not saved; since they are refilled from the restored follow graph, a
+ * restored feed may also show older posts of users that were followed after those
+ * posts appeared. Both follow lists of every user are saved sorted by id, as the
+ * graph keeps them.
+ *
+ * @author Asail
+ */
+final class PlatformSnapshot {
+    private static final int MAGIC = 0x534D5053;
+    private static final int VERSION = 1;
+    private static final int HEADER = 256;
+    private static final int BUFFER = 1 << 16;
+
+    private static final int USERS = 0;
+    private static final int NAMES = 1;
+    private static final int EMAILS = 2;
+    private static final int FOLLOWING_OFFSETS = 3;
+    private static final int FOLLOWING = 4;
+    private static final int FOLLOWER_OFFSETS = 5;
+    private static final int FOLLOWERS = 6;
+    private static final int POSTS = 7;
+    private static final int COMMENTS = 8;
+    private static final int DETACHED = 9;
+    private static final int POOL = 10;
+    private static final int SECTIONS = 11;
+    private static final int SECTION_TABLE = 64;
+
+    /** id, flags, name, email, first post, post count. */
+    private static final int USER_BYTES = 40;
+    /** id, creation time, content, first comment, comment count, author index. */
+    private static final int POST_BYTES = 40;
+    /** author, content, id. */
+    private static final int COMMENT_BYTES = 24;
+    /** flags, name, email of a comment author that is no longer registered. */
+    private static final int DETACHED_BYTES = 24;
+    private static final int ADMIN_FLAG = 1;
+    /** Comment author code of a comment without author; codes below it are detached authors. */
+    private static final int NO_AUTHOR = -1;
+
+    private final Region region;
+    private final long lsn;
+    private final long nextPostId;
+    private final int idLimit;
+    private final int userCount;
+    private final long postCount;
+    private final long[] sections;
+
+    private PlatformSnapshot(Region region) throws IOException {
+        this.region = region;
+        if (region.size() < HEADER || region.getInt(0) != MAGIC) {
+            throw new IOException("Not a platform snapshot.");
+        }
+        int version = region.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        this.lsn = region.getLong(8);
+        this.nextPostId = region.getLong(16);
+        this.idLimit = region.getInt(24);
+        this.userCount = region.getInt(28);
+        this.postCount = region.getLong(32);
+        this.sections = new long[SECTIONS + 1];
+        for (int i = 0; i <= SECTIONS; i++) {
+            sections[i] = region.getLong(SECTION_TABLE + 8L * i);
+        }
+        if (sections[SECTIONS] != region.size()) {
+            throw new IOException("Snapshot is incomplete.");
+        }
+    }
+
+    /**
+     * Maps a snapshot file. The file is not read until it is queried.
+     *
+     * @param file the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be mapped or is not a valid snapshot
+     */
+    static PlatformSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PlatformSnapshot(new Region(channel));
+        }
+    }
+
+    /**
+     * @return the LSN of the last operation contained in the snapshot
+     */
+    long lsn() {
+        return lsn;
+    }
+
+    /**
+     * @return the number of users in the snapshot
+     */
+    int userCount() {
+        return userCount;
+    }
+
+    /**
+     * Finds a user by username.
+     *
+     * @param userName the username
+     * @return the index of the user in the snapshot, or -1 if there is none
+     */
+    int findUser(String userName) {
+        return userName == null ? -1 : search(NAMES, userName, false);
+    }
+
+    /**
+     * Finds a user by email, ignoring case and surrounding whitespace.
+     *
+     * @param email the email
+     * @return the index of the user in the snapshot, or -1 if there is none
+     */
+    int findUserByEmail(String email) {
+        return email == null ? -1 : search(EMAILS, EmailValidator.normalize(email), true);
+    }
+
+    private int search(int section, String key, boolean email) {
+        long base = sections[section];
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int user = region.getInt(base + 4L * mid);
+            String value = email ? EmailValidator.normalize(email(user)) : userName(user);
+            int cmp = value.compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return user;
+            }
+        }
+        return -1;
+    }
+
+    private long user(int user) {
+        return sections[USERS] + (long) user * USER_BYTES;
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the id the user had on the platform
+     */
+    int userId(int user) {
+        return region.getInt(user(user));
+    }
+
+    /**
+     * @param user the index of a user
+     * @return true if the user is an admin
+     */
+    boolean isAdmin(int user) {
+        return (region.getInt(user(user) + 4) & ADMIN_FLAG) != 0;
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the username
+     */
+    String userName(int user) {
+        return string(region.getLong(user(user) + 8));
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the email
+     */
+    String email(int user) {
+        return string(region.getLong(user(user) + 16));
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the number of posts of the user
+     */
+    int postCount(int user) {
+        return region.getInt(user(user) + 32);
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the number of users the user follows
+     */
+    int followingCount(int user) {
+        return (int) (edgeOffset(FOLLOWING_OFFSETS, user + 1) - edgeOffset(FOLLOWING_OFFSETS, user));
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the number of followers of the user
+     */
+    int followersCount(int user) {
+        return (int) (edgeOffset(FOLLOWER_OFFSETS, user + 1) - edgeOffset(FOLLOWER_OFFSETS, user));
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the usernames of the users the user follows
+     */
+    List<String> followingNames(int user) {
+        return names(FOLLOWING_OFFSETS, FOLLOWING, user);
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the usernames of the followers of the user
+     */
+    List<String> followerNames(int user) {
+        return names(FOLLOWER_OFFSETS, FOLLOWERS, user);
+    }
+
+    private long edgeOffset(int section, int user) {
+        return region.getLong(sections[section] + 8L * user);
+    }
+
+    /**
+     * Reads a page of the usernames of the users a user follows. As in the follow
+     * graph, the page starts with the first user whose id is not smaller than the
+     * cursor, so the cursors are the same as those of the platform built from this
+     * snapshot.
+     *
+     * @param user the index of a user
+     * @param cursor 0 for the first page, or the id the previous page stopped before
+     * @param limit the maximum number of usernames
+     * @return the page of usernames
+     */
+    Page<String> followingPage(int user, int cursor, int limit) {
+        return page(FOLLOWING_OFFSETS, FOLLOWING, user, cursor, limit);
+    }
+
+    /**
+     * Reads a page of the usernames of the followers of a user, like
+     * {@link #followingPage(int, int, int)}.
+     *
+     * @param user the index of a user
+     * @param cursor 0 for the first page, or the id the previous page stopped before
+     * @param limit the maximum number of usernames
+     * @return the page of usernames
+     */
+    Page<String> followerPage(int user, int cursor, int limit) {
+        return page(FOLLOWER_OFFSETS, FOLLOWERS, user, cursor, limit);
+    }
+
+    private Page<String> page(int offsets, int targets, int user, int cursor, int limit) {
+        long from = edgeOffset(offsets, user);
+        long to = edgeOffset(offsets, user + 1);
+        List<String> names = new ArrayList<>();
+        if (cursor < 0 || limit < 1) {
+            return new Page<>(names, Page.END);
+        }
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (userId(region.getInt(sections[targets] + 4 * mid)) < cursor) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long end = Math.min(to, low + limit);
+        for (long i = low; i < end; i++) {
+            names.add(userName(region.getInt(sections[targets] + 4 * i)));
+        }
+        return new Page<>(names, end < to ? userId(region.getInt(sections[targets] + 4 * end)) : Page.END);
+    }
+
+    private int[] edgeIds(int offsets, int targets, int user, User[] users) {
+        long from = edgeOffset(offsets, user);
+        int[] ids = new int[(int) (edgeOffset(offsets, user + 1) - from)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = users[region.getInt(sections[targets] + 4 * (from + i))].getId();
+        }
+        return ids;
+    }
+
+    private List<String> names(int offsets, int targets, int user) {
+        long from = edgeOffset(offsets, user);
+        long to = edgeOffset(offsets, user + 1);
+        List<String> names = new ArrayList<>((int) (to - from));
+        for (long i = from; i < to; i++) {
+            names.add(userName(region.getInt(sections[targets] + 4 * i)));
+        }
+        return names;
+    }
+
+    /**
+     * @param user the index of a user
+     * @return the summary of the user
+     */
+    UserInfo userInfo(int user) {
+        long first = region.getLong(user(user) + 24);
+        long[] ids = new long[postCount(user)];
+        String[] contents = new String[ids.length];
+        for (int i = 0; i < contents.length; i++) {
+            ids[i] = region.getLong(post(first + i));
+            contents[i] = string(region.getLong(post(first + i) + 16));
+        }
+        return new UserInfo(userName(user), email(user), isAdmin(user), ids, Arrays.asList(contents),
+                followingCount(user), followersCount(user));
+    }
+
+    private long post(long post) {
+        return sections[POSTS] + post * POST_BYTES;
+    }
+
+    private long comment(long comment) {
+        return sections[COMMENTS] + comment * COMMENT_BYTES;
+    }
+
+    private String commentAuthorName(int author) {
+        if (author == NO_AUTHOR) {
+            return "";
+        }
+        if (author >= 0) {
+            return userName(author);
+        }
+        return string(region.getLong(sections[DETACHED] + (long) (NO_AUTHOR - 1 - author) * DETACHED_BYTES + 8));
+    }
+
+    /**
+     * Streams the report of all users, their posts and comments from the mapping.
+     *
+     * @param writer the writer receiving the report
+     * @throws IOException if the writer's sink fails
+     */
+    void writeReport(ReportWriter writer) throws IOException {
+        writer.writeHeader();
+        writeUsers(writer, 0, userCount);
+    }
+
+    /**
+     * Streams the report from the mapping, formatting ranges of users in parallel on
+     * a pool. The mapping is only read, so ranges can be formatted at the same time.
+     *
+     * @param writer the writer receiving the report
+     * @param pool the pool formatting the ranges
+     * @throws IOException if the writer's sink fails
+     */
+    void writeReport(ReportWriter writer, ForkJoinPool pool) throws IOException {
+        writer.writeUsers(userCount, this::writeUsers, pool);
+    }
+
+    private void writeUsers(ReportWriter writer, int from, int to) throws IOException {
+        for (int user = from; user < to; user++) {
+            String userName = userName(user);
+            int posts = postCount(user);
+            writer.beginUser(userId(user), userName, email(user), isAdmin(user), posts,
+                    followingCount(user), followersCount(user));
+            long first = region.getLong(user(user) + 24);
+            for (long p = first; p < first + posts; p++) {
+                long record = post(p);
+                long id = region.getLong(record);
+                writer.beginPost(id, userName, region.getLong(record + 8), string(region.getLong(record + 16)));
+                long firstComment = region.getLong(record + 24);
+                int comments = region.getInt(record + 32);
+                for (long c = firstComment; c < firstComment + comments; c++) {
+                    long commentRecord = comment(c);
+                    writer.writeComment(id, commentAuthorName(region.getInt(commentRecord)),
+                            string(region.getLong(commentRecord + 8)));
+                }
+                writer.endPost();
+            }
+            writer.endUser();
+        }
+    }
+
+    /**
+     * Builds the domain objects of the snapshot in an empty platform.
+     *
+     * @param context the empty platform to fill
+     * @throws IOException if the snapshot does not fit the platform
+     */
+    void materialize(PlatformContext context) throws IOException {
+        try {
+            restore(context);
+        } catch (SocialMediaException e) {
+            throw new IOException("Invalid snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private void restore(PlatformContext context) throws SocialMediaException {
+        UserRegistry registry = context.getUsers();
+        FollowGraph graph = context.getFollowGraph();
+        Post.reserveIds(nextPostId);
+        User[] users = new User[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = isAdmin(i) ? new Admin(userName(i), email(i)) : new RegularUser(userName(i), email(i));
+            registry.restore(users[i], userId(i));
+        }
+        registry.reserveIds(idLimit);
+
+        for (int i = 0; i < userCount; i++) {
+            graph.restore(users[i].getId(), edgeIds(FOLLOWING_OFFSETS, FOLLOWING, i, users), edgeIds(FOLLOWER_OFFSETS, FOLLOWERS, i, users));
+        }
+
+        Map<Integer, User> detached = new HashMap<>();
+        Post[] posts = new Post[(int) postCount];
+        int n = 0;
+        for (int i = 0; i < userCount; i++) {
+            long first = region.getLong(user(i) + 24);
+            for (long p = first; p < first + postCount(i); p++) {
+                long record = post(p);
+                Post post = new Post(region.getLong(record), region.getLong(record + 8),
+                        string(region.getLong(record + 16)), users[i]);
+                long firstComment = region.getLong(record + 24);
+                int comments = region.getInt(record + 32);
+                for (long c = firstComment; c < firstComment + comments; c++) {
+                    long commentRecord = comment(c);
+                    int author = region.getInt(commentRecord);
+                    User commentAuthor;
+                    if (author == NO_AUTHOR) {
+                        commentAuthor = null;
+                    } else if (author >= 0) {
+                        commentAuthor = users[author];
+                    } else {
+                        commentAuthor = detached.computeIfAbsent(author, this::detachedUser);
+                    }
+                    post.addComment(new Comment(region.getLong(commentRecord + 16),
+                            string(region.getLong(commentRecord + 8)), commentAuthor));
+                }
+                posts[n++] = post;
+            }
+        }
+        Arrays.sort(posts, 0, n, Comparator.comparingLong(Post::getId));
+        for (int i = 0; i < n; i++) {
+            posts[i].getAuthor().addPost(posts[i]);
+        }
+    }
+
+    private User detachedUser(int author) {
+        long record = sections[DETACHED] + (long) (NO_AUTHOR - 1 - author) * DETACHED_BYTES;
+        String userName = string(region.getLong(record + 8));
+        String email = string(region.getLong(record + 16));
+        return (region.getInt(record) & ADMIN_FLAG) != 0 ? new Admin(userName, email) : new RegularUser(userName, email);
+    }
+
+    private String string(long ref) {
+        long position = sections[POOL] + ref;
+        int length = region.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        return new String(region.getBytes(position + 4, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a snapshot of a platform. The caller must make sure the platform does not
+     * change while it is written.
+     *
+     * @param context the platform to save
+     * @param lsn the LSN of the last operation applied to the platform
+     * @param file the snapshot file to replace
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(PlatformContext context, long lsn, Path file) throws IOException {
+        write(capture(context), lsn, file);
+    }
+
+    /**
+     * Copies the parts of a platform a snapshot holds. The copy takes time in
+     * proportion to the size of the platform but touches no disk, so the caller only
+     * needs to keep the platform from changing while it is made, and can write the
+     * image afterwards while the platform changes again.
+     *
+     * @param context the platform to copy
+     * @return the image to pass to {@link #write(Image, long, Path)}
+     */
+    static Image capture(PlatformContext context) {
+        return new Image(context);
+    }
+
+    /**
+     * Writes a snapshot from an image of a platform. The snapshot is written to a
+     * temporary file, forced, and renamed over the old one, and the directory is
+     * forced after the rename, so a crash leaves one snapshot or the other.
+     *
+     * @param image the image taken of the platform
+     * @param lsn the LSN of the last operation applied before the image was taken
+     * @param file the snapshot file to replace
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(Image image, long lsn, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new Layout(image).write(channel, lsn);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        OperationLog.syncDirectory(file);
+    }
+
+    /**
+     * The state of a platform at one point: its users with their names and emails,
+     * their outgoing edges, and their posts with the comments that were live and the
+     * texts both had. The image serves both snapshots and reports. Edges
+     * are kept as user indexes; followers are found by turning the outgoing edges
+     * around, so both directions always agree.
+     */
+    static final class Image {
+        private final List<User> users;
+        private final String[] names;
+        private final String[] emails;
+        private final int[] indexOfId;
+        private final int[][] following;
+        private final int[] postCounts;
+        private final List<Post> posts;
+        private final String[] postContents;
+        private final int[] commentCounts;
+        private final List<Comment> comments;
+        private final String[] commentContents;
+        private final Map<User, Integer> detached;
+        private final long nextPostId;
+        private final int idLimit;
+        private final long edges;
+
+        private Image(PlatformContext context) {
+            UserRegistry registry = context.getUsers();
+            FollowGraph graph = context.getFollowGraph();
+            this.idLimit = registry.idLimit();
+            this.nextPostId = Post.nextId();
+            this.users = registry.getUsers();
+            int userCount = users.size();
+            this.names = new String[userCount];
+            this.emails = new String[userCount];
+            this.indexOfId = new int[idLimit];
+            this.following = new int[userCount][];
+            this.postCounts = new int[userCount];
+            this.posts = new ArrayList<>();
+            this.comments = new ArrayList<>();
+            this.detached = new IdentityHashMap<>();
+            Arrays.fill(indexOfId, -1);
+            for (int i = 0; i < userCount; i++) {
+                indexOfId[users.get(i).getId()] = i;
+            }
+            long edgeCount = 0;
+            for (int i = 0; i < userCount; i++) {
+                User user = users.get(i);
+                names[i] = user.getUserName();
+                emails[i] = user.getEmail();
+                int[] ids = graph.followingIds(user.getId());
+                int kept = 0;
+                for (int id : ids) {
+                    int index = indexOf(id);
+                    if (index >= 0) {
+                        ids[kept++] = index;
+                    }
+                }
+                following[i] = kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+                edgeCount += kept;
+                for (Post post : user.getPosts()) {
+                    posts.add(post);
+                    postCounts[i]++;
+                }
+            }
+            this.edges = edgeCount;
+            this.postContents = new String[posts.size()];
+            this.commentCounts = new int[posts.size()];
+            for (int p = 0; p < commentCounts.length; p++) {
+                postContents[p] = posts.get(p).getContent();
+                for (Comment comment : posts.get(p).getComments()) {
+                    comments.add(comment);
+                    commentCounts[p]++;
+                    User author = comment.getAuthor();
+                    if (author != null && indexOfUser(author) < 0) {
+                        detached.putIfAbsent(author, detached.size());
+                    }
+                }
+            }
+            this.commentContents = new String[comments.size()];
+            for (int c = 0; c < commentContents.length; c++) {
+                commentContents[c] = comments.get(c).getContent();
+            }
+        }
+
+        /**
+         * Writes the report of the image, the same one the platform would have given
+         * when the image was taken.
+         *
+         * @param writer the writer receiving the report
+         * @throws IOException if the writer's sink fails
+         */
+        void writeReport(ReportWriter writer) throws IOException {
+            writer.writeHeader();
+            new Report().write(writer, 0, users.size());
+        }
+
+        /**
+         * Writes the report of the image, formatting ranges of users in parallel on a
+         * pool. The image does not change, so ranges can be formatted at the same time.
+         *
+         * @param writer the writer receiving the report
+         * @param pool the pool formatting the ranges
+         * @throws IOException if the writer's sink fails
+         */
+        void writeReport(ReportWriter writer, ForkJoinPool pool) throws IOException {
+            writer.writeUsers(users.size(), new Report(), pool);
+        }
+
+        private int indexOf(int id) {
+            return id >= 0 && id < indexOfId.length ? indexOfId[id] : -1;
+        }
+
+        /**
+         * @return the index of a user that was registered when the image was taken,
+         * or -1
+         */
+        private int indexOfUser(User user) {
+            int index = indexOf(user.getId());
+            return index >= 0 && users.get(index) == user ? index : -1;
+        }
+
+        /**
+         * Writes ranges of the users of the image, with their posts and comments.
+         */
+        private final class Report implements ReportWriter.Range {
+            private final int[] firstPost = starts(postCounts);
+            private final int[] firstComment = starts(commentCounts);
+            private final int[] followerCounts = new int[users.size()];
+
+            Report() {
+                for (int[] targets : following) {
+                    for (int target : targets) {
+                        followerCounts[target]++;
+                    }
+                }
+            }
+
+            @Override
+            public void write(ReportWriter writer, int from, int to) throws IOException {
+                for (int i = from; i < to; i++) {
+                    User user = users.get(i);
+                    writer.beginUser(user.getId(), names[i], emails[i], user instanceof Admin, postCounts[i],
+                            following[i].length, followerCounts[i]);
+                    for (int p = firstPost[i]; p < firstPost[i + 1]; p++) {
+                        Post post = posts.get(p);
+                        writer.beginPost(post.getId(), names[i], post.getCreatedAt(), postContents[p]);
+                        for (int c = firstComment[p]; c < firstComment[p + 1]; c++) {
+                            User author = comments.get(c).getAuthor();
+                            int index = author == null ? -1 : indexOfUser(author);
+                            String name = author == null ? "" : index >= 0 ? names[index] : author.getUserName();
+                            writer.writeComment(post.getId(), name, commentContents[c]);
+                        }
+                        writer.endPost();
+                    }
+                    writer.endUser();
+                }
+            }
+        }
+
+        /**
+         * @return the position of the first item of every group, and the total at the end
+         */
+        private static int[] starts(int[] counts) {
+            int[] starts = new int[counts.length + 1];
+            for (int i = 0; i < counts.length; i++) {
+                starts[i + 1] = starts[i] + counts[i];
+            }
+            return starts;
+        }
+
+        /**
+         * @return the followers of every user as indexes, in index order
+         */
+        private int[][] followers() {
+            int[][] followers = new int[following.length][];
+            int[] counts = new int[following.length];
+            for (int[] targets : following) {
+                for (int target : targets) {
+                    counts[target]++;
+                }
+            }
+            for (int i = 0; i < followers.length; i++) {
+                followers[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+            for (int i = 0; i < following.length; i++) {
+                for (int target : following[i]) {
+                    followers[target][counts[target]++] = i;
+                }
+            }
+            return followers;
+        }
+    }
+
+    /**
+     * Places the sections of an image and writes them.
+     */
+    private static final class Layout {
+        private final Image image;
+
+        Layout(Image image) {
+            this.image = image;
+        }
+
+        void write(FileChannel channel, long lsn) throws IOException {
+            List<User> users = image.users;
+            int userCount = users.size();
+            long posts = image.posts.size();
+            long comments = image.comments.size();
+            long edges = image.edges;
+            Map<User, Integer> detached = image.detached;
+            long[] sections = new long[SECTIONS + 1];
+            long[] sizes = {
+                (long) userCount * USER_BYTES, 4L * userCount, 4L * userCount,
+                8L * (userCount + 1), 4 * edges, 8L * (userCount + 1), 4 * edges,
+                posts * POST_BYTES, comments * COMMENT_BYTES, (long) detached.size() * DETACHED_BYTES
+            };
+            long position = HEADER;
+            for (int i = 0; i < POOL; i++) {
+                sections[i] = position;
+                position = align(position + sizes[i]);
+            }
+            sections[POOL] = position;
+
+            Section pool = new Section(channel, sections[POOL]);
+            Section userSection = new Section(channel, sections[USERS]);
+            long post = 0;
+            for (int i = 0; i < userCount; i++) {
+                User user = users.get(i);
+                int userPosts = image.postCounts[i];
+                userSection.putInt(user.getId()).putInt(user instanceof Admin ? ADMIN_FLAG : 0)
+                        .putLong(pool.putString(image.names[i])).putLong(pool.putString(image.emails[i]))
+                        .putLong(post).putInt(userPosts).putInt(0);
+                post += userPosts;
+            }
+            userSection.flush();
+            writeIndex(channel, sections[NAMES], image.names);
+            String[] emails = new String[userCount];
+            for (int i = 0; i < userCount; i++) {
+                emails[i] = EmailValidator.normalize(image.emails[i]);
+            }
+            writeIndex(channel, sections[EMAILS], emails);
+            writeEdges(channel, sections[FOLLOWING_OFFSETS], sections[FOLLOWING], image.following);
+            writeEdges(channel, sections[FOLLOWER_OFFSETS], sections[FOLLOWERS], image.followers());
+
+            Section postSection = new Section(channel, sections[POSTS]);
+            Section commentSection = new Section(channel, sections[COMMENTS]);
+            int p = 0;
+            int comment = 0;
+            for (int i = 0; i < userCount; i++) {
+                for (int end = p + image.postCounts[i]; p < end; p++) {
+                    Post written = image.posts.get(p);
+                    long firstComment = comment;
+                    for (int last = comment + image.commentCounts[p]; comment < last; comment++) {
+                        Comment c = image.comments.get(comment);
+                        User author = c.getAuthor();
+                        int index = author == null ? -1 : image.indexOfUser(author);
+                        int code = author == null ? NO_AUTHOR : index >= 0 ? index : NO_AUTHOR - 1 - detached.get(author);
+                        commentSection.putInt(code).putInt(0).putLong(pool.putString(image.commentContents[comment]))
+                                .putLong(c.getId());
+                    }
+                    postSection.putLong(written.getId()).putLong(written.getCreatedAt())
+                            .putLong(pool.putString(image.postContents[p]))
+                            .putLong(firstComment).putInt((int) (comment - firstComment)).putInt(i);
+                }
+            }
+            postSection.flush();
+            commentSection.flush();
+
+            Section detachedSection = new Section(channel, sections[DETACHED]);
+            User[] byCode = new User[detached.size()];
+            for (Map.Entry<User, Integer> entry : detached.entrySet()) {
+                byCode[entry.getValue()] = entry.getKey();
+            }
+            for (User author : byCode) {
+                detachedSection.putInt(author instanceof Admin ? ADMIN_FLAG : 0).putInt(0)
+                        .putLong(pool.putString(author.getUserName())).putLong(pool.putString(author.getEmail()));
+            }
+            detachedSection.flush();
+            pool.flush();
+            sections[SECTIONS] = sections[POOL] + pool.written();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(lsn).putLong(image.nextPostId)
+                    .putInt(image.idLimit).putInt(userCount).putLong(posts).putLong(comments);
+            header.position(SECTION_TABLE);
+            for (long section : sections) {
+                header.putLong(section);
+            }
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private static void writeIndex(FileChannel channel, long position, String[] keys) throws IOException {
+            int[] order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = i;
+            }
+            sort(order, keys, 0, order.length - 1);
+            Section section = new Section(channel, position);
+            for (int user : order) {
+                section.putInt(user);
+            }
+            section.flush();
+        }
+
+        private static void writeEdges(FileChannel channel, long offsetsAt, long targetsAt, int[][] lists) throws IOException {
+            Section offsets = new Section(channel, offsetsAt);
+            Section targets = new Section(channel, targetsAt);
+            long written = 0;
+            for (int[] list : lists) {
+                offsets.putLong(written);
+                for (int index : list) {
+                    targets.putInt(index);
+                }
+                written += list.length;
+            }
+            offsets.putLong(written);
+            offsets.flush();
+            targets.flush();
+        }
+
+        /**
+         * Sorts user indexes by their keys without boxing them.
+         */
+        private static void sort(int[] order, String[] keys, int low, int high) {
+            while (high - low > 16) {
+                String pivot = keys[order[(low + high) >>> 1]];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (keys[order[i]].compareTo(pivot) < 0) {
+                        i++;
+                    }
+                    while (keys[order[j]].compareTo(pivot) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int t = order[i];
+                        order[i++] = order[j];
+                        order[j--] = t;
+                    }
+                }
+                if (j - low < high - i) {
+                    sort(order, keys, low, j);
+                    low = i;
+                } else {
+                    sort(order, keys, i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                int value = order[i];
+                int j = i - 1;
+                while (j >= low && keys[order[j]].compareTo(keys[value]) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = value;
+            }
+        }
+
+        private static long align(long position) {
+            return (position + 7) & ~7L;
+        }
+    }
+
+    /**
+     * Writes one section of the file sequentially through a buffer.
+     */
+    private static final class Section {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+        private long written;
+
+        Section(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+            this.buffer = ByteBuffer.allocate(BUFFER);
+        }
+
+        Section putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        Section putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            return this;
+        }
+
+        /**
+         * Appends a string with its length, padded to four bytes.
+         *
+         * @return the offset of the string in this section
+         */
+        long putString(String value) throws IOException {
+            long ref = written + buffer.position();
+            if (value == null) {
+                putInt(-1);
+                return ref;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length;) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+            for (int pad = -bytes.length & 3; pad > 0; pad--) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+            return ref;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            written += buffer.limit();
+            buffer.clear();
+        }
+
+        long written() {
+            return written;
+        }
+    }
+
+    /**
+     * A read-only mapping of a whole file, split into segments because a single
+     * mapping cannot exceed 2 GB. Sections are aligned, so no number crosses a segment.
+     */
+    private static final class Region {
+        private static final int SEGMENT_BITS = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+        private final ByteBuffer[] segments;
+        private final long size;
+
+        Region(FileChannel channel) throws IOException {
+            this.size = channel.size();
+            int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+            this.segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, SEGMENT_MASK + 1));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        int getInt(long position) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK));
+        }
+
+        long getLong(long position) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+        }
+
+        byte[] getBytes(long position, int length) {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+                int offset = (int) (position & SEGMENT_MASK);
+                int n = Math.min(length - copied, segment.limit() - offset);
+                segment.get(offset, bytes, copied, n);
+                copied += n;
+                position += n;
+            }
+            return bytes;
+        }
+    }
+}
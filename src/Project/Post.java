@@ -1,27 +1,41 @@
 package Project;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * The Post class represents a social media post, containing content, an author, and a list of comments.
  * It provides methods to manage the post and its associated comments, and overrides key methods like
  * display, toString, equals, and hashCode for proper functionality.
+ * Comments are kept in a {@link CommentStore}, and posts are equal only if they have
+ * the same id.
  * 
  * @author Hessa
  */
 public class Post implements SocialMediaElement {
-    private String Content;
-    private User Author;
-    private List<Comment> Comments;
+    private static final IdGenerator IDS = new IdGenerator(0);
+    /** Number of comments shown by {@link #toString()}. */
+    private static final int PREVIEW_COMMENTS = 3;
+    
+    private final long Id;
+    private final long CreatedAt;
+    private volatile String Content;
+    private volatile User Author;
+    private volatile CommentStore Comments;
+    private volatile StringPool Strings;
+    private volatile boolean Removed;
+    private final Collection<Comment> LiveComments = new LiveComments();
     
     /**
      * Default constructor for the Post class.
-     * Initializes the list of comments.
+     * Assigns the next post id, records the creation time and initializes the list of comments.
      */
     public Post() {
-        this.Comments = new ArrayList<>();
+        this.Id = newId();
+        this.CreatedAt = System.currentTimeMillis();
+        this.Comments = new CommentStore();
     }
     
     /**
@@ -36,6 +50,68 @@ public class Post implements SocialMediaElement {
         this.Author = Author;
     }
     
+    /**
+     * Recreates a saved post with its original id and creation time. Posts created
+     * afterwards receive larger ids.
+     * 
+     * @param Id the id of the saved post
+     * @param CreatedAt the creation time of the saved post
+     * @param Content the content of the post
+     * @param Author the user who created the post
+     */
+    Post(long Id, long CreatedAt, String Content, User Author) {
+        this.Id = Id;
+        this.CreatedAt = CreatedAt;
+        this.Content = Content;
+        this.Author = Author;
+        this.Comments = new CommentStore();
+        reserveIds(Id + 1);
+    }
+    
+    /**
+     * @return a lower bound for the id the next new post or comment will receive
+     */
+    static long nextId() {
+        return IDS.peek();
+    }
+    
+    /**
+     * Hands out a new id for a post or a comment.
+     * 
+     * @return the new id
+     */
+    static long newId() {
+        return IDS.next();
+    }
+    
+    /**
+     * Makes sure ids below a limit are never handed out again to posts or comments.
+     * 
+     * @param limit the smallest id that may still be handed out
+     */
+    static void reserveIds(long limit) {
+        IDS.reserve(limit);
+    }
+    
+    /**
+     * Gets the id of the post. Later posts always have larger ids, and the id stays
+     * the same when other posts are deleted or the platform is restored.
+     * 
+     * @return the id of the post
+     */
+    public long getId() {
+        return Id;
+    }
+    
+    /**
+     * Gets the creation time of the post.
+     * 
+     * @return the creation time in milliseconds since the epoch
+     */
+    public long getCreatedAt() {
+        return CreatedAt;
+    }
+    
     /**
      * Gets the content of the post.
      * 
@@ -51,7 +127,18 @@ public class Post implements SocialMediaElement {
      * @param Content the content to be set
      */
     public void setContent(String Content) {
-        this.Content = Content;
+        String previous;
+        synchronized (this) {
+            previous = this.Content;
+            StringPool strings = Strings;
+            if (strings != null) {
+                this.Content = strings.intern(Content);
+                strings.release(previous);
+            } else {
+                this.Content = Content;
+            }
+        }
+        reindex(previous);
     }
     
     /**
@@ -73,25 +160,118 @@ public class Post implements SocialMediaElement {
     }
     
     /**
-     * Gets the list of comments on the post.
+     * Gets the comments on the post, in the order they were added. The returned
+     * collection is a live, read-only view that leaves out deleted comments.
+     * 
+     * @return the comments
+     */
+    public Collection<Comment> getComments() {
+        return LiveComments;
+    }
+    
+ 
+    /**
+     * Gets a page of the comments on the post, leaving out deleted ones.
      * 
-     * @return the list of comments
+     * @param cursor the cursor returned with the previous page, or 0 for the first page
+     * @param limit the maximum number of comments
+     * @param newestFirst true to start with the newest comment, false to start with the oldest
+     * @return the page of comments
      */
-    public List<Comment> getComments() {
-        return Comments;
+    public Page<Comment> getComments(int cursor, int limit, boolean newestFirst) {
+        return Comments.page(cursor, limit, newestFirst);
     }
     
     /**
-     * Sets the list of comments on the post.
+     * Gets the number of comments on the post, leaving out deleted ones.
      * 
-     * @param Comments the list of comments to be set
+     * @return the number of comments
      */
-    public void setComments(List<Comment> Comments) {
-        this.Comments = Comments;
+    public int getCommentCount() {
+        return Comments.count();
+    }
+    
+    /**
+     * Gets all comments on the post, including deleted ones not yet compacted.
+     * 
+     * @return the comments
+     */
+    Iterable<Comment> getAllComments() {
+        CommentStore store = Comments;
+        return () -> store.iterator(true);
+    }
+    
+    /**
+     * Replaces the comments on the post with the live ones among the given comments.
+     * The store is replaced under the post's lock, which comments being added and
+     * deleted also take, so none of them is counted against the wrong store.
+     * 
+     * @param Comments the comments to be set
+     */
+    public void setComments(Collection<Comment> Comments) {
+        CommentStore previous;
+        synchronized (this) {
+            CommentStore copy = new CommentStore();
+            StringPool strings = Strings;
+            for (Comment comment : Comments) {
+                if (!comment.isDeleted()) {
+                    attach(comment);
+                    if (copy.add(comment)) {
+                        counted(comment, 1);
+                    }
+                    if (strings != null) {
+                        comment.pool(strings);
+                    }
+                }
+            }
+            previous = this.Comments;
+            this.Comments = copy;
+        }
+        for (Iterator<Comment> it = previous.iterator(false); it.hasNext(); ) {
+            counted(it.next(), -1);
+        }
     }   
     
     /**
-     * Adds a comment to the post.
+     * Records that the post was removed from its author's posts.
+     */
+    void markRemoved() {
+        Removed = true;
+    }
+
+    /**
+     * Counts a stored comment that was just marked deleted.
+     *
+     * @param comment the comment
+     */
+    void commentDeleted(Comment comment) {
+        synchronized (this) {
+            Comments.deleted();
+        }
+        counted(comment, -1);
+    }
+
+    /**
+     * Adds a comment stored or deleted to the counts of its author and of the post's
+     * author, and reports the post to the leaderboard of the platform.
+     */
+    private void counted(Comment comment, int delta) {
+        User commenter = comment.getAuthor();
+        if (commenter != null) {
+            commenter.commentsGiven.add(delta);
+        }
+        User author = Author;
+        if (author != null) {
+            author.commentsReceived.add(delta);
+            PlatformContext shared = author.context;
+            if (shared != null) {
+                shared.getEngagement().commentsChanged(this);
+            }
+        }
+    }
+    
+    /**
+     * Adds a comment to the post and to the comments its author has written.
      * 
      * @param comment the comment to be added
      * @throws SocialMediaException if the comment is null
@@ -100,7 +280,108 @@ public class Post implements SocialMediaElement {
         if (comment == null) {
             throw new SocialMediaException("Cannot add empty comment.");
         }
-        Comments.add(comment);
+        User author = Author;
+        User commenter = comment.getAuthor();
+        PlatformContext shared = author == null ? null : author.context;
+        boolean registered = shared != null && commenter != null && commenter.context == shared;
+        attach(comment);
+        boolean stored;
+        synchronized (this) {
+            stored = Comments.add(comment);
+        }
+        if (stored) {
+            counted(comment, 1);
+        }
+        // A deletion of the post or of either user racing with this one may have hidden
+        // the comments before this one was stored, so it is hidden here instead.
+        if (shared != null && (Removed || author.context != shared || registered && commenter.context != shared)) {
+            comment.markDeleted();
+        }
+        StringPool strings = Strings;
+        if (strings != null) {
+            comment.pool(strings);
+        }
+        SearchIndex search = search();
+        if (search != null) {
+            search.onCommentAdded(this, comment);
+        }
+    }
+
+    /**
+     * Updates the search index after text of the post or of one of its comments
+     * was replaced.
+     *
+     * @param previous the text that was replaced
+     */
+    void reindex(String previous) {
+        SearchIndex search = search();
+        if (search != null && previous != null) {
+            search.reindex(this, List.of(previous));
+        }
+    }
+
+    private SearchIndex search() {
+        User author = Author;
+        PlatformContext shared = author == null ? null : author.context;
+        return shared == null ? null : shared.getSearch();
+    }
+    
+    private void attach(Comment comment) {
+        if (comment.getPost() == this) {
+            return;
+        }
+        comment.setPost(this);
+        User author = comment.getAuthor();
+        if (author != null) {
+            author.comments.add(comment);
+        }
+    }
+    
+    /**
+     * Drops the deleted comments from the post.
+     * 
+     * @return true if any comment was dropped
+     */
+    boolean purgeDeletedComments() {
+        return Comments.purgeDeleted(Comment::unpool);
+    }
+    
+    /**
+     * Replaces the texts of the post and of its comments with their copies in a pool.
+     * Comments added later are pooled as they are added.
+     * 
+     * @param strings the pool of the platform the post is on
+     */
+    void pool(StringPool strings) {
+        synchronized (this) {
+            if (Strings != null) {
+                return;
+            }
+            Content = strings.intern(Content);
+            Strings = strings;
+        }
+        for (Comment comment : getAllComments()) {
+            comment.pool(strings);
+        }
+    }
+    
+    /**
+     * Releases the texts of the post and of the comments it still holds from their
+     * pool, once the post is dropped.
+     */
+    void unpool() {
+        StringPool strings;
+        synchronized (this) {
+            strings = Strings;
+            if (strings == null) {
+                return;
+            }
+            Strings = null;
+            strings.release(Content);
+        }
+        for (Comment comment : getAllComments()) {
+            comment.unpool();
+        }
     }
     
     /**
@@ -108,7 +389,7 @@ public class Post implements SocialMediaElement {
      */
     @Override 
     public void display() {
-        System.out.println("Posted by " + Author.getUserName() + ": " + Content);
+        System.out.println("[" + Id + "] Posted by " + Author.getUserName() + ": " + Content);
     }
     
     /**
@@ -124,26 +405,34 @@ public class Post implements SocialMediaElement {
     /**
      * Provides a string representation of the post.
      * 
-     * @return a short preview of the post content, along with the author and the number of comments
+     * @return a short preview of the post content, along with the author, the first few
+     * comments and the number of the others
      */
     @Override 
     public String toString() {
         String result = "Posted by " + Author.getUserName() + ": " + Content.substring(0, Math.min(Content.length(), 150));
     
-        if (Comments.isEmpty()) {
+        CommentStore store = Comments;
+        Page<Comment> first = store.page(0, PREVIEW_COMMENTS, false);
+        int more = store.count() - first.getItems().size();
+        if (first.getItems().isEmpty()) {
             result += " [No comments]";
+        } else if (more <= 0) {
+            result += first.getItems();
         } else {
-            result += Comments;
+            String shown = first.getItems().toString();
+            result += shown.substring(0, shown.length() - 1) + ", ... " + more + " more]";
         }
     
         return result;
 }
     
     /**
-     * Checks if two posts are equal based on their content and author.
+     * Checks if two posts are equal based on their ids, so posts with the same content
+     * and author stay distinct.
      * 
      * @param o the object to compare with
-     * @return true if both posts have the same content and author, false otherwise
+     * @return true if both posts have the same id, false otherwise
      */
     @Override 
     public boolean equals(Object o) {
@@ -152,17 +441,31 @@ public class Post implements SocialMediaElement {
         if (o == null|| getClass()!=o.getClass())
             return false;
         Post post = (Post)o;
-        return Objects.equals(Content, post.Content) && Objects.equals(Author, post.Author);
+        return Id == post.Id;
     }
     
     /**
-     * Generates a hash code for the post based on its content and author.
+     * Generates a hash code for the post based on its id.
      * 
      * @return the hash code of the post
      */
     @Override 
     public int hashCode() {
-        return Objects.hash(Content, Author);
+        return Long.hashCode(Id);
     }
 
+    /**
+     * The comments of the post without the deleted ones.
+     */
+    private class LiveComments extends AbstractCollection<Comment> {
+        @Override
+        public Iterator<Comment> iterator() {
+            return Comments.iterator(false);
+        }
+
+        @Override
+        public int size() {
+            return Comments.count();
+        }
+    }
 }
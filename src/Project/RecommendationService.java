@@ -0,0 +1,285 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The RecommendationService class suggests users to follow: the users followed by the
+ * users someone follows, ranked by how many of them follow each one (friends of
+ * friends, scored by mutual follows). Candidates followed by as many of them are
+ * ordered by the PageRank of the latest {@link GraphAnalytics} run, when there is one.
+ * <p>
+ * The walk is bounded no matter how the graph is shaped. At most
+ * {@link #DEFAULT_FOLLOWING_CAP} of the user's own followees are expanded, and at most
+ * {@link #DEFAULT_NEIGHBOUR_CAP} followees of each of them are counted; longer lists,
+ * such as those of users following millions, are sampled evenly from a random place
+ * by {@link FollowGraph#sampleFollowing(int, int[], int)}. A suggestion therefore
+ * visits a few tens of thousands of edges at most, and the candidate counts are kept in
+ * an {@link IntIntHashMap}, so no id is boxed.
+ * <p>
+ * The top suggestions of a user are cached with a time to live. When the user follows
+ * or unfollows someone, its entry is marked stale and recomputed on the common pool;
+ * the stale suggestions are served until then. Changes two hops away only show once
+ * an entry expires. Expired entries are dropped when they are read, and a sweep drops
+ * the ones nobody reads any more.
+ *
+ * @author Asail
+ */
+class RecommendationService {
+    /** Default number of the user's own followees expanded. */
+    public static final int DEFAULT_FOLLOWING_CAP = 256;
+    /** Default number of followees counted for each of the user's followees. */
+    public static final int DEFAULT_NEIGHBOUR_CAP = 128;
+    /** Default time a cached entry stays valid. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /** Number of suggestions cached per user. */
+    static final int CACHED_SUGGESTIONS = 50;
+
+    private final PlatformContext context;
+    private final int followingCap;
+    private final int neighbourCap;
+    private final long ttlMillis;
+    private final Map<Integer, Entry> cache;
+    private final Queue<Integer> stale;
+    private final AtomicBoolean scheduled;
+    private volatile long nextSweep;
+
+    /**
+     * Creates a recommendation service with the default caps and time to live.
+     *
+     * @param context the context whose users and follow graph are walked
+     */
+    public RecommendationService(PlatformContext context) {
+        this(context, DEFAULT_FOLLOWING_CAP, DEFAULT_NEIGHBOUR_CAP, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a recommendation service.
+     *
+     * @param context the context whose users and follow graph are walked
+     * @param followingCap the number of the user's own followees expanded
+     * @param neighbourCap the number of followees counted for each of them
+     * @param ttlMillis the time a cached entry stays valid
+     */
+    public RecommendationService(PlatformContext context, int followingCap, int neighbourCap, long ttlMillis) {
+        if (followingCap < 1 || neighbourCap < 1 || ttlMillis < 1) {
+            throw new IllegalArgumentException("Caps and time to live must be positive.");
+        }
+        this.context = context;
+        this.followingCap = followingCap;
+        this.neighbourCap = neighbourCap;
+        this.ttlMillis = ttlMillis;
+        this.cache = new ConcurrentHashMap<>();
+        this.stale = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Gets the users a user may want to follow, best first.
+     *
+     * @param user the user asking
+     * @param limit the maximum number of suggestions
+     * @return the suggestions; users removed since they were cached are left out
+     */
+    public List<Suggestion> suggest(User user, int limit) {
+        List<Suggestion> result = new ArrayList<>();
+        if (user == null || user.context != context || limit <= 0) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry;
+        if (limit > CACHED_SUGGESTIONS) {
+            entry = compute(user.id, limit, now);
+        } else {
+            entry = cache.get(user.id);
+            if (entry == null || entry.expiresAt <= now) {
+                entry = compute(user.id, CACHED_SUGGESTIONS, now);
+                cache.put(user.id, entry);
+            }
+        }
+        UserRegistry users = context.getUsers();
+        for (int i = 0; i < entry.ids.length && result.size() < limit; i++) {
+            User candidate = users.findById(entry.ids[i]);
+            if (candidate != null) {
+                result.add(new Suggestion(candidate.getUserName(), entry.mutuals[i]));
+            }
+        }
+        sweep(now);
+        return result;
+    }
+
+    /**
+     * Marks the cached suggestions of a user stale after it followed or unfollowed
+     * someone, and schedules them to be recomputed. Called by the follow graph while
+     * it holds stripes, so it only queues the id.
+     *
+     * @param user the id of the user
+     */
+    public void followingChanged(int user) {
+        Entry entry = cache.get(user);
+        if (entry != null && !entry.stale) {
+            entry.stale = true;
+            stale.add(user);
+            if (scheduled.compareAndSet(false, true)) {
+                ForkJoinPool.commonPool().execute(this::refresh);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached suggestions of a user removed from the platform.
+     *
+     * @param user the user that was removed
+     */
+    public void onUserRemoved(User user) {
+        cache.remove(user.id);
+    }
+
+    /**
+     * Recomputes the stale entries that are still cached.
+     */
+    void refresh() {
+        try {
+            Integer user;
+            while ((user = stale.poll()) != null) {
+                Entry entry = cache.get(user);
+                if (entry != null && entry.stale) {
+                    cache.replace(user, entry, compute(user, CACHED_SUGGESTIONS, System.currentTimeMillis()));
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        if (!stale.isEmpty() && scheduled.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(this::refresh);
+        }
+    }
+
+    private void sweep(long now) {
+        if (now < nextSweep) {
+            return;
+        }
+        nextSweep = now + ttlMillis;
+        cache.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    /**
+     * Walks two hops out from a user and keeps the best candidates.
+     */
+    private Entry compute(int user, int limit, long now) {
+        FollowGraph graph = context.getFollowGraph();
+        int[] followees = new int[followingCap];
+        int followeeCount = graph.sampleFollowing(user, followees, followingCap);
+        IntIntHashMap mutuals = new IntIntHashMap(Math.min(followeeCount * neighbourCap, 1 << 12));
+        int[] neighbours = new int[neighbourCap];
+        for (int i = 0; i < followeeCount; i++) {
+            int count = graph.sampleFollowing(followees[i], neighbours, neighbourCap);
+            for (int j = 0; j < count; j++) {
+                int candidate = neighbours[j];
+                if (candidate != user) {
+                    mutuals.increment(candidate);
+                }
+            }
+        }
+        // Ranks by count, then by PageRank if the analytics have run, then by the
+        // smaller id so results are stable. Whether the user already follows a
+        // candidate is only checked for those that would enter the heap.
+        GraphAnalytics.Results ranks = context.getAnalytics().getLatest();
+        PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1,
+                (a, b) -> compare((int) a[0], (int) a[1], (int) b[0], (int) b[1], ranks));
+        mutuals.forEach((candidate, count) -> {
+            if (best.size() == limit) {
+                long[] worst = best.peek();
+                if (compare(candidate, count, (int) worst[0], (int) worst[1], ranks) < 0) {
+                    return;
+                }
+            }
+            if (graph.isFollowing(user, candidate)) {
+                return;
+            }
+            best.add(new long[] {candidate, count});
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        int[] ids = new int[best.size()];
+        int[] counts = new int[ids.length];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            long[] top = best.poll();
+            ids[i] = (int) top[0];
+            counts[i] = (int) top[1];
+        }
+        return new Entry(ids, counts, now + ttlMillis);
+    }
+
+    /**
+     * @return a positive number if the first candidate ranks above the second
+     */
+    private static int compare(int a, int countA, int b, int countB, GraphAnalytics.Results ranks) {
+        if (countA != countB) {
+            return Integer.compare(countA, countB);
+        }
+        if (ranks != null) {
+            int byRank = Double.compare(ranks.rankOf(a), ranks.rankOf(b));
+            if (byRank != 0) {
+                return byRank;
+            }
+        }
+        return Integer.compare(b, a);
+    }
+
+    private static final class Entry {
+        final int[] ids;
+        final int[] mutuals;
+        final long expiresAt;
+        volatile boolean stale;
+
+        Entry(int[] ids, int[] mutuals, long expiresAt) {
+            this.ids = ids;
+            this.mutuals = mutuals;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The Suggestion class is one user suggested to follow, with the number of the
+     * asking user's followees that follow it.
+     */
+    static final class Suggestion {
+        private final String userName;
+        private final int mutualCount;
+
+        Suggestion(String userName, int mutualCount) {
+            this.userName = userName;
+            this.mutualCount = mutualCount;
+        }
+
+        /**
+         * @return the username of the suggested user
+         */
+        public String getUserName() {
+            return userName;
+        }
+
+        /**
+         * @return the number of followees following the suggested user, among those
+         * visited
+         */
+        public int getMutualCount() {
+            return mutualCount;
+        }
+
+        @Override
+        public String toString() {
+            return userName + " (followed by " + mutualCount + " you follow)";
+        }
+    }
+}
@@ -31,7 +31,7 @@ class RegularUser extends User {
      */
     @Override
     public void display() {
-        System.out.println("Regular User: " + userName + ", Email: " + email);
+        System.out.println("Regular User: " + userName + ", Email: " + getEmail());
     }
 
     /**
@@ -41,7 +41,7 @@ class RegularUser extends User {
      */
     @Override
     public String toString() {
-        return "Regular User: " + userName + ", Email: " + email + ", Posts: " + posts.size() + ", Following: " + following.size() + ", Followers: " + followers.size();
+        return "Regular User: " + userName + ", Email: " + getEmail() + ", Posts: " + getPostCount() + ", Following: " + getFollowingCount() + ", Followers: " + getFollowersCount();
     }
 
     /**
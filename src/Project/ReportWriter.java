@@ -0,0 +1,476 @@
+package Project;
+
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The ReportWriter class streams the platform report (users, their posts and the
+ * comments on each post) to a character sink, one record at a time.
+ * Every record is formatted into one reusable buffer and copied straight to the sink,
+ * so no per-post strings are built and memory use does not depend on the size of the
+ * platform. The report can be written as plain text (the format of the console
+ * report), CSV or JSON lines.
+ * Large user lists, and the users of a mapped {@link PlatformSnapshot}, can also be
+ * formatted in parallel: the users are cut into ranges that are formatted on a
+ * fork-join pool into separate buffers, and the buffers are written in order, so the
+ * output is the same as with a single thread.
+ *
+ * @author Asail
+ */
+class ReportWriter implements Closeable, Flushable {
+    /** Size of the buffer between the writer and a file. */
+    private static final int FILE_BUFFER = 1 << 16;
+    private static final int PREVIEW_LENGTH = 150;
+    private static final int COMMENT_PREVIEW_LENGTH = 20;
+    /** Number of users formatted by one parallel task. */
+    private static final int CHUNK_USERS = 512;
+
+    /**
+     * Output formats of the report.
+     */
+    enum Format {
+        /** The human-readable format of the console report. */
+        TEXT,
+        /** One CSV row per user, post and comment, with a header row. */
+        CSV,
+        /** One JSON object per user, post and comment, one per line. */
+        JSON_LINES
+    }
+
+    /**
+     * Writes the users in a range of positions, such as part of a list, to a writer.
+     */
+    @FunctionalInterface
+    interface Range {
+        void write(ReportWriter writer, int from, int to) throws IOException;
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final StringBuilder line;
+    private char[] chunk;
+    private boolean started;
+    private int commentsInPost;
+
+    /**
+     * Creates a report writer over an existing sink. The sink should be buffered.
+     *
+     * @param out the sink receiving the report
+     * @param format the output format
+     */
+    public ReportWriter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+        this.line = new StringBuilder(256);
+        this.chunk = new char[256];
+    }
+
+    /**
+     * Opens a report writer that writes a UTF-8 file through a file channel,
+     * replacing the file if it exists.
+     *
+     * @param path the file to write
+     * @param format the output format
+     * @return the report writer; close it to finish the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static ReportWriter open(Path path, Format format) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), FILE_BUFFER);
+        return new ReportWriter(new BufferedWriter(writer, FILE_BUFFER), format);
+    }
+
+    /**
+     * @return the output format
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes the header row if the format has one. Called automatically before the
+     * first user.
+     *
+     * @throws IOException if the sink fails
+     */
+    public void writeHeader() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+        if (format == Format.CSV) {
+            line.append("record,post_id,user,email,type,posts,following,followers,created_at,content");
+            emit();
+        }
+    }
+
+    /**
+     * Writes all given users with their posts and comments.
+     *
+     * @param users the users to write
+     * @throws IOException if the sink fails
+     */
+    public void writeUsers(Iterable<User> users) throws IOException {
+        for (User user : users) {
+            writeUser(user);
+        }
+    }
+
+    /**
+     * Writes all given users with their posts and comments, formatting ranges of users
+     * in parallel on the given pool. The output is identical to
+     * {@link #writeUsers(Iterable)}. At most two ranges per worker thread are buffered
+     * at a time, so memory stays bounded however many users there are.
+     * The list should be a snapshot, such as the one returned by
+     * {@link UserRegistry#getUsers()}, since it is read by several threads. Only the
+     * list is fixed: the posts, comments and counts of each user are read when its
+     * range is formatted, so a report written while they change is not a snapshot.
+     *
+     * @param users the users to write
+     * @param pool the pool formatting the ranges
+     * @throws IOException if the sink fails or the calling thread is interrupted
+     */
+    public void writeUsers(List<User> users, ForkJoinPool pool) throws IOException {
+        writeUsers(users.size(), (writer, from, to) -> writer.writeUsers(users.subList(from, to)), pool);
+    }
+
+    /**
+     * Writes a number of users, formatting ranges of them in parallel on the given
+     * pool, with the same output and memory bound as
+     * {@link #writeUsers(List, ForkJoinPool)}. The range writer is called from several
+     * threads at once, each time with a writer of its own.
+     *
+     * @param count the number of users
+     * @param range writes the users in a range of positions
+     * @param pool the pool formatting the ranges
+     * @throws IOException if the sink fails or the calling thread is interrupted
+     */
+    void writeUsers(int count, Range range, ForkJoinPool pool) throws IOException {
+        writeHeader();
+        int chunks = (count + CHUNK_USERS - 1) / CHUNK_USERS;
+        if (chunks < 2 || pool.getParallelism() < 2) {
+            range.write(this, 0, count);
+            return;
+        }
+        int window = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<CharArrayWriter>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < window) {
+                    int from = next * CHUNK_USERS;
+                    int to = Math.min(count, from + CHUNK_USERS);
+                    pending.add(pool.submit(() -> format(range, from, to)));
+                    next++;
+                }
+                pending.poll().get().writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Report interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (ForkJoinTask<CharArrayWriter> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Formats a range of users into a separate buffer, without the header.
+     */
+    private CharArrayWriter format(Range range, int from, int to) {
+        CharArrayWriter buffer = new CharArrayWriter((to - from) * 128);
+        ReportWriter writer = new ReportWriter(buffer, format);
+        writer.started = true;
+        try {
+            range.write(writer, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes one user followed by its posts and their comments.
+     *
+     * @param user the user to write
+     * @throws IOException if the sink fails
+     */
+    public void writeUser(User user) throws IOException {
+        Post[] posts = user.getPosts().toArray(new Post[0]);
+        beginUser(user.getId(), user.getUserName(), user.getEmail(), user instanceof Admin,
+                posts.length, user.getFollowing().size(), user.getFollowers().size());
+        for (Post post : posts) {
+            beginPost(post.getId(), authorName(post.getAuthor()), post.getCreatedAt(), post.getContent());
+            for (Comment comment : post.getComments()) {
+                writeComment(post.getId(), authorName(comment.getAuthor()), comment.getContent());
+            }
+            endPost();
+        }
+        endUser();
+    }
+
+    /**
+     * Starts the record of a user. Its posts follow, and {@link #endUser()} ends it.
+     * This and the other record methods let sources other than the domain objects,
+     * such as a mapped snapshot, write the same report.
+     *
+     * @param id the user id
+     * @param userName the username
+     * @param email the email
+     * @param admin true if the user is an admin
+     * @param posts the number of posts
+     * @param following the number of followed users
+     * @param followers the number of followers
+     * @throws IOException if the sink fails
+     */
+    void beginUser(int id, String userName, String email, boolean admin, int posts, int following, int followers) throws IOException {
+        writeHeader();
+        String type = admin ? "Admin" : "Regular User";
+        switch (format) {
+            case TEXT:
+                line.append(type).append(admin ? " User: " : ": ").append(userName)
+                        .append(", Email: ").append(email).append(", Posts: ").append(posts)
+                        .append(", Following: ").append(following).append(", Followers: ").append(followers);
+                break;
+            case CSV:
+                line.append("user,,");
+                csv(userName).append(',');
+                csv(email).append(',');
+                csv(type).append(',');
+                line.append(posts).append(',').append(following).append(',').append(followers).append(",,");
+                break;
+            case JSON_LINES:
+                line.append("{\"record\":\"user\",\"id\":").append(id).append(",\"userName\":");
+                json(userName).append(",\"email\":");
+                json(email).append(",\"type\":");
+                json(type).append(",\"posts\":").append(posts)
+                        .append(",\"following\":").append(following)
+                        .append(",\"followers\":").append(followers).append('}');
+                break;
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+        emit();
+    }
+
+    /**
+     * Ends the record of a user.
+     *
+     * @throws IOException if the sink fails
+     */
+    void endUser() throws IOException {
+        if (format == Format.TEXT) {
+            emit();
+        }
+    }
+
+    /**
+     * Starts the record of a post. Its comments follow, and {@link #endPost()} ends it.
+     *
+     * @param id the post id
+     * @param author the username of the author
+     * @param createdAt the creation time of the post
+     * @param content the content of the post
+     * @throws IOException if the sink fails
+     */
+    void beginPost(long id, String author, long createdAt, String content) throws IOException {
+        commentsInPost = 0;
+        switch (format) {
+            case TEXT:
+                line.append('\t').append("Posted by ").append(author).append(": ")
+                        .append(content, 0, Math.min(content.length(), PREVIEW_LENGTH));
+                return;
+            case CSV:
+                line.append("post,").append(id).append(',');
+                csv(author).append(",,,,,,").append(createdAt).append(',');
+                csv(content);
+                break;
+            case JSON_LINES:
+                line.append("{\"record\":\"post\",\"id\":").append(id).append(",\"author\":");
+                json(author).append(",\"createdAt\":").append(createdAt).append(",\"content\":");
+                json(content).append('}');
+                break;
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+        emit();
+    }
+
+    /**
+     * Writes a comment of the current post.
+     *
+     * @param postId the id of the post
+     * @param author the username of the author
+     * @param content the content of the comment
+     * @throws IOException if the sink fails
+     */
+    void writeComment(long postId, String author, String content) throws IOException {
+        switch (format) {
+            case TEXT:
+                line.append(commentsInPost == 0 ? "[" : ", ");
+                line.append("Comment by ").append(author).append(": ")
+                        .append(content, 0, Math.min(content.length(), COMMENT_PREVIEW_LENGTH));
+                if (line.length() >= FILE_BUFFER) {
+                    flushLine();
+                }
+                break;
+            case CSV:
+                line.append("comment,").append(postId).append(',');
+                csv(author).append(",,,,,,,");
+                csv(content);
+                emit();
+                break;
+            case JSON_LINES:
+                line.append("{\"record\":\"comment\",\"postId\":").append(postId).append(",\"author\":");
+                json(author).append(",\"content\":");
+                json(content).append('}');
+                emit();
+                break;
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+        commentsInPost++;
+    }
+
+    /**
+     * Ends the record of a post.
+     *
+     * @throws IOException if the sink fails
+     */
+    void endPost() throws IOException {
+        if (format == Format.TEXT) {
+            line.append(commentsInPost == 0 ? " [No comments]" : "]");
+            emit();
+        }
+    }
+
+    private static String authorName(User author) {
+        return author == null ? "" : author.getUserName();
+    }
+
+    private StringBuilder csv(String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    private StringBuilder json(String value) {
+        if (value == null) {
+            return line.append("null");
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append("\\u00");
+                        line.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Ends the current line and copies the buffer to the sink.
+     */
+    private void emit() throws IOException {
+        line.append(System.lineSeparator());
+        flushLine();
+    }
+
+    private void flushLine() throws IOException {
+        int length = line.length();
+        if (chunk.length < length) {
+            chunk = new char[Math.max(length, chunk.length * 2)];
+        }
+        line.getChars(0, length, chunk, 0);
+        out.write(chunk, 0, length);
+        line.setLength(0);
+        if (chunk.length > FILE_BUFFER && length < FILE_BUFFER / 4) {
+            chunk = new char[256];
+        }
+    }
+
+    /**
+     * Flushes the sink.
+     *
+     * @throws IOException if the sink fails
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the sink.
+     *
+     * @throws IOException if the sink fails
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,761 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The SearchIndex class is an inverted index over the text of posts and their
+ * comments. It maps every term to the ids of the posts whose content or comments
+ * contain it, and answers term, prefix and phrase queries newest first.
+ * <p>
+ * Text is split into terms at every character that is not a letter or digit, and
+ * terms are lower-cased. Each posting list keeps its post ids sorted, in blocks of
+ * about {@value #BLOCK} ids that store the first id followed by the gaps between
+ * ids as variable-length integers, so most postings take one or two bytes. New
+ * posts receive the largest ids and are appended to an uncompressed tail that is
+ * packed into a block once full; comments on older posts are merged into their
+ * block.
+ * <p>
+ * A query walks the posting lists of its terms from the newest id down, skipping
+ * whole blocks by their first id, and stops as soon as it has found enough posts,
+ * so its cost depends on the number of results rather than on the number of posts.
+ * Posts are checked against the {@link FeedService} before they are returned, so a
+ * deleted post disappears from results at once; its postings are dropped later by
+ * the {@link Compactor}. Phrases are matched against the current text of the post.
+ * <p>
+ * The index is safe for concurrent use. Each posting list has its own lock; a query
+ * only holds it while taking a view of the list, since blocks are never changed in
+ * place once another thread may read them.
+ *
+ * @author Asail
+ */
+class SearchIndex {
+    /** Number of post ids packed into one block. */
+    static final int BLOCK = 128;
+    /** Longest term that is indexed; longer words are cut to this length. */
+    static final int MAX_TERM_LENGTH = 64;
+    /** Largest number of terms a prefix query expands to. */
+    static final int MAX_PREFIX_TERMS = 1024;
+
+    private final PlatformContext context;
+    private final ConcurrentSkipListMap<String, PostingList> terms;
+
+    /**
+     * @param context the context whose feed service tells which posts still exist
+     */
+    public SearchIndex(PlatformContext context) {
+        this.context = context;
+        this.terms = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Indexes a new post together with the comments it already has.
+     *
+     * @param post the post that was added
+     */
+    public void onPostAdded(Post post) {
+        synchronized (post) {
+            for (String term : documentTerms(post)) {
+                postings(term).add(post.getId());
+            }
+        }
+    }
+
+    /**
+     * Indexes a comment added to a post.
+     *
+     * @param post the post holding the comment
+     * @param comment the comment that was added
+     */
+    public void onCommentAdded(Post post, Comment comment) {
+        if (!isLive(post)) {
+            return;
+        }
+        synchronized (post) {
+            for (String term : terms(comment.getContent())) {
+                postings(term).add(post.getId());
+            }
+        }
+    }
+
+    /**
+     * Re-indexes a post after some of its text changed or was removed: the previous
+     * content of the post or of a comment, or the text of deleted comments. Terms that
+     * no longer occur anywhere in the post are dropped from it.
+     *
+     * @param post the post whose text changed
+     * @param previous the text that was replaced or removed
+     */
+    public void reindex(Post post, Collection<String> previous) {
+        if (!isLive(post)) {
+            return;
+        }
+        synchronized (post) {
+            Set<String> current = documentTerms(post);
+            for (String text : previous) {
+                for (String term : terms(text)) {
+                    if (!current.contains(term)) {
+                        PostingList list = terms.get(term);
+                        if (list != null) {
+                            list.remove(post.getId());
+                        }
+                    }
+                }
+            }
+            for (String term : current) {
+                postings(term).add(post.getId());
+            }
+        }
+    }
+
+    /**
+     * Drops a deleted post from the posting lists of all its terms, including the
+     * terms of comments that were hidden with it.
+     *
+     * @param post the post that was deleted
+     */
+    public void onPostRemoved(Post post) {
+        synchronized (post) {
+            Set<String> all = terms(post.getContent());
+            for (Comment comment : post.getAllComments()) {
+                all.addAll(terms(comment.getContent()));
+            }
+            for (String term : all) {
+                PostingList list = terms.get(term);
+                if (list != null) {
+                    list.remove(post.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a query and returns the newest matching posts. Words separated by spaces
+     * must all occur in a post, a word ending in {@code *} matches every term starting
+     * with it, up to the first {@value #MAX_PREFIX_TERMS} in alphabetical order, and
+     * words in double quotes must occur next to each other, in order, in the post or in
+     * one of its comments.
+     *
+     * @param query the query, such as {@code cats "black cat" mou*}
+     * @param limit the maximum number of posts to return
+     * @return the matching posts, newest first
+     */
+    public List<Post> search(String query, int limit) {
+        List<Cursor> cursors = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        boolean quoted = false;
+        for (String part : query.split("\"", -1)) {
+            if (quoted) {
+                List<String> phrase = tokens(part);
+                if (!addTerms(phrase, cursors)) {
+                    return new ArrayList<>();
+                }
+                if (phrase.size() > 1) {
+                    phrases.add(phrase);
+                }
+            } else {
+                for (String word : part.trim().split("\\s+")) {
+                    boolean prefix = word.endsWith("*");
+                    List<String> words = tokens(prefix ? word.substring(0, word.length() - 1) : word);
+                    if (prefix && !words.isEmpty()) {
+                        String last = words.remove(words.size() - 1);
+                        if (!addPrefix(last, cursors)) {
+                            return new ArrayList<>();
+                        }
+                    }
+                    if (!addTerms(words, cursors)) {
+                        return new ArrayList<>();
+                    }
+                }
+            }
+            quoted = !quoted;
+        }
+        return collect(cursors, phrases, limit);
+    }
+
+    /**
+     * Finds the newest posts containing a term.
+     *
+     * @param term the term
+     * @param limit the maximum number of posts to return
+     * @return the matching posts, newest first
+     */
+    public List<Post> term(String term, int limit) {
+        List<Cursor> cursors = new ArrayList<>();
+        if (!addTerms(tokens(term), cursors)) {
+            return new ArrayList<>();
+        }
+        return collect(cursors, new ArrayList<>(), limit);
+    }
+
+    /**
+     * Finds the newest posts containing a term that starts with a prefix.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of posts to return
+     * @return the matching posts, newest first
+     */
+    public List<Post> prefix(String prefix, int limit) {
+        List<Cursor> cursors = new ArrayList<>();
+        List<String> words = tokens(prefix);
+        if (words.size() != 1 || !addPrefix(words.get(0), cursors)) {
+            return new ArrayList<>();
+        }
+        return collect(cursors, new ArrayList<>(), limit);
+    }
+
+    /**
+     * Finds the newest posts whose content or one of whose comments contains the
+     * words of a phrase next to each other.
+     *
+     * @param phrase the phrase
+     * @param limit the maximum number of posts to return
+     * @return the matching posts, newest first
+     */
+    public List<Post> phrase(String phrase, int limit) {
+        return search("\"" + phrase.replace("\"", " ") + "\"", limit);
+    }
+
+    /**
+     * @return the number of distinct terms, including terms whose posts were all deleted
+     */
+    public int termCount() {
+        return terms.size();
+    }
+
+    private boolean addTerms(List<String> words, List<Cursor> cursors) {
+        for (String word : words) {
+            PostingList list = terms.get(word);
+            if (list == null) {
+                return false;
+            }
+            cursors.add(list.cursor());
+        }
+        return true;
+    }
+
+    private boolean addPrefix(String prefix, List<Cursor> cursors) {
+        ConcurrentNavigableMap<String, PostingList> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        List<Cursor> expanded = new ArrayList<>();
+        for (PostingList list : range.values()) {
+            if (expanded.size() == MAX_PREFIX_TERMS) {
+                break;
+            }
+            expanded.add(list.cursor());
+        }
+        if (expanded.isEmpty()) {
+            return false;
+        }
+        cursors.add(expanded.size() == 1 ? expanded.get(0) : new UnionCursor(expanded));
+        return true;
+    }
+
+    /**
+     * Intersects the cursors from the newest id down and keeps the posts that still
+     * exist and contain every phrase, until enough are found. The cursor with the
+     * fewest ids leads, so the others skip ahead to its candidates.
+     */
+    private List<Post> collect(List<Cursor> cursors, List<List<String>> phrases, int limit) {
+        List<Post> result = new ArrayList<>();
+        if (cursors.isEmpty()) {
+            return result;
+        }
+        cursors.sort(Comparator.comparingLong(Cursor::size));
+        FeedService feed = context.getFeed();
+        long target = Long.MAX_VALUE;
+        while (result.size() < limit && target >= 0) {
+            long id = intersect(cursors, target);
+            if (id < 0) {
+                break;
+            }
+            Post post = feed.findPost(id);
+            if (post != null && containsPhrases(post, phrases)) {
+                result.add(post);
+            }
+            target = id - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the largest id not above the target that every cursor contains.
+     *
+     * @return the id, or -1 if there is none
+     */
+    private static long intersect(List<Cursor> cursors, long target) {
+        long id = target;
+        int agree = 0;
+        int n = cursors.size();
+        for (int i = 0; agree < n; i = (i + 1) % n) {
+            long found = cursors.get(i).advanceTo(id);
+            if (found < 0) {
+                return -1;
+            }
+            if (found == id) {
+                agree++;
+            } else {
+                id = found;
+                agree = 1;
+            }
+        }
+        return id;
+    }
+
+    private static boolean containsPhrases(Post post, List<List<String>> phrases) {
+        for (List<String> phrase : phrases) {
+            boolean found = containsPhrase(post.getContent(), phrase);
+            for (Comment comment : post.getComments()) {
+                if (found) {
+                    break;
+                }
+                found = containsPhrase(comment.getContent(), phrase);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsPhrase(String text, List<String> phrase) {
+        List<String> words = tokens(text);
+        for (int start = 0; start + phrase.size() <= words.size(); start++) {
+            if (words.subList(start, start + phrase.size()).equals(phrase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLive(Post post) {
+        return context.getFeed().findPost(post.getId()) == post;
+    }
+
+    private PostingList postings(String term) {
+        return terms.computeIfAbsent(term, key -> new PostingList());
+    }
+
+    private static Set<String> documentTerms(Post post) {
+        Set<String> all = terms(post.getContent());
+        for (Comment comment : post.getComments()) {
+            all.addAll(terms(comment.getContent()));
+        }
+        return all;
+    }
+
+    private static Set<String> terms(String text) {
+        return new HashSet<>(tokens(text));
+    }
+
+    /**
+     * Splits text into lower-case terms, in order.
+     *
+     * @param text the text, or null
+     * @return the terms
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            int c = i < length ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (token.length() < MAX_TERM_LENGTH) {
+                    token.appendCodePoint(Character.toLowerCase(c));
+                }
+                if (Character.isSupplementaryCodePoint(c)) {
+                    i++;
+                }
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Walks the ids of a posting list, or a combination of them, from the largest down.
+     */
+    private interface Cursor {
+        /**
+         * Moves to the largest id not above the target. The target never grows.
+         *
+         * @return the id, or -1 if there is none
+         */
+        long advanceTo(long target);
+
+        /**
+         * @return the id the cursor is on, or -1 once it is exhausted
+         */
+        long current();
+
+        /**
+         * @return the number of ids the cursor walks, which orders the cursors of a query
+         */
+        long size();
+    }
+
+    /**
+     * The sorted post ids of one term: full blocks of compressed ids followed by a
+     * short uncompressed tail. Readers get a {@link TermCursor} over the blocks and the
+     * tail as they were; writers only append beyond what such a view covers or
+     * replace arrays and blocks instead of changing them.
+     */
+    private static final class PostingList {
+        private Block[] blocks = new Block[1];
+        private int blockCount;
+        private long[] tail = new long[8];
+        private int tailSize;
+        private int size;
+
+        synchronized void add(long id) {
+            long last = tailSize > 0 ? tail[tailSize - 1] : blockCount > 0 ? blocks[blockCount - 1].last : -1;
+            if (id > last) {
+                if (tailSize == tail.length) {
+                    tail = Arrays.copyOf(tail, tail.length * 2);
+                }
+                tail[tailSize++] = id;
+                size++;
+            } else if (id == last) {
+                return;
+            } else if (tailSize > 0 && (blockCount == 0 || id > blocks[blockCount - 1].last)) {
+                int at = Arrays.binarySearch(tail, 0, tailSize, id);
+                if (at >= 0) {
+                    return;
+                }
+                at = -at - 1;
+                long[] grown = new long[Math.max(tail.length, tailSize + 1)];
+                System.arraycopy(tail, 0, grown, 0, at);
+                grown[at] = id;
+                System.arraycopy(tail, at, grown, at + 1, tailSize - at);
+                tail = grown;
+                tailSize++;
+                size++;
+            } else {
+                addToBlock(id);
+                return;
+            }
+            if (tailSize >= BLOCK) {
+                appendBlock(Block.encode(tail, 0, tailSize));
+                tail = new long[8];
+                tailSize = 0;
+            }
+        }
+
+        private void addToBlock(long id) {
+            int index = Math.max(0, floorBlock(blocks, 0, blockCount - 1, id));
+            long[] ids = new long[blocks[index].count + 1];
+            blocks[index].decode(ids);
+            int count = ids.length - 1;
+            int at = Arrays.binarySearch(ids, 0, count, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            System.arraycopy(ids, at, ids, at + 1, count - at);
+            ids[at] = id;
+            count++;
+            size++;
+            if (count <= 2 * BLOCK) {
+                blocks[index] = Block.encode(ids, 0, count);
+                return;
+            }
+            Block[] split = new Block[Math.max(blocks.length, blockCount + 1)];
+            System.arraycopy(blocks, 0, split, 0, index);
+            split[index] = Block.encode(ids, 0, count / 2);
+            split[index + 1] = Block.encode(ids, count / 2, count);
+            System.arraycopy(blocks, index + 1, split, index + 2, blockCount - index - 1);
+            blocks = split;
+            blockCount++;
+        }
+
+        private void appendBlock(Block block) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            blocks[blockCount++] = block;
+        }
+
+        synchronized void remove(long id) {
+            if (tailSize > 0 && id >= tail[0]) {
+                int at = Arrays.binarySearch(tail, 0, tailSize, id);
+                if (at >= 0) {
+                    long[] shrunk = new long[tail.length];
+                    System.arraycopy(tail, 0, shrunk, 0, at);
+                    System.arraycopy(tail, at + 1, shrunk, at, tailSize - at - 1);
+                    tail = shrunk;
+                    tailSize--;
+                    size--;
+                }
+                return;
+            }
+            int index = floorBlock(blocks, 0, blockCount - 1, id);
+            if (index < 0 || id > blocks[index].last) {
+                return;
+            }
+            long[] ids = new long[blocks[index].count];
+            blocks[index].decode(ids);
+            int at = Arrays.binarySearch(ids, id);
+            if (at < 0) {
+                return;
+            }
+            size--;
+            if (ids.length == 1) {
+                Block[] shrunk = new Block[blocks.length];
+                System.arraycopy(blocks, 0, shrunk, 0, index);
+                System.arraycopy(blocks, index + 1, shrunk, index, blockCount - index - 1);
+                blocks = shrunk;
+                blockCount--;
+                return;
+            }
+            long[] rest = new long[ids.length - 1];
+            System.arraycopy(ids, 0, rest, 0, at);
+            System.arraycopy(ids, at + 1, rest, at, rest.length - at);
+            blocks[index] = Block.encode(rest, 0, rest.length);
+        }
+
+        synchronized Cursor cursor() {
+            return new TermCursor(blocks, blockCount, tail, tailSize, size);
+        }
+    }
+
+    /**
+     * Finds the last block in a range whose first id is not above an id.
+     *
+     * @return the block index, or one less than the start of the range if every
+     *         block in it starts above the id
+     */
+    private static int floorBlock(Block[] blocks, int from, int to, long id) {
+        int low = from;
+        int high = to;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].first <= id) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Finds the largest value not above a target in a sorted array, galloping back
+     * from a position. The first value must not be above the target.
+     *
+     * @return the index of the value
+     */
+    private static int floorFrom(long[] values, int position, long target) {
+        int low = position;
+        int high = position;
+        int step = 1;
+        while (values[low] > target) {
+            high = low - 1;
+            low = Math.max(low - step, 0);
+            step <<= 1;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (values[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * An immutable run of sorted post ids: the first id, then the gap to each next id
+     * as a variable-length integer of seven bits per byte.
+     */
+    private static final class Block {
+        final long first;
+        final long last;
+        final int count;
+        final byte[] gaps;
+
+        private Block(long first, long last, int count, byte[] gaps) {
+            this.first = first;
+            this.last = last;
+            this.count = count;
+            this.gaps = gaps;
+        }
+
+        static Block encode(long[] ids, int from, int to) {
+            byte[] buffer = new byte[(to - from) * 10];
+            int length = 0;
+            for (int i = from + 1; i < to; i++) {
+                long gap = ids[i] - ids[i - 1];
+                while ((gap & ~0x7FL) != 0) {
+                    buffer[length++] = (byte) ((gap & 0x7F) | 0x80);
+                    gap >>>= 7;
+                }
+                buffer[length++] = (byte) gap;
+            }
+            return new Block(ids[from], ids[to - 1], to - from, Arrays.copyOf(buffer, length));
+        }
+
+        /**
+         * Writes the ids into an array, which must have room for {@link #count} ids.
+         */
+        void decode(long[] out) {
+            long id = first;
+            out[0] = id;
+            int position = 0;
+            for (int i = 1; i < count; i++) {
+                long gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = gaps[position++];
+                    gap |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += gap;
+                out[i] = id;
+            }
+        }
+    }
+
+    /**
+     * Walks one posting list as it was when the cursor was created.
+     */
+    private static final class TermCursor implements Cursor {
+        private final Block[] blocks;
+        private final int blockCount;
+        private final long[] tail;
+        private final int tailSize;
+        private final int size;
+        private long[] decoded;
+        private long[] values;
+        private int position;
+        private int block;
+        private boolean started;
+        private long current;
+
+        TermCursor(Block[] blocks, int blockCount, long[] tail, int tailSize, int size) {
+            this.blocks = blocks;
+            this.blockCount = blockCount;
+            this.tail = tail;
+            this.tailSize = tailSize;
+            this.size = size;
+            this.block = blockCount;
+        }
+
+        /**
+         * Moves to the largest id not above the target, staying in the tail or the
+         * decoded block while it still holds such an id and walking back from the
+         * previous position.
+         */
+        @Override
+        public long advanceTo(long target) {
+            if (started && current <= target) {
+                return current;
+            }
+            started = true;
+            if (values == null && tailSize > 0 && tail[0] <= target) {
+                values = tail;
+                position = tailSize - 1;
+            } else if (values == null || values[0] > target) {
+                int index = findBlock(target);
+                if (index < 0) {
+                    current = -1;
+                    return current;
+                }
+                Block found = blocks[index];
+                if (decoded == null) {
+                    decoded = new long[2 * BLOCK];
+                }
+                found.decode(decoded);
+                values = decoded;
+                position = found.count - 1;
+                block = index;
+            }
+            position = floorFrom(values, position, target);
+            current = values[position];
+            return current;
+        }
+
+        /**
+         * Finds the block holding the largest id not above the target, galloping back
+         * from the block before the current one, since targets only get smaller.
+         */
+        private int findBlock(long target) {
+            int high = block - 1;
+            int low = high;
+            int step = 1;
+            while (low >= 0 && blocks[low].first > target) {
+                high = low - 1;
+                low -= step;
+                step <<= 1;
+            }
+            return floorBlock(blocks, Math.max(low, 0), high, target);
+        }
+
+        @Override
+        public long current() {
+            return current;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+    }
+
+    /**
+     * Walks the union of several cursors, as a prefix query does, keeping them in a
+     * heap ordered by their current id.
+     */
+    private static final class UnionCursor implements Cursor {
+        private final PriorityQueue<Cursor> heap;
+
+        UnionCursor(List<Cursor> cursors) {
+            this.heap = new PriorityQueue<>(cursors.size(), Comparator.comparingLong(Cursor::current).reversed());
+            for (Cursor cursor : cursors) {
+                if (cursor.advanceTo(Long.MAX_VALUE) >= 0) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public long advanceTo(long target) {
+            while (!heap.isEmpty() && heap.peek().current() > target) {
+                Cursor cursor = heap.poll();
+                if (cursor.advanceTo(target) >= 0) {
+                    heap.add(cursor);
+                }
+            }
+            return current();
+        }
+
+        @Override
+        public long current() {
+            return heap.isEmpty() ? -1 : heap.peek().current();
+        }
+
+        @Override
+        public long size() {
+            long size = 0;
+            for (Cursor cursor : heap) {
+                size += cursor.size();
+            }
+            return size;
+        }
+    }
+}
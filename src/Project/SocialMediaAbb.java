@@ -1,8 +1,13 @@
 package Project;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  * Main class for launching the social media application. It initializes a
  * {@link SocialMediaPlatform} instance and starts the application.
+ * When a data directory is given as the first argument, the platform is loaded from
+ * it and every change is saved to it; otherwise everything is kept in memory only.
  * 
  * @throws SocialMediaException if an error occurs during application runtime
  * 
@@ -12,10 +17,17 @@ public class SocialMediaAbb {
 
     /**
      *
-     * @param args
+     * @param args optionally the data directory of the platform
      * @throws SocialMediaException
+     * @throws IOException if the data directory cannot be read or written
      */
-    public static void main(String[] args) throws SocialMediaException {
+    public static void main(String[] args) throws SocialMediaException, IOException {
+        if (args.length > 0) {
+            try (DurablePlatformService service = DurablePlatformService.open(Paths.get(args[0]))) {
+                new SocialMediaPlatform(service).run();
+            }
+            return;
+        }
         SocialMediaPlatform platform = new SocialMediaPlatform();
         platform.run();
     }
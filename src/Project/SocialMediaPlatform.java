@@ -1,13 +1,21 @@
 package Project;
 
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main platform class managing users, posts, and relationships.
  * Provides a menu for actions such as adding users, following/unfollowing, 
  * viewing info, and admin-only deletions.
+ * The menu only reads input and prints results; every operation is carried out by a
+ * {@link PlatformService}.
  * 
  * @throws SocialMediaException on invalid actions.
  * 
@@ -16,14 +24,29 @@ import java.util.Scanner;
  * @author Asail
  */
 public class SocialMediaPlatform {
-    private final List<User> users;
+    private static final int FEED_SIZE = 20;
+    private static final int TOP_USERS = 10;
+    private static final int PAGE_SIZE = 20;
+    private static final int RECENT_EVENTS = 20;
+    private final PlatformService service;
+    private final ActivityLog activity;
     private Scanner scanner;
     
     /**
-     * Initializes the platform with an empty user list and a scanner for input.
+     * Initializes the platform with an empty user registry and a scanner for input.
      */
     public SocialMediaPlatform() {
-        users = new ArrayList<>();
+        this(new DefaultPlatformService());
+    }
+    
+    /**
+     * Initializes the menu on top of an existing platform service.
+     * 
+     * @param service the service performing the operations
+     */
+    SocialMediaPlatform(PlatformService service) {
+        this.service = service;
+        this.activity = new ActivityLog(RECENT_EVENTS);
         scanner = new Scanner(System.in);
     }
     
@@ -40,30 +63,12 @@ public class SocialMediaPlatform {
         System.out.println("Write Email: ");
         String email = scanner.nextLine();
         
-        if (findUserByUsername(username) != null) {
-            System.out.println("Error: Username already exists. Please choose a different one.");
-            return;
-        }
-        
-        if (findUserByEmail(email) != null) {
-            System.out.println("Error: Email '" + email + "' is already registered. Please use a different email.");
-            return; 
-        }
-        
-        if (!isValidEmail(email)) {
-            System.out.println("Error: Invalid email format. Email must be 'name@domain.com'");
-            return;
-        }
-
-        User newUser;  
-        if (userTypeChoice == 1) {
-            newUser = new Admin(username, email); 
-        } else {
-            newUser = new RegularUser(username, email); 
+        try {
+            service.addUser(username, email, userTypeChoice == 1);
+            System.out.println("User Added Successfully!");
+        } catch (SocialMediaException e) {
+            printError(e);
         }
-
-        users.add(newUser);
-        System.out.println("User Added Successfully!");
     }
     
     /**
@@ -72,13 +77,15 @@ public class SocialMediaPlatform {
     public void addPost() {
         System.out.println("Write User Name: ");
         String username = scanner.nextLine();
-        User user = findUserByUsername(username);
-        if (user != null) {
+        if (findUserInfo(username) != null) {
             System.out.println("Write Post Content: ");
             String content = scanner.nextLine(); 
-            Post newPost = new Post(content, user);
-            user.addPost(newPost);
-            System.out.println("Post Added Successfully!");
+            try {
+                service.addPost(username, content);
+                System.out.println("Post Added Successfully!");
+            } catch (SocialMediaException e) {
+                printError(e);
+            }
         } else {
             System.out.println("User Not Found!");
         }
@@ -93,18 +100,11 @@ public class SocialMediaPlatform {
         System.out.println("Write User Who Want To Follow: ");
         String followeeUsername = scanner.nextLine();
         
-        User follower = findUserByUsername(followerUsername);
-        User followee = findUserByUsername(followeeUsername);
-        
-        if (follower != null && followee != null) {
-            try {
-                follower.followUser(followee);
-                System.out.println("You Follow Now " + followeeUsername);
-            } catch (SocialMediaException e) {
-                System.out.println("Error: "+e.getMessage());
-            }
-        } else {
-            System.out.println("User Not Found!");
+        try {
+            service.followUser(followerUsername, followeeUsername);
+            System.out.println("You Follow Now " + followeeUsername);
+        } catch (SocialMediaException e) {
+            printError(e);
         }
     }
     
@@ -117,18 +117,11 @@ public class SocialMediaPlatform {
         System.out.println("Write User Who Want To Unfollow: ");
         String unfolloweeUsername = scanner.nextLine();
         
-        User follower = findUserByUsername(followerUserName);
-        User followee = findUserByUsername(unfolloweeUsername);
-        
-        if (follower != null && followee != null) {
-            try {
-                follower.unfollowUser(followee);
-                System.out.println("You Unfollowed " + unfolloweeUsername);
-            } catch (SocialMediaException e) {
-                System.out.println("Error: "+e.getMessage());
-            }
-        } else {
-            System.out.println("User Not Found!");
+        try {
+            service.unfollowUser(followerUserName, unfolloweeUsername);
+            System.out.println("You Unfollowed " + unfolloweeUsername);
+        } catch (SocialMediaException e) {
+            printError(e);
         }
     }
     
@@ -141,57 +134,43 @@ public class SocialMediaPlatform {
         System.out.println("Write User Who Want To Remove From Your Followers List: ");
         String removefolloweeUsername = scanner.nextLine();
         
-        User follower = findUserByUsername(followerUserName);
-        User followee = findUserByUsername(removefolloweeUsername);
-        
-        if (follower != null && followee != null) {
-            try {
-                follower.removeFollower(followee);
-                System.out.println("You Removed " + removefolloweeUsername);
-            } catch (SocialMediaException e) {
-                System.out.println("Error: "+e.getMessage());
-            }
-        } else {
-            System.out.println("User Not Found!");
+        try {
+            service.removeFollower(followerUserName, removefolloweeUsername);
+            System.out.println("You Removed " + removefolloweeUsername);
+        } catch (SocialMediaException e) {
+            printError(e);
         }
     }
     
     /**
      * Deletes a specified user (admin-only action).
-     * @param admin the admin performing the action
+     * @param adminUserName the username of the admin performing the action
      */
-    public void deleteUser(User admin) {
+    public void deleteUser(String adminUserName) {
         System.out.println("Write The User Name Of The User To Delete: ");
         String username = scanner.nextLine();
-        User userToDelete = findUserByUsername(username);
 
-        if (userToDelete != null) {
-            ((Admin) admin).deleteUser(userToDelete, users); 
-        } else {
-            System.out.println("User Not Found!");
+        try {
+            service.deleteUser(adminUserName, username);
+            System.out.println(username + " Has Been Removed From The System By The Admin");
+        } catch (SocialMediaException e) {
+            printError(e);
         }
     }
     
     /**
      * Deletes a specific post of a user (admin-only action).
-     * @param admin the admin performing the action
+     * @param adminUserName the username of the admin performing the action
      */
-    public void deletePost(User admin) {
-        System.out.println("Write User Name Of The Post Author: ");
-        String username = scanner.nextLine();
-        User user = findUserByUsername(username);
-
-        if (user != null) {
-            System.out.println("Write Post Number: ");
-            int postIndex = scanner.nextInt();
-            if (postIndex < 0 || postIndex >= user.getPosts().size()) {
-                System.out.println("Post Not Found!");
-            } else {
-                Post postToDelete = user.getPosts().get(postIndex);
-                ((Admin) admin).deletePost(user, postToDelete);
-            }
-        } else {
-            System.out.println("User Not Found!");
+    public void deletePost(String adminUserName) {
+        System.out.println("Write Post Id: ");
+        long postId = scanner.nextLong();
+        scanner.nextLine();
+        try {
+            service.deletePost(adminUserName, postId);
+            System.out.println("Post " + postId + " Has Been Removed By The Admin.");
+        } catch (SocialMediaException e) {
+            printError(e);
         }
     }
     
@@ -201,12 +180,13 @@ public class SocialMediaPlatform {
     public void displayUserInfo() {
         System.out.println("Write User Name: ");
         String username = scanner.nextLine();
-        User user = findUserByUsername(username);
+        UserInfo user = findUserInfo(username);
         if (user != null) {
-            user.display();
+            System.out.println((user.isAdmin() ? "Admin User: " : "Regular User: ") + user.getUserName() + ", Email: " + user.getEmail());
             System.out.println("Posts: "); 
-            for (Post post : user.getPosts()){
-                post.display();
+            List<String> posts = user.getPosts();
+            for (int i = 0; i < posts.size(); i++) {
+                System.out.println("[" + user.getPostId(i) + "] Posted by " + user.getUserName() + ": " + posts.get(i));
             }
         } else {
             System.out.println("User Not Found!");
@@ -215,46 +195,120 @@ public class SocialMediaPlatform {
     
     /**
      * Generates and prints a report of all users and their posts.
+     * The report is streamed through a {@link ReportWriter}, so it is not built in memory.
      */
     public void generateReport() {
         System.out.println("Report: ");
-        for (User user : users) {
-            System.out.println(user);
-            for (Post post : user.getPosts()) {
-                System.out.println("\t" + post);
+        ReportWriter writer = new ReportWriter(new BufferedWriter(new OutputStreamWriter(System.out)), ReportWriter.Format.TEXT);
+        try {
+            service.writeReport(writer);
+            writer.flush();
+            List<String> influential = service.getMostInfluential(TOP_USERS);
+            if (!influential.isEmpty()) {
+                System.out.println("Most influential users: " + String.join(", ", influential));
             }
-           
-            System.out.println();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        } catch (SocialMediaException e) {
+            printError(e);
         }
         System.out.println("Report Genrate Successfully!");
     }
+
+    /**
+     * Exports the report of all users, their posts and comments to a file
+     * as text, CSV or JSON lines.
+     */
+    public void exportReport() {
+        System.out.println("Write File Path: ");
+        String fileName = scanner.nextLine();
+        System.out.println("Choose Format: \n1. Text  \n2. CSV  \n3. JSON Lines");
+        ReportWriter.Format format;
+        switch (scanner.nextLine().trim()) {
+            case "1":
+                format = ReportWriter.Format.TEXT;
+                break;
+            case "2":
+                format = ReportWriter.Format.CSV;
+                break;
+            case "3":
+                format = ReportWriter.Format.JSON_LINES;
+                break;
+            default:
+                System.out.println("Wrong Choice Please Try Again.");
+                return;
+        }
+        Path path;
+        try {
+            path = Paths.get(fileName);
+        } catch (InvalidPathException e) {
+            System.out.println("Error: Invalid file path.");
+            return;
+        }
+        try (ReportWriter writer = ReportWriter.open(path, format)) {
+            service.writeReport(writer, ForkJoinPool.commonPool());
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        System.out.println("Report Exported Successfully!");
+    }
+    
+    /**
+     * Imports users, posts, comments and follow relationships from a CSV or JSON-lines
+     * file and prints what was imported.
+     */
+    public void importData() {
+        System.out.println("Write File Path: ");
+        String fileName = scanner.nextLine();
+        System.out.println("Choose Format: \n1. CSV  \n2. JSON Lines");
+        ReportWriter.Format format;
+        switch (scanner.nextLine().trim()) {
+            case "1":
+                format = ReportWriter.Format.CSV;
+                break;
+            case "2":
+                format = ReportWriter.Format.JSON_LINES;
+                break;
+            default:
+                System.out.println("Wrong Choice Please Try Again.");
+                return;
+        }
+        BulkImporter.Result result;
+        try {
+            result = service.importData(Paths.get(fileName), format);
+        } catch (InvalidPathException e) {
+            System.out.println("Error: Invalid file path.");
+            return;
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        System.out.println(result);
+        for (String error : result.getErrors()) {
+            System.out.println(error);
+        }
+    }
     
     /**
      * Adds a comment to a specific post by a specified user.
      * @throws Project.SocialMediaException
      */
     public void addComment() throws SocialMediaException {
-        System.out.println("Write Username Who Post: ");
-        String postAuthorUsername = scanner.nextLine();
-        User postAuthor = findUserByUsername(postAuthorUsername);
-        if (postAuthor == null) {
-            System.out.println("User Not Found!");
-            return;
-        }
-        System.out.println("Write Post Number: ");
-        int postIndex = scanner.nextInt();
+        System.out.println("Write Post Id: ");
+        long postId = scanner.nextLong();
         scanner.nextLine();
-        if (postIndex < 0 || postIndex >= postAuthor.getPosts().size()) {
-            System.out.println("Wrong Post Number!");
+        try {
+            service.getPost(postId);
+        } catch (PostNotFoundException e) {
+            System.out.println("Wrong Post Id!");
             return;
         }
         
-        Post post = postAuthor.getPosts().get(postIndex);
-        
         System.out.println("Write User Who Want To Comment: ");
         String commenterUsername = scanner.nextLine();
-        User commenter = findUserByUsername(commenterUsername);
-        if (commenter == null){
+        if (findUserInfo(commenterUsername) == null){
             System.out.println("User Not Found!");
             return;
         }
@@ -262,71 +316,339 @@ public class SocialMediaPlatform {
         System.out.println("Write Comment Content: ");
         String content = scanner.nextLine();
         
-        Comment newComment = new Comment (content, commenter);
-        post.addComment(newComment);
-        System.out.println("Comment Add Successfully!");
+        try {
+            service.addComment(postId, commenterUsername, content);
+            System.out.println("Comment Add Successfully!");
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
     }
     
     /**
-     * Displays a user's followers and followees.
+     * Displays a user's followers and followees, a page at a time.
      */
     public void displayFollowersAndFollowees() {
         System.out.println("Write User Name: ");
         String username = scanner.nextLine();
-        User user = findUserByUsername(username);
-        if (user != null) {
-            user.displayFollowersAndFollowees(users);
-        } else {
+        try {
+            System.out.println("Followers:");
+            int cursor = 0;
+            boolean any = false;
+            do {
+                Page<String> page = service.getFollowers(username, cursor, PAGE_SIZE);
+                any |= printNames(page);
+                cursor = page.getNextCursor();
+            } while (cursor != Page.END && showMore());
+            if (!any) {
+                System.out.println("No followers.");
+            }
+            System.out.println("\nFollowing:");
+            cursor = 0;
+            any = false;
+            do {
+                Page<String> page = service.getFollowing(username, cursor, PAGE_SIZE);
+                any |= printNames(page);
+                cursor = page.getNextCursor();
+            } while (cursor != Page.END && showMore());
+            if (!any) {
+                System.out.println("Not following anyone.");
+            }
+        } catch (UserNotFoundException e) {
             System.out.println("User Not Found!");
         }
     }
 
     /**
-     * Finds and returns a user by username.
+     * Prints the usernames of a page.
      *
-     * @param username the username to search for
-     * @return the matching user or null if not found
+     * @param page the page
+     * @return true if the page held any usernames
      */
-    private User findUserByUsername(String username) {
-        return users.stream()
-                .filter(u -> u.getUserName().equals(username))
-                .findFirst()
-                .orElse(null);
+    private boolean printNames(Page<String> page) {
+        for (String name : page.getItems()) {
+            System.out.println(name);
+        }
+        return !page.getItems().isEmpty();
     }
-    
+
     /**
-     * Finds and returns a user by email.
+     * Asks whether to show the next page.
      *
-     * @param email the email to search for
-     * @return the matching user or null if not found
+     * @return true if the answer is yes
      */
-    private User findUserByEmail(String email) {
-        return users.stream()
-                .filter(u -> u.getEmail().equals(email))
-                .findFirst()
-                .orElse(null);
+    private boolean showMore() {
+        System.out.println("Show More? (y/n)");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
     }
-    
+
     /**
-     * Checks if the provided email string has a valid format.
-     * A minimal validation is performed to ensure the email contains '@' and '.' characters.
-     * * @param email the email string to validate
-     * @return true if the email is considered valid (contains '@' and '.'); false otherwise
+     * Displays the latest posts from the users a specific user follows.
      */
-    private boolean isValidEmail(String email) {
-        if (email == null) {
-            return false;
+    public void displayFeed() {
+        System.out.println("Write User Name: ");
+        String username = scanner.nextLine();
+        try {
+            List<Post> feed = service.getFeed(username, FEED_SIZE);
+            if (feed.isEmpty()) {
+                System.out.println("No posts in the feed.");
+            }
+            for (Post post : feed) {
+                post.display();
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
         }
-        String emailRegex = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-        return email.matches(emailRegex);
     }
 
     /**
-     * Runs the social media platform, displaying a menu for user actions.
+     * Searches posts and comments for words or phrases and displays the newest
+     * matching posts.
+     */
+    public void searchPosts() {
+        System.out.println("Write Search Words: ");
+        String query = scanner.nextLine();
+        try {
+            List<Post> posts = service.searchPosts(query, FEED_SIZE);
+            if (posts.isEmpty()) {
+                System.out.println("No matching posts.");
+            }
+            for (Post post : posts) {
+                post.display();
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Displays the comments on a post, a page at a time, newest or oldest first.
+     */
+    public void displayComments() {
+        System.out.println("Write Post Id: ");
+        long postId = scanner.nextLong();
+        scanner.nextLine();
+        System.out.println("Newest First? (y/n)");
+        boolean newestFirst = scanner.nextLine().trim().equalsIgnoreCase("y");
+        try {
+            Post post = service.getPost(postId);
+            post.display();
+            System.out.println(post.getCommentCount() + " Comments:");
+            int cursor = 0;
+            do {
+                Page<Comment> page = service.getComments(postId, cursor, PAGE_SIZE, newestFirst);
+                for (Comment comment : page.getItems()) {
+                    comment.display();
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != Page.END && showMore());
+        } catch (PostNotFoundException e) {
+            System.out.println("Wrong Post Id!");
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Lists the users whose name starts with the given letters, most followed first.
+     */
+    public void completeUserName() {
+        System.out.println("Write The Start Of The User Name: ");
+        String prefix = scanner.nextLine();
+        try {
+            List<String> names = service.completeUserName(prefix, FEED_SIZE);
+            if (names.isEmpty()) {
+                System.out.println("No matching users.");
+            }
+            for (String name : names) {
+                System.out.println(name);
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Lists users followed by the users someone follows, as suggestions to follow.
+     */
+    public void suggestUsers() {
+        System.out.println("Write The User Name: ");
+        String username = scanner.nextLine();
+        try {
+            List<RecommendationService.Suggestion> suggestions = service.suggestUsers(username, FEED_SIZE);
+            if (suggestions.isEmpty()) {
+                System.out.println("No suggestions yet. Follow someone first.");
+            }
+            for (RecommendationService.Suggestion suggestion : suggestions) {
+                System.out.println(suggestion);
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Shows how two users are connected: whether they follow each other, who follows
+     * both, and how many follow hops lead from the first to the second.
+     */
+    public void compareUsers() {
+        System.out.println("Write The First User Name: ");
+        String first = scanner.nextLine();
+        System.out.println("Write The Second User Name: ");
+        String second = scanner.nextLine();
+        try {
+            System.out.println(service.followEachOther(first, second)
+                    ? "They follow each other." : "They do not follow each other.");
+            List<String> mutual = service.getMutualFollowers(first, second);
+            System.out.println("Followed by both: " + mutual.size());
+            for (int i = 0; i < mutual.size() && i < FEED_SIZE; i++) {
+                System.out.println(mutual.get(i));
+            }
+            int hops = service.getDegreesOfSeparation(first, second, GraphQueries.DEFAULT_MAX_HOPS);
+            if (hops < 0) {
+                System.out.println("No path within " + GraphQueries.DEFAULT_MAX_HOPS + " hops.");
+            } else {
+                System.out.println("Degrees of separation: " + hops);
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Runs the analyses of the follow graph and shows the most influential users and
+     * how follower and following counts are spread.
+     */
+    public void runGraphAnalytics() {
+        try {
+            GraphAnalytics.Results results = service.runGraphAnalytics(ForkJoinPool.commonPool());
+            System.out.println(results);
+            System.out.println("Most influential users: " + String.join(", ", service.getMostInfluential(TOP_USERS)));
+            printHistogram("Followers", results.getFollowerHistogram());
+            printHistogram("Following", results.getFollowingHistogram());
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    private static void printHistogram(String title, long[] buckets) {
+        System.out.println(title + " per user:");
+        for (int b = 0; b < buckets.length; b++) {
+            if (buckets[b] > 0) {
+                String range = b == 0 ? "0" : b == 1 ? "1" : (1L << (b - 1)) + "-" + ((1L << b) - 1);
+                System.out.println("  " + range + ": " + buckets[b] + " users");
+            }
+        }
+    }
+
+    /**
+     * Shows how much memory the shared copies of repeated texts and email domains save.
+     */
+    public void displayMemorySavings() {
+        try {
+            for (StringPool.Stats stats : service.getStringPoolStats()) {
+                System.out.println(stats);
+            }
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Displays the most followed users and the most commented posts. The rankings are
+     * approximate; see {@link Leaderboard}.
+     */
+    public void displayLeaderboards() {
+        try {
+            List<User> users = service.getMostFollowed(TOP_USERS);
+            System.out.println("Most followed users:");
+            if (users.isEmpty()) {
+                System.out.println("No followers yet.");
+            }
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                System.out.println((i + 1) + ". " + user.getUserName() + ": " + user.getFollowersCount() + " followers, "
+                        + user.getPostCount() + " posts, " + user.getCommentsReceived() + " comments received, "
+                        + user.getCommentsGiven() + " comments given");
+            }
+            List<Post> posts = service.getMostCommented(TOP_USERS);
+            System.out.println("Most commented posts:");
+            if (posts.isEmpty()) {
+                System.out.println("No comments yet.");
+            }
+            for (int i = 0; i < posts.size(); i++) {
+                Post post = posts.get(i);
+                System.out.println((i + 1) + ". [" + post.getId() + "] Posted by " + post.getAuthor().getUserName()
+                        + ": " + post.getCommentCount() + " comments");
+            }
+            System.out.println("Rankings are kept among the top " + Leaderboard.DEFAULT_CAPACITY
+                    + "; one that dropped off is ranked again only when its count next changes.");
+        } catch (SocialMediaException e) {
+            printError(e);
+        }
+    }
+
+    /**
+     * Displays the latest changes made to the platform while the menu runs, newest first.
+     */
+    public void displayRecentActivity() {
+        List<String> recent = activity.recent();
+        if (recent.isEmpty()) {
+            System.out.println("No activity yet.");
+            return;
+        }
+        for (String entry : recent) {
+            System.out.println(entry);
+        }
+    }
+
+    /**
+     * Finds and returns the summary of a user by username.
+     *
+     * @param username the username to search for
+     * @return the summary of the matching user or null if not found
+     */
+    private UserInfo findUserInfo(String username) {
+        try {
+            return service.getUserInfo(username);
+        } catch (UserNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Prints the message of a failed operation. Lookup and permission failures are
+     * printed as they are; other errors are prefixed with "Error: ".
+     *
+     * @param e the exception describing the failure
+     */
+    private void printError(SocialMediaException e) {
+        if (e instanceof UserNotFoundException || e instanceof PostNotFoundException
+                || e instanceof PermissionDeniedException) {
+            System.out.println(e.getMessage());
+        } else {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the social media platform, displaying a menu for user actions. The changes
+     * made while it runs are followed on the platform's event bus for the activity list.
      *
      * @throws SocialMediaException for invalid actions
      */
     public void run() throws SocialMediaException {
+        EventBus.Subscription subscription = service.getEvents().subscribe("activity", activity);
+        try {
+            showMenu();
+        } finally {
+            subscription.close();
+        }
+    }
+
+    /**
+     * Shows the menu and carries out the chosen actions until the user exits.
+     */
+    private void showMenu() throws SocialMediaException {
         while (true) {
             System.out.println("\n --- Menu Social Media ---");
             System.out.println("1. Add User");
@@ -340,7 +662,19 @@ public class SocialMediaPlatform {
             System.out.println("9. Genrate Report");
             System.out.println("10. Delete User (For The Admin Only)");
             System.out.println("11. Delete Post (For The Admin Only)");
-            System.out.println("12. Exit");
+            System.out.println("12. Display Feed");
+            System.out.println("13. Export Report To File");
+            System.out.println("14. Import Data From File");
+            System.out.println("15. Search Posts");
+            System.out.println("16. Find Users By Name");
+            System.out.println("17. Show Comments Of A Post");
+            System.out.println("18. Show Memory Savings");
+            System.out.println("19. Suggest Users To Follow");
+            System.out.println("20. Compare Two Users");
+            System.out.println("21. Run Graph Analytics");
+            System.out.println("22. Show Recent Activity");
+            System.out.println("23. Show Leaderboards");
+            System.out.println("24. Exit");
             
             System.out.print("Write Choice: ");
             String inputChoice = scanner.nextLine();
@@ -349,7 +683,7 @@ public class SocialMediaPlatform {
             try {
                 choice = Integer.parseInt(inputChoice);
             } catch (NumberFormatException e) {
-                System.out.println("Error: Choice must be a number between 1 and 12.");
+                System.out.println("Error: Choice must be a number between 1 and 24.");
                 continue;
             }
             
@@ -384,9 +718,9 @@ public class SocialMediaPlatform {
                 case 10:
                     System.out.println("Enter Admin User Name: ");
                     String adminUsername = scanner.nextLine();
-                    User adminUser = findUserByUsername(adminUsername);
-                    if (adminUser instanceof Admin) {
-                        deleteUser(adminUser); 
+                    UserInfo adminUser = findUserInfo(adminUsername);
+                    if (adminUser != null && adminUser.isAdmin()) {
+                        deleteUser(adminUsername); 
                     } else {
                         System.out.println("Only Admins Can Perform This Action");
                     }
@@ -394,14 +728,50 @@ public class SocialMediaPlatform {
                 case 11:
                     System.out.println("Enter Admin User Name: ");
                     String adminPostUsername = scanner.nextLine();
-                    User adminPostUser = findUserByUsername(adminPostUsername);
-                    if (adminPostUser instanceof Admin) {
-                        deletePost(adminPostUser);
+                    UserInfo adminPostUser = findUserInfo(adminPostUsername);
+                    if (adminPostUser != null && adminPostUser.isAdmin()) {
+                        deletePost(adminPostUsername);
                     } else {
                         System.out.println("Only Admins Can Perform This Action");
                     }
                     break;
                 case 12:
+                    displayFeed();
+                    break;
+                case 13:
+                    exportReport();
+                    break;
+                case 14:
+                    importData();
+                    break;
+                case 15:
+                    searchPosts();
+                    break;
+                case 16:
+                    completeUserName();
+                    break;
+                case 17:
+                    displayComments();
+                    break;
+                case 18:
+                    displayMemorySavings();
+                    break;
+                case 19:
+                    suggestUsers();
+                    break;
+                case 20:
+                    compareUsers();
+                    break;
+                case 21:
+                    runGraphAnalytics();
+                    break;
+                case 22:
+                    displayRecentActivity();
+                    break;
+                case 23:
+                    displayLeaderboards();
+                    break;
+                case 24:
                     System.out.println("Thank You For Using Our Platform!");
                     return;
                 default:
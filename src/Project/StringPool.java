@@ -0,0 +1,220 @@
+package Project;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StringPool class keeps one shared copy of each distinct string handed to it,
+ * such as the text of posts and comments or the domains of email addresses, so that
+ * a reply repeated a million times or a domain shared by most users is stored once.
+ * <p>
+ * The pool is content-addressed: a string is looked up by its hash and contents, and
+ * {@link #intern(String)} returns the copy already in the pool, if any. Every entry
+ * counts its references; {@link #release(String)} drops one, and the entry is removed
+ * with the last. Strings longer than the length limit are returned as they are,
+ * since long texts are rarely repeated word for word and would only cost an entry.
+ * <p>
+ * The pool also keeps the estimated number of bytes it stores, the bytes it saves and
+ * the bytes its entries cost, which {@link #stats()} reports. Sizes are estimated for
+ * a 64-bit JVM with compressed references and compact strings.
+ *
+ * @author Asail
+ */
+final class StringPool {
+    /** Default length above which strings are not pooled. */
+    static final int DEFAULT_MAX_LENGTH = 256;
+    /** Estimated size of a String object without its characters. */
+    private static final int STRING_BYTES = 24;
+    /** Estimated size of an array header. */
+    private static final int ARRAY_BYTES = 16;
+    /** Estimated size of a map node and an entry. */
+    private static final int ENTRY_BYTES = 56;
+
+    private final String name;
+    private final int maxLength;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final LongAdder references;
+    private final LongAdder storedBytes;
+    private final LongAdder savedBytes;
+
+    /**
+     * Creates a pool with the default length limit.
+     *
+     * @param name the name the pool is reported under
+     */
+    StringPool(String name) {
+        this(name, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param name the name the pool is reported under
+     * @param maxLength the length above which strings are not pooled
+     */
+    StringPool(String name, int maxLength) {
+        this.name = name;
+        this.maxLength = maxLength;
+        this.entries = new ConcurrentHashMap<>();
+        this.references = new LongAdder();
+        this.storedBytes = new LongAdder();
+        this.savedBytes = new LongAdder();
+    }
+
+    /**
+     * Gets the pooled copy of a string and counts a new reference to it, adding the
+     * string to the pool if it is not there yet.
+     *
+     * @param value the string, or null
+     * @return the pooled copy; the string itself if it is new, too long or null
+     */
+    String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        Entry entry = entries.compute(value, (key, existing) -> {
+            if (existing == null) {
+                storedBytes.add(sizeOf(key));
+                return new Entry(key);
+            }
+            existing.references++;
+            savedBytes.add(sizeOf(key));
+            return existing;
+        });
+        references.increment();
+        return entry.value;
+    }
+
+    /**
+     * Drops a reference to a pooled string, removing the string with its last
+     * reference. Strings that are not in the pool are ignored.
+     *
+     * @param value the string, or null
+     */
+    void release(String value) {
+        if (value == null || value.length() > maxLength) {
+            return;
+        }
+        entries.computeIfPresent(value, (key, existing) -> {
+            references.decrement();
+            if (--existing.references == 0) {
+                storedBytes.add(-sizeOf(key));
+                return null;
+            }
+            savedBytes.add(-sizeOf(key));
+            return existing;
+        });
+    }
+
+    /**
+     * @return the current counts and byte estimates of the pool
+     */
+    Stats stats() {
+        int distinct = entries.size();
+        return new Stats(name, distinct, references.sum(), storedBytes.sum(), savedBytes.sum(),
+                (long) distinct * ENTRY_BYTES);
+    }
+
+    /**
+     * Estimates the heap size of a string: Latin-1 strings take one byte per character,
+     * others two.
+     */
+    static long sizeOf(String value) {
+        int length = value.length();
+        long characters = length;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0xFF) {
+                characters = 2L * length;
+                break;
+            }
+        }
+        return STRING_BYTES + ((ARRAY_BYTES + characters + 7) & ~7L);
+    }
+
+    private static final class Entry {
+        final String value;
+        /** Guarded by the map's lock on the entry's bin. */
+        int references;
+
+        Entry(String value) {
+            this.value = value;
+            this.references = 1;
+        }
+    }
+
+    /**
+     * The Stats class is a snapshot of the counts and memory estimates of a pool.
+     */
+    static final class Stats {
+        private final String name;
+        private final int distinct;
+        private final long references;
+        private final long storedBytes;
+        private final long savedBytes;
+        private final long overheadBytes;
+
+        Stats(String name, int distinct, long references, long storedBytes, long savedBytes, long overheadBytes) {
+            this.name = name;
+            this.distinct = distinct;
+            this.references = references;
+            this.storedBytes = storedBytes;
+            this.savedBytes = savedBytes;
+            this.overheadBytes = overheadBytes;
+        }
+
+        /**
+         * @return the name of the pool
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of distinct strings in the pool
+         */
+        public int getDistinct() {
+            return distinct;
+        }
+
+        /**
+         * @return the number of references to pooled strings
+         */
+        public long getReferences() {
+            return references;
+        }
+
+        /**
+         * @return the estimated bytes of the pooled strings
+         */
+        public long getStoredBytes() {
+            return storedBytes;
+        }
+
+        /**
+         * @return the estimated bytes the references would take as separate copies,
+         * minus what the pooled copies take
+         */
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+
+        /**
+         * @return the estimated bytes taken by the entries of the pool
+         */
+        public long getOverheadBytes() {
+            return overheadBytes;
+        }
+
+        /**
+         * @return the saved bytes minus the overhead
+         */
+        public long getNetSavedBytes() {
+            return savedBytes - overheadBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %,d references to %,d distinct strings (%,d bytes); saved %,d bytes, "
+                    + "pool overhead %,d bytes, net %,d bytes", name, references, distinct, storedBytes,
+                    savedBytes, overheadBytes, getNetSavedBytes());
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package Project;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 /**
  * Represents a user in a social media system, with attributes for username, email,
  * posts, and following relationships. This abstract class is designed for extension 
  * and implements the SocialMediaElement interface.
+ * Following relationships live in the platform's {@link FollowGraph}. Users are safe
+ * to share between threads and are equal only to themselves.
  *
  * Methods include following, unfollowing users, managing posts, and displaying 
  * followers and followees, with exception handling for invalid operations.
@@ -19,19 +30,36 @@ import java.util.Objects;
 
 abstract class User implements SocialMediaElement {
     
-    protected String userName;
-    protected String email;
-    protected List<Post> posts;
-    protected List<Following> following;
-    protected List<Following> followers; 
+    protected volatile String userName;
+    /**
+     * The email. Once the user is registered, its domain is the copy kept in the
+     * platform's domain pool.
+     */
+    volatile EmailAddress email;
+    protected final ConcurrentNavigableMap<Long, Post> posts;
+    protected final Collection<Following> following;
+    protected final Collection<Following> followers; 
+    protected final Set<Comment> comments;
+    /** The number of posts the user has. */
+    final LongAdder postCount;
+    /** The number of live comments on the user's posts. */
+    final LongAdder commentsReceived;
+    /** The number of live comments the user has written. */
+    final LongAdder commentsGiven;
+    volatile PlatformContext context;
+    int id = -1;
 
     /**
      * Default constructor initializing the lists.
      */
     public User() {
-        this.posts = new ArrayList<>();
-        this.following = new ArrayList<>();
-        this.followers = new ArrayList<>();
+        this.posts = new ConcurrentSkipListMap<>();
+        this.following = new FollowingView(true);
+        this.followers = new FollowingView(false);
+        this.comments = ConcurrentHashMap.newKeySet();
+        this.postCount = new LongAdder();
+        this.commentsReceived = new LongAdder();
+        this.commentsGiven = new LongAdder();
     }
 
     /**
@@ -43,7 +71,7 @@ abstract class User implements SocialMediaElement {
     public User(String userName, String email) {
         this();
         this.userName = userName;
-        this.email = email;
+        this.email = EmailAddress.parse(email);
     }
 
     /**
@@ -64,11 +92,18 @@ abstract class User implements SocialMediaElement {
 
     /**
      * Sets the username of the user.
+     * If the user is registered, the registry index is updated as well.
      * 
      * @param userName The new username
+     * @throws SocialMediaException if the username is already taken
      */
-    public void setUserName(String userName) {
-        this.userName = userName;
+    public void setUserName(String userName) throws SocialMediaException {
+        PlatformContext shared = context;
+        if (shared != null) {
+            shared.getUsers().rename(this, userName);
+        } else {
+            this.userName = userName;
+        }
     }
 
     /**
@@ -77,53 +112,148 @@ abstract class User implements SocialMediaElement {
      * @return The email
      */
     public String getEmail() {
-        return email;
+        EmailAddress address = email;
+        return address == null ? null : address.toString();
     }
 
     /**
      * Sets the email of the user.
+     * If the user is registered, the registry index is updated as well.
      * 
      * @param email The new email
+     * @throws SocialMediaException if the email is already registered
+     */
+    public void setEmail(String email) throws SocialMediaException {
+        PlatformContext shared = context;
+        if (shared != null) {
+            shared.getUsers().changeEmail(this, email);
+        } else {
+            this.email = EmailAddress.parse(email);
+        }
+    }
+
+    /**
+     * Gets the posts created by the user, oldest first, as a read-only view.
+     * 
+     * @return The posts
+     */
+    public Collection<Post> getPosts() {
+        return Collections.unmodifiableCollection(posts.values());
+    }
+
+    /**
+     * Gets the posts created by the user, newest first, as a read-only view.
+     * 
+     * @return The posts
+     */
+    Collection<Post> getPostsNewestFirst() {
+        return Collections.unmodifiableCollection(posts.descendingMap().values());
+    }
+
+    /**
+     * Gets the number of posts of the user without counting them.
+     * 
+     * @return The number of posts
+     */
+    public int getPostCount() {
+        return postCount.intValue();
+    }
+
+    /**
+     * Gets the number of comments on the user's posts, leaving out deleted ones.
+     * 
+     * @return The number of comments received
+     */
+    public long getCommentsReceived() {
+        return commentsReceived.sum();
+    }
+
+    /**
+     * Gets the number of comments the user has written, leaving out deleted ones.
+     * 
+     * @return The number of comments given
+     */
+    public long getCommentsGiven() {
+        return commentsGiven.sum();
+    }
+
+    /**
+     * Gets the number of users this user follows.
+     * 
+     * @return The number of followees
+     */
+    public int getFollowingCount() {
+        return following.size();
+    }
+
+    /**
+     * Gets the number of users following this user.
+     * 
+     * @return The number of followers
      */
-    public void setEmail(String email) {
-        this.email = email;
+    public int getFollowersCount() {
+        return followers.size();
     }
 
     /**
-     * Gets the list of posts created by the user.
+     * Gets the id assigned to the user when it was registered.
      * 
-     * @return The list of posts
+     * @return The user id, or -1 if the user is not registered
      */
-    public List<Post> getPosts() {
-        return posts;
+    public int getId() {
+        return id;
     }
 
     /**
-     * Gets the list of users that this user is following.
+     * Gets the users that this user is following, as a read-only view over the follow graph.
      * 
-     * @return The list of following users
+     * @return The collection of following users
      */
-    public List<Following> getFollowing() {
+    public Collection<Following> getFollowing() {
         return following;
     }
     
     /**
-     * Gets the list of users that follows this user.
+     * Gets the users that follow this user, as a read-only view over the follow graph.
      * 
-     * @return The list of user followers
+     * @return The collection of user followers
      */
-    public List<Following> getFollowers() {
+    public Collection<Following> getFollowers() {
         return followers;
     }
    
     
     /**
-     * Adds a new post to the user's list of posts.
+     * Adds a new post to the user's list of posts, pools its text and hands it to the
+     * feed service and the search index of the platform the user is registered on.
      * 
      * @param post The post to be added
      */
     public void addPost(Post post) {
-        posts.add(post);
+        if (posts.put(post.getId(), post) == null) {
+            postCount.increment();
+        }
+        PlatformContext shared = context;
+        if (shared != null) {
+            post.pool(shared.getContents());
+            shared.getFeed().onPostAdded(post);
+            shared.getSearch().onPostAdded(post);
+        }
+    }
+
+    /**
+     * Removes a post from the user's posts by its id.
+     *
+     * @param post The post to be removed
+     * @return true if the post was one of the user's posts
+     */
+    boolean removePost(Post post) {
+        if (!posts.remove(post.getId(), post)) {
+            return false;
+        }
+        post.markRemoved();
+        postCount.decrement();
+        return true;
     }
 
 
@@ -131,47 +261,41 @@ abstract class User implements SocialMediaElement {
      * Follows another user.
      * 
      * @param user The user to follow
-     * @throws SocialMediaException if the user is null or already followed
+     * @throws SocialMediaException if the user is null, not registered, or already followed
      */
     public void followUser(User user) throws SocialMediaException {
         if (user == null) {
             throw new SocialMediaException("Cannot Follow Empty User");
         }
         
-        if (this.equals(user)) {
+        if (this == user) {
             throw new SocialMediaException("Cannot Follow yourself");
         }
         
-        Following newFollowing = new Following(this, user);
-        if (!following.contains(newFollowing)) {
-            following.add(newFollowing);
-            
-            if (!user.getFollowers().contains(newFollowing)){ 
-                user.getFollowers().add(newFollowing);
+        FollowGraph graph = graphWith(user);
+        if (!graph.follow(id, user.id)) {
+            if (!graph.isFollowing(id, user.id)) {
+                throw new SocialMediaException("Both users must be registered on the platform.");
             }
-        } else {
             throw new SocialMediaException("You already Following this user");
         }
+        PlatformContext shared = context;
+        if (shared != null) {
+            shared.getFeed().onFollow(id, user.id);
+        }
     }
 
     /**
      * Unfollows a user.
      * 
      * @param user The user to unfollow
-     * @throws SocialMediaException if the user is null or not followed
+     * @throws SocialMediaException if the user is null, not registered, or not followed
      */
     public void unfollowUser(User user) throws SocialMediaException {
         if (user == null) {
             throw new SocialMediaException("Cannot unfollow an empty user.");
         }
-        Following followRelation = new Following(this, user);
-        if (following.contains(followRelation)) {
-            following.remove(followRelation);
-            
-            if (user.getFollowers().contains(followRelation)) {
-                user.getFollowers().remove(followRelation);
-            }
-        } else {
+        if (!graphWith(user).unfollow(id, user.id)) {
             throw new SocialMediaException("You are not following this user.");
         }
     }
@@ -180,90 +304,154 @@ abstract class User implements SocialMediaElement {
      * Removes a follower from this user's follower list.
      * 
      * @param follower The user to remove as a follower
-     * @throws SocialMediaException if the follower is null or not following
+     * @throws SocialMediaException if the follower is null, not registered, or not following
      */
     public void removeFollower(User follower) throws SocialMediaException {
         if (follower == null) {
             throw new SocialMediaException("Cannot remove a null follower.");
         }
         
-        Following followerRelation = new Following(follower, this); 
-        
-        if (this.followers.contains(followerRelation)) {
-            this.followers.remove(followerRelation);
-            
-            if (follower.getFollowing().contains(followerRelation)) {
-                follower.getFollowing().remove(followerRelation);
-            }
-            
-            System.out.println(follower.getUserName() + " has been removed from your followers list.");
-            
-        } else {
+        if (!graphWith(follower).unfollow(follower.id, id)) {
             throw new SocialMediaException(follower.userName + " is not following you.");
         }
     }
 
     /**
-     * Displays the followers and followees of the user.
+     * Gets the follow graph shared by this user and another one.
+     * 
+     * @param other The other user of the relationship
+     * @return The follow graph of the platform both users are registered on
+     * @throws SocialMediaException if either user is not registered on the same platform
+     */
+    private FollowGraph graphWith(User other) throws SocialMediaException {
+        PlatformContext shared = context;
+        if (shared == null || other.context != shared) {
+            throw new SocialMediaException("Both users must be registered on the platform.");
+        }
+        return shared.getFollowGraph();
+    }
+
+    /**
+     * Displays the first followers and followees of the user, in the order they
+     * registered, and how many more there are. Only the displayed page of each list is read.
      * 
-     * @param allUsers The list of all users in the system
+     * @param limit The maximum number of followers and of followees to display
      */
-    public void displayFollowersAndFollowees(List<User> allUsers) {
+    public void displayFollowersAndFollowees(int limit) {
+        PlatformContext shared = context;
         System.out.println("Followers:");
-        if (this.followers.isEmpty()) {
+        if (shared == null || shared.getFollowGraph().followersCount(id) == 0) {
             System.out.println("No followers.");
         } else {
-            for (Following followRelation : this.followers) {
-                System.out.println(followRelation.getFollower().getUserName());
-            }
+            FollowGraph graph = shared.getFollowGraph();
+            printPage(shared, graph.followers(id, 0, limit), graph.followersCount(id));
         }
 
         System.out.println("\nFollowing:");
-        if (this.following.isEmpty()) {
+        if (shared == null || shared.getFollowGraph().followingCount(id) == 0) {
             System.out.println("Not following anyone.");
         } else {
-            for (Following followRelation : following) {
-                System.out.println(followRelation.getFollowee().getUserName());
+            FollowGraph graph = shared.getFollowGraph();
+            printPage(shared, graph.following(id, 0, limit), graph.followingCount(id));
+        }
+    }
+
+    private static void printPage(PlatformContext shared, Page<Integer> page, int total) {
+        for (int userId : page.getItems()) {
+            User user = shared.getUsers().findById(userId);
+            if (user != null) {
+                System.out.println(user.getUserName());
             }
         }
+        if (total > page.getItems().size()) {
+            System.out.println("... and " + (total - page.getItems().size()) + " more.");
+        }
     }
     
     /**
-     * Provides a string representation of the user, including the username, email, 
-     * number of posts, following count, and follower count.
-     * 
-     * @return a string representation of the user
+     * A read-only collection of {@link Following} relationships backed by the follow graph.
+     * The relationship objects are created on demand while iterating. Ids of users
+     * removed while the iteration runs are skipped, so it may yield fewer relationships
+     * than {@link #size()} reported.
      */
-    @Override
-    public String toString() {
-        return "User: " + userName + ", Email: " + email + ", Posts: " + posts.size() + ", Following: " + following.size()+ ", Followers: "+ followers.size();
-    }
+    private final class FollowingView extends AbstractCollection<Following> {
+        private final boolean outgoing;
 
-    /**
-     * Compares this user with another object for equality based on username and email.
-     * 
-     * @param o the object to compare
-     * @return true if the objects are equal; false otherwise
-     */
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
+        FollowingView(boolean outgoing) {
+            this.outgoing = outgoing;
         }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
+
+        @Override
+        public Iterator<Following> iterator() {
+            PlatformContext shared = context;
+            PrimitiveIterator.OfInt ids;
+            if (shared == null) {
+                ids = IntStream.empty().iterator();
+            } else {
+                FollowGraph graph = shared.getFollowGraph();
+                ids = outgoing ? graph.following(id) : graph.followers(id);
+            }
+            UserRegistry registry = shared == null ? null : shared.getUsers();
+            return new Iterator<Following>() {
+                private User other;
+
+                @Override
+                public boolean hasNext() {
+                    while (other == null && ids.hasNext()) {
+                        other = registry.findById(ids.nextInt());
+                    }
+                    return other != null;
+                }
+
+                @Override
+                public Following next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    User user = other;
+                    other = null;
+                    return outgoing ? new Following(User.this, user) : new Following(user, User.this);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            PlatformContext shared = context;
+            if (shared == null) {
+                return 0;
+            }
+            FollowGraph graph = shared.getFollowGraph();
+            return outgoing ? graph.followingCount(id) : graph.followersCount(id);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            PlatformContext shared = context;
+            if (!(o instanceof Following) || shared == null) {
+                return false;
+            }
+            Following relation = (Following) o;
+            User follower = relation.getFollower();
+            User followee = relation.getFollowee();
+            if (follower == null || followee == null || follower.context != shared || followee.context != shared) {
+                return false;
+            }
+            if (outgoing ? follower != User.this : followee != User.this) {
+                return false;
+            }
+            return shared.getFollowGraph().isFollowing(follower.id, followee.id);
         }
-        User user = (User) o;
-        return Objects.equals(userName, user.userName) && Objects.equals(email, user.email);
     }
 
     /**
-     * Generates a hash code for the user based on username and email.
+     * Provides a string representation of the user, including the username, email, 
+     * number of posts, following count, and follower count.
      * 
-     * @return the hash code
+     * @return a string representation of the user
      */
     @Override
-    public int hashCode() {
-        return Objects.hash(userName, email);
+    public String toString() {
+        return "User: " + userName + ", Email: " + getEmail() + ", Posts: " + getPostCount() + ", Following: " + getFollowingCount() + ", Followers: " + getFollowersCount();
     }
 }
@@ -0,0 +1,116 @@
+package Project;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The UserInfo class is a read-only summary of a user: its names, type, counts and the
+ * ids and content of its posts. It holds no references to the platform, so it can be built
+ * from the live objects as well as from a mapped snapshot.
+ *
+ * @author Asail
+ */
+final class UserInfo {
+    private final String userName;
+    private final String email;
+    private final boolean admin;
+    private final long[] postIds;
+    private final List<String> posts;
+    private final int followingCount;
+    private final int followersCount;
+
+    /**
+     * @param userName the username
+     * @param email the email
+     * @param admin true if the user is an admin
+     * @param postIds the ids of the user's posts, oldest first
+     * @param posts the content of the user's posts, in the same order
+     * @param followingCount the number of followed users
+     * @param followersCount the number of followers
+     */
+    UserInfo(String userName, String email, boolean admin, long[] postIds, List<String> posts, int followingCount, int followersCount) {
+        this.userName = userName;
+        this.email = email;
+        this.admin = admin;
+        this.postIds = postIds;
+        this.posts = Collections.unmodifiableList(posts);
+        this.followingCount = followingCount;
+        this.followersCount = followersCount;
+    }
+
+    /**
+     * Creates the summary of a live user.
+     *
+     * @param user the user
+     * @return the summary
+     */
+    static UserInfo of(User user) {
+        Post[] userPosts = user.getPosts().toArray(new Post[0]);
+        long[] ids = new long[userPosts.length];
+        String[] contents = new String[userPosts.length];
+        for (int i = 0; i < contents.length; i++) {
+            ids[i] = userPosts[i].getId();
+            contents[i] = userPosts[i].getContent();
+        }
+        return new UserInfo(user.getUserName(), user.getEmail(), user instanceof Admin,
+                ids, Arrays.asList(contents), user.getFollowing().size(), user.getFollowers().size());
+    }
+
+    /**
+     * @return the username
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @return the email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return true if the user is an admin
+     */
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    /**
+     * @return "Admin" or "Regular User", as returned by {@link User#getType()}
+     */
+    public String getType() {
+        return admin ? "Admin" : "Regular User";
+    }
+
+    /**
+     * @param index the position of a post in {@link #getPosts()}
+     * @return the id of the post
+     */
+    public long getPostId(int index) {
+        return postIds[index];
+    }
+
+    /**
+     * @return the content of the user's posts, oldest first
+     */
+    public List<String> getPosts() {
+        return posts;
+    }
+
+    /**
+     * @return the number of followed users
+     */
+    public int getFollowingCount() {
+        return followingCount;
+    }
+
+    /**
+     * @return the number of followers
+     */
+    public int getFollowersCount() {
+        return followersCount;
+    }
+}
@@ -0,0 +1,17 @@
+package Project;
+
+/**
+ * Exception thrown when an operation refers to a user that does not exist.
+ * 
+ * @author Asail
+ */
+class UserNotFoundException extends SocialMediaException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception with the default message.
+     */
+    public UserNotFoundException() {
+        super("User Not Found!");
+    }
+}
@@ -0,0 +1,379 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The UserRegistry class keeps every registered user indexed by username and by
+ * the canonical form of its email (see {@link EmailValidator#normalize(String)}), so
+ * lookups and uniqueness checks take constant time instead of scanning the whole user
+ * list, and emails differing only in case belong to one account.
+ * Both indexes are updated together, and users that are renamed or change their
+ * email through {@link User#setUserName(String)} and {@link User#setEmail(String)}
+ * are re-indexed through this registry, which also keeps the {@link UsernameIndex}
+ * of the context in step.
+ * Each registered user also receives a dense int id, in registration order, that keys
+ * it in the {@link FollowGraph}; ids of removed users are not reused.
+ * <p>
+ * Registering a user replaces the domain of its {@link EmailAddress} with the copy in
+ * the context's domain pool, so a domain shared by a million users is stored once. The
+ * email index is keyed by the canonical address, which is the user's own address when
+ * it is already in canonical form, and otherwise a copy whose domain is pooled too.
+ * <p>
+ * The registry is safe for concurrent use. Usernames and emails are claimed with
+ * atomic put-if-absent operations and released again if the other claim fails, and
+ * lookups never lock. A user changing its email holds both addresses in the index
+ * until the new one is stored on the user, and lookups only return a user whose
+ * current address matches, so the change appears in one step. Only handing out the
+ * next id takes a short lock.
+ *
+ * @author Asail
+ */
+class UserRegistry {
+    private final PlatformContext context;
+    private final Map<String, User> byUsername;
+    private final EmailIndex byEmail;
+    private final Object idLock;
+    private final AtomicInteger size;
+    private volatile User[] byId;
+    private volatile int nextId;
+
+    /**
+     * Creates an empty registry for a platform context.
+     *
+     * @param context the context the registered users belong to
+     */
+    public UserRegistry(PlatformContext context) {
+        this.context = context;
+        this.byUsername = new ConcurrentHashMap<>();
+        this.byEmail = new EmailIndex();
+        this.idLock = new Object();
+        this.size = new AtomicInteger();
+        this.byId = new User[16];
+    }
+
+    /**
+     * Registers a user, claiming both its username and its email.
+     * Either both indexes are updated or neither is.
+     *
+     * @param user the user to register
+     * @throws SocialMediaException if the user is null, already registered, or the
+     * username or email is already taken
+     */
+    public void register(User user) throws SocialMediaException {
+        register(user, -1);
+    }
+
+    /**
+     * Registers a user under the id it had when it was saved, so that a restored
+     * platform keeps the ids used by its follow graph and operation log. Later
+     * registrations receive larger ids.
+     *
+     * @param user the user to register
+     * @param id the id to give the user
+     * @throws SocialMediaException if the id is in use, or for the same reasons as
+     * {@link #register(User)}
+     */
+    void restore(User user, int id) throws SocialMediaException {
+        if (id < 0 || findById(id) != null) {
+            throw new SocialMediaException("User id " + id + " is already in use.");
+        }
+        register(user, id);
+    }
+
+    private void register(User user, int id) throws SocialMediaException {
+        if (user == null || user.getUserName() == null || user.getEmail() == null) {
+            throw new SocialMediaException("Cannot register an empty user.");
+        }
+        synchronized (user) {
+            if (user.context != null) {
+                throw new SocialMediaException(user.getUserName() + " is already registered.");
+            }
+            String userName = user.getUserName();
+            if (byUsername.putIfAbsent(userName, user) != null) {
+                throw new DuplicateUserException("Username already exists. Please choose a different one.");
+            }
+            EmailAddress address = intern(user.email);
+            EmailAddress key = keyOf(address);
+            if (!byEmail.claim(key, user)) {
+                release(address, key);
+                byUsername.remove(userName, user);
+                throw new DuplicateUserException("Email '" + user.getEmail() + "' is already registered. Please use a different email.");
+            }
+            user.email = address;
+            assignId(user, id);
+            size.incrementAndGet();
+            user.context = context;
+            context.getUsernames().add(user);
+        }
+    }
+
+    private void assignId(User user, int requested) {
+        synchronized (idLock) {
+            int id = requested < 0 ? nextId : requested;
+            User[] table = byId;
+            if (id >= table.length) {
+                table = Arrays.copyOf(table, Math.max(id + 1, table.length + (table.length >> 1)));
+            }
+            user.id = id;
+            table[id] = user;
+            byId = table;
+            nextId = Math.max(nextId, id + 1);
+        }
+    }
+
+    /**
+     * Makes sure ids below a limit are never handed out again, for example the ids of
+     * users that were removed before the platform was saved.
+     *
+     * @param limit the smallest id that may still be handed out
+     */
+    void reserveIds(int limit) {
+        synchronized (idLock) {
+            if (limit > byId.length) {
+                byId = Arrays.copyOf(byId, limit);
+            }
+            nextId = Math.max(nextId, limit);
+        }
+    }
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username the username to search for
+     * @return the matching user or null if not found
+     */
+    public User findByUsername(String username) {
+        return username == null ? null : registered(byUsername.get(username));
+    }
+
+    /**
+     * Finds a user by the id assigned at registration.
+     *
+     * @param id the user id
+     * @return the matching user or null if not found
+     */
+    public User findById(int id) {
+        User[] table = byId;
+        return id >= 0 && id < table.length ? table[id] : null;
+    }
+
+    /**
+     * Finds a user by email, ignoring case and surrounding whitespace.
+     *
+     * @param email the email to search for
+     * @return the matching user or null if not found
+     */
+    public User findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        EmailAddress key = EmailAddress.parse(EmailValidator.normalize(email));
+        User user = registered(byEmail.find(key));
+        return user != null && key.equals(user.email.canonical()) ? user : null;
+    }
+
+    private User registered(User user) {
+        return user != null && user.context == context ? user : null;
+    }
+
+    /**
+     * Changes the username of a registered user and moves its index entry.
+     *
+     * @param user the registered user
+     * @param newUserName the new username
+     * @throws SocialMediaException if the new username is empty or already taken
+     */
+    void rename(User user, String newUserName) throws SocialMediaException {
+        if (newUserName == null) {
+            throw new SocialMediaException("Username cannot be empty.");
+        }
+        synchronized (user) {
+            if (newUserName.equals(user.userName)) {
+                return;
+            }
+            if (byUsername.putIfAbsent(newUserName, user) != null) {
+                throw new DuplicateUserException("Username already exists. Please choose a different one.");
+            }
+            String oldUserName = user.userName;
+            byUsername.remove(oldUserName, user);
+            user.userName = newUserName;
+            context.getUsernames().rename(user, oldUserName, newUserName);
+        }
+    }
+
+    /**
+     * Changes the email of a registered user and moves its index entry.
+     *
+     * @param user the registered user
+     * @param newEmail the new email
+     * @throws SocialMediaException if the new email is empty or already taken by another user
+     */
+    void changeEmail(User user, String newEmail) throws SocialMediaException {
+        if (newEmail == null) {
+            throw new SocialMediaException("Email cannot be empty.");
+        }
+        synchronized (user) {
+            EmailAddress oldAddress = user.email;
+            EmailAddress oldKey = oldAddress.canonical();
+            EmailAddress address = intern(EmailAddress.parse(newEmail));
+            EmailAddress key = keyOf(address);
+            if (!byEmail.claim(key, user)) {
+                release(address, key);
+                throw new DuplicateUserException("Email '" + newEmail + "' is already registered. Please use a different email.");
+            }
+            user.email = address;
+            if (!key.equals(oldKey)) {
+                byEmail.release(oldKey, user);
+            }
+            release(oldAddress, oldKey);
+        }
+    }
+
+    /**
+     * @return the address with its domain replaced by the copy in the domain pool
+     */
+    private EmailAddress intern(EmailAddress address) {
+        String domain = address.getDomain();
+        return domain == null ? address : address.withDomain(context.getDomains().intern(domain));
+    }
+
+    /**
+     * @return the key of an interned address in the email index, with its domain
+     * interned as well if it is not the address itself
+     */
+    private EmailAddress keyOf(EmailAddress address) {
+        EmailAddress key = address.canonical();
+        return key == address ? key : intern(key);
+    }
+
+    /**
+     * Releases the domains interned for an address and its key.
+     */
+    private void release(EmailAddress address, EmailAddress key) {
+        StringPool domains = context.getDomains();
+        if (address.getDomain() != null) {
+            domains.release(address.getDomain());
+        }
+        if (key != address && key.getDomain() != null) {
+            domains.release(key.getDomain());
+        }
+    }
+
+    /**
+     * Removes a user from all indexes and drops its follow relationships and feed.
+     * The comments it wrote and the comments on its posts are hidden and left to the
+     * {@link Compactor}. The whole cascade costs time proportional to the user's
+     * follow relationships, posts and comments, not to the size of the platform.
+     *
+     * @param user the user to remove
+     * @return true if the user was registered here and has been removed; false otherwise
+     */
+    public boolean remove(User user) {
+        if (user == null) {
+            return false;
+        }
+        synchronized (user) {
+            if (user.context != context) {
+                return false;
+            }
+            user.context = null;
+            byUsername.remove(user.userName, user);
+            EmailAddress key = user.email.canonical();
+            byEmail.release(key, user);
+            release(user.email, key);
+            context.getUsernames().remove(user, user.userName);
+            synchronized (idLock) {
+                byId[user.id] = null;
+            }
+            size.decrementAndGet();
+        }
+        context.getFollowGraph().removeUser(user.id);
+        context.getFeed().onUserRemoved(user);
+        context.getRecommendations().onUserRemoved(user);
+        context.getCompactor().onUserRemoved(user);
+        context.getEngagement().onUserRemoved(user);
+        return true;
+    }
+
+    /**
+     * Checks whether a user is registered here.
+     *
+     * @param user the user to check
+     * @return true if the user is registered; false otherwise
+     */
+    public boolean contains(User user) {
+        return user != null && user.context == context;
+    }
+
+    /**
+     * @return the number of ids handed out so far, including those of removed users
+     */
+    public int idLimit() {
+        return nextId;
+    }
+
+    /**
+     * @return the number of registered users
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Gets a snapshot of all registered users in registration order. Taking the
+     * snapshot does not block registrations or removals.
+     *
+     * @return the list of users
+     */
+    public List<User> getUsers() {
+        int limit = nextId;
+        User[] table = byId;
+        List<User> result = new ArrayList<>(size.get());
+        for (int i = 0; i < Math.min(limit, table.length); i++) {
+            User user = table[i];
+            if (user != null && user.context == context) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The users indexed by the canonical form of their emails. Claiming an email is a
+     * single put-if-absent.
+     */
+    private static final class EmailIndex {
+        private final ConcurrentHashMap<EmailAddress, User> byAddress = new ConcurrentHashMap<>();
+
+        /**
+         * Adds a user under an email unless another user has it.
+         *
+         * @param key the email in canonical form
+         * @param user the user
+         * @return true if the user was added or was already there
+         */
+        boolean claim(EmailAddress key, User user) {
+            User holder = byAddress.putIfAbsent(key, user);
+            return holder == null || holder == user;
+        }
+
+        /**
+         * Finds the user holding an email, given in canonical form.
+         */
+        User find(EmailAddress key) {
+            return byAddress.get(key);
+        }
+
+        /**
+         * Removes a user from the entry of an email, given in canonical form.
+         */
+        void release(EmailAddress key, User user) {
+            byAddress.remove(key, user);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The UsernameIndex class completes username prefixes for type-ahead search, most
+ * followed users first.
+ * <p>
+ * Usernames are kept in a compressed trie: every edge holds a run of characters, so
+ * a node only exists where names branch or end, and the trie has at most twice as many
+ * nodes as users. Every node also records the best rank found below it, where a rank
+ * packs the follower count of a user and, to break ties in favour of older accounts,
+ * its id into one long. A completion walks down to the prefix and then visits the trie
+ * best first, always expanding the node or user with the highest rank, so it stops
+ * after touching little more than the paths to the users it returns, however many
+ * names share the prefix.
+ * <p>
+ * The {@link UserRegistry} updates the trie when users are registered, renamed or
+ * removed. Follower counts change far more often, so the {@link FollowGraph} only
+ * marks the followed user's id in a bitmap, and the marked users are re-ranked in one
+ * go when the next completion is asked for.
+ * <p>
+ * The index is safe for concurrent use. Completions share a read lock, and changes to
+ * the trie take the write lock; marking a changed follower count never locks.
+ *
+ * @author Asail
+ */
+class UsernameIndex {
+    private final PlatformContext context;
+    private final ReentrantReadWriteLock lock;
+    private final Node root;
+    private final ChangedIds changed;
+
+    /**
+     * @param context the context whose users are indexed and whose follow graph gives
+     * the follower counts
+     */
+    public UsernameIndex(PlatformContext context) {
+        this.context = context;
+        this.lock = new ReentrantReadWriteLock();
+        this.root = new Node("");
+        this.changed = new ChangedIds();
+    }
+
+    /**
+     * Adds a newly registered user.
+     *
+     * @param user the user
+     */
+    public void add(User user) {
+        lock.writeLock().lock();
+        try {
+            insert(user.getUserName(), user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a renamed user to its new username.
+     *
+     * @param user the user
+     * @param oldUserName the username it had
+     * @param newUserName the username it has now
+     */
+    public void rename(User user, String oldUserName, String newUserName) {
+        lock.writeLock().lock();
+        try {
+            delete(oldUserName, user);
+            insert(newUserName, user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a user that left the platform.
+     *
+     * @param user the user
+     * @param userName the username it had
+     */
+    public void remove(User user, String userName) {
+        lock.writeLock().lock();
+        try {
+            delete(userName, user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Notes that the number of followers of a user changed. This is called by the
+     * follow graph for every edge it adds or removes, so it only sets a bit.
+     *
+     * @param id the id of the followed user
+     */
+    public void followersChanged(int id) {
+        changed.add(id);
+    }
+
+    /**
+     * Finds the users whose username starts with a prefix, most followed first. Users
+     * with as many followers come in the order they registered.
+     *
+     * @param prefix the start of the username, matched case-sensitively
+     * @param limit the maximum number of users to return
+     * @return the matching users
+     */
+    public List<User> complete(String prefix, int limit) {
+        refreshCounts();
+        List<User> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                int at = childIndex(node, prefix.charAt(i));
+                if (at < 0) {
+                    return result;
+                }
+                node = node.children[at];
+                int length = Math.min(node.label.length(), prefix.length() - i);
+                if (!node.label.regionMatches(0, prefix, i, length)) {
+                    return result;
+                }
+                i += node.label.length();
+            }
+            PriorityQueue<Candidate> queue = new PriorityQueue<>(Candidate.ORDER);
+            if (node.best >= 0) {
+                queue.add(new Candidate(node, node.best, false));
+            }
+            while (result.size() < limit && !queue.isEmpty()) {
+                Candidate candidate = queue.poll();
+                Node current = candidate.node;
+                if (candidate.user) {
+                    result.add(current.user);
+                    continue;
+                }
+                if (current.user != null) {
+                    queue.add(new Candidate(current, current.rank, true));
+                }
+                for (int c = 0; c < current.childCount; c++) {
+                    Node child = current.children[c];
+                    if (child.best >= 0) {
+                        queue.add(new Candidate(child, child.best, false));
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads the follower counts of the users marked since the last completion.
+     */
+    private void refreshCounts() {
+        if (!changed.isPending()) {
+            return;
+        }
+        UserRegistry users = context.getUsers();
+        lock.writeLock().lock();
+        try {
+            changed.drain(id -> {
+                User user = users.findById(id);
+                if (user != null) {
+                    List<Node> path = find(user.getUserName());
+                    if (path != null && path.get(path.size() - 1).user == user) {
+                        path.get(path.size() - 1).rank = rank(user);
+                        refresh(path);
+                    }
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks a user by its current follower count, then by its id, lower ids first.
+     */
+    private long rank(User user) {
+        return (long) context.getFollowGraph().followersCount(user.getId()) << 31 | (Integer.MAX_VALUE - user.getId());
+    }
+
+    private void insert(String name, User user) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < name.length()) {
+            int at = childIndex(node, name.charAt(i));
+            if (at < 0) {
+                Node leaf = new Node(name.substring(i));
+                addChild(node, -at - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[at];
+            int common = 1;
+            int limit = Math.min(child.label.length(), name.length() - i);
+            while (common < limit && child.label.charAt(common) == name.charAt(i + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                addChild(middle, 0, child);
+                middle.best = child.best;
+                node.children[at] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.user = user;
+        node.rank = rank(user);
+        refresh(path);
+    }
+
+    private void delete(String name, User user) {
+        List<Node> path = find(name);
+        if (path == null || path.get(path.size() - 1).user != user) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        node.user = null;
+        node.rank = -1;
+        // Drop nodes left without users and merge nodes left with a single child, so the trie stays compressed.
+        for (int j = path.size() - 1; j > 0; j--) {
+            Node current = path.get(j);
+            Node parent = path.get(j - 1);
+            if (current.user != null) {
+                break;
+            }
+            if (current.childCount == 0) {
+                removeChild(parent, current);
+            } else if (current.childCount == 1) {
+                Node only = current.children[0];
+                only.label = current.label + only.label;
+                parent.children[childIndex(parent, current.label.charAt(0))] = only;
+                break;
+            } else {
+                break;
+            }
+        }
+        refresh(path);
+    }
+
+    /**
+     * Finds the path to the node where a name ends.
+     *
+     * @return the nodes from the root, or null if no indexed name ends there
+     */
+    private List<Node> find(String name) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < name.length()) {
+            int at = childIndex(node, name.charAt(i));
+            if (at < 0) {
+                return null;
+            }
+            node = node.children[at];
+            if (!name.startsWith(node.label, i)) {
+                return null;
+            }
+            path.add(node);
+            i += node.label.length();
+        }
+        return path;
+    }
+
+    /**
+     * Recomputes the best rank below each node of a path, from the bottom up.
+     */
+    private static void refresh(List<Node> path) {
+        for (int j = path.size() - 1; j >= 0; j--) {
+            Node node = path.get(j);
+            long best = node.rank;
+            for (int c = 0; c < node.childCount; c++) {
+                best = Math.max(best, node.children[c].best);
+            }
+            node.best = best;
+        }
+    }
+
+    /**
+     * Finds the child whose label starts with a character.
+     *
+     * @return the index of the child, or (-(insertion point) - 1) if there is none
+     */
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.childCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void addChild(Node node, int at, Node child) {
+        if (node.childCount == node.children.length) {
+            node.children = Arrays.copyOf(node.children, Math.max(2, node.children.length * 2));
+        }
+        System.arraycopy(node.children, at, node.children, at + 1, node.childCount - at);
+        node.children[at] = child;
+        node.childCount++;
+    }
+
+    private static void removeChild(Node node, Node child) {
+        int at = childIndex(node, child.label.charAt(0));
+        System.arraycopy(node.children, at + 1, node.children, at, node.childCount - at - 1);
+        node.children[--node.childCount] = null;
+    }
+
+    /**
+     * A node of the trie, reached from its parent through the characters of its label.
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        String label;
+        Node[] children;
+        int childCount;
+        /** The user whose name ends here, or null. */
+        User user;
+        /** The rank of that user when its follower count was last read, or -1. */
+        long rank;
+        /** The best rank of any user at or below this node, or -1 if there is none. */
+        long best;
+
+        Node(String label) {
+            this.label = label;
+            this.children = NO_CHILDREN;
+            this.rank = -1;
+            this.best = -1;
+        }
+    }
+
+    /**
+     * A node waiting to be expanded, or a user waiting to be returned, during a
+     * completion.
+     */
+    private static final class Candidate {
+        /** Higher ranks first; a user goes before a node of the same rank. */
+        static final Comparator<Candidate> ORDER = (a, b) -> a.rank != b.rank ? Long.compare(b.rank, a.rank) : Boolean.compare(b.user, a.user);
+
+        final Node node;
+        final long rank;
+        final boolean user;
+
+        Candidate(Node node, long rank, boolean user) {
+            this.node = node;
+            this.rank = rank;
+            this.user = user;
+        }
+    }
+}
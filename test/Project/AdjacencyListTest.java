@@ -0,0 +1,176 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The AdjacencyListTest class checks an {@link AdjacencyList} against a sorted set
+ * while it grows past a single array into blocks, splits and merges blocks, and
+ * shrinks back, and checks that lock-free readers never see a list half changed.
+ *
+ * @author Asail
+ */
+public class AdjacencyListTest {
+
+    public void testMatchesSortedSetAcrossBlocks() {
+        Random random = new Random(17);
+        AdjacencyList list = new AdjacencyList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // Grow well past one block, churn, then shrink back to a single array.
+        int[][] phases = {{6000, 90}, {6000, 50}, {8000, 10}};
+        for (int[] phase : phases) {
+            for (int i = 0; i < phase[0]; i++) {
+                int id = random.nextInt(8000);
+                if (random.nextInt(100) < phase[1]) {
+                    assertEquals(expected.add(id), list.add(id), "add " + id);
+                } else {
+                    assertEquals(expected.remove(id), list.remove(id), "remove " + id);
+                }
+                if (i % 500 == 0) {
+                    check(expected, list, random);
+                }
+            }
+            check(expected, list, random);
+        }
+    }
+
+    public void testRemovesEveryIdOfABlock() {
+        AdjacencyList list = new AdjacencyList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int id = 0; id < 5000; id++) {
+            list.add(id);
+            expected.add(id);
+        }
+        for (int id = 1000; id < 2500; id++) {
+            assertTrue(list.remove(id), "remove " + id);
+            expected.remove(id);
+        }
+        check(expected, list, new Random(1));
+        for (int id = 4999; id >= 0; id -= 3) {
+            assertEquals(expected.remove(id), list.remove(id), "remove " + id);
+        }
+        check(expected, list, new Random(2));
+    }
+
+    public void testRestoredListKeepsChanging() {
+        int[] ids = new int[10_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ids.length - i;
+        }
+        AdjacencyList list = new AdjacencyList();
+        list.addAll(ids);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int id : ids) {
+            expected.add(id);
+        }
+        check(expected, list, new Random(3));
+        Random random = new Random(4);
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(12_000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(id), list.add(id), "add " + id);
+            } else {
+                assertEquals(expected.remove(id), list.remove(id), "remove " + id);
+            }
+        }
+        check(expected, list, random);
+    }
+
+    public void testReadersSeeWholeStates() throws Exception {
+        AdjacencyList list = new AdjacencyList();
+        // Even ids stay in the list; odd ids come and go.
+        for (int id = 0; id < 6000; id += 2) {
+            list.add(id);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            Thread reader = new Thread(() -> {
+                while (!done.get() && failure.get() == null) {
+                    int[] all = list.toArray();
+                    int even = 0;
+                    for (int i = 0; i < all.length; i++) {
+                        if (i > 0 && all[i] <= all[i - 1]) {
+                            failure.compareAndSet(null, "ids out of order or repeated");
+                        }
+                        if (all[i] % 2 == 0) {
+                            even++;
+                        }
+                    }
+                    if (even != 3000) {
+                        failure.compareAndSet(null, "saw " + even + " of the 3000 even ids");
+                    }
+                    if (!list.contains(2998) || !list.contains(5998)) {
+                        failure.compareAndSet(null, "lost an even id");
+                    }
+                    int paged = 0;
+                    for (int cursor = 0; cursor != Page.END;) {
+                        Page<Integer> page = list.page(cursor, 700);
+                        for (int id : page.getItems()) {
+                            paged += id % 2 == 0 ? 1 : 0;
+                        }
+                        cursor = page.getNextCursor();
+                    }
+                    if (paged != 3000) {
+                        failure.compareAndSet(null, "paged " + paged + " of the 3000 even ids");
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        Random random = new Random(5);
+        for (int i = 0; i < 300_000; i++) {
+            int id = 2 * random.nextInt(6000) + 1;
+            if (random.nextBoolean()) {
+                list.add(id);
+            } else {
+                list.remove(id);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(null, failure.get(), "failure seen by a reader");
+    }
+
+    private static void check(TreeSet<Integer> expected, AdjacencyList list, Random random) {
+        int[] all = expected.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals(all.length, list.size(), "size");
+        assertTrue(Arrays.equals(all, list.toArray()), "ids in order");
+        List<Integer> iterated = new ArrayList<>();
+        for (PrimitiveIterator.OfInt it = list.iterator(); it.hasNext();) {
+            iterated.add(it.nextInt());
+        }
+        assertEquals(new ArrayList<>(expected), iterated, "iterated ids");
+        List<Integer> paged = new ArrayList<>();
+        int limit = 1 + random.nextInt(1500);
+        for (int cursor = 0; cursor != Page.END;) {
+            Page<Integer> page = list.page(cursor, limit);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        }
+        assertEquals(new ArrayList<>(expected), paged, "paged ids");
+        for (int i = 0; i < 200; i++) {
+            int id = random.nextInt(8200);
+            assertEquals(expected.contains(id), list.contains(id), "contains " + id);
+        }
+        int[] sample = new int[50];
+        int sampled = list.sample(sample, 50, random.nextInt(1000));
+        assertEquals(Math.min(50, all.length), sampled, "sampled ids");
+        for (int i = 0; i < sampled; i++) {
+            assertTrue(expected.contains(sample[i]), "sampled id " + sample[i]);
+        }
+    }
+}
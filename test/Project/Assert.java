@@ -0,0 +1,61 @@
+package Project;
+
+import java.util.Objects;
+
+/**
+ * The Assert class holds the checks used by the tests. Every check throws an
+ * {@link AssertionError} describing the mismatch when it fails.
+ *
+ * @author Asail
+ */
+final class Assert {
+    private Assert() {
+    }
+
+    static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void assertFalse(boolean condition, String message) {
+        assertTrue(!condition, message);
+    }
+
+    static void assertEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    static void assertEquals(long expected, long actual, String message) {
+        if (expected != actual) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Checks that an action fails with an exception of a given type.
+     *
+     * @return the exception thrown
+     */
+    static <T extends Throwable> T assertThrows(Class<T> type, Action action, String message) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(message + ": expected " + type.getSimpleName() + " but was " + e, e);
+        }
+        throw new AssertionError(message + ": expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+
+    /**
+     * An action expected to fail.
+     */
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+}
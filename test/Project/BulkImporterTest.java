@@ -0,0 +1,190 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The BulkImporterTest class checks that an exported report, together with a file of
+ * follow records, imports into an empty platform as the same platform in both formats
+ * and on one or several threads, that users already present are counted as duplicates,
+ * and that comments naming posts outside the file are rejected.
+ *
+ * @author Asail
+ */
+public class BulkImporterTest {
+    private static final ReportWriter.Format[] FORMATS = {ReportWriter.Format.CSV, ReportWriter.Format.JSON_LINES};
+
+    public void testExportImportRoundTrip() throws Exception {
+        DefaultPlatformService source = source();
+        for (ReportWriter.Format format : FORMATS) {
+            Path report = write(export(source, format));
+            Path follows = write(follows(source, format));
+            try {
+                for (int threads : new int[] {1, 4}) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        DefaultPlatformService target = new DefaultPlatformService();
+                        BulkImporter importer = new BulkImporter(target.getContext(), pool);
+                        BulkImporter.Result imported = importer.importFile(report, format);
+                        BulkImporter.Result followed = importer.importFile(follows, format);
+                        String label = format + " on " + threads + " threads";
+                        assertEquals(List.of(), imported.getErrors(), "errors of " + label);
+                        assertEquals(source.getUsers().size(), imported.getUsers(), "users of " + label);
+                        assertEquals(12, imported.getPosts(), "posts of " + label);
+                        assertEquals(8, imported.getComments(), "comments of " + label);
+                        assertEquals(0, imported.getDuplicates() + imported.getRejected(), "skipped in " + label);
+                        assertEquals(9, followed.getFollows(), "follows of " + label);
+                        assertEquals(0, followed.getDuplicates() + followed.getRejected(), "skipped follows in " + label);
+                        for (ReportWriter.Format other : ReportWriter.Format.values()) {
+                            assertEquals(withoutIds(export(source, other)), withoutIds(export(target, other)),
+                                    other + " report after importing " + label);
+                        }
+                        for (User user : source.getUsers()) {
+                            String name = user.getUserName();
+                            assertEquals(source.getFollowerNames(name), target.getFollowerNames(name),
+                                    "followers of " + name + " after " + label);
+                            assertEquals(source.getFeed(name, 100).size(), target.getFeed(name, 100).size(),
+                                    "feed of " + name + " after " + label);
+                        }
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+            } finally {
+                Files.delete(report);
+                Files.delete(follows);
+            }
+        }
+    }
+
+    public void testDuplicateUsersAreCountedAndKeepTheFirst() throws Exception {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("ann", "ann@example.com", false);
+        Path file = write("record,user,email,type\n"
+                + "user,ann,other@example.com,Regular User\n"
+                + "user,bob,ANN@example.com,Regular User\n"
+                + "user,cat,cat@example.com,Admin\n"
+                + "user,cat,cat2@example.com,Regular User\n"
+                + "user,dan,not-an-email,Regular User\n");
+        try {
+            BulkImporter.Result result = service.importData(file, ReportWriter.Format.CSV);
+            assertEquals(1, result.getUsers(), "users added");
+            assertEquals(3, result.getDuplicates(), "same username or email as a user already present");
+            assertEquals(1, result.getRejected(), "invalid email");
+            assertEquals("ann@example.com", service.getUser("ann").getEmail(), "existing user is kept");
+            assertTrue(service.getUser("cat") instanceof Admin, "first record of a name wins");
+            assertEquals(2, service.getUsers().size(), "users after the import");
+
+            BulkImporter.Result again = service.importData(file, ReportWriter.Format.CSV);
+            assertEquals(0, again.getUsers(), "users added by importing again");
+            assertEquals(4, again.getDuplicates(), "duplicates when importing again");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testCommentsOnPostsOutsideTheFileAreRejected() throws Exception {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("ann", "ann@example.com", false);
+        Post existing = service.addPost("ann", "already here");
+        Path first = write("{\"record\":\"user\",\"userName\":\"bob\",\"email\":\"bob@example.com\",\"type\":\"Regular User\"}\n"
+                + "{\"record\":\"comment\",\"postId\":7,\"author\":\"bob\",\"content\":\"before its post\"}\n"
+                + "{\"record\":\"post\",\"id\":7,\"author\":\"bob\",\"createdAt\":1000,\"content\":\"hello\"}\n"
+                + "{\"record\":\"comment\",\"postId\":7,\"author\":\"ann\",\"content\":\"hi bob\"}\n"
+                + "{\"record\":\"comment\",\"postId\":" + existing.getId() + ",\"author\":\"bob\",\"content\":\"hi ann\"}\n"
+                + "{\"record\":\"comment\",\"postId\":8,\"author\":\"bob\",\"content\":\"nowhere\"}\n");
+        Path second = write("{\"record\":\"comment\",\"postId\":7,\"author\":\"ann\",\"content\":\"from another file\"}\n");
+        try {
+            BulkImporter.Result result = service.importData(first, ReportWriter.Format.JSON_LINES);
+            assertEquals(1, result.getPosts(), "posts");
+            assertEquals(1, result.getComments(), "comment on a post of the file, after it");
+            assertEquals(3, result.getRejected(), "comments before their post, on an older post and on no post");
+            assertEquals(3, result.getErrors().size(), "errors listed");
+            assertTrue(result.getErrors().get(0).startsWith("Line 2: Unknown post"), "line of the first error");
+            assertEquals(0, existing.getComments().size(), "post outside the file");
+            Post imported = service.getUser("bob").getPosts().iterator().next();
+            assertEquals(1000L, imported.getCreatedAt(), "creation time kept");
+            assertTrue(imported.getId() != 7, "post gets a new id");
+            assertEquals(1, imported.getComments().size(), "comments of the imported post");
+
+            BulkImporter.Result later = service.importData(second, ReportWriter.Format.JSON_LINES);
+            assertEquals(1, later.getRejected(), "post ids do not carry over to the next file");
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    private static DefaultPlatformService source() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("admin", "admin@example.com", true);
+        String[] names = {"ann", "bob", "cat", "dan", "eve"};
+        for (String name : names) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        String[] texts = {
+            "plain", "with, comma", "with \"quotes\"", "two\nlines", "tab\tand \\ backslash", "caf\u00e9 \u2603 \ud83d\ude00"
+        };
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            posts.add(service.addPost(names[i % names.length], texts[i % texts.length] + " " + i));
+        }
+        for (int i = 0; i < 8; i++) {
+            service.addComment(posts.get(i * 3 % posts.size()).getId(), names[(i + 2) % names.length],
+                    texts[(i + 3) % texts.length]);
+        }
+        for (int i = 0; i < names.length; i++) {
+            service.followUser(names[i], names[(i + 1) % names.length]);
+            if (i % 2 == 0) {
+                service.followUser(names[i], names[(i + 2) % names.length]);
+            }
+        }
+        service.followUser("admin", "ann");
+        return service;
+    }
+
+    private static String export(PlatformService service, ReportWriter.Format format) throws IOException {
+        StringWriter out = new StringWriter();
+        try (ReportWriter writer = new ReportWriter(out, format)) {
+            service.writeReport(writer);
+        }
+        return out.toString();
+    }
+
+    private static String follows(PlatformService service, ReportWriter.Format format) {
+        StringBuilder records = new StringBuilder(format == ReportWriter.Format.CSV ? "record,user,followee\n" : "");
+        for (User user : service.getUsers()) {
+            for (Following following : user.getFollowing()) {
+                String followee = following.getFollowee().getUserName();
+                if (format == ReportWriter.Format.CSV) {
+                    records.append("follow,").append(user.getUserName()).append(',').append(followee).append('\n');
+                } else {
+                    records.append("{\"record\":\"follow\",\"follower\":\"").append(user.getUserName())
+                            .append("\",\"followee\":\"").append(followee).append("\"}\n");
+                }
+            }
+        }
+        return records.toString();
+    }
+
+    /**
+     * Blanks out user and post ids, which an import hands out anew.
+     */
+    private static String withoutIds(String report) {
+        return report.replaceAll("(?m)^(post|comment),\\d+,", "$1,,").replaceAll("\"(id|postId)\":\\d+", "\"$1\":0");
+    }
+
+    private static Path write(String text) throws IOException {
+        Path file = Files.createTempFile("import", ".txt");
+        Files.writeString(file, text);
+        return file;
+    }
+}
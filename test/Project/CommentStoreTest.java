@@ -0,0 +1,200 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The CommentStoreTest class checks that the comments of a post read in pages from
+ * either end list every live comment once and in order, that cursors handed out before
+ * a compaction dropped whole chunks read on from the same place, and that the comment
+ * count stays exact when comments are deleted while they are being appended.
+ *
+ * @author Asail
+ */
+public class CommentStoreTest {
+
+    public void testPagesInBothDirections() throws SocialMediaException {
+        DefaultPlatformService service = platform();
+        Post post = service.addPost("ann", "post");
+        List<Comment> all = comment(service, post, 200);
+        Random random = new Random(3);
+        for (Comment comment : all) {
+            if (random.nextInt(3) == 0) {
+                comment.markDeleted();
+            }
+        }
+        List<Comment> live = live(all);
+        assertEquals(live.size(), post.getCommentCount(), "count");
+        for (int limit = 1; limit <= 12; limit++) {
+            assertEquals(live, readAll(post, 0, limit, false), "oldest first, " + limit + " per page");
+            List<Comment> reversed = new ArrayList<>(live);
+            Collections.reverse(reversed);
+            assertEquals(reversed, readAll(post, 0, limit, true), "newest first, " + limit + " per page");
+        }
+        assertEquals(List.of(), post.getComments(0, 0, false).getItems(), "empty page");
+
+        Page<Comment> oldest = post.getComments(0, 10, false);
+        Page<Comment> newest = post.getComments(0, 10, true);
+        List<Comment> added = comment(service, post, 5);
+        List<Comment> expected = new ArrayList<>(live.subList(10, live.size()));
+        expected.addAll(added);
+        assertEquals(expected, readAll(post, oldest.getNextCursor(), 7, false), "oldest first, after appends");
+        List<Comment> older = new ArrayList<>(live.subList(0, live.size() - 10));
+        Collections.reverse(older);
+        assertEquals(older, readAll(post, newest.getNextCursor(), 7, true), "newest first, after appends");
+    }
+
+    public void testCursorsSurviveCompactionDroppingChunks() throws SocialMediaException {
+        DefaultPlatformService service = platform();
+        Post post = service.addPost("ann", "post");
+        // Chunks hold 4, 8, 16, 32, 64 and 128 comments, so positions 4 to 59 fill the
+        // second to fourth chunks.
+        List<Comment> all = comment(service, post, 250);
+        List<Integer> forward = cursors(post, 5, false);
+        List<Integer> backward = cursors(post, 5, true);
+        for (int i = 4; i < 60; i++) {
+            all.get(i).markDeleted();
+        }
+        for (int i = 130; i < 250; i += 2) {
+            all.get(i).markDeleted();
+        }
+        assertTrue(post.purgeDeletedComments(), "comments were purged");
+        List<Comment> live = live(all);
+        assertEquals(live.size(), post.getCommentCount(), "count after compaction");
+        for (int cursor : forward) {
+            List<Comment> expected = live(all.subList(cursor, all.size()));
+            assertEquals(expected, readAll(post, cursor, 3, false), "oldest first from cursor " + cursor);
+        }
+        for (int cursor : backward) {
+            List<Comment> expected = live(all.subList(0, cursor == 0 ? all.size() : cursor));
+            Collections.reverse(expected);
+            assertEquals(expected, readAll(post, cursor, 3, true), "newest first from cursor " + cursor);
+        }
+        assertTrue(!post.purgeDeletedComments(), "nothing left to purge");
+        List<Comment> later = comment(service, post, 3);
+        List<Comment> tail = live(all.subList(200, all.size()));
+        tail.addAll(later);
+        assertEquals(tail, readAll(post, 200, 4, false), "appends after compaction");
+    }
+
+    public void testCountUnderDeleteAppendRace() throws Exception {
+        DefaultPlatformService service = platform();
+        User ann = service.getUser("ann");
+        Post post = service.addPost("ann", "post");
+        int writers = 4;
+        int perWriter = 5000;
+        ConcurrentLinkedQueue<Comment> created = new ConcurrentLinkedQueue<>();
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(writers);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            User commenter = service.getUser(w % 2 == 0 ? "bob" : "cat");
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        Comment comment = new Comment("c" + i, commenter);
+                        // Published first, so a deleter may get to it before it is stored.
+                        created.add(comment);
+                        post.addComment(comment);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    written.countDown();
+                }
+            }));
+        }
+        for (int d = 0; d < 2; d++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (written.getCount() > 0 || !created.isEmpty()) {
+                        Comment comment = created.poll();
+                        if (comment != null && comment.getContent().hashCode() % 3 == 0) {
+                            comment.markDeleted();
+                            deleted.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(null, failure.get(), "thread failure");
+        long expected = (long) writers * perWriter - deleted.get();
+        assertTrue(deleted.get() > 0, "some comments were deleted");
+        assertEquals(expected, post.getCommentCount(), "count");
+        assertEquals(expected, post.getComments().size(), "live comments listed");
+        assertEquals(expected, readAll(post, 0, 1000, false).size(), "live comments paged");
+        assertEquals(expected, ann.getCommentsReceived(), "comments received by the author");
+        assertEquals(expected, service.getUser("bob").getCommentsGiven() + service.getUser("cat").getCommentsGiven(),
+                "comments given");
+        post.purgeDeletedComments();
+        assertEquals(expected, post.getCommentCount(), "count after compaction");
+    }
+
+    private static DefaultPlatformService platform() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        for (String name : new String[] {"ann", "bob", "cat"}) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        return service;
+    }
+
+    private static List<Comment> comment(PlatformService service, Post post, int count) throws SocialMediaException {
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            comments.add(service.addComment(post.getId(), i % 2 == 0 ? "bob" : "cat", "comment " + i));
+        }
+        return comments;
+    }
+
+    private static List<Comment> live(List<Comment> comments) {
+        List<Comment> live = new ArrayList<>();
+        for (Comment comment : comments) {
+            if (!comment.isDeleted()) {
+                live.add(comment);
+            }
+        }
+        return live;
+    }
+
+    private static List<Comment> readAll(Post post, int cursor, int limit, boolean newestFirst) {
+        List<Comment> read = new ArrayList<>();
+        do {
+            Page<Comment> page = post.getComments(cursor, limit, newestFirst);
+            read.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != Page.END);
+        return read;
+    }
+
+    private static List<Integer> cursors(Post post, int limit, boolean newestFirst) {
+        List<Integer> cursors = new ArrayList<>();
+        int cursor = 0;
+        do {
+            cursors.add(cursor);
+            cursor = post.getComments(cursor, limit, newestFirst).getNextCursor();
+        } while (cursor != Page.END);
+        return cursors;
+    }
+}
@@ -0,0 +1,370 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertFalse;
+import static Project.Assert.assertThrows;
+import static Project.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * The DurablePlatformServiceTest class checks that the write-ahead log brings a
+ * platform back after a crash: records are replayed, records covered by a checkpoint
+ * are dropped from the log, and a torn record at its end is cut off, and that reports
+ * read from the mapped snapshot match those of the materialized platform.
+ * <p>
+ * A crash is simulated by copying the data directory while the service is still open,
+ * since every mutation is on disk once it returns.
+ *
+ * @author Asail
+ */
+public class DurablePlatformServiceTest {
+
+    public void testReplaysLogAfterCrash() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            Path crashed;
+            String before;
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                populate(service, 0);
+                before = dump(service);
+                assertFalse(Files.exists(dir.resolve(DurablePlatformService.SNAPSHOT_FILE)), "no checkpoint yet");
+                crashed = copy(dir, root);
+            }
+            try (DurablePlatformService service = DurablePlatformService.open(crashed)) {
+                assertEquals(before, dump(service), "replayed platform");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    public void testCheckpointTruncatesLog() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            Path log = dir.resolve(DurablePlatformService.LOG_FILE);
+            Path crashed;
+            String before;
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                populate(service, 0);
+                assertTrue(Files.size(log) > 0, "log holds the records");
+                service.checkpoint();
+                assertEquals(0, Files.size(log), "log after checkpoint");
+                populate(service, 1);
+                long tail = Files.size(log);
+                assertTrue(tail > 0, "log holds the records after the checkpoint");
+                before = dump(service);
+                crashed = copy(dir, root);
+                assertEquals(tail, Files.size(crashed.resolve(DurablePlatformService.LOG_FILE)), "copied log");
+            }
+            try (DurablePlatformService service = DurablePlatformService.open(crashed)) {
+                assertEquals(before, dump(service), "snapshot plus replayed tail");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    public void testTornTailIsCutOff() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            Path crashed;
+            String before;
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                populate(service, 0);
+                before = dump(service);
+                crashed = copy(dir, root);
+            }
+            Path log = crashed.resolve(DurablePlatformService.LOG_FILE);
+            long intact = Files.size(log);
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                // A frame announcing 50 bytes of which only two were written.
+                channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 50, 1, 2, 3, 4, 5, 6}));
+            }
+            Path reopened;
+            try (DurablePlatformService service = DurablePlatformService.open(crashed)) {
+                assertEquals(before, dump(service), "platform without the torn record");
+                assertEquals(intact, Files.size(log), "log cut back to the last whole record");
+                service.addUser("late", "late@example.com", false);
+                before = dump(service);
+                reopened = copy(crashed, root);
+            }
+            try (DurablePlatformService service = DurablePlatformService.open(reopened)) {
+                assertEquals(before, dump(service), "records appended after the cut");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    public void testRestoresAfterNewestUsersWereRemoved() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            String before;
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                service.addUser("admin", "admin@example.com", true);
+                for (int i = 1; i < 20; i++) {
+                    service.addUser("u" + i, "u" + i + "@example.com", false);
+                    service.followUser("u" + i, "admin");
+                }
+                service.addPost("admin", "hello");
+                for (int i = 15; i < 20; i++) {
+                    service.deleteUser("admin", "u" + i);
+                }
+                service.checkpoint();
+                before = dump(service);
+            }
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                assertEquals(15, service.getUsers().size(), "users restored from the snapshot");
+                assertEquals(1, service.getFeed("u1", 10).size(), "feed restored from the snapshot");
+                assertEquals(before, dump(service), "report restored from the snapshot");
+                User late = service.addUser("late", "late@example.com", false);
+                assertTrue(late.getId() >= 20, "ids of removed users are not handed out again");
+                assertEquals(16, service.getUsers().size(), "users after a new registration");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    public void testBackgroundCheckpointFailureIsReported() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            Path blocker = Files.createDirectory(dir.resolve(DurablePlatformService.SNAPSHOT_FILE + ".tmp"));
+            try (DurablePlatformService service = DurablePlatformService.open(dir, 2)) {
+                service.addUser("a", "a@example.com", false);
+                service.addUser("b", "b@example.com", false);
+                IOException reported = null;
+                for (long end = System.nanoTime() + 5_000_000_000L; reported == null && System.nanoTime() < end; ) {
+                    try {
+                        service.checkpoint();
+                    } catch (IOException e) {
+                        if (e.getCause() instanceof IOException) {
+                            reported = e;
+                        }
+                    }
+                    Thread.sleep(5);
+                }
+                assertTrue(reported != null, "the failed background snapshot is thrown by checkpoint");
+                Files.delete(blocker);
+                service.checkpoint();
+                assertEquals(0, Files.size(dir.resolve(DurablePlatformService.LOG_FILE)), "log truncated by the next checkpoint");
+            }
+            Files.createDirectory(blocker);
+            DurablePlatformService service = DurablePlatformService.open(dir, 1);
+            service.addUser("c", "c@example.com", false);
+            assertThrows(IOException.class, service::close, "close reports the failed snapshot");
+            Files.delete(blocker);
+            try (DurablePlatformService reopened = DurablePlatformService.open(dir)) {
+                assertEquals(3, reopened.getUsers().size(), "users replayed from the log kept by the failure");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    public void testMappedReportsMatchMaterializedReports() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            List<String> live = new ArrayList<>();
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                for (int round = 0; round < 3; round++) {
+                    populate(service, round);
+                }
+                Post post = service.addPost("r0u1", "a \"quoted\", multi-line\npost with a long tail " + "x".repeat(200));
+                service.addComment(post.getId(), "r1u2", "caf\u00e9 \u2603 \ud83d\ude00 and a comment longer than a preview");
+                service.addPost("r2u3", "");
+                live.addAll(reports(service, pool));
+            }
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                List<String> mapped = reports(service, pool);
+                service.getUser("r0u0");
+                List<String> materialized = reports(service, pool);
+                for (int i = 0; i < live.size(); i++) {
+                    assertEquals(live.get(i), mapped.get(i), "report " + i + " from the mapped snapshot");
+                    assertEquals(mapped.get(i), materialized.get(i), "report " + i + " after materializing");
+                }
+            }
+        } finally {
+            pool.shutdown();
+            delete(root);
+        }
+    }
+
+    public void testReportIsPointInTimeUnderChanges() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Path dir = Files.createDirectory(root.resolve("data"));
+            try (DurablePlatformService service = DurablePlatformService.open(dir)) {
+                int users = 3000;
+                for (int i = 0; i < users; i++) {
+                    service.addUser("u" + i, "u" + i + "@example.com", false);
+                }
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicReference<Exception> failure = new AtomicReference<>();
+                Thread writer = new Thread(() -> {
+                    Random random = new Random(9);
+                    try {
+                        while (!done.get()) {
+                            String a = "u" + random.nextInt(users);
+                            String b = "u" + random.nextInt(users);
+                            if (!a.equals(b)) {
+                                service.followUser(a, b);
+                                service.unfollowUser(a, b);
+                            }
+                        }
+                    } catch (SocialMediaException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                writer.start();
+                try {
+                    for (int round = 0; round < 10; round++) {
+                        StringWriter out = new StringWriter();
+                        ReportWriter report = new ReportWriter(out, ReportWriter.Format.JSON_LINES);
+                        service.writeReport(report, pool);
+                        report.flush();
+                        long following = 0;
+                        long followers = 0;
+                        for (String line : out.toString().split("\n")) {
+                            following += field(line, "following");
+                            followers += field(line, "followers");
+                        }
+                        assertEquals(following, followers, "edges counted from both sides in round " + round);
+                    }
+                } finally {
+                    done.set(true);
+                    writer.join();
+                }
+                assertEquals(null, failure.get(), "failure in the writing thread");
+            }
+        } finally {
+            pool.shutdown();
+            delete(root);
+        }
+    }
+
+    /**
+     * @return the number in a field of a JSON record, or 0 if the record has none
+     */
+    private static long field(String line, String name) {
+        String key = "\"" + name + "\":";
+        int at = line.indexOf(key);
+        if (at < 0) {
+            return 0;
+        }
+        int end = at + key.length();
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            end++;
+        }
+        return Long.parseLong(line.substring(at + key.length(), end));
+    }
+
+    /**
+     * Adds users, posts, comments and follows, and removes some of them again.
+     */
+    private static void populate(PlatformService service, int round) throws SocialMediaException {
+        String prefix = "r" + round + "u";
+        service.addUser(prefix + "admin", prefix + "admin@example.com", true);
+        for (int i = 0; i < 8; i++) {
+            service.addUser(prefix + i, prefix + i + "@example.com", false);
+        }
+        for (int i = 0; i < 8; i++) {
+            service.followUser(prefix + i, prefix + (i + 1) % 8);
+            service.followUser(prefix + i, prefix + (i + 3) % 8);
+        }
+        service.unfollowUser(prefix + 2, prefix + 3);
+        service.removeFollower(prefix + 4, prefix + 1);
+        for (int i = 0; i < 8; i++) {
+            Post post = service.addPost(prefix + i, "post " + i + " of round " + round);
+            service.addComment(post.getId(), prefix + (i + 1) % 8, "comment on " + i);
+        }
+        service.followUser(prefix + 6, prefix + 2);
+        Post doomed = service.addPost(prefix + 5, "to be deleted");
+        service.deletePost(prefix + "admin", doomed.getId());
+        service.deleteUser(prefix + "admin", prefix + 7);
+    }
+
+    /**
+     * @return the reports of a platform in every format, each written on one thread
+     * and then on a pool
+     */
+    private static List<String> reports(PlatformService service, ForkJoinPool pool) throws IOException {
+        List<String> reports = new ArrayList<>();
+        for (ReportWriter.Format format : ReportWriter.Format.values()) {
+            for (boolean parallel : new boolean[] {false, true}) {
+                StringWriter out = new StringWriter();
+                ReportWriter writer = new ReportWriter(out, format);
+                if (parallel) {
+                    service.writeReport(writer, pool);
+                } else {
+                    service.writeReport(writer);
+                }
+                writer.flush();
+                reports.add(out.toString());
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * @return the report of a platform followed by the feed of every user
+     */
+    private static String dump(PlatformService service) throws IOException, SocialMediaException {
+        StringWriter out = new StringWriter();
+        ReportWriter writer = new ReportWriter(out, ReportWriter.Format.JSON_LINES);
+        service.writeReport(writer);
+        writer.flush();
+        for (User user : service.getUsers()) {
+            out.write(user.getUserName() + " feed:");
+            for (Post post : service.getFeed(user.getUserName(), 50)) {
+                out.write(" " + post.getId());
+            }
+            out.write('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Copies the files of a data directory into a new directory under the root.
+     */
+    private static Path copy(Path dir, Path root) throws IOException {
+        Path copy = Files.createTempDirectory(root, "crashed");
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
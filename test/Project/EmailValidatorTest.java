@@ -0,0 +1,104 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertFalse;
+import static Project.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * The EmailValidatorTest class checks that the single-pass validator accepts exactly
+ * the emails {@link EmailValidator#REGEX} matches, on hand-picked cases, on every
+ * short string over a small alphabet and on seeded random strings, and that
+ * normalizing agrees with trimming and lower-casing.
+ *
+ * @author Asail
+ */
+public class EmailValidatorTest {
+    private static final Pattern PATTERN = Pattern.compile(EmailValidator.REGEX);
+
+    public void testKnownCases() {
+        for (String valid : new String[] {
+            "a@b.cc", "John.Doe+tag@Example.COM", "x_y%z-1@sub.domain-2.org", "a@b..cc", "a@-.cc", ".@..cc",
+            "a@b.c.dd"
+        }) {
+            assertTrue(EmailValidator.isValid(valid), valid + " is valid");
+        }
+        for (String invalid : new String[] {
+            "", "@b.cc", "a@", "a@.cc", "a@b.c", "a@b.c1", "a@bcc", "a@b@c.cc", "a b@c.cc", "a@b.cc ",
+            " a@b.cc", "a@b.cc\n", "a@b_c.cc", "\u00e9@b.cc", "a@b.\u00e9e", "a@b.cc.", "a@b.cc-"
+        }) {
+            assertFalse(EmailValidator.isValid(invalid), "'" + invalid + "' is invalid");
+        }
+        assertFalse(EmailValidator.isValid(null), "null is invalid");
+    }
+
+    /**
+     * Tries every string of up to six characters over an alphabet holding one
+     * character of each class the format tells apart.
+     */
+    public void testEveryShortStringMatchesRegex() {
+        char[] alphabet = {'a', 'Z', '1', '.', '-', '_', '@', ' '};
+        StringBuilder email = new StringBuilder();
+        int checked = 0;
+        for (int length = 0; length <= 6; length++) {
+            int total = (int) Math.pow(alphabet.length, length);
+            for (int n = 0; n < total; n++) {
+                email.setLength(0);
+                for (int i = 0, rest = n; i < length; i++, rest /= alphabet.length) {
+                    email.append(alphabet[rest % alphabet.length]);
+                }
+                check(email.toString());
+                checked++;
+            }
+        }
+        assertEquals(299_593, checked, "strings checked");
+    }
+
+    public void testRandomStringsMatchRegex() {
+        String alphabet = "aZ09._%+-@.@ \n\u00c9\u00e9!#xY\t";
+        Random random = new Random(7);
+        String[] batch = new String[1000];
+        int valid = 0;
+        for (int round = 0; round < 300; round++) {
+            for (int i = 0; i < batch.length; i++) {
+                StringBuilder email = new StringBuilder();
+                int length = random.nextInt(14);
+                for (int j = 0; j < length; j++) {
+                    email.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                if (random.nextInt(3) == 0) {
+                    email.insert(0, "ab@cd.").append(random.nextBoolean() ? "com" : "");
+                }
+                batch[i] = email.toString();
+                if (check(batch[i])) {
+                    valid++;
+                }
+            }
+            BitSet invalid = EmailValidator.validateAll(batch, batch.length);
+            for (int i = 0; i < batch.length; i++) {
+                assertEquals(!EmailValidator.isValid(batch[i]), invalid.get(i), "validateAll of " + batch[i]);
+            }
+        }
+        assertTrue(valid > 1000, "enough valid emails were generated");
+    }
+
+    public void testNormalizeTrimsAndLowerCases() {
+        for (String email : new String[] {
+            "a@b.cc", "A@B.CC", " a@b.cc", "a@b.cc\t", "\u00c9mile@b.cc", "MiXeD@Case.Org ", "", "   "
+        }) {
+            assertEquals(email.trim().toLowerCase(Locale.ROOT), EmailValidator.normalize(email), "normalized " + email);
+        }
+        String lower = "already@lower.case";
+        assertTrue(EmailValidator.normalize(lower) == lower, "no copy when already canonical");
+    }
+
+    private static boolean check(String email) {
+        boolean expected = PATTERN.matcher(email).matches();
+        assertEquals(expected, EmailValidator.isValid(email), "'" + email + "' against the regex");
+        return expected;
+    }
+}
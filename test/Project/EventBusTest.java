@@ -0,0 +1,204 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The EventBusTest class checks that every subscriber receives the events of each
+ * user in the order they were published, that producers wait for a slow subscriber
+ * once it is a full ring behind, that closing a subscription stops its events and lets
+ * producers run on, and that failures of a subscriber are recorded and handed to its
+ * failure handler without stopping it.
+ *
+ * @author Asail
+ */
+public class EventBusTest {
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(20);
+
+    public void testEventsOfEachUserArriveInOrder() throws Exception {
+        EventBus bus = new EventBus(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        List<Map<String, List<Long>>> received = new ArrayList<>();
+        List<EventBus.Subscription> subscriptions = new ArrayList<>();
+        List<AtomicReference<String>> gaps = new ArrayList<>();
+        for (int s = 0; s < 2; s++) {
+            Map<String, List<Long>> byUser = new HashMap<>();
+            AtomicReference<String> gap = new AtomicReference<>();
+            long[] last = {-1};
+            received.add(byUser);
+            gaps.add(gap);
+            subscriptions.add(bus.subscribe("order-" + s, (event, endOfBatch) -> {
+                if (event.getSequence() != last[0] + 1) {
+                    gap.compareAndSet(null, "event " + event.getSequence() + " after " + last[0]);
+                }
+                last[0] = event.getSequence();
+                byUser.computeIfAbsent(event.getUserName(), k -> new ArrayList<>()).add(event.getPostId());
+            }));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String user = "user" + p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    bus.publish(PlatformEvent.Type.POST_ADDED, user, null, i, -1);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int s = 0; s < subscriptions.size(); s++) {
+            await(subscriptions.get(s), bus.getCursor());
+            subscriptions.get(s).close();
+            assertEquals(null, gaps.get(s).get(), "sequences seen by subscriber " + s);
+            assertEquals(producers, received.get(s).size(), "users seen by subscriber " + s);
+            for (Map.Entry<String, List<Long>> user : received.get(s).entrySet()) {
+                List<Long> posts = user.getValue();
+                assertEquals(perProducer, posts.size(), "events of " + user.getKey());
+                for (int i = 0; i < posts.size(); i++) {
+                    if (posts.get(i) != i) {
+                        throw new AssertionError("event " + i + " of " + user.getKey() + " was " + posts.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSlowSubscriberHoldsProducersBack() throws Exception {
+        int capacity = 8;
+        EventBus bus = new EventBus(capacity);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> received = new ArrayList<>();
+        EventBus.Subscription subscription = bus.subscribe("slow", (event, endOfBatch) -> {
+            awaitQuietly(release);
+            received.add(event.getPostId());
+        });
+        AtomicInteger published = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                bus.publish(PlatformEvent.Type.POST_ADDED, "user", null, i, -1);
+                published.incrementAndGet();
+            }
+        });
+        producer.start();
+        Thread.sleep(200);
+        assertEquals(capacity, published.get(), "events published while the subscriber holds the first one");
+        assertTrue(producer.isAlive(), "producer waits for the subscriber");
+
+        release.countDown();
+        producer.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        assertEquals(100, published.get(), "events published once the subscriber moved on");
+        await(subscription, bus.getCursor());
+        subscription.close();
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, received, "events received by the slow subscriber");
+    }
+
+    public void testClosedSubscriptionStopsAndReleasesProducers() throws Exception {
+        int capacity = 8;
+        EventBus bus = new EventBus(capacity);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+        EventBus.Subscription stuck = bus.subscribe("stuck", (event, endOfBatch) -> {
+            awaitQuietly(release);
+            received.incrementAndGet();
+        });
+        EventBus.Subscription running = bus.subscribe("running", (event, endOfBatch) -> other.incrementAndGet());
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                bus.publish(PlatformEvent.Type.POST_ADDED, "user", null, i, -1);
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        assertTrue(producer.isAlive(), "producer waits for the stuck subscriber");
+
+        stuck.close();
+        producer.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        assertTrue(!producer.isAlive(), "producer runs on once the subscription is closed");
+        await(running, bus.getCursor());
+        assertEquals(1000, other.get(), "events of the subscriber still open");
+
+        release.countDown();
+        for (int i = 0; i < 1000; i++) {
+            bus.publish(PlatformEvent.Type.POST_ADDED, "user", null, i, -1);
+        }
+        await(running, bus.getCursor());
+        Thread.sleep(50);
+        assertTrue(received.get() <= capacity, "closed subscriber only finished the batch it held: " + received.get());
+
+        running.close();
+        long cursor = bus.getCursor();
+        bus.publish(PlatformEvent.Type.POST_ADDED, "user", null, 0, -1);
+        assertEquals(cursor, bus.getCursor(), "nothing is published without subscribers");
+    }
+
+    public void testFailuresAreRecordedAndHandled() throws Exception {
+        EventBus bus = new EventBus(16);
+        List<Long> handled = new ArrayList<>();
+        List<Long> received = new ArrayList<>();
+        EventBus.Subscription subscription = bus.subscribe("failing", (event, endOfBatch) -> {
+            received.add(event.getPostId());
+            if (event.getPostId() % 2 == 1) {
+                throw new IllegalStateException("odd post " + event.getPostId());
+            }
+        }, (sequence, event, failure) -> {
+            handled.add(event.getPostId());
+            if (event.getPostId() == 9) {
+                throw new IllegalArgumentException("handler failed too");
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            bus.publish(PlatformEvent.Type.POST_ADDED, "user", null, i, -1);
+        }
+        await(subscription, bus.getCursor());
+        subscription.close();
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), received, "subscriber keeps receiving");
+        assertEquals(List.of(1L, 3L, 5L, 7L, 9L), handled, "failures passed to the handler");
+        assertEquals(5L, subscription.getFailureCount(), "failures counted");
+        RuntimeException last = subscription.getLastFailure();
+        assertEquals("odd post 9", last.getMessage(), "last failure");
+        assertEquals(1, last.getSuppressed().length, "failure of the handler kept with it");
+
+        EventBus.Subscription quiet = bus.subscribe("quiet", (event, endOfBatch) -> { });
+        assertEquals(0L, quiet.getFailureCount(), "no failures");
+        assertEquals(null, quiet.getLastFailure(), "no last failure");
+        quiet.close();
+    }
+
+    private static void await(EventBus.Subscription subscription, long sequence) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (subscription.getSequence() < sequence) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(subscription.getName() + " stopped at " + subscription.getSequence()
+                        + " before " + sequence);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
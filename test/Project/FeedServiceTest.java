@@ -0,0 +1,122 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The FeedServiceTest class checks that feeds list the latest posts of the users
+ * followed, newest first, including posts made before the follow, that a shorter feed
+ * is the start of a longer one, and that unfollowing an author takes its posts out of
+ * the feed whichever way they reached it.
+ *
+ * @author Asail
+ */
+public class FeedServiceTest {
+
+    public void testFeedIsNewestFirstAndLimited() throws SocialMediaException {
+        DefaultPlatformService service = platform("reader", "ann", "bob", "cat");
+        for (String author : new String[] {"ann", "bob", "cat"}) {
+            service.followUser("reader", author);
+        }
+        List<Long> posted = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            posted.add(0, service.addPost(new String[] {"ann", "bob", "cat"}[i % 3], "post " + i).getId());
+        }
+        List<Long> all = ids(service.getFeed("reader", 100));
+        assertEquals(posted, all, "whole feed, newest first");
+        for (int limit = 1; limit <= 12; limit++) {
+            assertEquals(all.subList(0, limit), ids(service.getFeed("reader", limit)), "feed of " + limit);
+        }
+    }
+
+    public void testUnfollowedAuthorLeavesFeed() throws SocialMediaException {
+        DefaultPlatformService service = platform("reader", "ann", "bob");
+        service.followUser("reader", "ann");
+        service.followUser("reader", "bob");
+        List<Long> annPosts = new ArrayList<>();
+        List<Long> bobPosts = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            annPosts.add(0, service.addPost("ann", "ann " + i).getId());
+            bobPosts.add(0, service.addPost("bob", "bob " + i).getId());
+        }
+        List<Long> firstPage = ids(service.getFeed("reader", 4));
+
+        service.unfollowUser("reader", "bob");
+        assertEquals(annPosts.subList(0, 4), ids(service.getFeed("reader", 4)), "first page after unfollow");
+        assertEquals(annPosts, ids(service.getFeed("reader", 100)), "whole feed after unfollow");
+
+        service.followUser("reader", "bob");
+        assertEquals(firstPage, ids(service.getFeed("reader", 4)), "first page after following again");
+
+        service.removeFollower("ann", "reader");
+        assertEquals(bobPosts, ids(service.getFeed("reader", 100)), "feed after being removed as follower");
+    }
+
+    public void testAuthorCrossingFanOutThreshold() throws SocialMediaException {
+        DefaultPlatformService service = platform("star", "a", "b", "c");
+        service.getContext().getFeed().setFanOutThreshold(2);
+        for (String follower : new String[] {"a", "b", "c"}) {
+            service.followUser(follower, "star");
+        }
+        long skipped = service.addPost("star", "merged on read").getId();
+        service.unfollowUser("c", "star");
+        long pushed = service.addPost("star", "fanned out").getId();
+        List<Long> both = List.of(pushed, skipped);
+        assertEquals(both, ids(service.getFeed("a", 10)), "feed of a follower");
+        assertEquals(both, ids(service.getFeed("b", 10)), "feed of another follower");
+        assertEquals(List.of(), ids(service.getFeed("c", 10)), "feed of the user who unfollowed");
+        assertEquals(List.of(pushed), ids(service.getFeed("a", 1)), "first post only");
+
+        service.deletePost("star", pushed);
+        assertEquals(List.of(skipped), ids(service.getFeed("a", 10)), "feed after deleting a post");
+    }
+
+    public void testFollowBringsEarlierPosts() throws SocialMediaException {
+        DefaultPlatformService service = platform("reader", "ann", "bob");
+        service.followUser("reader", "ann");
+        List<Long> posted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            posted.add(0, service.addPost(i % 2 == 0 ? "ann" : "bob", "post " + i).getId());
+        }
+        service.followUser("reader", "bob");
+        assertEquals(posted, ids(service.getFeed("reader", 10)), "posts made before the follow");
+        long later = service.addPost("bob", "later").getId();
+        assertEquals(List.of(later), ids(service.getFeed("reader", 1)), "post made after the follow");
+        assertEquals(6, service.getFeed("reader", 10).size(), "posts after the follow, without repeats");
+    }
+
+    public void testFollowKeepsTheNewestPostsOfAFullInbox() throws SocialMediaException {
+        DefaultPlatformService service = platform("reader", "ann", "bob");
+        int capacity = FeedService.DEFAULT_INBOX_CAPACITY;
+        List<Long> bobPosts = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            bobPosts.add(0, service.addPost("bob", "old " + i).getId());
+        }
+        service.followUser("reader", "ann");
+        List<Long> annPosts = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            annPosts.add(0, service.addPost("ann", "new " + i).getId());
+        }
+        service.followUser("reader", "bob");
+        assertEquals(annPosts, ids(service.getFeed("reader", capacity)), "newest posts of the two");
+    }
+
+    private static DefaultPlatformService platform(String first, String... others) throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser(first, first + "@example.com", true);
+        for (String name : others) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        return service;
+    }
+
+    private static List<Long> ids(List<Post> posts) {
+        List<Long> ids = new ArrayList<>();
+        for (Post post : posts) {
+            ids.add(post.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,202 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * The FollowGraphTest class checks that follower and following pages read with
+ * cursors go forward in id order while other threads follow and unfollow, never
+ * repeating a user or skipping one that stayed, and that a cursor handed out while a
+ * platform was answered from its mapped snapshot reads on the same after the platform
+ * was materialized.
+ *
+ * @author Asail
+ */
+public class FollowGraphTest {
+    private static final int USERS = 3000;
+
+    public void testCursorsStayStableUnderConcurrentChanges() throws Exception {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("star", "star@example.com", false);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String name = name(i);
+            names.add(name);
+            service.addUser(name, name + "@example.com", false);
+            service.followUser(name, "star");
+            if (i % 6 == 0) {
+                service.followUser("star", name);
+            }
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(2);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int first = t;
+            Thread writer = new Thread(() -> {
+                started.countDown();
+                try {
+                    // Each writer toggles its own odd users, so the even ones never change.
+                    for (int round = 0; !done.get(); round++) {
+                        for (int i = 1 + 2 * first; i < USERS; i += 4) {
+                            if (round % 2 == 0) {
+                                service.unfollowUser(name(i), "star");
+                                service.followUser("star", name(i));
+                            } else {
+                                service.followUser(name(i), "star");
+                                service.unfollowUser("star", name(i));
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        started.await();
+        try {
+            for (int pass = 0; pass < 40 && failure.get() == null; pass++) {
+                int limit = 1 + pass % 9 * 13;
+                checkPages(readAll(service, "star", true, limit), names, "followers, pass " + pass);
+                checkPages(readAll(service, "star", false, limit), names, "following, pass " + pass);
+            }
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        assertEquals(null, failure.get(), "writer failure");
+    }
+
+    public void testCursorsCarryOverToTheMaterializedPlatform() throws Exception {
+        Path root = Files.createTempDirectory("platform");
+        try {
+            try (DurablePlatformService service = DurablePlatformService.open(root)) {
+                service.addUser("star", "star@example.com", false);
+                for (int i = 0; i < USERS; i++) {
+                    service.addUser(name(i), name(i) + "@example.com", false);
+                    if (i % 5 != 4) {
+                        service.followUser(name(i), "star");
+                    }
+                    if (i % 2 == 0) {
+                        service.followUser("star", name(i));
+                    }
+                }
+            }
+            for (boolean followers : new boolean[] {true, false}) {
+                try (DurablePlatformService service = DurablePlatformService.open(root)) {
+                    List<Integer> cursors = new ArrayList<>();
+                    List<Page<String>> mapped = new ArrayList<>();
+                    int cursor = 0;
+                    while (cursor != Page.END) {
+                        cursors.add(cursor);
+                        Page<String> page = page(service, "star", followers, cursor, 97);
+                        mapped.add(page);
+                        cursor = page.getNextCursor();
+                    }
+                    int stop = cursors.get(cursors.size() / 2);
+
+                    String late = followers ? "late" : "later";
+                    service.addUser(late, late + "@example.com", false);
+                    for (int i = 0; i < cursors.size(); i++) {
+                        Page<String> page = page(service, "star", followers, cursors.get(i), 97);
+                        assertEquals(mapped.get(i).getItems(), page.getItems(), "page " + i + " after materializing");
+                        assertEquals(mapped.get(i).getNextCursor(), page.getNextCursor(), "cursor " + i + " after materializing");
+                    }
+
+                    List<String> expected = new ArrayList<>();
+                    for (Page<String> page : mapped) {
+                        expected.addAll(page.getItems());
+                    }
+                    String before = expected.get(0);
+                    String after = expected.get(expected.size() - 1);
+                    if (followers) {
+                        service.unfollowUser(before, "star");
+                        service.unfollowUser(after, "star");
+                        service.followUser(late, "star");
+                    } else {
+                        service.unfollowUser("star", before);
+                        service.unfollowUser("star", after);
+                        service.followUser("star", late);
+                    }
+                    expected.remove(after);
+                    expected.add(late);
+                    List<String> read = new ArrayList<>();
+                    for (int i = 0; cursors.get(i) != stop; i++) {
+                        read.addAll(mapped.get(i).getItems());
+                    }
+                    for (cursor = stop; cursor != Page.END; ) {
+                        Page<String> page = page(service, "star", followers, cursor, 97);
+                        read.addAll(page.getItems());
+                        cursor = page.getNextCursor();
+                    }
+                    assertEquals(expected, read, (followers ? "followers" : "following")
+                            + " read across materializing and later changes");
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks pages read while odd users came and went: ids only grow, and every even
+     * user, which was there throughout, is on them.
+     */
+    private static void checkPages(List<String> read, List<String> names, String label) {
+        Set<String> seen = new HashSet<>();
+        int last = -1;
+        for (String name : read) {
+            int index = Integer.parseInt(name.substring(1));
+            assertTrue(index > last, label + ": " + name + " comes after the previous user");
+            assertTrue(seen.add(name), label + ": " + name + " is read once");
+            last = index;
+        }
+        boolean followers = label.startsWith("followers");
+        for (int i = 0; i < USERS; i += 2) {
+            boolean expected = followers || i % 6 == 0;
+            assertEquals(expected, seen.contains(names.get(i)), label + ": " + names.get(i) + " did not change");
+        }
+    }
+
+    private static List<String> readAll(PlatformService service, String name, boolean followers, int limit)
+            throws UserNotFoundException {
+        List<String> read = new ArrayList<>();
+        int cursor = 0;
+        while (cursor != Page.END) {
+            Page<String> page = page(service, name, followers, cursor, limit);
+            read.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        }
+        return read;
+    }
+
+    private static Page<String> page(PlatformService service, String name, boolean followers, int cursor, int limit)
+            throws UserNotFoundException {
+        return followers ? service.getFollowers(name, cursor, limit) : service.getFollowing(name, cursor, limit);
+    }
+
+    private static String name(int i) {
+        return String.format("u%04d", i);
+    }
+}
@@ -0,0 +1,228 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The GraphAnalyticsTest class checks PageRank, weakly connected components and the
+ * degree histograms of a run against a direct computation over a plain list of the
+ * edges, on graphs small enough to check by hand and large enough to be split into
+ * several ranges, with some users removed, on one thread and on several.
+ *
+ * @author Asail
+ */
+public class GraphAnalyticsTest {
+
+    public void testSmallGraph() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        for (String name : new String[] {"a", "b", "c", "d", "e", "f"}) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        service.followUser("a", "b");
+        service.followUser("b", "c");
+        service.followUser("c", "a");
+        service.followUser("d", "e");
+        GraphAnalytics.Results results = service.getContext().getAnalytics().run(ForkJoinPool.commonPool());
+        assertEquals(3, results.getComponentCount(), "a cycle, a pair and a single user");
+        assertEquals(3, results.getLargestComponentSize(), "largest component");
+        assertEquals(4L, results.getEdgeCount(), "edges");
+        int d = service.getUser("d").getId();
+        assertEquals(d, results.componentOf(service.getUser("e").getId()), "component named after its smallest id");
+        double cycle = results.rankOf(service.getUser("a").getId());
+        assertTrue(Math.abs(cycle - results.rankOf(service.getUser("c").getId())) < 1e-9, "ranks on a cycle are equal");
+        assertTrue(results.rankOf(service.getUser("e").getId()) > results.rankOf(d), "followed user ranks higher");
+        assertEquals(1.0, Math.round(total(results, 6) * 1e9) / 1e9, "ranks add up to one");
+    }
+
+    public void testMatchesDirectComputation() throws SocialMediaException {
+        for (int users : new int[] {300, 9000}) {
+            Random random = new Random(users);
+            DefaultPlatformService service = new DefaultPlatformService();
+            service.addUser("admin", "admin@example.com", true);
+            for (int i = 1; i < users; i++) {
+                service.addUser("u" + i, "u" + i + "@example.com", false);
+            }
+            assertEquals(users - 1, service.getUser("u" + (users - 1)).getId(), "ids follow registration order");
+            Set<Long> edges = new HashSet<>();
+            for (int i = 0; i < users * 2; i++) {
+                // Followees cluster at low ids, so a few users are far more popular.
+                int a = 1 + random.nextInt(users - 1);
+                int b = 1 + (int) ((users - 1) * Math.pow(random.nextDouble(), 3));
+                if (a != b && edges.add(edge(a, b))) {
+                    service.followUser("u" + a, "u" + b);
+                }
+            }
+            boolean[] live = new boolean[users];
+            Arrays.fill(live, true);
+            for (int i = 0; i < users / 50; i++) {
+                int removed = 1 + random.nextInt(users - 1);
+                if (live[removed]) {
+                    service.deleteUser("admin", "u" + removed);
+                    live[removed] = false;
+                    edges.removeIf(e -> (int) (e >>> 32) == removed || (int) (long) e == removed);
+                }
+            }
+            for (int threads : new int[] {1, 4}) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    GraphAnalytics.Results results = service.getContext().getAnalytics().run(pool);
+                    check(results, users, live, edges, users + " users on " + threads + " threads");
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    private static void check(GraphAnalytics.Results results, int users, boolean[] live, Set<Long> edges, String label) {
+        int liveUsers = 0;
+        for (boolean isLive : live) {
+            liveUsers += isLive ? 1 : 0;
+        }
+        assertEquals(liveUsers, results.getUserCount(), "users of " + label);
+        assertEquals((long) edges.size(), results.getEdgeCount(), "edges of " + label);
+
+        List<List<Integer>> followers = new ArrayList<>();
+        int[] following = new int[users];
+        long[] followerHistogram = new long[GraphAnalytics.BUCKETS];
+        long[] followingHistogram = new long[GraphAnalytics.BUCKETS];
+        for (int v = 0; v < users; v++) {
+            followers.add(new ArrayList<>());
+        }
+        for (long edge : edges) {
+            int a = (int) (edge >>> 32);
+            int b = (int) edge;
+            followers.get(b).add(a);
+            following[a]++;
+        }
+        for (int v = 0; v < users; v++) {
+            if (live[v]) {
+                followerHistogram[GraphAnalytics.bucketOf(followers.get(v).size())]++;
+                followingHistogram[GraphAnalytics.bucketOf(following[v])]++;
+            }
+        }
+        assertEquals(Arrays.toString(followerHistogram), Arrays.toString(results.getFollowerHistogram()),
+                "follower histogram of " + label);
+        assertEquals(Arrays.toString(followingHistogram), Arrays.toString(results.getFollowingHistogram()),
+                "following histogram of " + label);
+
+        // The same rounds as the run, then rounds until the ranks settle.
+        double[] ranks = pageRank(followers, following, live, liveUsers, results.getIterations());
+        double[] settled = pageRank(followers, following, live, liveUsers, 1000);
+        double error = 0;
+        for (int v = 0; v < users; v++) {
+            assertTrue(Math.abs(ranks[v] - results.rankOf(v)) < 1e-12, "rank of " + v + " in " + label);
+            error += Math.abs(settled[v] - results.rankOf(v));
+        }
+        assertTrue(results.getIterations() == GraphAnalytics.MAX_ITERATIONS || error < 1e-4,
+                "ranks close to the settled ones in " + label + ", off by " + error);
+        assertTrue(Math.abs(total(results, users) - 1) < 1e-9, "ranks add up to one in " + label);
+
+        int[] components = components(followers, live);
+        Set<Integer> names = new HashSet<>();
+        int[] sizes = new int[users];
+        int largest = 0;
+        for (int v = 0; v < users; v++) {
+            assertEquals(components[v], results.componentOf(v), "component of " + v + " in " + label);
+            if (live[v]) {
+                names.add(components[v]);
+                largest = Math.max(largest, ++sizes[components[v]]);
+            }
+        }
+        assertEquals(names.size(), results.getComponentCount(), "components of " + label);
+        assertEquals(largest, results.getLargestComponentSize(), "largest component of " + label);
+    }
+
+    private static double[] pageRank(List<List<Integer>> followers, int[] following, boolean[] live, int liveUsers,
+            int rounds) {
+        int n = live.length;
+        double[] ranks = new double[n];
+        for (int v = 0; v < n; v++) {
+            ranks[v] = live[v] ? 1.0 / liveUsers : 0;
+        }
+        for (int round = 0; round < rounds; round++) {
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                if (following[v] == 0) {
+                    dangling += ranks[v];
+                }
+            }
+            double[] next = new double[n];
+            double change = 0;
+            for (int v = 0; v < n; v++) {
+                if (!live[v]) {
+                    continue;
+                }
+                double incoming = 0;
+                for (int source : followers.get(v)) {
+                    incoming += ranks[source] / following[source];
+                }
+                next[v] = (1 - GraphAnalytics.DAMPING) / liveUsers + GraphAnalytics.DAMPING * (dangling / liveUsers + incoming);
+                change += Math.abs(next[v] - ranks[v]);
+            }
+            ranks = next;
+            if (change < 1e-15) {
+                break;
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Names every live user's component after its smallest id by a breadth-first
+     * search that ignores edge directions; removed users get -1.
+     */
+    private static int[] components(List<List<Integer>> followers, boolean[] live) {
+        int n = live.length;
+        List<List<Integer>> neighbours = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            neighbours.add(new ArrayList<>());
+        }
+        for (int v = 0; v < n; v++) {
+            for (int source : followers.get(v)) {
+                neighbours.get(v).add(source);
+                neighbours.get(source).add(v);
+            }
+        }
+        int[] components = new int[n];
+        Arrays.fill(components, -1);
+        for (int start = 0; start < n; start++) {
+            if (!live[start] || components[start] >= 0) {
+                continue;
+            }
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            components[start] = start;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                for (int next : neighbours.get(queue.poll())) {
+                    if (components[next] < 0) {
+                        components[next] = start;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    private static double total(GraphAnalytics.Results results, int users) {
+        double total = 0;
+        for (int v = 0; v < users; v++) {
+            total += results.rankOf(v);
+        }
+        return total;
+    }
+
+    private static long edge(int a, int b) {
+        return (long) a << 32 | b;
+    }
+}
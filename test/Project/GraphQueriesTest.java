@@ -0,0 +1,177 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The GraphQueriesTest class checks distances, mutual followers and mutual followees
+ * against a breadth-first search and a scan over a plain copy of the graph, on sparse
+ * and dense random graphs with a few very popular users, before and after edges and
+ * users are removed.
+ *
+ * @author Asail
+ */
+public class GraphQueriesTest {
+    private static final int USERS = 400;
+
+    public void testDistanceMatchesBreadthFirstSearch() {
+        for (int degree : new int[] {1, 2, 4, 12}) {
+            Random random = new Random(degree);
+            FollowGraph graph = new FollowGraph();
+            BitSet[] edges = randomGraph(graph, random, degree);
+            GraphQueries queries = new GraphQueries(graph);
+            for (int phase = 0; phase < 2; phase++) {
+                for (int i = 0; i < 600; i++) {
+                    int from = random.nextInt(USERS);
+                    int to = random.nextInt(USERS);
+                    int maxHops = random.nextInt(10);
+                    assertEquals(bfs(edges, from, to, maxHops), queries.distance(from, to, maxHops),
+                            "distance from " + from + " to " + to + " within " + maxHops + " hops, degree " + degree);
+                }
+                removeSome(graph, edges, random);
+            }
+        }
+    }
+
+    public void testDistanceAlongAChain() {
+        FollowGraph graph = new FollowGraph();
+        for (int i = 0; i < 20; i++) {
+            graph.follow(i, i + 1);
+        }
+        GraphQueries queries = new GraphQueries(graph);
+        assertEquals(0, queries.distance(5, 5, 0), "same user");
+        assertEquals(20, queries.distance(0, 20, 20), "whole chain");
+        assertEquals(-1, queries.distance(0, 20, 19), "one hop short");
+        assertEquals(-1, queries.distance(20, 0, 100), "against the follow direction");
+        graph.unfollow(10, 11);
+        assertEquals(-1, queries.distance(0, 20, 100), "broken chain");
+    }
+
+    public void testMutualsMatchScan() {
+        for (int degree : new int[] {2, 12}) {
+            Random random = new Random(100 + degree);
+            FollowGraph graph = new FollowGraph();
+            BitSet[] edges = randomGraph(graph, random, degree);
+            GraphQueries queries = new GraphQueries(graph);
+            for (int phase = 0; phase < 2; phase++) {
+                List<int[]> pairs = new ArrayList<>();
+                for (int i = 0; i < 300; i++) {
+                    pairs.add(new int[] {random.nextInt(USERS), random.nextInt(USERS)});
+                }
+                // Popular users against ordinary ones take the lookup path for skewed lists.
+                for (int star = 0; star < 3; star++) {
+                    for (int i = 0; i < 20; i++) {
+                        pairs.add(new int[] {star, 10 + random.nextInt(USERS - 10)});
+                        pairs.add(new int[] {10 + random.nextInt(USERS - 10), star});
+                    }
+                }
+                for (int[] pair : pairs) {
+                    int a = pair[0];
+                    int b = pair[1];
+                    String label = a + " and " + b + ", degree " + degree + ", phase " + phase;
+                    assertEquals(Arrays.toString(mutual(edges, a, b, false)),
+                            Arrays.toString(queries.mutualFollowers(a, b)), "mutual followers of " + label);
+                    assertEquals(Arrays.toString(mutual(edges, a, b, true)),
+                            Arrays.toString(queries.mutualFollowing(a, b)), "mutual following of " + label);
+                    assertEquals(a != b && edges[a].get(b) && edges[b].get(a), queries.followEachOther(a, b),
+                            "follow each other, " + label);
+                }
+                removeSome(graph, edges, random);
+            }
+        }
+    }
+
+    /**
+     * Builds a random graph where users 0 to 2 are followed by most users and the
+     * others follow about a given number of users each, and returns a copy of its
+     * edges: bit b of entry a is set if a follows b.
+     */
+    private static BitSet[] randomGraph(FollowGraph graph, Random random, int degree) {
+        BitSet[] edges = new BitSet[USERS];
+        for (int i = 0; i < USERS; i++) {
+            edges[i] = new BitSet(USERS);
+        }
+        for (int a = 0; a < USERS; a++) {
+            for (int star = 0; star < 3; star++) {
+                if (a != star && random.nextInt(10) < 9) {
+                    add(graph, edges, a, star);
+                }
+            }
+            int count = random.nextInt(2 * degree + 1);
+            for (int i = 0; i < count; i++) {
+                int b = random.nextInt(USERS);
+                if (a != b) {
+                    add(graph, edges, a, b);
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static void add(FollowGraph graph, BitSet[] edges, int a, int b) {
+        assertEquals(!edges[a].get(b), graph.follow(a, b), a + " follows " + b);
+        edges[a].set(b);
+    }
+
+    /**
+     * Removes about a tenth of the edges and one popular user with all its edges.
+     */
+    private static void removeSome(FollowGraph graph, BitSet[] edges, Random random) {
+        for (int a = 0; a < USERS; a++) {
+            for (int b = edges[a].nextSetBit(0); b >= 0; b = edges[a].nextSetBit(b + 1)) {
+                if (random.nextInt(10) == 0) {
+                    graph.unfollow(a, b);
+                    edges[a].clear(b);
+                }
+            }
+        }
+        int removed = random.nextInt(3);
+        graph.removeUser(removed);
+        edges[removed].clear();
+        for (BitSet out : edges) {
+            out.clear(removed);
+        }
+    }
+
+    private static int bfs(BitSet[] edges, int from, int to, int maxHops) {
+        int[] hops = new int[USERS];
+        Arrays.fill(hops, -1);
+        hops[from] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int user = queue.poll();
+            if (user == to) {
+                return hops[user] <= maxHops ? hops[user] : -1;
+            }
+            for (int next = edges[user].nextSetBit(0); next >= 0; next = edges[user].nextSetBit(next + 1)) {
+                if (hops[next] < 0) {
+                    hops[next] = hops[user] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int[] mutual(BitSet[] edges, int a, int b, boolean following) {
+        List<Integer> both = new ArrayList<>();
+        for (int user = 0; user < USERS; user++) {
+            boolean match = following ? edges[a].get(user) && edges[b].get(user) : edges[user].get(a) && edges[user].get(b);
+            if (match) {
+                both.add(user);
+            }
+        }
+        int[] ids = new int[both.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = both.get(i);
+        }
+        return ids;
+    }
+}
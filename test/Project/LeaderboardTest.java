@@ -0,0 +1,95 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The LeaderboardTest class checks the ordering of a {@link Leaderboard} and that the
+ * most followed users stay exact while follower counts go down.
+ *
+ * @author Asail
+ */
+public class LeaderboardTest {
+    private static final int TOP = 10;
+
+    public void testOrdersByScoreThenKey() {
+        long[] scores = {5, 9, 5, 0, 7, 9};
+        Leaderboard<Integer> board = new Leaderboard<>(4, i -> scores[i], i -> i);
+        for (int i = 0; i < scores.length; i++) {
+            board.changed(i);
+        }
+        assertEquals(Arrays.asList(1, 5, 4, 0), board.top(10), "best four, ties to the smaller key");
+        assertEquals(Arrays.asList(1, 5), board.top(2), "limited top");
+    }
+
+    public void testFollowsScoresOnTheBoard() {
+        long[] scores = {3, 2, 1};
+        Leaderboard<Integer> board = new Leaderboard<>(3, i -> scores[i], i -> i);
+        for (int i = 0; i < scores.length; i++) {
+            board.changed(i);
+        }
+        scores[0] = 0;
+        scores[2] = 8;
+        board.changed(0);
+        board.changed(2);
+        assertEquals(Arrays.asList(2, 1), board.top(10), "dropped to zero and moved up");
+        board.remove(1);
+        assertEquals(Arrays.asList(2), board.top(10), "removed");
+    }
+
+    public void testMostFollowedMatchesFullScanAsFollowersDrop() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        int users = 150;
+        for (int i = 0; i < users; i++) {
+            service.addUser(name(i), name(i) + "@example.com", false);
+        }
+        // User i is followed by the i users before it.
+        for (int i = 1; i < users; i++) {
+            for (int j = 0; j < i; j++) {
+                service.followUser(name(j), name(i));
+            }
+        }
+        assertEquals(fullScan(service), names(service.getMostFollowed(TOP)), "before any unfollow");
+
+        // Drive the counts of the most followed users down, below users that were on
+        // the board and some that were not.
+        for (int round = 0; round < 3; round++) {
+            for (int i = users - 1 - round * 20; i > users - 21 - round * 20; i--) {
+                int keep = (i * 7) % 40;
+                for (int j = keep; j < i; j++) {
+                    service.unfollowUser(name(j), name(i));
+                }
+            }
+            assertEquals(fullScan(service), names(service.getMostFollowed(TOP)), "after round " + round);
+        }
+        List<User> top = service.getMostFollowed(TOP);
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getFollowersCount() >= top.get(i).getFollowersCount(), "descending counts");
+        }
+    }
+
+    private static List<String> fullScan(DefaultPlatformService service) {
+        List<User> all = new ArrayList<>(service.getUsers());
+        all.removeIf(user -> user.getFollowersCount() == 0);
+        all.sort(Comparator.comparingLong((User user) -> user.getFollowersCount()).reversed()
+                .thenComparingInt(User::getId));
+        return names(all.subList(0, Math.min(TOP, all.size())));
+    }
+
+    private static List<String> names(List<User> users) {
+        List<String> names = new ArrayList<>();
+        for (User user : users) {
+            names.add(user.getUserName() + "=" + user.getFollowersCount());
+        }
+        return names;
+    }
+
+    private static String name(int i) {
+        return "user" + i;
+    }
+}
@@ -0,0 +1,188 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The SearchIndexTest class checks term, prefix and phrase queries against a scan of
+ * every post, across several posting list blocks and comments added to older posts,
+ * and that the results follow edits, deleted posts and deleted users.
+ *
+ * @author Asail
+ */
+public class SearchIndexTest {
+    private static final String[] WORDS = {
+        "apple", "apricot", "april", "banana", "band", "bandit", "cherry", "chess",
+        "delta", "dune", "echo", "eclipse"
+    };
+    private static final String[] AUTHORS = {"ann", "bob", "cat"};
+
+    public void testQueriesMatchScan() throws SocialMediaException {
+        Random random = new Random(42);
+        DefaultPlatformService service = platform();
+        Map<Long, List<String>> texts = new LinkedHashMap<>();
+        for (int i = 0; i < 700; i++) {
+            String content = sentence(random);
+            Post post = service.addPost(AUTHORS[i % AUTHORS.length], content);
+            texts.put(post.getId(), new ArrayList<>(List.of(content)));
+        }
+        List<Long> ids = new ArrayList<>(texts.keySet());
+        for (int i = 0; i < 300; i++) {
+            long postId = ids.get(random.nextInt(ids.size()));
+            String content = sentence(random);
+            service.addComment(postId, AUTHORS[random.nextInt(AUTHORS.length)], content);
+            texts.get(postId).add(content);
+        }
+
+        List<String> queries = new ArrayList<>();
+        for (String word : WORDS) {
+            queries.add(word);
+            queries.add(word.substring(0, 2) + "*");
+        }
+        queries.add("ap*");
+        queries.add("band*");
+        queries.add("zebra");
+        queries.add("zeb*");
+        for (int i = 0; i < 40; i++) {
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String second = WORDS[random.nextInt(WORDS.length)];
+            queries.add(first + " " + second);
+            queries.add("\"" + first + " " + second + "\"");
+            queries.add(first + " " + second.substring(0, 3) + "*");
+            queries.add("\"" + first + " " + second + "\" " + WORDS[random.nextInt(WORDS.length)]);
+        }
+        for (String query : queries) {
+            List<Long> expected = scan(texts, query);
+            assertEquals(expected, ids(service.searchPosts(query, Integer.MAX_VALUE)), "all results of " + query);
+            for (int limit : new int[] {1, 7, 128, 200}) {
+                assertEquals(expected.subList(0, Math.min(limit, expected.size())),
+                        ids(service.searchPosts(query, limit)), limit + " results of " + query);
+            }
+        }
+        assertTrue(scan(texts, "apple").size() > 2 * SearchIndex.BLOCK, "a term spans several blocks");
+    }
+
+    public void testResultsFollowEditsAndDeletes() throws SocialMediaException {
+        DefaultPlatformService service = platform();
+        Post first = service.addPost("ann", "red apple pie");
+        Post second = service.addPost("bob", "green apple");
+        Post third = service.addPost("cat", "apple crumble");
+        Comment comment = service.addComment(second.getId(), "cat", "sour cherry");
+        assertEquals(List.of(third.getId(), second.getId(), first.getId()),
+                ids(service.searchPosts("apple", 10)), "before changes");
+        assertEquals(List.of(second.getId()), ids(service.searchPosts("\"sour cherry\"", 10)), "phrase in a comment");
+
+        first.setContent("red pear pie");
+        assertEquals(List.of(third.getId(), second.getId()), ids(service.searchPosts("apple", 10)), "after an edit");
+        assertEquals(List.of(first.getId()), ids(service.searchPosts("pear", 10)), "new word of an edit");
+        assertEquals(List.of(), ids(service.searchPosts("\"red apple\"", 10)), "phrase of the old text");
+
+        comment.setContent("sweet cherry");
+        assertEquals(List.of(), ids(service.searchPosts("sour", 10)), "old word of an edited comment");
+        assertEquals(List.of(second.getId()), ids(service.searchPosts("\"sweet cherry\"", 10)),
+                "phrase of an edited comment");
+
+        service.deletePost("admin", third.getId());
+        assertEquals(List.of(second.getId()), ids(service.searchPosts("apple", 10)), "after a post delete");
+        assertEquals(List.of(), ids(service.searchPosts("crumble", 10)), "words of the deleted post");
+
+        service.deleteUser("admin", "bob");
+        assertEquals(List.of(), ids(service.searchPosts("apple", 10)), "after the author was deleted");
+        assertEquals(List.of(), ids(service.searchPosts("green", 10)), "words of the deleted author");
+        assertEquals(List.of(first.getId()), ids(service.searchPosts("pie", 10)), "posts of other authors");
+
+        Post later = service.addPost("ann", "apple again");
+        assertEquals(List.of(later.getId()), ids(service.searchPosts("app*", 10)), "new post after the deletes");
+    }
+
+    private static DefaultPlatformService platform() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("admin", "admin@example.com", true);
+        for (String name : AUTHORS) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        return service;
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        int length = 2 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sentence.append(i == 0 ? word.toUpperCase() : word).append(i + 1 < length ? ", " : ".");
+        }
+        return sentence.toString();
+    }
+
+    /**
+     * Finds the matching posts, newest first, by reading every text: plain words must
+     * occur in the post or a comment, a word ending in * matches any word starting
+     * with the rest, and a quoted phrase must occur as a whole in one text.
+     */
+    private static List<Long> scan(Map<Long, List<String>> texts, String query) {
+        List<String> words = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1) {
+                phrases.add(SearchIndex.tokens(parts[i]));
+            } else {
+                for (String word : parts[i].trim().split("\\s+")) {
+                    if (!word.isEmpty()) {
+                        words.add(word.toLowerCase());
+                    }
+                }
+            }
+        }
+        List<Long> matches = new ArrayList<>();
+        for (Map.Entry<Long, List<String>> post : texts.entrySet()) {
+            List<List<String>> tokens = new ArrayList<>();
+            for (String text : post.getValue()) {
+                tokens.add(SearchIndex.tokens(text));
+            }
+            boolean match = true;
+            for (String word : words) {
+                match &= contains(tokens, word);
+            }
+            for (List<String> phrase : phrases) {
+                boolean found = false;
+                for (List<String> text : tokens) {
+                    found |= Collections.indexOfSubList(text, phrase) >= 0;
+                }
+                match &= found;
+            }
+            if (match) {
+                matches.add(0, post.getKey());
+            }
+        }
+        return matches;
+    }
+
+    private static boolean contains(List<List<String>> tokens, String word) {
+        boolean prefix = word.endsWith("*");
+        String stem = prefix ? word.substring(0, word.length() - 1) : word;
+        for (List<String> text : tokens) {
+            for (String token : text) {
+                if (prefix ? token.startsWith(stem) : token.equals(stem)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Long> ids(List<Post> posts) {
+        List<Long> ids = new ArrayList<>();
+        for (Post post : posts) {
+            ids.add(post.getId());
+        }
+        return ids;
+    }
+}
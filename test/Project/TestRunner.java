@@ -0,0 +1,85 @@
+package Project;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The TestRunner class runs the tests of the project without a test framework. It
+ * finds every class whose name ends in "Test" under a directory of compiled test
+ * classes and calls each of its public methods whose name starts with "test" on a new
+ * instance. A test passes when its method returns. Failures are printed with their
+ * cause, and the runner exits with status 1 if any test failed.
+ *
+ * @author Asail
+ */
+final class TestRunner {
+    private TestRunner() {
+    }
+
+    /**
+     * @param args the directory holding the compiled test classes
+     * @throws IOException if the directory cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "build/test/classes");
+        int run = 0;
+        int failed = 0;
+        for (Class<?> type : testClasses(root)) {
+            Method[] methods = type.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || !Modifier.isPublic(method.getModifiers())
+                        || method.getParameterCount() != 0) {
+                    continue;
+                }
+                run++;
+                String name = type.getSimpleName() + "." + method.getName();
+                try {
+                    method.invoke(type.getDeclaredConstructor().newInstance());
+                    System.out.println("PASS " + name);
+                } catch (InvocationTargetException e) {
+                    failed++;
+                    System.out.println("FAIL " + name + ": " + e.getCause());
+                    e.getCause().printStackTrace(System.out);
+                } catch (ReflectiveOperationException e) {
+                    failed++;
+                    System.out.println("FAIL " + name + ": " + e);
+                }
+            }
+        }
+        System.out.println(run + " tests, " + failed + " failed");
+        if (failed > 0 || run == 0) {
+            System.exit(1);
+        }
+    }
+
+    private static List<Class<?>> testClasses(Path root) throws IOException {
+        List<Class<?>> classes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                String relative = root.relativize(file).toString();
+                if (!relative.endsWith("Test.class")) {
+                    continue;
+                }
+                String name = relative.substring(0, relative.length() - ".class".length())
+                        .replace(file.getFileSystem().getSeparator(), ".");
+                try {
+                    classes.add(Class.forName(name));
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Cannot load test class " + name, e);
+                }
+            }
+        }
+        return classes;
+    }
+}
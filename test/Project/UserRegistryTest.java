@@ -0,0 +1,147 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+import static Project.Assert.assertThrows;
+import static Project.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The UserRegistryTest class checks that an email belongs to at most one user,
+ * whatever its case, across registrations, email changes, renames and removals, and
+ * that follow lists skip users removed while they are read.
+ *
+ * @author Asail
+ */
+public class UserRegistryTest {
+
+    public void testEmailIsUniqueIgnoringCase() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        User ann = service.addUser("ann", "Ann.Lee@Example.COM", false);
+        assertThrows(DuplicateUserException.class, () -> service.addUser("bob", "ann.lee@example.com", false),
+                "same email in lower case");
+        assertThrows(DuplicateUserException.class, () -> service.addUser("bob", "ANN.LEE@EXAMPLE.COM", false),
+                "same email in upper case");
+        assertEquals(ann, service.findUserByEmail(" ann.lee@EXAMPLE.com "), "found ignoring case and spaces");
+        assertEquals("Ann.Lee@Example.COM", ann.getEmail(), "email keeps its spelling");
+        assertEquals(1, service.getUsers().size(), "users");
+    }
+
+    public void testChangedEmailReleasesTheOldOne() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        User ann = service.addUser("ann", "ann@example.com", false);
+        service.addUser("bob", "bob@example.com", false);
+        assertThrows(DuplicateUserException.class, () -> ann.setEmail("BOB@example.com"), "taken by another user");
+        assertEquals("ann@example.com", ann.getEmail(), "email after a refused change");
+
+        ann.setEmail("Ann@Example.com");
+        assertEquals("Ann@Example.com", ann.getEmail(), "own email in another case");
+        assertEquals(ann, service.findUserByEmail("ann@example.com"), "found after a change of case");
+
+        ann.setEmail("anna@example.com");
+        assertEquals(null, service.findUserByEmail("ann@example.com"), "old email");
+        assertEquals(ann, service.findUserByEmail("ANNA@example.com"), "new email");
+        User other = service.addUser("carl", "ANN@example.com", false);
+        assertEquals(other, service.findUserByEmail("ann@example.com"), "old email registered again");
+        assertThrows(DuplicateUserException.class, () -> service.addUser("dora", "Anna@Example.com", false),
+                "new email in another case");
+    }
+
+    public void testFollowViewsSkipUsersRemovedWhileIterating() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        User ann = service.addUser("ann", "ann@example.com", false);
+        List<User> fans = new ArrayList<>();
+        for (String name : new String[] {"bob", "carl", "dora", "ed"}) {
+            fans.add(service.addUser(name, name + "@example.com", false));
+            service.followUser(name, "ann");
+        }
+        Iterator<Following> followers = ann.getFollowers().iterator();
+        service.getContext().getUsers().remove(fans.get(0));
+        service.getContext().getUsers().remove(fans.get(2));
+
+        List<User> listed = new ArrayList<>();
+        while (followers.hasNext()) {
+            assertTrue(followers.hasNext(), "hasNext is repeatable");
+            Following following = followers.next();
+            assertEquals(ann, following.getFollowee(), "followee");
+            listed.add(following.getFollower());
+        }
+        assertEquals(List.of(fans.get(1), fans.get(3)), listed, "followers still registered");
+        assertThrows(NoSuchElementException.class, followers::next, "next past the end");
+        for (User fan : List.of(fans.get(1), fans.get(3))) {
+            Iterator<Following> following = fan.getFollowing().iterator();
+            assertEquals(ann, following.next().getFollowee(), "following of " + fan.getUserName());
+        }
+    }
+
+    public void testRenamedUserKeepsItsEmail() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        User ann = service.addUser("ann", "ann@example.com", false);
+        service.addUser("bob", "bob@example.com", false);
+        assertThrows(DuplicateUserException.class, () -> ann.setUserName("bob"), "taken username");
+        ann.setUserName("anna");
+        assertEquals(ann, service.findUserByEmail("ANN@example.com"), "email of the renamed user");
+        assertEquals(ann, service.getUser("anna"), "new username");
+        assertThrows(DuplicateUserException.class, () -> service.addUser("ann", "Ann@Example.com", false),
+                "old username with the same email");
+        User other = service.addUser("ann", "other@example.com", false);
+        assertEquals(other, service.getUser("ann"), "old username with another email");
+    }
+
+    public void testRemovedUserReleasesItsEmail() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("admin", "admin@example.com", true);
+        service.addUser("ann", "ann@example.com", false);
+        service.deleteUser("admin", "ann");
+        assertEquals(null, service.findUserByEmail("ann@example.com"), "email of the removed user");
+        User again = service.addUser("ann2", "ANN@EXAMPLE.COM", false);
+        assertEquals(again, service.findUserByEmail("ann@example.com"), "email registered again");
+    }
+
+    public void testConcurrentRegistrationsClaimEachEmailOnce() throws Exception {
+        DefaultPlatformService service = new DefaultPlatformService();
+        int threads = 8;
+        int emails = 200;
+        AtomicInteger registered = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < emails; i++) {
+                        String email = "user" + i + "@example.com";
+                        try {
+                            service.addUser("t" + thread + "u" + i, thread % 2 == 0 ? email : email.toUpperCase(), false);
+                            registered.incrementAndGet();
+                        } catch (DuplicateUserException e) {
+                            // Another thread registered the email first.
+                        }
+                    }
+                } catch (InterruptedException | SocialMediaException e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(null, failure.get(), "failure in a registering thread");
+        assertEquals(emails, registered.get(), "registrations");
+        assertEquals(emails, service.getUsers().size(), "users");
+        for (int i = 0; i < emails; i++) {
+            assertTrue(service.findUserByEmail("USER" + i + "@example.com") != null, "user with email " + i);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package Project;
+
+import static Project.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The UsernameIndexTest class checks username completions against a scan of every
+ * user, ordered by follower count and then by id, as follows come and go and users are
+ * renamed and removed.
+ *
+ * @author Asail
+ */
+public class UsernameIndexTest {
+
+    public void testCompletionRanksByFollowersThenId() throws SocialMediaException {
+        DefaultPlatformService service = new DefaultPlatformService();
+        for (String name : new String[] {"sam", "sally", "sal", "salt", "sue", "bob"}) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        assertEquals(List.of("sam", "sally", "sal", "salt", "sue"), service.completeUserName("s", 10),
+                "ties broken by registration order");
+        service.followUser("bob", "salt");
+        service.followUser("sue", "salt");
+        service.followUser("bob", "sal");
+        assertEquals(List.of("salt", "sal", "sam", "sally"), service.completeUserName("s", 4), "most followed first");
+        assertEquals(List.of("salt", "sal", "sally"), service.completeUserName("sal", 10), "prefix that is a name");
+        assertEquals(List.of("salt"), service.completeUserName("salt", 10), "whole name");
+        assertEquals(List.of(), service.completeUserName("salts", 10), "longer than every name");
+        assertEquals(List.of(), service.completeUserName("S", 10), "matched case-sensitively");
+
+        service.unfollowUser("bob", "sal");
+        service.followUser("salt", "sally");
+        service.followUser("sam", "sally");
+        service.followUser("bob", "sally");
+        assertEquals(List.of("sally", "salt", "sal"), service.completeUserName("sal", 10), "after follows change");
+    }
+
+    public void testCompletionMatchesScanThroughRenamesAndRemovals() throws SocialMediaException {
+        Random random = new Random(7);
+        DefaultPlatformService service = new DefaultPlatformService();
+        service.addUser("admin", "admin@example.com", true);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < 150) {
+            names.add(name(random));
+        }
+        List<String> live = new ArrayList<>(names);
+        for (String name : live) {
+            service.addUser(name, name + "@example.com", false);
+        }
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 400; i++) {
+                String follower = live.get(random.nextInt(live.size()));
+                String followee = live.get(random.nextInt(live.size()));
+                if (follower.equals(followee)) {
+                    continue;
+                }
+                if (!service.getFollowingNames(follower).contains(followee)) {
+                    service.followUser(follower, followee);
+                } else if (random.nextInt(3) == 0) {
+                    service.unfollowUser(follower, followee);
+                }
+            }
+            for (int i = 0; i < 10; i++) {
+                String old = live.get(random.nextInt(live.size()));
+                String renamed = name(random);
+                if (names.add(renamed)) {
+                    service.getUser(old).setUserName(renamed);
+                    live.set(live.indexOf(old), renamed);
+                }
+            }
+            for (int i = 0; i < 5; i++) {
+                service.deleteUser("admin", live.remove(random.nextInt(live.size())));
+            }
+            for (String prefix : prefixes()) {
+                for (int limit : new int[] {1, 3, 10, 1000}) {
+                    assertEquals(scan(service, prefix, limit), service.completeUserName(prefix, limit),
+                            limit + " completions of '" + prefix + "' in round " + round);
+                }
+            }
+        }
+    }
+
+    /**
+     * Short names over three letters, so many names are prefixes of others.
+     */
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ('a' + random.nextInt(3)));
+        }
+        return name.toString();
+    }
+
+    private static List<String> prefixes() {
+        List<String> prefixes = new ArrayList<>(List.of("", "d"));
+        for (int length = 1; length <= 3; length++) {
+            for (int i = 0; i < Math.pow(3, length); i++) {
+                StringBuilder prefix = new StringBuilder();
+                for (int j = 0, rest = i; j < length; j++, rest /= 3) {
+                    prefix.append((char) ('a' + rest % 3));
+                }
+                prefixes.add(prefix.toString());
+            }
+        }
+        return prefixes;
+    }
+
+    private static List<String> scan(DefaultPlatformService service, String prefix, int limit) {
+        List<User> matches = new ArrayList<>();
+        for (User user : service.getUsers()) {
+            if (user.getUserName().startsWith(prefix)) {
+                matches.add(user);
+            }
+        }
+        matches.sort(Comparator.comparingInt(User::getFollowersCount).reversed().thenComparingInt(User::getId));
+        List<String> names = new ArrayList<>();
+        for (User user : matches.subList(0, Math.min(limit, matches.size()))) {
+            names.add(user.getUserName());
+        }
+        return names;
+    }
+}